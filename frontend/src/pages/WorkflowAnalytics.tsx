@@ -51,17 +51,24 @@ const WorkflowAnalytics: React.FC = () => {
     try {
       setLoading(true);
       
-      // Load workflow instances and definitions
-      const [instancesResponse, definitionsResponse] = await Promise.all([
+      // Daily trends come from the pre-aggregated rollups rather than from the instance list
+      const today = new Date();
+      today.setHours(0, 0, 0, 0);
+      const weekAgo = new Date(today.getTime() - 6 * 24 * 60 * 60 * 1000);
+      const tomorrow = new Date(today.getTime() + 24 * 60 * 60 * 1000);
+      
+      // Load workflow instances, definitions and the last 7 days of rollups
+      const [instancesResponse, definitionsResponse, rollupsResponse] = await Promise.all([
         workflowApi.getWorkflowInstances(),
         workflowApi.getWorkflowDefinitions(),
+        workflowApi.getInstanceRollups(toLocalDateTime(weekAgo), toLocalDateTime(tomorrow), 'DAY'),
       ]);
       
       const instances = instancesResponse.data.content || instancesResponse.data;
       const definitions = definitionsResponse.data.content || definitionsResponse.data;
       
       // Process data for analytics
-      const processedData = processAnalyticsData(instances, definitions);
+      const processedData = processAnalyticsData(instances, definitions, rollupsResponse.data.buckets, weekAgo);
       setAnalyticsData(processedData);
       
     } catch (err) {
@@ -72,17 +79,23 @@ const WorkflowAnalytics: React.FC = () => {
     }
   };
 
-  const processAnalyticsData = (instances: any[], definitions: any[]) => {
-    // Instance trends (last 7 days)
-    const instanceTrends = [
-      { name: 'Mon', instances: 4, completed: 3 },
-      { name: 'Tue', instances: 6, completed: 5 },
-      { name: 'Wed', instances: 3, completed: 2 },
-      { name: 'Thu', instances: 8, completed: 7 },
-      { name: 'Fri', instances: 5, completed: 4 },
-      { name: 'Sat', instances: 2, completed: 2 },
-      { name: 'Sun', instances: 3, completed: 3 },
-    ];
+  const toLocalDateTime = (date: Date) => {
+    const pad = (value: number) => String(value).padStart(2, '0');
+    return `${date.getFullYear()}-${pad(date.getMonth() + 1)}-${pad(date.getDate())}T00:00:00`;
+  };
+
+  const processAnalyticsData = (instances: any[], definitions: any[], buckets: any[], firstDay: Date) => {
+    // Instance trends (last 7 days); days without finished instances have no bucket
+    const instanceTrends = Array.from({ length: 7 }, (_, index) => {
+      const day = new Date(firstDay.getTime() + index * 24 * 60 * 60 * 1000);
+      const bucket = buckets.find(b => b.start.startsWith(toLocalDateTime(day).slice(0, 10)));
+      const statuses: Record<string, any> = bucket ? bucket.statuses : {};
+      return {
+        name: day.toLocaleDateString('en-US', { weekday: 'short' }),
+        instances: Object.values(statuses).reduce((sum: number, stats: any) => sum + stats.instances, 0),
+        completed: statuses.COMPLETED ? statuses.COMPLETED.instances : 0,
+      };
+    });
 
     // Completion rates by definition
     const completionRates = definitions.map(def => {
@@ -224,7 +237,7 @@ const WorkflowAnalytics: React.FC = () => {
                   <XAxis dataKey="name" />
                   <YAxis />
                   <Tooltip />
-                  <Bar dataKey="instances" fill="#1976d2" name="Started" />
+                  <Bar dataKey="instances" fill="#1976d2" name="Finished" />
                   <Bar dataKey="completed" fill="#2e7d32" name="Completed" />
                 </BarChart>
               </ResponsiveContainer>
@@ -117,6 +117,12 @@ export const workflowApi = {
   
   resumeWorkflowInstance: (id: string) =>
     api.post(`/workflow-instances/${id}/resume`),
+
+  // Analytics
+  getInstanceRollups: (from: string, to: string, resolution?: string, workflowDefinitionId?: string) =>
+    api.get('/analytics/instances', {
+      params: { from, to, resolution, workflowDefinitionId }
+    }),
 };
 
 export default api;
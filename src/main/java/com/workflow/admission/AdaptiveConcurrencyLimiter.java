@@ -0,0 +1,196 @@
+package com.workflow.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit on concurrent instance writes
+ *
+ * The limit follows the observed latency of admitted writes, which is
+ * dominated by the database. Latencies are averaged over short windows
+ * and compared with a baseline, the fastest recent window latency, which
+ * only drifts up slowly when the database gets slower for good:
+ *
+ * - while the window average stays within workflow.admission.tolerance
+ *   of the baseline, the limit grows by its square root, but
+ *   only if the window actually used at least half of it
+ * - when latency rises above that, the limit shrinks in proportion
+ *   (down to half per window)
+ * - a window with overload failures (connection pool or query timeouts)
+ *   cuts the limit multiplicatively by workflow.admission.backoff-ratio
+ *
+ * Requests over the limit are rejected immediately instead of waiting
+ * for a worker or a connection. Acquiring and releasing are lock-free;
+ * the single thread that closes a window recomputes the limit.
+ *
+ * Metrics: workflow.admission.limit, workflow.admission.in-flight and
+ * workflow.admission.rejected.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * How far the baseline moves toward a slower window; about a minute with 100 ms windows
+     */
+    private static final double BASELINE_DRIFT = 1.0 / 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final double smoothing;
+    private final long windowNanos;
+    private final int minWindowSamples;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private final AtomicBoolean overloaded = new AtomicBoolean();
+    private final AtomicLong windowEnd;
+    private final Counter rejected;
+
+    private volatile double limit;
+    private double baselineLatency;
+
+    public AdaptiveConcurrencyLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${workflow.admission.initial-limit:20}") int initialLimit,
+            @Value("${workflow.admission.min-limit:4}") int minLimit,
+            @Value("${workflow.admission.max-limit:200}") int maxLimit,
+            @Value("${workflow.admission.tolerance:1.5}") double tolerance,
+            @Value("${workflow.admission.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${workflow.admission.smoothing:0.2}") double smoothing,
+            @Value("${workflow.admission.window:PT0.1S}") Duration window,
+            @Value("${workflow.admission.min-window-samples:10}") int minWindowSamples) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Admission limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.smoothing = smoothing;
+        this.windowNanos = window.toNanos();
+        this.minWindowSamples = minWindowSamples;
+        this.limit = initialLimit;
+        this.windowEnd = new AtomicLong(System.nanoTime() + windowNanos);
+
+        Gauge.builder("workflow.admission.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current limit on concurrent instance writes")
+                .register(meterRegistry);
+        Gauge.builder("workflow.admission.in-flight", inFlight, AtomicInteger::get)
+                .description("Instance writes currently being processed")
+                .register(meterRegistry);
+        rejected = Counter.builder("workflow.admission.rejected")
+                .description("Instance writes shed because the limit was reached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Admit a request if the limit allows it
+     *
+     * @return true if admitted; the caller must then call {@link #release}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > maxInFlight.get()) {
+                    maxInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release an admitted request and record its latency
+     *
+     * @param latencyNanos how long the request took
+     * @param overload whether the request failed because the database was overloaded
+     */
+    public void release(long latencyNanos, boolean overload) {
+        inFlight.decrementAndGet();
+        if (overload) {
+            overloaded.set(true);
+        } else {
+            latencySum.add(latencyNanos);
+            latencyCount.increment();
+        }
+
+        long now = System.nanoTime();
+        long end = windowEnd.get();
+        if (now - end >= 0 && (overloaded.get() || latencyCount.sum() >= minWindowSamples)
+                && windowEnd.compareAndSet(end, now + windowNanos)) {
+            updateLimit();
+        }
+    }
+
+    /**
+     * Get the current limit
+     *
+     * @return the maximum number of concurrent instance writes
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Recompute the limit from the window that just closed; runs on one thread at a time
+     */
+    private void updateLimit() {
+        // Samples recorded while resetting may land in either window, which is fine for an average
+        long count = latencyCount.sumThenReset();
+        long sum = latencySum.sumThenReset();
+        boolean overload = overloaded.getAndSet(false);
+        int peak = maxInFlight.getAndSet(inFlight.get());
+        double current = limit;
+
+        double next;
+        if (overload) {
+            next = current * backoffRatio;
+        } else if (count == 0) {
+            return;
+        } else {
+            double windowLatency = (double) sum / count;
+            // The baseline follows faster windows at once and slower ones only gradually
+            if (baselineLatency == 0 || windowLatency < baselineLatency) {
+                baselineLatency = windowLatency;
+            } else {
+                baselineLatency += (windowLatency - baselineLatency) * BASELINE_DRIFT;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineLatency / windowLatency));
+            double target = current * gradient + Math.sqrt(current);
+            // A limit that is not being used says nothing about capacity, so do not grow it
+            if (peak < current / 2) {
+                target = Math.min(target, current);
+            }
+            next = current * (1 - smoothing) + target * smoothing;
+        }
+
+        next = Math.max(minLimit, Math.min(maxLimit, next));
+        if ((int) next != (int) current) {
+            log.debug("Instance write limit {} -> {}", (int) current, (int) next);
+        }
+        limit = next;
+    }
+}
@@ -0,0 +1,21 @@
+package com.workflow.assignment;
+
+import java.util.Map;
+
+/**
+ * Open human tasks per candidate group and assignee, as routing sees them
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record AssignmentLoad(Map<String, Group> groups, Map<String, Integer> assignees) {
+
+    /**
+     * One candidate group
+     *
+     * @param openTasks the open tasks of all members, i.e. the group's queue depth
+     * @param members the open tasks per member
+     */
+    public record Group(int openTasks, Map<String, Integer> members) {
+    }
+}
@@ -0,0 +1,249 @@
+package com.workflow.assignment;
+
+import com.workflow.domain.WorkflowAssignment;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.service.InstanceStateStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the assignee of a human task among its candidates
+ *
+ * Routing reads in-memory counters of open tasks per assignee, so a
+ * decision is a few map lookups and never a COUNT query. The counters
+ * follow every assignment opened or closed through this node, and are
+ * reconciled with workflow_assignments every
+ * workflow.assignment.resync-interval, which also picks up tasks routed
+ * or closed on other nodes and tasks whose instance left the step some
+ * other way, e.g. was cancelled. Between reconciliations each node may
+ * see slightly different loads, which only makes routing less even.
+ *
+ * Candidate groups are configured as
+ * workflow.assignment.groups.&lt;name&gt;=&lt;assignee&gt;,&lt;assignee&gt;,...
+ * Routing time is recorded per group and routing, and each group's open
+ * tasks are published as its queue depth.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+@Slf4j
+public class AssignmentRouter {
+
+    static final String GROUPS = "workflow.assignment.groups";
+
+    // An assignment is open while its instance still waits at its step
+    private static final String COUNT_OPEN = "SELECT a.assignee, count(*) FROM workflow_assignments a"
+            + " JOIN workflow_instances i ON i.id = a.workflow_instance_id"
+            + " WHERE a.status_code IN (?, ?) AND i.status_code = ? AND " + InstanceStateStore.CURRENT_STEP + " = a.step_name"
+            + " GROUP BY a.assignee";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final TaskCandidates.Routing defaultRouting;
+    private final Map<String, Group> groups = new TreeMap<>();
+    private final Map<List<String>, Group> userLists = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> open = new ConcurrentHashMap<>();
+
+    public AssignmentRouter(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            Environment environment,
+            @Value("${workflow.assignment.routing:least-open}") String defaultRouting) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.defaultRouting = TaskCandidates.Routing.of(defaultRouting);
+        Binder.get(environment).bind(GROUPS, Bindable.mapOf(String.class, String.class)).orElse(Map.of())
+                .forEach((name, members) -> {
+                    List<String> assignees = Arrays.stream(members.split(","))
+                            .map(String::trim)
+                            .filter(assignee -> !assignee.isEmpty())
+                            .distinct()
+                            .toList();
+                    Group group = new Group(name, assignees);
+                    groups.put(name, group);
+                    Gauge.builder("workflow.assignment.queue-depth", group, this::openTasks)
+                            .description("Open human tasks of the members of a candidate group")
+                            .tag("group", name)
+                            .register(meterRegistry);
+                });
+    }
+
+    /**
+     * Pick the assignee of a task and count the task as open for them
+     *
+     * @param candidates the task's candidates
+     * @param excluded assignees not to pick, e.g. one who rejected the task
+     * @return the assignee
+     * @throws AssignmentStateException if the group is unknown or no candidate is left
+     */
+    public String route(TaskCandidates candidates, Set<String> excluded) {
+        long started = System.nanoTime();
+        TaskCandidates.Routing routing = candidates.routing() != null ? candidates.routing() : defaultRouting;
+        String assignee;
+        String groupTag;
+        String routingTag = routing.name().toLowerCase(Locale.ROOT).replace('_', '-');
+        if (candidates.isFixed()) {
+            if (excluded.contains(candidates.assignee())) {
+                throw new AssignmentStateException("Task has no other assignee than " + candidates.assignee());
+            }
+            assignee = candidates.assignee();
+            groupTag = "";
+            routingTag = "fixed";
+        } else {
+            Group group = candidates.group() != null ? groups.get(candidates.group())
+                    : userLists.computeIfAbsent(candidates.users(), users -> new Group("", users));
+            if (group == null) {
+                throw new AssignmentStateException("Unknown candidate group " + candidates.group()
+                        + "; set " + GROUPS + "." + candidates.group());
+            }
+            assignee = pick(group, routing, excluded);
+            groupTag = group.name();
+        }
+        opened(assignee);
+        Timer.builder("workflow.assignment.routing")
+                .description("Time to pick the assignee of a human task")
+                .tag("group", groupTag)
+                .tag("routing", routingTag)
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return assignee;
+    }
+
+    /**
+     * Count a task as open for an assignee that was not routed, e.g. a delegate
+     *
+     * @param assignee the assignee
+     */
+    public void opened(String assignee) {
+        open.computeIfAbsent(assignee, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * Count a task of an assignee as closed
+     *
+     * @param assignee the assignee
+     */
+    public void closed(String assignee) {
+        AtomicInteger count = open.get(assignee);
+        if (count != null) {
+            count.updateAndGet(value -> Math.max(0, value - 1));
+        }
+    }
+
+    /**
+     * Get the open tasks as routing sees them
+     *
+     * @return the open tasks per group and assignee
+     */
+    public AssignmentLoad load() {
+        Map<String, AssignmentLoad.Group> byGroup = new TreeMap<>();
+        groups.forEach((name, group) -> {
+            Map<String, Integer> members = new TreeMap<>();
+            group.members().forEach(member -> members.put(member, openOf(member)));
+            byGroup.put(name, new AssignmentLoad.Group(openTasks(group), members));
+        });
+        Map<String, Integer> assignees = new TreeMap<>();
+        open.forEach((assignee, count) -> {
+            if (count.get() > 0) {
+                assignees.put(assignee, count.get());
+            }
+        });
+        return new AssignmentLoad(byGroup, assignees);
+    }
+
+    /**
+     * Reset the counters to the open assignments in the database
+     */
+    @Scheduled(fixedDelayString = "${workflow.assignment.resync-interval:PT1M}",
+            initialDelayString = "${workflow.assignment.resync-initial-delay:PT5S}")
+    public void resync() {
+        Map<String, Integer> stored = new HashMap<>();
+        try {
+            jdbcTemplate.query(COUNT_OPEN, rs -> {
+                        stored.put(rs.getString(1), rs.getInt(2));
+                    }, WorkflowAssignment.AssignmentStatus.ASSIGNED.getCode(),
+                    WorkflowAssignment.AssignmentStatus.IN_PROGRESS.getCode(),
+                    WorkflowInstance.InstanceStatus.RUNNING.getCode());
+        } catch (RuntimeException ex) {
+            log.warn("Reconciling assignment counters failed: {}", ex.getMessage());
+            return;
+        }
+        for (String assignee : new ArrayList<>(open.keySet())) {
+            if (!stored.containsKey(assignee)) {
+                open.get(assignee).set(0);
+            }
+        }
+        stored.forEach((assignee, count) -> open.computeIfAbsent(assignee, key -> new AtomicInteger()).set(count));
+    }
+
+    private String pick(Group group, TaskCandidates.Routing routing, Set<String> excluded) {
+        List<String> members = group.members();
+        int size = members.size();
+        // Start where the last pick left off, so ties and round-robin both rotate through the members
+        int start = Math.floorMod(group.cursor().getAndIncrement(), Math.max(size, 1));
+        String chosen = null;
+        int fewest = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            String member = members.get((start + i) % size);
+            if (excluded.contains(member)) {
+                continue;
+            }
+            if (routing == TaskCandidates.Routing.ROUND_ROBIN) {
+                return member;
+            }
+            int count = openOf(member);
+            if (count < fewest) {
+                chosen = member;
+                fewest = count;
+            }
+        }
+        if (chosen == null) {
+            throw new AssignmentStateException("No candidate left to assign the task to");
+        }
+        return chosen;
+    }
+
+    private int openOf(String assignee) {
+        AtomicInteger count = open.get(assignee);
+        return count != null ? count.get() : 0;
+    }
+
+    private int openTasks(Group group) {
+        int total = 0;
+        for (String member : group.members()) {
+            total += openOf(member);
+        }
+        return total;
+    }
+
+    private record Group(String name, List<String> members, AtomicInteger cursor) {
+
+        Group(String name, List<String> members) {
+            this(name, members, new AtomicInteger());
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.workflow.assignment;
+
+import com.workflow.changes.ChangeOutbox;
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowAssignment;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.domain.WorkflowStep;
+import com.workflow.service.DefinitionSnapshot;
+import com.workflow.service.InstanceStateStore;
+import com.workflow.service.StepEnteredEvent;
+import com.workflow.service.WorkflowDefinitionCache;
+import com.workflow.service.WorkflowInstanceService;
+import com.workflow.tenancy.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Assigns human tasks and tracks them until they are done
+ *
+ * When an instance enters a human task step whose configuration names an
+ * assignee or candidates (see {@link TaskCandidates}), the task is routed
+ * by the {@link AssignmentRouter} and recorded as an ASSIGNED
+ * workflow_assignments row once the move is committed. The assignee can
+ * claim it (IN_PROGRESS), complete it, which completes the step, reject
+ * it, which routes it to another candidate, or delegate it to someone
+ * else. Every change goes through a conditional update, so a task cannot
+ * be closed twice.
+ *
+ * An assignment is open while it is ASSIGNED or IN_PROGRESS and its
+ * instance still waits at its step; tasks of instances that moved on some
+ * other way are left behind as they were and drop out of inboxes and
+ * counts.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+@Slf4j
+public class AssignmentService {
+
+    private static final short ASSIGNED = WorkflowAssignment.AssignmentStatus.ASSIGNED.getCode();
+    private static final short IN_PROGRESS = WorkflowAssignment.AssignmentStatus.IN_PROGRESS.getCode();
+    private static final short RUNNING = WorkflowInstance.InstanceStatus.RUNNING.getCode();
+
+    private static final String INSERT = "INSERT INTO workflow_assignments"
+            + " (id, workflow_instance_id, step_name, assignee, candidate_group, status_code, assigned_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String EXISTS_OPEN = "SELECT EXISTS (SELECT 1 FROM workflow_assignments"
+            + " WHERE workflow_instance_id = ? AND step_name = ? AND status_code IN (?, ?))";
+
+    private static final String CLAIM = "UPDATE workflow_assignments SET status_code = ? WHERE id = ? AND status_code = ?";
+
+    private static final String CLOSE = "UPDATE workflow_assignments"
+            + " SET status_code = ?, completed_at = ?, comments = COALESCE(?, comments),"
+            + " workflow_execution_id = COALESCE(?, workflow_execution_id)"
+            + " WHERE id = ? AND status_code IN (?, ?)";
+
+    private static final String SELECT = "SELECT a.id, a.workflow_instance_id, i.name AS instance_name, a.step_name,"
+            + " a.assignee, a.candidate_group, a.status_code, a.assigned_at, a.completed_at, a.comments,"
+            + " i.tenant_id, i.status_code AS instance_status, " + InstanceStateStore.CURRENT_STEP + " AS current_step"
+            + " FROM workflow_assignments a JOIN workflow_instances i ON i.id = a.workflow_instance_id";
+
+    private static final String SELECT_BY_ID = SELECT + " WHERE a.id = ?";
+
+    private static final String SELECT_INBOX = SELECT
+            + " WHERE a.assignee = ? AND a.status_code IN (?, ?) AND i.tenant_id = ? AND i.status_code = ?"
+            + " AND " + InstanceStateStore.CURRENT_STEP + " = a.step_name ORDER BY a.assigned_at DESC LIMIT ?";
+
+    private static final RowMapper<Stored> STORED = (rs, rowNum) -> new Stored(
+            new TaskAssignment(
+                    rs.getObject("id", UUID.class),
+                    rs.getObject("workflow_instance_id", UUID.class),
+                    rs.getString("instance_name"),
+                    rs.getString("step_name"),
+                    rs.getString("assignee"),
+                    rs.getString("candidate_group"),
+                    CodedEnum.fromCode(WorkflowAssignment.AssignmentStatus.class, rs.getShort("status_code")),
+                    toLocalDateTime(rs.getTimestamp("assigned_at")),
+                    toLocalDateTime(rs.getTimestamp("completed_at")),
+                    rs.getString("comments")),
+            rs.getString("tenant_id"),
+            rs.getShort("instance_status") == RUNNING && rs.getString("step_name").equals(rs.getString("current_step")));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AssignmentRouter assignmentRouter;
+    private final WorkflowInstanceService workflowInstanceService;
+    private final WorkflowDefinitionCache workflowDefinitionCache;
+    private final TaskExecutor taskExecutor;
+    private final ChangeOutbox changeOutbox;
+
+    @Value("${workflow.assignment.inbox-limit:100}")
+    private int inboxLimit;
+
+    public AssignmentService(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            AssignmentRouter assignmentRouter,
+            WorkflowInstanceService workflowInstanceService,
+            WorkflowDefinitionCache workflowDefinitionCache,
+            @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+            ChangeOutbox changeOutbox) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.assignmentRouter = assignmentRouter;
+        this.workflowInstanceService = workflowInstanceService;
+        this.workflowDefinitionCache = workflowDefinitionCache;
+        this.taskExecutor = taskExecutor;
+        this.changeOutbox = changeOutbox;
+    }
+
+    /**
+     * Assign an entered human task step once the move is committed
+     *
+     * @param event the entered step
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStepEntered(StepEnteredEvent event) {
+        if (event.step().stepType() == WorkflowStep.StepType.HUMAN_TASK) {
+            taskExecutor.execute(() -> assign(event));
+        }
+    }
+
+    /**
+     * Get an assignment of the current tenant
+     *
+     * @param id the assignment ID
+     * @return Optional containing the assignment if found
+     */
+    public Optional<TaskAssignment> find(UUID id) {
+        return load(id).map(Stored::assignment);
+    }
+
+    /**
+     * Get the open tasks of an assignee in the current tenant, latest first
+     *
+     * @param assignee the assignee
+     * @return the open tasks, at most workflow.assignment.inbox-limit
+     */
+    public List<TaskAssignment> findOpen(String assignee) {
+        String tenantId = TenantContext.current() != null ? TenantContext.current() : TenantContext.DEFAULT_TENANT;
+        return jdbcTemplate.query(SELECT_INBOX, STORED, assignee, ASSIGNED, IN_PROGRESS, tenantId, RUNNING, inboxLimit)
+                .stream()
+                .map(Stored::assignment)
+                .toList();
+    }
+
+    /**
+     * Start working on an assigned task
+     *
+     * @param id the assignment ID
+     * @return Optional containing the assignment in progress, or empty if not found
+     * @throws AssignmentStateException if the task is not waiting to be claimed
+     */
+    public Optional<TaskAssignment> claim(UUID id) {
+        return load(id).map(stored -> {
+            TaskAssignment assignment = open(stored);
+            transactionTemplate.executeWithoutResult(status -> {
+                if (jdbcTemplate.update(CLAIM, IN_PROGRESS, id, ASSIGNED) == 0) {
+                    throw new AssignmentStateException("Assignment " + id + " is not waiting to be claimed");
+                }
+                recordChange(assignment, WorkflowAssignment.AssignmentStatus.IN_PROGRESS, LocalDateTime.now());
+            });
+            return withStatus(assignment, WorkflowAssignment.AssignmentStatus.IN_PROGRESS, null, null);
+        });
+    }
+
+    /**
+     * Complete a task, completing its step as the assignee
+     *
+     * @param id the assignment ID
+     * @param nextStep the next step to take, or null for the default
+     * @param outputData the step output as JSON
+     * @param comments the assignee's comments, or null
+     * @return future of the completed assignment, or empty if not found
+     * @throws AssignmentStateException if the task is no longer open
+     */
+    public Optional<CompletableFuture<TaskAssignment>> complete(UUID id, String nextStep, String outputData,
+                                                                String comments) {
+        Optional<Stored> stored = load(id);
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+        TaskAssignment assignment = open(stored.get());
+        return workflowInstanceService.completeStep(assignment.workflowInstanceId(), assignment.stepName(), nextStep,
+                        outputData, assignment.assignee())
+                // Off the completion batcher's thread, which must not wait for this write
+                .map(completion -> completion.thenApplyAsync(recorded -> {
+                    if (Boolean.TRUE.equals(transactionTemplate.execute(status -> close(assignment,
+                            WorkflowAssignment.AssignmentStatus.COMPLETED, recorded.completedAt(), comments,
+                            recorded.executionId())))) {
+                        assignmentRouter.closed(assignment.assignee());
+                    }
+                    return withStatus(assignment, WorkflowAssignment.AssignmentStatus.COMPLETED,
+                            recorded.completedAt(), comments);
+                }, taskExecutor));
+    }
+
+    /**
+     * Reject a task, routing it to another of its candidates
+     *
+     * @param id the assignment ID
+     * @param comments why the task was rejected, or null
+     * @return Optional containing the new assignment, or empty if not found
+     * @throws AssignmentStateException if the task is no longer open or has no other candidate
+     */
+    public Optional<TaskAssignment> reject(UUID id, String comments) {
+        return load(id).map(stored -> {
+            TaskAssignment assignment = open(stored);
+            TaskCandidates candidates = candidatesOf(assignment);
+            String assignee = assignmentRouter.route(candidates, Set.of(assignment.assignee()));
+            return reassign(assignment, WorkflowAssignment.AssignmentStatus.REJECTED, comments, assignee);
+        });
+    }
+
+    /**
+     * Hand a task over to someone else
+     *
+     * @param id the assignment ID
+     * @param assignee the new assignee
+     * @param comments why the task was delegated, or null
+     * @return Optional containing the new assignment, or empty if not found
+     * @throws AssignmentStateException if the task is no longer open
+     */
+    public Optional<TaskAssignment> delegate(UUID id, String assignee, String comments) {
+        return load(id).map(stored -> {
+            TaskAssignment assignment = open(stored);
+            assignmentRouter.opened(assignee);
+            return reassign(assignment, WorkflowAssignment.AssignmentStatus.DELEGATED, comments, assignee);
+        });
+    }
+
+    /**
+     * Get the open tasks per candidate group and assignee
+     *
+     * @return the load as routing sees it
+     */
+    public AssignmentLoad load() {
+        return assignmentRouter.load();
+    }
+
+    private void assign(StepEnteredEvent event) {
+        UUID id = event.instanceId();
+        String stepName = event.step().stepName();
+        String[] routed = new String[1];
+        try {
+            Optional<TaskCandidates> candidates = TaskCandidates.of(event.step().configuration());
+            if (candidates.isEmpty()) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                // A step entered again without being left, e.g. by a migration, keeps its task
+                if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS_OPEN, Boolean.class,
+                        id, stepName, ASSIGNED, IN_PROGRESS))) {
+                    return;
+                }
+                routed[0] = assignmentRouter.route(candidates.get(), Set.of());
+                insert(id, stepName, routed[0], candidates.get().group());
+            });
+            if (routed[0] != null) {
+                log.debug("Assigned step {} of workflow instance {} to {}", stepName, id, routed[0]);
+            }
+        } catch (RuntimeException ex) {
+            if (routed[0] != null) {
+                assignmentRouter.closed(routed[0]);
+            }
+            log.warn("Could not assign step {} of workflow instance {}: {}", stepName, id, ex.getMessage());
+        }
+    }
+
+    private TaskAssignment reassign(TaskAssignment assignment, WorkflowAssignment.AssignmentStatus status,
+                                    String comments, String assignee) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            TaskAssignment next = transactionTemplate.execute(tx -> {
+                if (!close(assignment, status, now, comments, null)) {
+                    throw new AssignmentStateException("Assignment " + assignment.id() + " is no longer open");
+                }
+                UUID nextId = insert(assignment.workflowInstanceId(), assignment.stepName(), assignee,
+                        assignment.candidateGroup());
+                return new TaskAssignment(nextId, assignment.workflowInstanceId(), assignment.instanceName(),
+                        assignment.stepName(), assignee, assignment.candidateGroup(),
+                        WorkflowAssignment.AssignmentStatus.ASSIGNED, now, null, null);
+            });
+            assignmentRouter.closed(assignment.assignee());
+            return next;
+        } catch (RuntimeException ex) {
+            assignmentRouter.closed(assignee);
+            throw ex;
+        }
+    }
+
+    private UUID insert(UUID instanceId, String stepName, String assignee, String candidateGroup) {
+        UUID id = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(INSERT, id, instanceId, stepName, assignee, candidateGroup, ASSIGNED,
+                Timestamp.valueOf(now));
+        changeOutbox.record(ChangeOutbox.Change.assignment(id, instanceId,
+                WorkflowAssignment.AssignmentStatus.ASSIGNED, stepName, now));
+        return id;
+    }
+
+    private boolean close(TaskAssignment assignment, WorkflowAssignment.AssignmentStatus status,
+                          LocalDateTime closedAt, String comments, UUID executionId) {
+        if (jdbcTemplate.update(CLOSE, status.getCode(), Timestamp.valueOf(closedAt), comments, executionId,
+                assignment.id(), ASSIGNED, IN_PROGRESS) == 0) {
+            return false;
+        }
+        recordChange(assignment, status, closedAt);
+        return true;
+    }
+
+    private void recordChange(TaskAssignment assignment, WorkflowAssignment.AssignmentStatus status,
+                              LocalDateTime occurredAt) {
+        changeOutbox.record(ChangeOutbox.Change.assignment(assignment.id(), assignment.workflowInstanceId(), status,
+                assignment.stepName(), occurredAt));
+    }
+
+    private TaskCandidates candidatesOf(TaskAssignment assignment) {
+        return workflowInstanceService.findRunningAt(assignment.workflowInstanceId(), assignment.stepName())
+                .flatMap(instance -> workflowDefinitionCache.get(instance.getWorkflowDefinition().getId()))
+                .flatMap(definition -> definition.step(assignment.stepName()))
+                .map(DefinitionSnapshot.StepSnapshot::configuration)
+                .flatMap(TaskCandidates::of)
+                .orElseThrow(() -> new AssignmentStateException(
+                        "Step " + assignment.stepName() + " has no candidates to route the task to"));
+    }
+
+    private Optional<Stored> load(UUID id) {
+        return jdbcTemplate.query(SELECT_BY_ID, STORED, id).stream()
+                .filter(stored -> TenantContext.canAccess(stored.tenantId()))
+                .findFirst();
+    }
+
+    private static TaskAssignment open(Stored stored) {
+        TaskAssignment assignment = stored.assignment();
+        if (!assignment.isOpen()) {
+            throw new AssignmentStateException("Assignment " + assignment.id() + " is " + assignment.status());
+        }
+        if (!stored.waiting()) {
+            throw new AssignmentStateException("Workflow instance " + assignment.workflowInstanceId()
+                    + " no longer waits at step " + assignment.stepName());
+        }
+        return assignment;
+    }
+
+    private static TaskAssignment withStatus(TaskAssignment assignment, WorkflowAssignment.AssignmentStatus status,
+                                             LocalDateTime completedAt, String comments) {
+        return new TaskAssignment(assignment.id(), assignment.workflowInstanceId(), assignment.instanceName(),
+                assignment.stepName(), assignment.assignee(), assignment.candidateGroup(), status,
+                assignment.assignedAt(), completedAt, comments != null ? comments : assignment.comments());
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private record Stored(TaskAssignment assignment, String tenantId, boolean waiting) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.workflow.assignment;
+
+/**
+ * Thrown when an assignment cannot be routed or changed in its current state
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class AssignmentStateException extends IllegalStateException {
+
+    public AssignmentStateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,35 @@
+package com.workflow.assignment;
+
+import com.workflow.domain.WorkflowAssignment;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A human task assigned to someone
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record TaskAssignment(
+        UUID id,
+        UUID workflowInstanceId,
+        String instanceName,
+        String stepName,
+        String assignee,
+        String candidateGroup,
+        WorkflowAssignment.AssignmentStatus status,
+        LocalDateTime assignedAt,
+        LocalDateTime completedAt,
+        String comments) {
+
+    /**
+     * Check whether the task still waits to be done
+     *
+     * @return true if assigned or in progress
+     */
+    public boolean isOpen() {
+        return status == WorkflowAssignment.AssignmentStatus.ASSIGNED
+                || status == WorkflowAssignment.AssignmentStatus.IN_PROGRESS;
+    }
+}
@@ -0,0 +1,100 @@
+package com.workflow.assignment;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Who may be assigned a human task step
+ *
+ * Read from the step configuration:
+ *
+ * <pre>
+ * "assignee": "hr@company.com"                              (always this assignee)
+ * "candidateGroup": "hr", "routing": "round-robin"          (a group of workflow.assignment.groups)
+ * "candidateUsers": ["ann@company.com", "bob@company.com"]  (these assignees)
+ * </pre>
+ *
+ * Candidates are routed by "routing", least-open or round-robin; without
+ * it, workflow.assignment.routing applies. A fixed assignee takes
+ * precedence over candidates.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record TaskCandidates(String assignee, String group, List<String> users, Routing routing) {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Read the candidates of a step
+     *
+     * @param configuration the step configuration as JSON, or null
+     * @return the candidates, or empty if the step names none
+     * @throws IllegalArgumentException if the candidate settings are invalid
+     */
+    public static Optional<TaskCandidates> of(String configuration) {
+        if (configuration == null || configuration.isBlank()) {
+            return Optional.empty();
+        }
+        JsonNode node;
+        try {
+            node = JSON.readTree(configuration);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Step configuration is not valid JSON");
+        }
+        Routing routing = node.hasNonNull("routing") ? Routing.of(node.get("routing").asText()) : null;
+        if (node.hasNonNull("assignee")) {
+            return Optional.of(new TaskCandidates(node.get("assignee").asText(), null, List.of(), routing));
+        }
+        if (node.hasNonNull("candidateGroup")) {
+            return Optional.of(new TaskCandidates(null, node.get("candidateGroup").asText(), List.of(), routing));
+        }
+        JsonNode users = node.get("candidateUsers");
+        if (users != null && users.isArray() && !users.isEmpty()) {
+            List<String> names = new ArrayList<>(users.size());
+            users.forEach(user -> names.add(user.asText()));
+            return Optional.of(new TaskCandidates(null, null, List.copyOf(names), routing));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Check whether the task always goes to one assignee
+     *
+     * @return true for a fixed assignee
+     */
+    public boolean isFixed() {
+        return assignee != null;
+    }
+
+    /**
+     * How a task is routed among its candidates
+     */
+    public enum Routing {
+        /** The candidate with the fewest open tasks, ties broken in turn */
+        LEAST_OPEN,
+        /** Each candidate in turn */
+        ROUND_ROBIN;
+
+        /**
+         * Parse a routing name
+         *
+         * @param name the name, e.g. least-open or round-robin, in any case
+         * @return the routing
+         * @throws IllegalArgumentException if there is no such routing
+         */
+        public static Routing of(String name) {
+            try {
+                return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Unknown routing " + name + "; use least-open or round-robin");
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.workflow.changes;
+
+import java.util.List;
+
+/**
+ * Changes read from the stream in one request
+ *
+ * @param changes the changes, in stream order
+ * @param next the offset to resume reading after; covers changes of other tenants that were skipped
+ * @param head the offset of the latest change in the stream
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record ChangeBatch(List<ChangeEvent> changes, long next, long head) {
+}
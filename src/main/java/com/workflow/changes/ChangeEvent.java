@@ -0,0 +1,71 @@
+package com.workflow.changes;
+
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowAssignment;
+import com.workflow.domain.WorkflowExecution;
+import com.workflow.domain.WorkflowInstance;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One change of the change stream
+ *
+ * Tells which instance, step execution or task assignment changed and the
+ * state it changed to; consumers that need more read the entity itself.
+ * The offset is the change's position in the stream and also the token to
+ * resume reading after it.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record ChangeEvent(
+        long offset,
+        String tenantId,
+        Entity entity,
+        UUID id,
+        UUID workflowInstanceId,
+        String status,
+        String stepName,
+        LocalDateTime occurredAt) {
+
+    /**
+     * Kind of entity that changed
+     */
+    public enum Entity implements CodedEnum {
+        /** A workflow instance moved to a step or changed status; the step is its current step */
+        INSTANCE(1, WorkflowInstance.InstanceStatus.class),
+        /** A step execution was recorded */
+        EXECUTION(2, WorkflowExecution.ExecutionStatus.class),
+        /** A human task was assigned, claimed or closed */
+        ASSIGNMENT(3, WorkflowAssignment.AssignmentStatus.class);
+
+        private final short code;
+        private final Class<? extends CodedEnum> statusType;
+
+        Entity(int code, Class<? extends CodedEnum> statusType) {
+            this.code = (short) code;
+            this.statusType = statusType;
+        }
+
+        @Override
+        public short getCode() {
+            return code;
+        }
+
+        /**
+         * Get the name of a stored status of this entity
+         *
+         * @param code the stored status code
+         * @return the status name
+         */
+        String statusName(short code) {
+            for (CodedEnum constant : statusType.getEnumConstants()) {
+                if (constant.getCode() == code) {
+                    return ((Enum<?>) constant).name();
+                }
+            }
+            return String.valueOf(code);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.workflow.changes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Mirrors the change stream of all tenants to a local NDJSON file
+ *
+ * Enabled by setting workflow.changes.file-sink.path to a directory.
+ * Changes are appended to changes.ndjson, one JSON object per line in the
+ * format of the change API, and the offset read so far is kept in
+ * changes.offset, so the sink resumes where it stopped. The offset is
+ * written after the lines it covers; a crash in between repeats those
+ * lines, which consumers recognise by their offsets. Meant for testing
+ * consumers offline, not for production delivery.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+@ConditionalOnExpression("!'${workflow.changes.file-sink.path:}'.isEmpty()")
+@Slf4j
+public class ChangeFileSink {
+
+    private final ChangeStream changeStream;
+    private final ObjectMapper objectMapper;
+    private final Path changesFile;
+    private final Path offsetFile;
+
+    @Value("${workflow.changes.max-batch:1000}")
+    private int batchSize;
+
+    private long offset;
+
+    public ChangeFileSink(
+            ChangeStream changeStream,
+            ObjectMapper objectMapper,
+            @Value("${workflow.changes.file-sink.path}") Path directory) {
+        this.changeStream = changeStream;
+        this.objectMapper = objectMapper;
+        this.changesFile = directory.resolve("changes.ndjson");
+        this.offsetFile = directory.resolve("changes.offset");
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        Files.createDirectories(changesFile.getParent());
+        if (Files.exists(offsetFile)) {
+            offset = Long.parseLong(Files.readString(offsetFile, StandardCharsets.UTF_8).trim());
+        }
+        log.info("Writing the change stream to {} from offset {}", changesFile, offset);
+    }
+
+    /**
+     * Append the changes relayed since the last run
+     */
+    @Scheduled(fixedDelayString = "${workflow.changes.file-sink.interval:PT1S}")
+    public void drain() {
+        try {
+            while (true) {
+                ChangeBatch batch = changeStream.read(null, offset, batchSize);
+                if (!batch.changes().isEmpty()) {
+                    append(batch);
+                }
+                writeOffset(batch.next());
+                offset = batch.next();
+                if (batch.changes().size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (RuntimeException | IOException ex) {
+            log.warn("Writing the change stream to {} failed: {}", changesFile, ex.getMessage());
+        }
+    }
+
+    private void append(ChangeBatch batch) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(changesFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (ChangeEvent change : batch.changes()) {
+                writer.write(objectMapper.writeValueAsString(change));
+                writer.newLine();
+            }
+        }
+    }
+
+    private void writeOffset(long next) throws IOException {
+        if (next == offset) {
+            return;
+        }
+        Path written = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        Files.writeString(written, Long.toString(next), StandardCharsets.UTF_8);
+        Files.move(written, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
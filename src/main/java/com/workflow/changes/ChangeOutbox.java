@@ -0,0 +1,112 @@
+package com.workflow.changes;
+
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowAssignment;
+import com.workflow.domain.WorkflowExecution;
+import com.workflow.domain.WorkflowInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Transactional outbox of the change stream
+ *
+ * Every write path that changes an instance, records a step execution or
+ * assigns a human task adds a workflow_change_outbox row in its own
+ * transaction, so a change is published exactly when it commits. The
+ * {@link ChangeRelay} moves committed rows into the stream. Each row
+ * carries the tenant of its instance, taken from the instance at hand or
+ * read from its row in the same transaction, so the change keeps its tenant
+ * even if the instance is deleted before the relay runs. With
+ * workflow.changes.enabled=false nothing is recorded.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+public class ChangeOutbox {
+
+    private static final String INSERT = "INSERT INTO workflow_change_outbox"
+            + " (tenant_id, entity, entity_id, workflow_instance_id, status, step_name, occurred_at)"
+            + " VALUES (COALESCE(?, (SELECT tenant_id FROM workflow_instances WHERE id = ?)), ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    public ChangeOutbox(JdbcTemplate jdbcTemplate, @Value("${workflow.changes.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Record a change within the transaction that makes it
+     *
+     * @param change the change
+     */
+    public void record(Change change) {
+        if (enabled) {
+            jdbcTemplate.update(INSERT, change.tenantId(), change.workflowInstanceId(), change.entity().getCode(),
+                    change.id(), change.workflowInstanceId(), change.status().getCode(), change.stepName(),
+                    Timestamp.valueOf(change.occurredAt()));
+        }
+    }
+
+    /**
+     * Record a batch of changes within the transaction that makes them
+     *
+     * @param changes the changes
+     */
+    public void recordAll(List<Change> changes) {
+        if (!enabled || changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, changes, changes.size(), (ps, change) -> {
+            ps.setString(1, change.tenantId());
+            ps.setObject(2, change.workflowInstanceId());
+            ps.setShort(3, change.entity().getCode());
+            ps.setObject(4, change.id());
+            ps.setObject(5, change.workflowInstanceId());
+            ps.setShort(6, change.status().getCode());
+            ps.setString(7, change.stepName());
+            ps.setTimestamp(8, Timestamp.valueOf(change.occurredAt()));
+        });
+    }
+
+    /**
+     * A change to record; a null tenant is read from the instance row
+     */
+    public record Change(
+            String tenantId,
+            ChangeEvent.Entity entity,
+            UUID id,
+            UUID workflowInstanceId,
+            CodedEnum status,
+            String stepName,
+            LocalDateTime occurredAt) {
+
+        public static Change instance(WorkflowInstance instance) {
+            return instance(instance.getTenantId(), instance.getId(), instance.getStatus(), instance.getCurrentStep(),
+                    LocalDateTime.now());
+        }
+
+        public static Change instance(String tenantId, UUID id, WorkflowInstance.InstanceStatus status,
+                                      String currentStep, LocalDateTime occurredAt) {
+            return new Change(tenantId, ChangeEvent.Entity.INSTANCE, id, id, status, currentStep, occurredAt);
+        }
+
+        public static Change execution(UUID id, UUID instanceId, WorkflowExecution.ExecutionStatus status,
+                                       String stepName, LocalDateTime occurredAt) {
+            return new Change(null, ChangeEvent.Entity.EXECUTION, id, instanceId, status, stepName, occurredAt);
+        }
+
+        public static Change assignment(UUID id, UUID instanceId, WorkflowAssignment.AssignmentStatus status,
+                                        String stepName, LocalDateTime occurredAt) {
+            return new Change(null, ChangeEvent.Entity.ASSIGNMENT, id, instanceId, status, stepName, occurredAt);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.workflow.changes;
+
+import com.workflow.persistence.TransactionRetryAspect;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Moves committed outbox rows into the change stream
+ *
+ * Each run takes the oldest workflow_change_outbox rows, up to
+ * workflow.changes.relay.batch-size at a time, and in the same transaction
+ * deletes them and appends them to workflow_changes with the next offsets
+ * after the stream's head. Relays on several nodes conflict on the same
+ * rows and the head, so their batches serialize and offsets stay dense;
+ * a relay that loses a conflict leaves the rows to the next run. Setting
+ * workflow.changes.relay.enabled=false on most nodes avoids the conflicts;
+ * the flag is checked on every run rather than as a bean condition, since
+ * AOT-processed images fix their bean conditions at build time.
+ *
+ * Changes older than workflow.changes.retention are dropped from the
+ * stream every workflow.changes.purge-interval.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+@Slf4j
+public class ChangeRelay {
+
+    private static final String CLAIM = "DELETE FROM workflow_change_outbox ORDER BY id LIMIT ?"
+            + " RETURNING id, tenant_id, entity, entity_id, workflow_instance_id, status, step_name, occurred_at";
+
+    private static final String SELECT_HEAD = "SELECT COALESCE(max(change_offset), 0) FROM workflow_changes";
+
+    private static final String APPEND = "INSERT INTO workflow_changes"
+            + " (change_offset, tenant_id, entity, entity_id, workflow_instance_id, status, step_name, occurred_at,"
+            + " relayed_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Offsets grow with relayed_at, so the oldest changes are always at the start of the stream
+    private static final String PURGE = "DELETE FROM workflow_changes WHERE change_offset IN"
+            + " (SELECT change_offset FROM workflow_changes ORDER BY change_offset LIMIT ?)"
+            + " AND relayed_at < ? RETURNING change_offset";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChangeStream changeStream;
+    private final Counter relayed;
+    private final Timer delay;
+
+    @Value("${workflow.changes.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${workflow.changes.relay.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${workflow.changes.retention:P7D}")
+    private Duration retention;
+
+    public ChangeRelay(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ChangeStream changeStream,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.changeStream = changeStream;
+        this.relayed = Counter.builder("workflow.changes.relayed")
+                .description("Changes moved from the outbox into the change stream")
+                .register(meterRegistry);
+        this.delay = Timer.builder("workflow.changes.relay.delay")
+                .description("Time from a change to its relay into the change stream")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Relay the committed outbox rows, batch by batch
+     */
+    @Scheduled(fixedDelayString = "${workflow.changes.relay.interval:PT0.2S}",
+            initialDelayString = "${workflow.changes.relay.initial-delay:PT5S}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            while (true) {
+                Relayed batch = Objects.requireNonNull(transactionTemplate.execute(status -> relayBatch()));
+                if (batch.count() > 0) {
+                    relayed.increment(batch.count());
+                    changeStream.advanced(batch.head());
+                }
+                if (batch.count() < batchSize) {
+                    return;
+                }
+            }
+        } catch (RuntimeException ex) {
+            if (TransactionRetryAspect.isRetryable(ex)) {
+                log.debug("Change relay lost a conflict, probably to another node's relay: {}", ex.getMessage());
+            } else {
+                log.warn("Relaying changes failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drop changes older than the retention from the stream
+     */
+    @Scheduled(fixedDelayString = "${workflow.changes.purge-interval:PT1H}",
+            initialDelayString = "${workflow.changes.purge-initial-delay:PT1M}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        long purged = 0;
+        try {
+            int deleted;
+            do {
+                deleted = jdbcTemplate.queryForList(PURGE, Long.class, batchSize, cutoff).size();
+                purged += deleted;
+            } while (deleted == batchSize);
+        } catch (RuntimeException ex) {
+            log.warn("Purging the change stream failed: {}", ex.getMessage());
+        }
+        if (purged > 0) {
+            log.info("Purged {} changes older than {} from the change stream", purged, retention);
+        }
+    }
+
+    private Relayed relayBatch() {
+        List<Claimed> claimed = new ArrayList<>(jdbcTemplate.query(CLAIM, (rs, rowNum) -> new Claimed(
+                rs.getLong("id"),
+                rs.getString("tenant_id"),
+                rs.getShort("entity"),
+                rs.getObject("entity_id", UUID.class),
+                rs.getObject("workflow_instance_id", UUID.class),
+                rs.getShort("status"),
+                rs.getString("step_name"),
+                rs.getTimestamp("occurred_at")), batchSize));
+        if (claimed.isEmpty()) {
+            return new Relayed(0, 0);
+        }
+        // RETURNING does not keep the ORDER BY
+        claimed.sort(Comparator.comparingLong(Claimed::id));
+        Long stored = jdbcTemplate.queryForObject(SELECT_HEAD, Long.class);
+        long first = (stored != null ? stored : 0) + 1;
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp relayedAt = Timestamp.valueOf(now);
+        List<Object[]> rows = new ArrayList<>(claimed.size());
+        for (int i = 0; i < claimed.size(); i++) {
+            Claimed change = claimed.get(i);
+            rows.add(new Object[] {first + i, change.tenantId(), change.entity(),
+                    change.entityId(), change.instanceId(), change.status(), change.stepName(), change.occurredAt(),
+                    relayedAt});
+        }
+        jdbcTemplate.batchUpdate(APPEND, rows);
+        claimed.forEach(change -> delay.record(Duration.between(change.occurredAt().toLocalDateTime(), now)));
+        return new Relayed(claimed.size(), first + claimed.size() - 1);
+    }
+
+    private record Claimed(long id, String tenantId, short entity, UUID entityId, UUID instanceId, short status, String stepName,
+                           Timestamp occurredAt) {
+    }
+
+    private record Relayed(int count, long head) {
+    }
+}
@@ -0,0 +1,243 @@
+package com.workflow.changes;
+
+import com.workflow.domain.CodedEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the change stream by offset
+ *
+ * A read returns the changes after an offset, oldest first, together with
+ * the offset to resume after; the relay assigns offsets without gaps and
+ * commits them in order, so resuming from that offset never misses a
+ * change. Reads of a tenant skip other tenants' changes by index.
+ *
+ * Long polls wait for the stream to grow past their offset. The relay on
+ * this node wakes them as soon as it commits; nodes without a relay check
+ * the head every workflow.changes.poll-interval while anyone is waiting.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+@Slf4j
+public class ChangeStream {
+
+    private static final String SELECT_HEAD = "SELECT COALESCE(max(change_offset), 0) FROM workflow_changes";
+
+    private static final String COLUMNS = "SELECT change_offset, tenant_id, entity, entity_id, workflow_instance_id,"
+            + " status, step_name, occurred_at FROM workflow_changes";
+
+    private static final String SELECT_RANGE = COLUMNS
+            + " WHERE change_offset > ? AND change_offset <= ? ORDER BY change_offset LIMIT ?";
+
+    private static final String SELECT_TENANT_RANGE = COLUMNS
+            + " WHERE tenant_id = ? AND change_offset > ? AND change_offset <= ? ORDER BY change_offset LIMIT ?";
+
+    private static final RowMapper<ChangeEvent> CHANGE = (rs, rowNum) -> {
+        ChangeEvent.Entity entity = CodedEnum.fromCode(ChangeEvent.Entity.class, rs.getShort("entity"));
+        return new ChangeEvent(
+                rs.getLong("change_offset"),
+                rs.getString("tenant_id"),
+                entity,
+                rs.getObject("entity_id", UUID.class),
+                rs.getObject("workflow_instance_id", UUID.class),
+                entity.statusName(rs.getShort("status")),
+                rs.getString("step_name"),
+                rs.getTimestamp("occurred_at").toLocalDateTime());
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskExecutor taskExecutor;
+    private final AtomicLong head = new AtomicLong();
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+    public ChangeStream(JdbcTemplate jdbcTemplate, @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Read the changes after an offset
+     *
+     * @param tenantId the tenant whose changes to read, or null for all tenants
+     * @param after the offset to read after, 0 for the start of the stream
+     * @param limit the most changes to return
+     * @return the changes and the offset to resume after
+     */
+    public ChangeBatch read(String tenantId, long after, int limit) {
+        long current = refreshHead();
+        if (current <= after) {
+            return new ChangeBatch(List.of(), after, current);
+        }
+        // Everything up to the head is committed, so a short read has seen the whole range
+        List<ChangeEvent> changes = tenantId != null
+                ? jdbcTemplate.query(SELECT_TENANT_RANGE, CHANGE, tenantId, after, current, limit)
+                : jdbcTemplate.query(SELECT_RANGE, CHANGE, after, current, limit);
+        long next = changes.size() < limit ? current : changes.get(changes.size() - 1).offset();
+        return new ChangeBatch(changes, next, current);
+    }
+
+    /**
+     * Read the changes after an offset, waiting for some if there are none yet
+     *
+     * @param tenantId the tenant whose changes to read
+     * @param after the offset to read after
+     * @param limit the most changes to return
+     * @param wait how long to wait for changes
+     * @return future of the changes; empty if none arrived in time
+     */
+    public CompletableFuture<ChangeBatch> poll(String tenantId, long after, int limit, Duration wait) {
+        return poll(tenantId, after, limit, System.nanoTime() + wait.toNanos());
+    }
+
+    /**
+     * Push the changes after an offset to a server-sent event stream until it closes
+     *
+     * Each event carries a batch of changes as a JSON array, and its ID is
+     * the offset to resume after, which clients send back as Last-Event-ID
+     * when they reconnect. Comments keep idle streams open.
+     *
+     * @param tenantId the tenant whose changes to push
+     * @param after the offset to start after
+     * @param limit the most changes per event
+     * @param keepAlive the longest time without an event or comment
+     * @param emitter the event stream
+     */
+    public void stream(String tenantId, long after, int limit, Duration keepAlive, SseEmitter emitter) {
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> {
+            open.set(false);
+            emitter.complete();
+        });
+        emitter.onError(ex -> open.set(false));
+        push(tenantId, after, limit, keepAlive, emitter, open);
+    }
+
+    /**
+     * Wake the polls waiting below a new head
+     *
+     * @param offset the offset of the latest relayed change
+     */
+    void advanced(long offset) {
+        head.accumulateAndGet(offset, Math::max);
+        wake();
+    }
+
+    /**
+     * Check for changes relayed by other nodes while polls are waiting
+     */
+    @Scheduled(fixedDelayString = "${workflow.changes.poll-interval:PT0.5S}")
+    public void watch() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        try {
+            refreshHead();
+        } catch (RuntimeException ex) {
+            log.debug("Reading the change stream head failed: {}", ex.getMessage());
+            return;
+        }
+        wake();
+    }
+
+    private CompletableFuture<ChangeBatch> poll(String tenantId, long after, int limit, long deadline) {
+        ChangeBatch batch = read(tenantId, after, limit);
+        long remaining = deadline - System.nanoTime();
+        if (!batch.changes().isEmpty() || remaining <= 0) {
+            return CompletableFuture.completedFuture(batch);
+        }
+        // Skipped changes of other tenants move the offset, so the next read starts at the new head
+        return awaitBeyond(batch.next(), remaining)
+                .thenComposeAsync(ignored -> poll(tenantId, batch.next(), limit, deadline), taskExecutor);
+    }
+
+    private void push(String tenantId, long after, int limit, Duration keepAlive, SseEmitter emitter,
+                      AtomicBoolean open) {
+        if (!open.get()) {
+            return;
+        }
+        CompletableFuture<ChangeBatch> next;
+        try {
+            next = poll(tenantId, after, limit, keepAlive);
+        } catch (RuntimeException ex) {
+            emitter.completeWithError(ex);
+            return;
+        }
+        // Async, so a long backlog is sent batch by batch rather than recursively
+        next.whenCompleteAsync((batch, ex) -> {
+            if (!open.get()) {
+                return;
+            }
+            if (ex != null) {
+                emitter.completeWithError(ex);
+                return;
+            }
+            try {
+                if (batch.changes().isEmpty()) {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } else {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(batch.next()))
+                            .name("changes")
+                            .data(batch.changes(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException sendFailed) {
+                // The client has gone
+                open.set(false);
+                return;
+            }
+            push(tenantId, batch.next(), limit, keepAlive, emitter, open);
+        }, taskExecutor);
+    }
+
+    private CompletableFuture<Void> awaitBeyond(long offset, long timeoutNanos) {
+        Waiter waiter = new Waiter(offset, new CompletableFuture<>());
+        waiters.add(waiter);
+        // Checked after registering, so a head that moved in between is not missed
+        if (head.get() > offset) {
+            waiter.woken().complete(null);
+        }
+        waiter.woken().completeOnTimeout(null, timeoutNanos, TimeUnit.NANOSECONDS);
+        waiter.woken().whenComplete((ignored, ex) -> waiters.remove(waiter));
+        return waiter.woken();
+    }
+
+    private void wake() {
+        long current = head.get();
+        for (Waiter waiter : waiters) {
+            if (waiter.offset() < current) {
+                waiter.woken().complete(null);
+            }
+        }
+    }
+
+    private long refreshHead() {
+        Long stored = jdbcTemplate.queryForObject(SELECT_HEAD, Long.class);
+        return head.accumulateAndGet(stored != null ? stored : 0, Math::max);
+    }
+
+    private record Waiter(long offset, CompletableFuture<Void> woken) {
+    }
+}
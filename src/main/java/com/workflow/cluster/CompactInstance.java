@@ -0,0 +1,218 @@
+package com.workflow.cluster;
+
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowInstance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact serialized form of a workflow instance in the working set
+ *
+ * One byte array per instance instead of an entity graph with its
+ * strings, timestamps, enum and lazy-loading proxies, so an entry costs
+ * little more than its data. Contexts longer than
+ * {@link #DEFLATE_THRESHOLD} bytes are deflated. Decoding yields a new
+ * detached instance whose definition carries only its ID, so callers can
+ * never share or change the cached state.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+final class CompactInstance {
+
+    static final int DEFLATE_THRESHOLD = 512;
+
+    private static final byte FORMAT = 1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final byte NO_CONTEXT = 0;
+    private static final byte PLAIN_CONTEXT = 1;
+    private static final byte DEFLATED_CONTEXT = 2;
+
+    private CompactInstance() {
+    }
+
+    /**
+     * Encode an instance
+     *
+     * @param instance the instance
+     * @return the compact form
+     */
+    static byte[] encode(WorkflowInstance instance) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            writeUuid(out, instance.getId());
+            writeUuid(out, instance.getWorkflowDefinition() != null ? instance.getWorkflowDefinition().getId() : null);
+            out.writeShort(instance.getStatus().getCode());
+            writeString(out, instance.getTenantId());
+            writeString(out, instance.getName());
+            writeString(out, instance.getCurrentStep());
+            writeContext(out, instance.getContext());
+            writeTime(out, instance.getStartedAt());
+            writeTime(out, instance.getCompletedAt());
+            writeString(out, instance.getCreatedBy());
+            writeString(out, instance.getUpdatedBy());
+            out.writeLong(instance.getSnapshotSequence() != null ? instance.getSnapshotSequence() : -1);
+            out.writeLong(instance.getEventSequence() != null ? instance.getEventSequence() : -1);
+            writeString(out, instance.getIdempotencyKey());
+            writeTime(out, instance.getIdempotencyExpiresAt());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode an instance
+     *
+     * @param form the compact form
+     * @return a new detached instance
+     */
+    static WorkflowInstance decode(byte[] form) {
+        ByteBuffer in = ByteBuffer.wrap(form);
+        if (in.get() != FORMAT) {
+            throw new IllegalArgumentException("Unknown compact instance format");
+        }
+        WorkflowInstance instance = new WorkflowInstance();
+        instance.setId(readUuid(in));
+        UUID definitionId = readUuid(in);
+        if (definitionId != null) {
+            WorkflowDefinition definition = new WorkflowDefinition();
+            definition.setId(definitionId);
+            instance.setWorkflowDefinition(definition);
+        }
+        instance.setStatus(CodedEnum.fromCode(WorkflowInstance.InstanceStatus.class, in.getShort()));
+        instance.setTenantId(readString(in));
+        instance.setName(readString(in));
+        instance.setCurrentStep(readString(in));
+        instance.setContext(readContext(in));
+        instance.setStartedAt(readTime(in));
+        instance.setCompletedAt(readTime(in));
+        instance.setCreatedBy(readString(in));
+        instance.setUpdatedBy(readString(in));
+        long snapshotSequence = in.getLong();
+        instance.setSnapshotSequence(snapshotSequence >= 0 ? snapshotSequence : null);
+        long eventSequence = in.getLong();
+        instance.setEventSequence(eventSequence >= 0 ? eventSequence : null);
+        instance.setIdempotencyKey(readString(in));
+        instance.setIdempotencyExpiresAt(readTime(in));
+        return instance;
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUuid(ByteBuffer in) {
+        return in.get() != 0 ? new UUID(in.getLong(), in.getLong()) : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeContext(DataOutputStream out, String context) throws IOException {
+        if (context == null) {
+            out.writeByte(NO_CONTEXT);
+            return;
+        }
+        byte[] utf8 = context.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length <= DEFLATE_THRESHOLD) {
+            out.writeByte(PLAIN_CONTEXT);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+            return;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(utf8.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                deflated.write(buffer, 0, deflater.deflate(buffer));
+            }
+            out.writeByte(DEFLATED_CONTEXT);
+            out.writeInt(utf8.length);
+            out.writeInt(deflated.size());
+            deflated.writeTo(out);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String readContext(ByteBuffer in) {
+        byte kind = in.get();
+        if (kind == NO_CONTEXT) {
+            return null;
+        }
+        int length = in.getInt();
+        if (kind == PLAIN_CONTEXT) {
+            String context = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return context;
+        }
+        int deflatedLength = in.getInt();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(in.array(), in.position(), deflatedLength);
+            byte[] utf8 = new byte[length];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                inflated += inflater.inflate(utf8, inflated, length - inflated);
+            }
+            in.position(in.position() + deflatedLength);
+            return new String(utf8, 0, inflated, StandardCharsets.UTF_8);
+        } catch (DataFormatException ex) {
+            throw new IllegalArgumentException("Corrupt compact instance context", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(NO_TIME);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        return seconds != NO_TIME ? LocalDateTime.ofEpochSecond(seconds, in.getInt(), ZoneOffset.UTC) : null;
+    }
+}
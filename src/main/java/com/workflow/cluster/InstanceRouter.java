@@ -0,0 +1,109 @@
+package com.workflow.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Routes instance transitions to the node owning the instance's partition
+ *
+ * Requests for instances owned by another node are answered with a 307
+ * redirect to the owner so clients and load balancers need no knowledge
+ * of the partition map. Requests processed locally run in a per-instance
+ * lane, so transitions of one instance on the owner are serialized in
+ * memory instead of conflicting in the database. Without partitioning,
+ * requests for one instance may arrive at any node anyway, so they run
+ * without a lane and conflicts are left to the database.
+ *
+ * A redirected request carries the {@value #ROUTED_PARAM} query parameter.
+ * If ownership moved again in the meantime the receiving node processes it
+ * anyway rather than bouncing it between nodes; the database still detects
+ * conflicting writes during a handover.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Slf4j
+public class InstanceRouter {
+
+    static final String ROUTED_PARAM = "routed";
+
+    private static final int LANES = 256;
+
+    private final PartitionManager partitionManager;
+    private final ReentrantLock[] lanes = new ReentrantLock[LANES];
+
+    public InstanceRouter(ObjectProvider<PartitionManager> partitionManager) {
+        this.partitionManager = partitionManager.getIfAvailable();
+        for (int i = 0; i < LANES; i++) {
+            lanes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Process an instance request locally or redirect it to the owning node
+     *
+     * @param instanceId the workflow instance ID
+     * @param request the current request
+     * @param local processes the request on this node
+     * @return the local response, or a redirect to the owner
+     */
+    public <T> ResponseEntity<T> route(UUID instanceId, HttpServletRequest request, Supplier<ResponseEntity<T>> local) {
+        Optional<ResponseEntity<T>> redirect = redirect(instanceId, request);
+        if (redirect.isPresent()) {
+            return redirect.get();
+        }
+
+        if (partitionManager == null) {
+            return local.get();
+        }
+        ReentrantLock lane = lanes[Math.floorMod(instanceId.hashCode(), LANES)];
+        lane.lock();
+        try {
+            return local.get();
+        } finally {
+            lane.unlock();
+        }
+    }
+
+    /**
+     * Get the response sending an instance request to the owning node
+     *
+     * @param instanceId the workflow instance ID
+     * @param request the current request
+     * @return Optional containing the redirect, or empty if the request should be processed locally
+     */
+    public <T> Optional<ResponseEntity<T>> redirect(UUID instanceId, HttpServletRequest request) {
+        if (partitionManager == null || partitionManager.isOwner(instanceId)
+                || request.getParameter(ROUTED_PARAM) != null) {
+            return Optional.empty();
+        }
+        Optional<String> owner = partitionManager.ownerUrl(instanceId);
+        if (owner.isEmpty()) {
+            // Partition is between owners; the next heartbeat assigns it
+            return Optional.of(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+        }
+        URI location = UriComponentsBuilder.fromHttpUrl(owner.get())
+                .path(request.getRequestURI())
+                .query(request.getQueryString())
+                .queryParam(ROUTED_PARAM, partitionManager.getNodeId())
+                .build(true)
+                .toUri();
+        log.debug("Routing instance {} to {}", instanceId, location);
+        return Optional.of(ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(location).build());
+    }
+}
@@ -0,0 +1,383 @@
+package com.workflow.cluster;
+
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.tenancy.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Working set of recently active instances in partitions owned by this node
+ *
+ * Transitions of an instance are routed to the owner of its partition, so
+ * the owner's copy is usually current. It is not authoritative, though:
+ * SLA actions run on whichever node claimed the deadline, and migrations
+ * on the node they were started on. Each hit is therefore checked against
+ * the stored state with a narrow read and reloaded if another node wrote
+ * the instance; writes based on a copy are guarded in the database as well.
+ * Entries are dropped as soon as a partition is released, and nothing is
+ * cached while partitioning is disabled.
+ *
+ * The cache therefore does not save a database round trip: a hit still
+ * reads the instance's version (its latest event sequence, or its status
+ * and step with the in-place store). What it saves is transferring and
+ * decoding the row, above all the context document, and replaying the
+ * event tail.
+ *
+ * The working set is bounded: each partition keeps at most its share of
+ * workflow.working-set.max-instances, evicting the least recently used
+ * instance beyond that, and instances idle for longer than
+ * workflow.working-set.max-idle are swept out. Instances parked for days
+ * at a human task therefore leave memory, which grows with the number of
+ * active instances rather than open ones. An evicted instance is reloaded
+ * from the database on its next lookup, e.g. when its task is completed or
+ * its SLA runs out. Entries are held in a {@link CompactInstance} form.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+public class OwnedInstanceCache implements PartitionListener {
+
+    private final ObjectProvider<PartitionManager> partitionManagerProvider;
+    private final int maxInstances;
+    private final Duration maxIdle;
+    private final AtomicLong bytes = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private final Counter capacityEvictions;
+    private final Counter idleEvictions;
+    private final Timer rehydration;
+
+    private PartitionManager partitionManager;
+    private Partition[] partitions;
+
+    public OwnedInstanceCache(
+            ObjectProvider<PartitionManager> partitionManagerProvider,
+            MeterRegistry meterRegistry,
+            @Value("${workflow.working-set.max-instances:100000}") int maxInstances,
+            @Value("${workflow.working-set.max-idle:PT10M}") Duration maxIdle) {
+        this.partitionManagerProvider = partitionManagerProvider;
+        this.maxInstances = maxInstances;
+        this.maxIdle = maxIdle;
+        this.hits = Counter.builder("workflow.working-set.lookups")
+                .description("Instance lookups answered from the working set")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("workflow.working-set.lookups")
+                .description("Instance lookups answered from the working set")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.stale = Counter.builder("workflow.working-set.lookups")
+                .description("Instance lookups answered from the working set")
+                .tag("result", "stale")
+                .register(meterRegistry);
+        this.capacityEvictions = Counter.builder("workflow.working-set.evictions")
+                .description("Instances evicted from the working set")
+                .tag("reason", "capacity")
+                .register(meterRegistry);
+        this.idleEvictions = Counter.builder("workflow.working-set.evictions")
+                .description("Instances evicted from the working set")
+                .tag("reason", "idle")
+                .register(meterRegistry);
+        this.rehydration = Timer.builder("workflow.working-set.rehydration")
+                .description("Time to reload an owned instance that was not in the working set")
+                .register(meterRegistry);
+        Gauge.builder("workflow.working-set.instances", this, OwnedInstanceCache::size)
+                .description("Instances in the working set")
+                .register(meterRegistry);
+        Gauge.builder("workflow.working-set.bytes", bytes, AtomicLong::get)
+                .description("Size of the compact instance forms in the working set")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void register() {
+        partitionManager = partitionManagerProvider.getIfAvailable();
+        if (partitionManager != null) {
+            int count = partitionManager.getPartitionCount();
+            int capacity = Math.max(1, (maxInstances + count - 1) / count);
+            partitions = new Partition[count];
+            for (int i = 0; i < count; i++) {
+                partitions[i] = new Partition(capacity);
+            }
+            partitionManager.addListener(this);
+        }
+    }
+
+    /**
+     * Get the state of an instance, from the working set if it is owned, active and current
+     *
+     * An owned, unfinished instance that is not in the working set, or
+     * whose copy was outdated by another node, is loaded and added to it,
+     * unless a transition changed its partition while it was loading.
+     *
+     * @param id the workflow instance ID
+     * @param loader reads the instance from the database
+     * @param isCurrent checks a copy against the stored state
+     * @return Optional containing the instance, empty if not found or of another tenant
+     */
+    public Optional<WorkflowInstance> getOrLoad(
+            UUID id, Function<UUID, Optional<WorkflowInstance>> loader, Predicate<WorkflowInstance> isCurrent) {
+        if (partitionManager == null || !partitionManager.isOwner(id)) {
+            return loader.apply(id);
+        }
+        Partition partition = partitions[partitionManager.partitionOf(id)];
+        byte[] form = partition.get(id);
+        if (form != null) {
+            WorkflowInstance cached = CompactInstance.decode(form);
+            if (!TenantContext.canAccess(cached.getTenantId())) {
+                return Optional.empty();
+            }
+            if (isCurrent.test(cached)) {
+                hits.increment();
+                return Optional.of(cached);
+            }
+            stale.increment();
+            partition.remove(id);
+        } else {
+            misses.increment();
+        }
+        long seen = partition.version();
+        long started = System.nanoTime();
+        Optional<WorkflowInstance> loaded = loader.apply(id);
+        rehydration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        loaded.filter(instance -> !isFinished(instance))
+                .ifPresent(instance -> partition.putIfUnchanged(id, CompactInstance.encode(instance), seen));
+        return loaded;
+    }
+
+    /**
+     * Get the state of an instance for a read, without adding it to the working set
+     *
+     * Reads may run on the read route, possibly on a replica, whose rows
+     * must not feed the copies that transitions are validated against. A
+     * current copy is returned; otherwise the reader answers and neither
+     * the result nor a failed check changes the working set.
+     *
+     * @param id the workflow instance ID
+     * @param reader reads the instance from the database
+     * @param isCurrent checks a copy against the stored state
+     * @return Optional containing the instance, empty if not found or of another tenant
+     */
+    public Optional<WorkflowInstance> getOrRead(
+            UUID id, Function<UUID, Optional<WorkflowInstance>> reader, Predicate<WorkflowInstance> isCurrent) {
+        if (partitionManager == null || !partitionManager.isOwner(id)) {
+            return reader.apply(id);
+        }
+        byte[] form = partitions[partitionManager.partitionOf(id)].get(id);
+        if (form == null) {
+            misses.increment();
+            return reader.apply(id);
+        }
+        WorkflowInstance cached = CompactInstance.decode(form);
+        if (!TenantContext.canAccess(cached.getTenantId())) {
+            return Optional.empty();
+        }
+        if (isCurrent.test(cached)) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        stale.increment();
+        return reader.apply(id);
+    }
+
+    /**
+     * Cache the result of a transition once the current transaction commits
+     *
+     * @param instance the instance after the transition
+     * @return the same instance
+     */
+    public WorkflowInstance putAfterCommit(WorkflowInstance instance) {
+        if (partitionManager == null) {
+            return instance;
+        }
+        UUID id = instance.getId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(id, instance);
+            return instance;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    put(id, instance);
+                } else {
+                    partitions[partitionManager.partitionOf(id)].remove(id);
+                }
+            }
+        });
+        return instance;
+    }
+
+    /**
+     * Drop an instance whose row was changed outside of {@link #putAfterCommit}
+     *
+     * @param id the workflow instance ID
+     */
+    public void evict(UUID id) {
+        if (partitionManager != null) {
+            partitions[partitionManager.partitionOf(id)].remove(id);
+        }
+    }
+
+    /**
+     * Evict the instances idle for longer than workflow.working-set.max-idle
+     */
+    @Scheduled(fixedDelayString = "${workflow.working-set.sweep-interval:PT30S}")
+    public void sweep() {
+        if (partitions == null) {
+            return;
+        }
+        long idleSince = System.nanoTime() - maxIdle.toNanos();
+        for (Partition partition : partitions) {
+            idleEvictions.increment(partition.sweep(idleSince));
+        }
+    }
+
+    @Override
+    public void partitionReleased(int partition) {
+        partitions[partition].clear();
+    }
+
+    private void put(UUID id, WorkflowInstance instance) {
+        Partition partition = partitions[partitionManager.partitionOf(id)];
+        // Finished instances take no more transitions, so they are not worth keeping hot
+        if (!partitionManager.isOwner(id) || isFinished(instance)) {
+            partition.remove(id);
+        } else {
+            partition.put(id, CompactInstance.encode(instance));
+        }
+    }
+
+    private int size() {
+        int size = 0;
+        if (partitions != null) {
+            for (Partition partition : partitions) {
+                size += partition.size();
+            }
+        }
+        return size;
+    }
+
+    private static boolean isFinished(WorkflowInstance instance) {
+        return instance.getStatus() == WorkflowInstance.InstanceStatus.COMPLETED
+                || instance.getStatus() == WorkflowInstance.InstanceStatus.CANCELLED
+                || instance.getStatus() == WorkflowInstance.InstanceStatus.FAILED;
+    }
+
+    /**
+     * One partition's instances in access order, least recently used first
+     *
+     * The version changes with every write, so a load that started before
+     * a write can tell that its result may be stale.
+     */
+    private final class Partition {
+
+        private final LinkedHashMap<UUID, Entry> entries;
+        private long version;
+
+        Partition(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    bytes.addAndGet(-eldest.getValue().form().length);
+                    capacityEvictions.increment();
+                    return true;
+                }
+            };
+        }
+
+        synchronized byte[] get(UUID id) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            // Re-inserting keeps the access order and the idle times in the same order
+            entries.put(id, new Entry(entry.form(), System.nanoTime()));
+            return entry.form();
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized void put(UUID id, byte[] form) {
+            version++;
+            store(id, form);
+        }
+
+        synchronized void putIfUnchanged(UUID id, byte[] form, long seen) {
+            if (version == seen && !entries.containsKey(id)) {
+                store(id, form);
+            }
+        }
+
+        synchronized void remove(UUID id) {
+            version++;
+            Entry removed = entries.remove(id);
+            if (removed != null) {
+                bytes.addAndGet(-removed.form().length);
+            }
+        }
+
+        synchronized void clear() {
+            version++;
+            entries.values().forEach(entry -> bytes.addAndGet(-entry.form().length));
+            entries.clear();
+        }
+
+        synchronized int sweep(long idleSince) {
+            int evicted = 0;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.touchedAt() - idleSince >= 0) {
+                    break;
+                }
+                iterator.remove();
+                bytes.addAndGet(-entry.form().length);
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private void store(UUID id, byte[] form) {
+            Entry replaced = entries.put(id, new Entry(form, System.nanoTime()));
+            bytes.addAndGet(form.length - (replaced != null ? replaced.form().length : 0));
+        }
+    }
+
+    private record Entry(byte[] form, long touchedAt) {
+    }
+}
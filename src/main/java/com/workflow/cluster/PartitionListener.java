@@ -0,0 +1,26 @@
+package com.workflow.cluster;
+
+/**
+ * Callback for changes in the set of partitions owned by this node
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public interface PartitionListener {
+
+    /**
+     * Called after this node acquired a partition lease
+     *
+     * @param partition the partition ID
+     */
+    default void partitionAcquired(int partition) {
+    }
+
+    /**
+     * Called after this node released or lost a partition lease
+     *
+     * @param partition the partition ID
+     */
+    default void partitionReleased(int partition) {
+    }
+}
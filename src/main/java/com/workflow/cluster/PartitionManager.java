@@ -0,0 +1,303 @@
+package com.workflow.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Assigns the virtual partitions of the instance id space to live engine nodes
+ *
+ * Every instance maps to one of a fixed number of partitions. Each node
+ * heartbeats into engine_nodes and holds time-bounded leases on its share
+ * of engine_partition_leases. On every heartbeat a node renews its leases,
+ * gives up partitions above its fair share when nodes join, and claims
+ * free or expired partitions when nodes leave. Lease expiry is evaluated
+ * with the database clock so node clock skew does not matter.
+ *
+ * A node stops treating its partitions as owned once a lease duration has
+ * passed since the start of its last successful renewal, measured on its
+ * own monotonic clock. By then another node may have claimed them, so a
+ * node cut off from the database releases all partitions and notifies its
+ * listeners instead of serving stale state.
+ *
+ * The manager is a plain object so several nodes can run side by side in
+ * one JVM against the same database.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Slf4j
+public class PartitionManager {
+
+    private static final String UPSERT_NODE = "INSERT INTO engine_nodes (node_id, base_url, heartbeat_at)"
+            + " VALUES (?, ?, NOW())"
+            + " ON CONFLICT (node_id) DO UPDATE SET base_url = EXCLUDED.base_url, heartbeat_at = NOW()";
+
+    private static final String SELECT_LIVE_NODES = "SELECT node_id, base_url FROM engine_nodes"
+            + " WHERE heartbeat_at > NOW() - ? * INTERVAL '1 second'";
+
+    private static final String ENSURE_PARTITION = "INSERT INTO engine_partition_leases (partition_id)"
+            + " VALUES (?) ON CONFLICT (partition_id) DO NOTHING";
+
+    private static final String RENEW = "UPDATE engine_partition_leases"
+            + " SET lease_expires_at = NOW() + ? * INTERVAL '1 second'"
+            + " WHERE owner_node = ? AND lease_expires_at > NOW()"
+            + " RETURNING partition_id";
+
+    private static final String RELEASE = "UPDATE engine_partition_leases"
+            + " SET owner_node = NULL, lease_expires_at = NULL"
+            + " WHERE partition_id = ? AND owner_node = ?";
+
+    private static final String CLAIM = "UPDATE engine_partition_leases"
+            + " SET owner_node = ?, lease_expires_at = NOW() + ? * INTERVAL '1 second', epoch = epoch + 1"
+            + " WHERE partition_id IN (SELECT partition_id FROM engine_partition_leases"
+            + " WHERE owner_node IS NULL OR lease_expires_at <= NOW()"
+            + " ORDER BY partition_id LIMIT ?)"
+            + " AND (owner_node IS NULL OR lease_expires_at <= NOW())"
+            + " RETURNING partition_id";
+
+    private static final String SELECT_OWNERS = "SELECT partition_id, owner_node FROM engine_partition_leases"
+            + " WHERE owner_node IS NOT NULL AND lease_expires_at > NOW()";
+
+    private static final String DELETE_NODE = "DELETE FROM engine_nodes WHERE node_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    private final String baseUrl;
+    private final int partitionCount;
+    private final Duration leaseDuration;
+    private final Duration heartbeatInterval;
+    private final List<PartitionListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Set<Integer> owned = Set.of();
+    private volatile long validUntil;
+    private volatile String[] ownerUrls;
+    private ScheduledExecutorService scheduler;
+
+    public PartitionManager(
+            JdbcTemplate jdbcTemplate,
+            String nodeId,
+            String baseUrl,
+            int partitionCount,
+            Duration leaseDuration,
+            Duration heartbeatInterval) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+        if (!heartbeatInterval.minus(leaseDuration).isNegative()) {
+            throw new IllegalArgumentException("Heartbeat interval must be shorter than the lease duration");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.nodeId = nodeId;
+        this.baseUrl = baseUrl;
+        this.partitionCount = partitionCount;
+        this.leaseDuration = leaseDuration;
+        this.heartbeatInterval = heartbeatInterval;
+        this.ownerUrls = new String[partitionCount];
+    }
+
+    /**
+     * Map an instance to its partition
+     *
+     * @param instanceId the workflow instance ID
+     * @return the partition ID in [0, partition count)
+     */
+    public int partitionOf(UUID instanceId) {
+        long bits = instanceId.getMostSignificantBits() ^ instanceId.getLeastSignificantBits();
+        // Mix so partitions stay balanced even for ids with low-entropy bits
+        bits ^= bits >>> 33;
+        bits *= 0xff51afd7ed558ccdL;
+        bits ^= bits >>> 33;
+        return (int) Math.floorMod(bits, (long) partitionCount);
+    }
+
+    /**
+     * Check whether this node currently holds the lease for an instance's partition
+     *
+     * @param instanceId the workflow instance ID
+     * @return true if this node owns the instance
+     */
+    public boolean isOwner(UUID instanceId) {
+        // Also checked here in case the heartbeat thread is stuck rather than failing
+        return owned.contains(partitionOf(instanceId)) && System.nanoTime() - validUntil < 0;
+    }
+
+    /**
+     * Get the base URL of the node owning an instance, as of the last heartbeat
+     *
+     * @param instanceId the workflow instance ID
+     * @return Optional containing the owner's base URL, empty while the partition is unassigned
+     */
+    public Optional<String> ownerUrl(UUID instanceId) {
+        return Optional.ofNullable(ownerUrls[partitionOf(instanceId)]);
+    }
+
+    public Set<Integer> ownedPartitions() {
+        return owned;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public void addListener(PartitionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Create any missing lease rows and start heartbeating
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        for (int partition = 0; partition < partitionCount; partition++) {
+            jdbcTemplate.update(ENSURE_PARTITION, partition);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "partition-heartbeat-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeatQuietly,
+                0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Node {} joined with {} partitions at {}", nodeId, partitionCount, baseUrl);
+    }
+
+    /**
+     * Stop heartbeating and hand all partitions back so other nodes can claim them immediately
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+
+        Set<Integer> previous = owned;
+        owned = Set.of();
+        previous.forEach(this::notifyReleased);
+        try {
+            for (Integer partition : previous) {
+                jdbcTemplate.update(RELEASE, partition, nodeId);
+            }
+            jdbcTemplate.update(DELETE_NODE, nodeId);
+        } catch (DataAccessException ex) {
+            log.warn("Node {} could not release its leases, they will expire: {}", nodeId, ex.getMessage());
+        }
+        log.info("Node {} left, released {} partitions", nodeId, previous.size());
+    }
+
+    /**
+     * Renew leases and move towards this node's fair share of partitions
+     */
+    public void heartbeat() {
+        long leaseSeconds = Math.max(1, leaseDuration.toSeconds());
+        // Leases renewed or claimed below expire no earlier than a lease duration from now
+        long renewalStart = System.nanoTime();
+        jdbcTemplate.update(UPSERT_NODE, nodeId, baseUrl);
+
+        Map<String, String> liveNodes = new HashMap<>();
+        jdbcTemplate.query(SELECT_LIVE_NODES,
+                rs -> {
+                    liveNodes.put(rs.getString("node_id"), rs.getString("base_url"));
+                },
+                leaseSeconds);
+        int fairShare = (partitionCount + liveNodes.size() - 1) / Math.max(1, liveNodes.size());
+
+        Set<Integer> before = owned;
+        // Leases that expired before renewal may already belong to another node and are not returned
+        Set<Integer> current = new HashSet<>(jdbcTemplate.queryForList(RENEW, Integer.class,
+                leaseSeconds, nodeId));
+
+        if (current.size() > fairShare) {
+            // Give back the highest partitions first so releases are deterministic across nodes
+            List<Integer> sorted = new ArrayList<>(current);
+            Collections.sort(sorted);
+            List<Integer> excess = sorted.subList(fairShare, sorted.size());
+            excess.forEach(current::remove);
+            // Stop serving before the leases become claimable
+            owned = Set.copyOf(current);
+            for (Integer partition : excess) {
+                jdbcTemplate.update(RELEASE, partition, nodeId);
+            }
+        } else if (current.size() < fairShare) {
+            try {
+                current.addAll(jdbcTemplate.queryForList(CLAIM, Integer.class,
+                        nodeId, leaseSeconds, fairShare - current.size()));
+            } catch (DataAccessException ex) {
+                // Another node claimed the same partitions concurrently; retry on the next heartbeat
+                log.debug("Node {} lost a partition claim race: {}", nodeId, ex.getMessage());
+            }
+        }
+
+        validUntil = renewalStart + TimeUnit.SECONDS.toNanos(leaseSeconds);
+        owned = Set.copyOf(current);
+        before.stream().filter(partition -> !current.contains(partition)).forEach(this::notifyReleased);
+        current.stream().filter(partition -> !before.contains(partition)).forEach(this::notifyAcquired);
+
+        String[] urls = new String[partitionCount];
+        jdbcTemplate.query(SELECT_OWNERS, rs -> {
+            int partition = rs.getInt("partition_id");
+            if (partition < partitionCount) {
+                urls[partition] = liveNodes.get(rs.getString("owner_node"));
+            }
+        });
+        ownerUrls = urls;
+
+        if (!before.equals(owned)) {
+            log.info("Node {} owns {} of {} partitions ({} live nodes)",
+                    nodeId, owned.size(), partitionCount, liveNodes.size());
+            log.debug("Node {} partitions: {}", nodeId,
+                    owned.stream().sorted().map(String::valueOf).collect(Collectors.joining(",")));
+        }
+    }
+
+    private void heartbeatQuietly() {
+        try {
+            heartbeat();
+        } catch (RuntimeException ex) {
+            log.warn("Partition heartbeat of node {} failed: {}", nodeId, ex.getMessage());
+            Set<Integer> previous = owned;
+            if (!previous.isEmpty() && System.nanoTime() - validUntil >= 0) {
+                owned = Set.of();
+                previous.forEach(this::notifyReleased);
+                log.warn("Node {} could not renew its leases in time, released {} partitions",
+                        nodeId, previous.size());
+            }
+        }
+    }
+
+    private void notifyAcquired(int partition) {
+        listeners.forEach(listener -> listener.partitionAcquired(partition));
+    }
+
+    private void notifyReleased(int partition) {
+        listeners.forEach(listener -> listener.partitionReleased(partition));
+    }
+}
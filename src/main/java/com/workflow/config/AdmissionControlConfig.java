@@ -0,0 +1,30 @@
+package com.workflow.config;
+
+import com.workflow.admission.AdmissionControlInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Admission control for instance writes
+ *
+ * Runs after the tenant limits, so a tenant over its own limit does not
+ * take a slot of the shared limit.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Configuration
+@RequiredArgsConstructor
+public class AdmissionControlConfig implements WebMvcConfigurer {
+
+    private final AdmissionControlInterceptor admissionControlInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor)
+                .addPathPatterns("/api/workflow-instances/**")
+                .order(1);
+    }
+}
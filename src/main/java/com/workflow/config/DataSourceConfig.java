@@ -0,0 +1,129 @@
+package com.workflow.config;
+
+import com.workflow.persistence.ReadRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Map;
+
+/**
+ * DataSource configuration for the WorkFlow Engine
+ *
+ * Builds the Hikari connection pools with a size derived from the number
+ * of available cores. Any explicit spring.datasource.hikari.* setting
+ * still takes precedence over the derived defaults.
+ *
+ * When workflow.datasource.read.url is set, a second pool is created for
+ * read-only traffic and {@link com.workflow.persistence.ReadOnly} calls are
+ * routed to it. Otherwise both routes share the primary pool.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Configuration
+@Slf4j
+public class DataSourceConfig {
+
+    @Value("${workflow.datasource.effective-spindles:1}")
+    private int effectiveSpindles;
+
+    private HikariDataSource readPool;
+
+    /**
+     * Create the primary connection pool
+     *
+     * @param properties the spring.datasource properties
+     * @return the configured Hikari data source
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        applyPoolSize(dataSource, "workflow-primary");
+        return dataSource;
+    }
+
+    /**
+     * Create the routing DataSource used by JPA, JDBC and Flyway
+     *
+     * The read pool is created here rather than as a conditional bean so
+     * that workflow.datasource.read.url also takes effect in AOT images,
+     * which fix bean conditions at build time.
+     *
+     * @param primary the primary pool
+     * @param properties the spring.datasource properties supplying default credentials for the read pool
+     * @param environment the environment holding the workflow.datasource.read.* settings
+     * @return the routing DataSource
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("primaryDataSource") HikariDataSource primary,
+            DataSourceProperties properties,
+            Environment environment) {
+        String readUrl = environment.getProperty("workflow.datasource.read.url");
+        if (StringUtils.hasText(readUrl)) {
+            readPool = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(readUrl)
+                    .build();
+            Binder.get(environment).bind("workflow.datasource.read.hikari", Bindable.ofInstance(readPool));
+            readPool.setReadOnly(true);
+            applyPoolSize(readPool, "workflow-read");
+        }
+        DataSource readTarget = readPool != null ? readPool : primary;
+
+        ReadRoutingDataSource routing = new ReadRoutingDataSource();
+        routing.setTargetDataSources(Map.of(
+                ReadRoutingDataSource.Route.PRIMARY, primary,
+                ReadRoutingDataSource.Route.READ, readTarget));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+
+        // Defer connection checkout until the first statement so the route is final by then.
+        // Declaring the defaults up front keeps startup from opening a connection to probe them;
+        // READ COMMITTED is the weaker of the Postgres/CockroachDB defaults, so a requested
+        // isolation level is only ever skipped when the real default is at least as strong.
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        proxy.setTargetDataSource(routing);
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+
+    @PreDestroy
+    void closeReadPool() {
+        if (readPool != null) {
+            readPool.close();
+        }
+    }
+
+    private void applyPoolSize(HikariDataSource dataSource, String poolName) {
+        // (cores * 2) + spindles; fixed-size pool so bursts never pay for connection setup
+        int cores = Runtime.getRuntime().availableProcessors();
+        int poolSize = cores * 2 + effectiveSpindles;
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(poolSize);
+        dataSource.setPoolName(poolName);
+
+        log.info("Derived {} connection pool size {} from {} cores", poolName, poolSize, cores);
+    }
+}
@@ -0,0 +1,54 @@
+package com.workflow.config;
+
+import com.workflow.cluster.PartitionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Instance partitioning configuration for multi-node deployments
+ *
+ * Enabled with workflow.partitioning.enabled. Each node needs a base URL
+ * reachable by the other nodes so instance requests can be redirected to
+ * the partition owner. The node ID defaults to a random value per start,
+ * which lets a restarted node rejoin without waiting for its old leases.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Configuration
+@ConditionalOnProperty(name = "workflow.partitioning.enabled", havingValue = "true")
+public class PartitioningConfig {
+
+    /**
+     * Create the partition manager of this node
+     *
+     * @param jdbcTemplate the JDBC template on the primary route
+     * @param nodeId the configured node ID, or empty for a random one
+     * @param baseUrl the base URL other nodes redirect to
+     * @param partitions the number of virtual partitions; must be the same on every node
+     * @param leaseDuration how long a partition lease lasts without renewal
+     * @param heartbeatInterval how often leases are renewed and rebalanced
+     * @return the partition manager
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @Lazy(false)
+    public PartitionManager partitionManager(
+            JdbcTemplate jdbcTemplate,
+            @Value("${workflow.partitioning.node-id:}") String nodeId,
+            @Value("${workflow.partitioning.base-url}") String baseUrl,
+            @Value("${workflow.partitioning.partitions:64}") int partitions,
+            @Value("${workflow.partitioning.lease-duration:PT15S}") Duration leaseDuration,
+            @Value("${workflow.partitioning.heartbeat-interval:PT5S}") Duration heartbeatInterval) {
+        String effectiveNodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        return new PartitionManager(jdbcTemplate, effectiveNodeId, baseUrl,
+                partitions, leaseDuration, heartbeatInterval);
+    }
+}
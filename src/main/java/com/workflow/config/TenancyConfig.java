@@ -0,0 +1,46 @@
+package com.workflow.config;
+
+import com.workflow.tenancy.TenantAdmissionInterceptor;
+import com.workflow.tenancy.TenantIdentifierResolver;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Multi-tenancy configuration
+ *
+ * Definitions and instances carry a tenant ID that Hibernate fills in
+ * and filters on from the tenant of the current request. Instance starts
+ * and transitions are admitted per tenant.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Configuration
+@RequiredArgsConstructor
+public class TenancyConfig implements WebMvcConfigurer {
+
+    private final TenantAdmissionInterceptor tenantAdmissionInterceptor;
+
+    /**
+     * Scope Hibernate sessions to the tenant of the current request
+     *
+     * @return the customizer registering the tenant resolver
+     */
+    @Bean
+    public HibernatePropertiesCustomizer tenantIdentifierResolverCustomizer() {
+        return properties -> properties.put(AvailableSettings.MULTI_TENANT_IDENTIFIER_RESOLVER,
+                new TenantIdentifierResolver());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(tenantAdmissionInterceptor)
+                .addPathPatterns("/api/workflow-instances/**")
+                .order(0);
+    }
+}
@@ -0,0 +1,51 @@
+package com.workflow.controller;
+
+import com.workflow.service.InstanceRollupSeries;
+import com.workflow.service.InstanceRollupService;
+import com.workflow.service.RollupResolution;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * REST Controller for historical workflow analytics
+ * 
+ * Serves completion counts and durations over time from pre-aggregated
+ * rollups, so charts over weeks or months do not scan instances.
+ * 
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class AnalyticsController {
+
+    private final InstanceRollupService instanceRollupService;
+
+    /**
+     * Get finished instances per time bucket and final status
+     * 
+     * @param workflowDefinitionId the definition, or all definitions if omitted
+     * @param from the start of the range
+     * @param to the end of the range, exclusive
+     * @param resolution MINUTE, HOUR or DAY; chosen from the range if omitted
+     * @param percentiles the duration quantiles to estimate
+     * @return the series
+     */
+    @GetMapping("/instances")
+    public ResponseEntity<InstanceRollupSeries> getInstanceSeries(
+            @RequestParam(required = false) UUID workflowDefinitionId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) RollupResolution resolution,
+            @RequestParam(defaultValue = "0.5,0.95,0.99") List<Double> percentiles) {
+        return ResponseEntity.ok(instanceRollupService.query(workflowDefinitionId, from, to, resolution, percentiles));
+    }
+}
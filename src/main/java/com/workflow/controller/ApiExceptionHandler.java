@@ -0,0 +1,115 @@
+package com.workflow.controller;
+
+import com.workflow.assignment.AssignmentStateException;
+import com.workflow.service.DefinitionMigrationException;
+import com.workflow.service.DefinitionValidationException;
+import com.workflow.service.IdempotencyKeyReuseException;
+import com.workflow.service.InvalidRollupQueryException;
+import com.workflow.service.InvalidSearchException;
+import com.workflow.simulation.InvalidSimulationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Maps service exceptions to API error responses
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    /**
+     * Report all problems of a definition that failed to compile
+     *
+     * @param ex the validation failure
+     * @return 400 problem detail with a "problems" list
+     */
+    @ExceptionHandler(DefinitionValidationException.class)
+    public ProblemDetail handleDefinitionValidation(DefinitionValidationException ex) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, "Workflow definition is invalid");
+        problem.setTitle("Invalid workflow definition");
+        problem.setProperty("problems", ex.getProblems());
+        return problem;
+    }
+
+    /**
+     * Reject an idempotency key that belongs to a different request
+     *
+     * @param ex the key reuse failure
+     * @return 422 problem detail
+     */
+    @ExceptionHandler(IdempotencyKeyReuseException.class)
+    public ProblemDetail handleIdempotencyKeyReuse(IdempotencyKeyReuseException ex) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.UNPROCESSABLE_ENTITY, ex.getMessage());
+        problem.setTitle("Idempotency key reused");
+        return problem;
+    }
+
+    /**
+     * Reject search criteria or searchable keys that cannot be served
+     *
+     * @param ex the search failure
+     * @return 400 problem detail
+     */
+    @ExceptionHandler(InvalidSearchException.class)
+    public ProblemDetail handleInvalidSearch(InvalidSearchException ex) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+        problem.setTitle("Invalid search");
+        return problem;
+    }
+
+    /**
+     * Reject a migration between definitions that cannot be carried out
+     *
+     * @param ex the migration failure
+     * @return 422 problem detail
+     */
+    @ExceptionHandler(DefinitionMigrationException.class)
+    public ProblemDetail handleDefinitionMigration(DefinitionMigrationException ex) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.UNPROCESSABLE_ENTITY, ex.getMessage());
+        problem.setTitle("Migration not possible");
+        return problem;
+    }
+
+    /**
+     * Reject an analytics range that the rollups cannot serve
+     *
+     * @param ex the query failure
+     * @return 400 problem detail
+     */
+    @ExceptionHandler(InvalidRollupQueryException.class)
+    public ProblemDetail handleInvalidRollupQuery(InvalidRollupQueryException ex) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+        problem.setTitle("Invalid analytics query");
+        return problem;
+    }
+
+    /**
+     * Reject a simulation request that does not fit its definition
+     *
+     * @param ex the request failure
+     * @return 400 problem detail
+     */
+    @ExceptionHandler(InvalidSimulationException.class)
+    public ProblemDetail handleInvalidSimulation(InvalidSimulationException ex) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
+        problem.setTitle("Invalid simulation");
+        return problem;
+    }
+
+    /**
+     * Reject a task change that its assignment no longer allows
+     *
+     * @param ex the assignment failure
+     * @return 409 problem detail
+     */
+    @ExceptionHandler(AssignmentStateException.class)
+    public ProblemDetail handleAssignmentState(AssignmentStateException ex) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, ex.getMessage());
+        problem.setTitle("Assignment not possible");
+        return problem;
+    }
+}
@@ -0,0 +1,144 @@
+package com.workflow.controller;
+
+import com.workflow.assignment.AssignmentLoad;
+import com.workflow.assignment.AssignmentService;
+import com.workflow.assignment.TaskAssignment;
+import com.workflow.cluster.InstanceRouter;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * REST Controller for human task assignments
+ *
+ * Provides the inbox of an assignee and the endpoints to claim, complete,
+ * reject and delegate a task. Assignments are created when an instance
+ * enters a human task step that names its candidates.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/assignments")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class AssignmentController {
+
+    private final AssignmentService assignmentService;
+    private final InstanceRouter instanceRouter;
+
+    /**
+     * Get the open tasks of an assignee, latest first
+     *
+     * @param assignee the assignee
+     * @return List of open tasks
+     */
+    @GetMapping
+    public ResponseEntity<List<TaskAssignment>> getOpenAssignments(@RequestParam String assignee) {
+        return ResponseEntity.ok(assignmentService.findOpen(assignee));
+    }
+
+    /**
+     * Get the open tasks per candidate group and assignee
+     *
+     * @return Load as seen by routing on this node
+     */
+    @GetMapping("/load")
+    public ResponseEntity<AssignmentLoad> getAssignmentLoad() {
+        return ResponseEntity.ok(assignmentService.load());
+    }
+
+    /**
+     * Get an assignment by ID
+     *
+     * @param id the assignment ID
+     * @return Assignment or 404 if not found
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<TaskAssignment> getAssignment(@PathVariable UUID id) {
+        return assignmentService.find(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Start working on an assigned task
+     *
+     * @param id the assignment ID
+     * @return Assignment in progress, 404 if not found, or 409 if it is not waiting to be claimed
+     */
+    @PostMapping("/{id}/claim")
+    public ResponseEntity<TaskAssignment> claimAssignment(@PathVariable UUID id) {
+        return assignmentService.claim(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Complete a task and the step it belongs to
+     *
+     * @param id the assignment ID
+     * @param nextStep the next step to take, defaults to the step's first next step
+     * @param comments the assignee's comments
+     * @param outputData the step output as JSON
+     * @param request the current request
+     * @return Completed assignment, 404 if not found, 409 if no longer open, or a redirect to the owning node
+     */
+    @PostMapping("/{id}/complete")
+    public CompletableFuture<ResponseEntity<TaskAssignment>> completeAssignment(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String nextStep,
+            @RequestParam(required = false) String comments,
+            @RequestBody(required = false) String outputData,
+            HttpServletRequest request) {
+        return assignmentService.find(id)
+                .map(assignment -> instanceRouter.<TaskAssignment>redirect(assignment.workflowInstanceId(), request)
+                        .map(CompletableFuture::completedFuture)
+                        .orElseGet(() -> assignmentService.complete(id, nextStep, outputData, comments)
+                                .map(future -> future.thenApply(ResponseEntity::ok))
+                                .orElseGet(() -> CompletableFuture.completedFuture(ResponseEntity.notFound().build()))))
+                .orElseGet(() -> CompletableFuture.completedFuture(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Reject a task, routing it to another candidate
+     *
+     * @param id the assignment ID
+     * @param comments why the task was rejected
+     * @return New assignment, 404 if not found, or 409 if no longer open or no other candidate is left
+     */
+    @PostMapping("/{id}/reject")
+    public ResponseEntity<TaskAssignment> rejectAssignment(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String comments) {
+        return assignmentService.reject(id, comments)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Hand a task over to someone else
+     *
+     * @param id the assignment ID
+     * @param assignee the new assignee
+     * @param comments why the task was delegated
+     * @return New assignment, 404 if not found, or 409 if no longer open
+     */
+    @PostMapping("/{id}/delegate")
+    public ResponseEntity<TaskAssignment> delegateAssignment(
+            @PathVariable UUID id,
+            @RequestParam String assignee,
+            @RequestParam(required = false) String comments) {
+        if (assignee.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return assignmentService.delegate(id, assignee.trim(), comments)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,93 @@
+package com.workflow.controller;
+
+import com.workflow.changes.ChangeBatch;
+import com.workflow.changes.ChangeStream;
+import com.workflow.tenancy.TenantContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * REST Controller for the change stream
+ *
+ * Consumers read the changes of their tenant after the offset they have
+ * processed, either by long polling or as server-sent events, instead of
+ * polling the instance endpoints.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/changes")
+@CrossOrigin(origins = "http://localhost:3000")
+public class ChangeController {
+
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final ChangeStream changeStream;
+    private final int maxBatch;
+    private final Duration maxWait;
+    private final Duration streamTimeout;
+
+    public ChangeController(
+            ChangeStream changeStream,
+            @Value("${workflow.changes.max-batch:1000}") int maxBatch,
+            @Value("${workflow.changes.max-wait:PT25S}") Duration maxWait,
+            @Value("${workflow.changes.stream-timeout:PT30M}") Duration streamTimeout) {
+        this.changeStream = changeStream;
+        this.maxBatch = maxBatch;
+        this.maxWait = maxWait;
+        this.streamTimeout = streamTimeout;
+    }
+
+    /**
+     * Get the changes after an offset, waiting for some if there are none yet
+     *
+     * @param after the offset already processed, 0 for the start of the stream
+     * @param limit the most changes to return, at most workflow.changes.max-batch
+     * @param wait how long to wait for changes, at most workflow.changes.max-wait
+     * @return Changes and the offset to pass as "after" next, or 400 for a negative offset or limit
+     */
+    @GetMapping
+    public CompletableFuture<ResponseEntity<ChangeBatch>> getChanges(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "1000") int limit,
+            @RequestParam(defaultValue = "PT0S") Duration wait) {
+        if (after < 0 || limit <= 0 || wait.isNegative()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        Duration capped = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        return changeStream.poll(TenantContext.current(), after, Math.min(limit, maxBatch), capped)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Stream the changes after an offset as server-sent events
+     *
+     * Reconnecting clients resume from their Last-Event-ID header, which
+     * takes precedence over the "after" parameter.
+     *
+     * @param after the offset already processed, 0 for the start of the stream
+     * @param lastEventId the ID of the last event received before reconnecting
+     * @param limit the most changes per event, at most workflow.changes.max-batch
+     * @return Event stream of change batches
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId,
+            @RequestParam(defaultValue = "1000") int limit) {
+        long from = lastEventId != null ? lastEventId : after;
+        if (from < 0 || limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        changeStream.stream(TenantContext.current(), from, Math.min(limit, maxBatch), maxWait, emitter);
+        return ResponseEntity.ok(emitter);
+    }
+}
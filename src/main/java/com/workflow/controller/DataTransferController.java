@@ -0,0 +1,64 @@
+package com.workflow.controller;
+
+import com.workflow.service.BulkTransferService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * REST Controller for bulk export and import
+ * 
+ * Moves definitions and instances between environments as a single
+ * gzip-compressed NDJSON stream instead of one REST call per entity.
+ * 
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/transfer")
+@RequiredArgsConstructor
+public class DataTransferController {
+
+    static final String GZIP = "application/gzip";
+
+    private final BulkTransferService bulkTransferService;
+
+    /**
+     * Stream an export of the tenant's definitions and, optionally, its instances
+     * 
+     * @param instances whether to include instances, executions and assignments
+     * @param response the response the export is written to
+     * @throws IOException if writing the response fails
+     * @throws SQLException if reading the database fails
+     */
+    @GetMapping(value = "/export", produces = GZIP)
+    public void export(
+            @RequestParam(defaultValue = "true") boolean instances,
+            HttpServletResponse response) throws IOException, SQLException {
+        response.setContentType(GZIP);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"workflow-export.ndjson.gz\"");
+        bulkTransferService.export(Channels.newChannel(response.getOutputStream()), instances);
+    }
+
+    /**
+     * Load an export produced by {@link #export}
+     * 
+     * @param request the request whose body is the export
+     * @return Row counts per imported table
+     * @throws IOException if the body is not a valid export
+     * @throws SQLException if loading fails
+     */
+    @PostMapping(value = "/import", consumes = GZIP)
+    public ResponseEntity<Map<String, Long>> importData(HttpServletRequest request) throws IOException, SQLException {
+        Map<String, Long> counts = bulkTransferService.importFrom(Channels.newChannel(request.getInputStream()));
+        return ResponseEntity.ok(counts);
+    }
+}
@@ -0,0 +1,38 @@
+package com.workflow.controller;
+
+import com.workflow.service.InstanceSearchRequest;
+import com.workflow.service.InstanceSearchResult;
+import com.workflow.service.InstanceSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST Controller for instance search
+ * 
+ * Finds instances by business keys in their context without listing
+ * all instances. Kept outside /api/workflow-instances so searches are
+ * not counted against the instance write limits.
+ * 
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class InstanceSearchController {
+
+    private final InstanceSearchService instanceSearchService;
+
+    /**
+     * Search workflow instances
+     * 
+     * @param request the search criteria
+     * @return One page of matching instances, newest first
+     */
+    @PostMapping("/instances")
+    public ResponseEntity<InstanceSearchResult> searchInstances(@RequestBody InstanceSearchRequest request) {
+        return ResponseEntity.ok(instanceSearchService.search(request));
+    }
+}
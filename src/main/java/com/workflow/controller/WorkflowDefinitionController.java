@@ -1,18 +1,33 @@
 package com.workflow.controller;
 
 import com.workflow.domain.WorkflowDefinition;
-import com.workflow.repository.WorkflowDefinitionRepository;
+import com.workflow.service.DefinitionDiff;
+import com.workflow.service.DefinitionStamp;
+import com.workflow.service.DefinitionStampService;
+import com.workflow.service.InstanceMigrationService;
+import com.workflow.service.MigrationReport;
+import com.workflow.service.SearchKey;
 import com.workflow.service.WorkflowDefinitionService;
+import com.workflow.service.WorkflowQueryService;
+import com.workflow.simulation.SimulationRequest;
+import com.workflow.simulation.SimulationResult;
+import com.workflow.simulation.SimulationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * REST Controller for Workflow Definition management
@@ -20,6 +35,11 @@ import java.util.UUID;
  * Provides endpoints for creating, reading, updating, and deleting
  * workflow definitions. Supports pagination and filtering.
  * 
+ * Single definitions are served with a strong ETag and Last-Modified and
+ * must be revalidated before reuse. Conditional requests for an unchanged
+ * definition are answered with 304 from its version stamp, without
+ * loading or serializing the definition.
+ * 
  * @author WorkFlow Team
  * @version 1.0.0
  */
@@ -30,7 +50,10 @@ import java.util.UUID;
 public class WorkflowDefinitionController {
 
     private final WorkflowDefinitionService workflowDefinitionService;
-    private final WorkflowDefinitionRepository workflowDefinitionRepository;
+    private final WorkflowQueryService workflowQueryService;
+    private final InstanceMigrationService instanceMigrationService;
+    private final SimulationService simulationService;
+    private final DefinitionStampService definitionStampService;
 
     /**
      * Get all workflow definitions with pagination
@@ -40,7 +63,7 @@ public class WorkflowDefinitionController {
      */
     @GetMapping
     public ResponseEntity<Page<WorkflowDefinition>> getAllWorkflowDefinitions(Pageable pageable) {
-        Page<WorkflowDefinition> definitions = workflowDefinitionRepository.findAll(pageable);
+        Page<WorkflowDefinition> definitions = workflowQueryService.findDefinitions(pageable);
         return ResponseEntity.ok(definitions);
     }
 
@@ -48,13 +71,13 @@ public class WorkflowDefinitionController {
      * Get workflow definition by ID
      * 
      * @param id the workflow definition ID
-     * @return Workflow definition or 404 if not found
+     * @param request the request, for conditional headers
+     * @return Workflow definition, 304 if unchanged or 404 if not found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<WorkflowDefinition> getWorkflowDefinition(@PathVariable UUID id) {
-        return workflowDefinitionRepository.findById(id)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<WorkflowDefinition> getWorkflowDefinition(@PathVariable UUID id, WebRequest request) {
+        return conditionally(request, () -> definitionStampService.find(id),
+                () -> workflowQueryService.findDefinition(id));
     }
 
     /**
@@ -62,28 +85,30 @@ public class WorkflowDefinitionController {
      * 
      * @param name the workflow name
      * @param version the workflow version
-     * @return Workflow definition or 404 if not found
+     * @param request the request, for conditional headers
+     * @return Workflow definition, 304 if unchanged or 404 if not found
      */
     @GetMapping("/name/{name}/version/{version}")
     public ResponseEntity<WorkflowDefinition> getWorkflowDefinitionByNameAndVersion(
             @PathVariable String name, 
-            @PathVariable Integer version) {
-        return workflowDefinitionRepository.findByNameAndVersion(name, version)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+            @PathVariable Integer version,
+            WebRequest request) {
+        return conditionally(request, () -> definitionStampService.find(name, version),
+                () -> workflowQueryService.findDefinition(name, version));
     }
 
     /**
      * Get latest version of workflow definition by name
      * 
      * @param name the workflow name
-     * @return Latest workflow definition or 404 if not found
+     * @param request the request, for conditional headers
+     * @return Latest workflow definition, 304 if unchanged or 404 if not found
      */
     @GetMapping("/name/{name}/latest")
-    public ResponseEntity<WorkflowDefinition> getLatestWorkflowDefinition(@PathVariable String name) {
-        return workflowDefinitionRepository.findLatestVersionByName(name)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<WorkflowDefinition> getLatestWorkflowDefinition(@PathVariable String name,
+                                                                          WebRequest request) {
+        return conditionally(request, () -> definitionStampService.findLatest(name),
+                () -> workflowQueryService.findLatestDefinition(name));
     }
 
     /**
@@ -94,7 +119,7 @@ public class WorkflowDefinitionController {
      */
     @GetMapping("/name/{name}")
     public ResponseEntity<List<WorkflowDefinition>> getWorkflowDefinitionsByName(@PathVariable String name) {
-        List<WorkflowDefinition> definitions = workflowDefinitionRepository.findByName(name);
+        List<WorkflowDefinition> definitions = workflowQueryService.findDefinitionsByName(name);
         return ResponseEntity.ok(definitions);
     }
 
@@ -107,7 +132,7 @@ public class WorkflowDefinitionController {
     @GetMapping("/status/{status}")
     public ResponseEntity<List<WorkflowDefinition>> getWorkflowDefinitionsByStatus(
             @PathVariable WorkflowDefinition.WorkflowStatus status) {
-        List<WorkflowDefinition> definitions = workflowDefinitionRepository.findByStatus(status);
+        List<WorkflowDefinition> definitions = workflowQueryService.findDefinitionsByStatus(status);
         return ResponseEntity.ok(definitions);
     }
 
@@ -148,8 +173,7 @@ public class WorkflowDefinitionController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteWorkflowDefinition(@PathVariable UUID id) {
-        if (workflowDefinitionRepository.existsById(id)) {
-            workflowDefinitionRepository.deleteById(id);
+        if (workflowDefinitionService.deleteWorkflowDefinition(id)) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.notFound().build();
@@ -180,4 +204,113 @@ public class WorkflowDefinitionController {
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    /**
+     * Get the searchable context keys of a workflow definition
+     * 
+     * @param id the workflow definition ID
+     * @return List of searchable keys or 404 if not found
+     */
+    @GetMapping("/{id}/search-keys")
+    public ResponseEntity<List<SearchKey>> getSearchKeys(@PathVariable UUID id) {
+        return workflowQueryService.findSearchKeys(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Replace the searchable context keys of a workflow definition
+     * 
+     * @param id the workflow definition ID
+     * @param searchKeys the keys to project into the search index
+     * @return The new keys or 404 if not found
+     */
+    @PutMapping("/{id}/search-keys")
+    public ResponseEntity<List<SearchKey>> replaceSearchKeys(
+            @PathVariable UUID id,
+            @RequestBody List<SearchKey> searchKeys) {
+        return workflowDefinitionService.replaceSearchKeys(id, searchKeys)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Compare the steps of two versions of a workflow definition
+     * 
+     * @param id the workflow definition to migrate from
+     * @param targetId the workflow definition to migrate to
+     * @param stepMapping optional explicit source to target step names
+     * @return Step mapping between the versions
+     */
+    @PostMapping("/{id}/diff/{targetId}")
+    public ResponseEntity<DefinitionDiff> diffWorkflowDefinitions(
+            @PathVariable UUID id,
+            @PathVariable UUID targetId,
+            @RequestBody(required = false) Map<String, String> stepMapping) {
+        return ResponseEntity.ok(instanceMigrationService.diff(id, targetId,
+                stepMapping != null ? stepMapping : Map.of()));
+    }
+
+    /**
+     * Move the running and suspended instances of a definition to another version
+     * 
+     * @param id the workflow definition to migrate from
+     * @param targetId the active workflow definition to migrate to
+     * @param dryRun only report what would be migrated
+     * @param stepMapping optional explicit source to target step names
+     * @return Migration report
+     */
+    @PostMapping("/{id}/migrate/{targetId}")
+    public ResponseEntity<MigrationReport> migrateInstances(
+            @PathVariable UUID id,
+            @PathVariable UUID targetId,
+            @RequestParam(defaultValue = "true") boolean dryRun,
+            @RequestBody(required = false) Map<String, String> stepMapping) {
+        return ResponseEntity.ok(instanceMigrationService.migrate(id, targetId,
+                stepMapping != null ? stepMapping : Map.of(), dryRun));
+    }
+
+    /**
+     * Run a synthetic population through a workflow definition in virtual time
+     * 
+     * @param id the workflow definition ID
+     * @param request the population and step models
+     * @return Per-step load, queue lengths and the bottleneck step, or 404 if not found
+     */
+    @PostMapping("/{id}/simulate")
+    public ResponseEntity<SimulationResult> simulate(
+            @PathVariable UUID id,
+            @RequestBody SimulationRequest request) {
+        return simulationService.simulate(id, request)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private static ResponseEntity<WorkflowDefinition> conditionally(
+            WebRequest request,
+            Supplier<Optional<DefinitionStamp>> stamp,
+            Supplier<Optional<WorkflowDefinition>> definition) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            Optional<DefinitionStamp> current = stamp.get();
+            if (current.isPresent() && request.checkNotModified(current.get().eTag(), lastModifiedMillis(current.get()))) {
+                return validators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), current.get()).build();
+            }
+        }
+        return definition.get()
+                .map(found -> validators(ResponseEntity.ok(), DefinitionStamp.of(found)).body(found))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private static ResponseEntity.BodyBuilder validators(ResponseEntity.BodyBuilder builder, DefinitionStamp stamp) {
+        builder.eTag(stamp.eTag()).cacheControl(CacheControl.noCache().cachePrivate());
+        if (stamp.lastModified() != null) {
+            builder.lastModified(stamp.lastModified());
+        }
+        return builder;
+    }
+
+    private static long lastModifiedMillis(DefinitionStamp stamp) {
+        return stamp.lastModified() != null ? stamp.lastModified().toInstant().toEpochMilli() : -1;
+    }
 }
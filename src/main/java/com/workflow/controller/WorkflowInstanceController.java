@@ -1,8 +1,13 @@
 package com.workflow.controller;
 
+import com.workflow.cluster.InstanceRouter;
 import com.workflow.domain.WorkflowInstance;
 import com.workflow.repository.WorkflowInstanceRepository;
+import com.workflow.service.InstanceStartResult;
+import com.workflow.service.StepCompletion;
 import com.workflow.service.WorkflowInstanceService;
+import com.workflow.service.WorkflowQueryService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -13,6 +18,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST Controller for Workflow Instance management
@@ -29,8 +35,13 @@ import java.util.UUID;
 @CrossOrigin(origins = "http://localhost:3000")
 public class WorkflowInstanceController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final WorkflowInstanceService workflowInstanceService;
-    private final WorkflowInstanceRepository workflowInstanceRepository;
+    private final WorkflowQueryService workflowQueryService;
+    private final InstanceRouter instanceRouter;
 
     /**
      * Get all workflow instances with pagination
@@ -40,7 +51,7 @@ public class WorkflowInstanceController {
      */
     @GetMapping
     public ResponseEntity<Page<WorkflowInstance>> getAllWorkflowInstances(Pageable pageable) {
-        Page<WorkflowInstance> instances = workflowInstanceRepository.findAll(pageable);
+        Page<WorkflowInstance> instances = workflowQueryService.findInstances(pageable);
         return ResponseEntity.ok(instances);
     }
 
@@ -52,7 +63,7 @@ public class WorkflowInstanceController {
      */
     @GetMapping("/{id}")
     public ResponseEntity<WorkflowInstance> getWorkflowInstance(@PathVariable UUID id) {
-        return workflowInstanceRepository.findById(id)
+        return workflowQueryService.findInstance(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -66,7 +77,7 @@ public class WorkflowInstanceController {
     @GetMapping("/definition/{workflowDefinitionId}")
     public ResponseEntity<List<WorkflowInstance>> getWorkflowInstancesByDefinition(
             @PathVariable UUID workflowDefinitionId) {
-        List<WorkflowInstance> instances = workflowInstanceRepository.findByWorkflowDefinitionId(workflowDefinitionId);
+        List<WorkflowInstance> instances = workflowQueryService.findInstancesByDefinition(workflowDefinitionId);
         return ResponseEntity.ok(instances);
     }
 
@@ -74,23 +85,23 @@ public class WorkflowInstanceController {
      * Get workflow instances by status
      * 
      * @param status the instance status
-     * @return List of workflow instances with the given status
+     * @return List of workflow instances with the given status, without the context
      */
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<WorkflowInstance>> getWorkflowInstancesByStatus(
+    public ResponseEntity<List<WorkflowInstanceRepository.Listing>> getWorkflowInstancesByStatus(
             @PathVariable WorkflowInstance.InstanceStatus status) {
-        List<WorkflowInstance> instances = workflowInstanceRepository.findByStatus(status);
+        List<WorkflowInstanceRepository.Listing> instances = workflowQueryService.findInstancesByStatus(status);
         return ResponseEntity.ok(instances);
     }
 
     /**
      * Get running workflow instances
      * 
-     * @return List of currently running workflow instances
+     * @return List of currently running workflow instances, without the context
      */
     @GetMapping("/running")
-    public ResponseEntity<List<WorkflowInstance>> getRunningWorkflowInstances() {
-        List<WorkflowInstance> instances = workflowInstanceRepository.findRunningInstances();
+    public ResponseEntity<List<WorkflowInstanceRepository.Listing>> getRunningWorkflowInstances() {
+        List<WorkflowInstanceRepository.Listing> instances = workflowQueryService.findRunningInstances();
         return ResponseEntity.ok(instances);
     }
 
@@ -110,19 +121,35 @@ public class WorkflowInstanceController {
     /**
      * Start a workflow instance from a definition
      * 
+     * With an Idempotency-Key header, repeating the request returns the
+     * instance started by the first one instead of starting another.
+     * 
      * @param workflowDefinitionId the workflow definition ID
      * @param instanceName the name for the new instance
+     * @param idempotencyKey optional key identifying retries of the same request
      * @param context the initial context data
-     * @return Created workflow instance
+     * @return Created workflow instance, or 200 with the earlier instance for a repeated key
      */
     @PostMapping("/start/{workflowDefinitionId}")
     public ResponseEntity<WorkflowInstance> startWorkflowInstance(
             @PathVariable UUID workflowDefinitionId,
             @RequestParam String instanceName,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             @RequestBody(required = false) String context) {
-        WorkflowInstance instance = workflowInstanceService.startWorkflowInstance(
-                workflowDefinitionId, instanceName, context);
-        return ResponseEntity.status(HttpStatus.CREATED).body(instance);
+        if (idempotencyKey == null) {
+            WorkflowInstance instance = workflowInstanceService.startWorkflowInstance(
+                    workflowDefinitionId, instanceName, context);
+            return ResponseEntity.status(HttpStatus.CREATED).body(instance);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        InstanceStartResult result = workflowInstanceService.startWorkflowInstance(
+                workflowDefinitionId, instanceName, context, idempotencyKey);
+        return ResponseEntity.status(result.replayed() ? HttpStatus.OK : HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAYED, String.valueOf(result.replayed()))
+                .body(result.instance());
     }
 
     /**
@@ -130,66 +157,128 @@ public class WorkflowInstanceController {
      * 
      * @param id the workflow instance ID
      * @param status the new status
-     * @return Updated workflow instance or 404 if not found
+     * @param request the current request
+     * @return Updated workflow instance, 404 if not found, or a redirect to the owning node
      */
     @PutMapping("/{id}/status")
     public ResponseEntity<WorkflowInstance> updateWorkflowInstanceStatus(
             @PathVariable UUID id,
-            @RequestParam WorkflowInstance.InstanceStatus status) {
-        return workflowInstanceService.updateInstanceStatus(id, status)
+            @RequestParam WorkflowInstance.InstanceStatus status,
+            HttpServletRequest request) {
+        return instanceRouter.route(id, request, () -> workflowInstanceService.updateInstanceStatus(id, status)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElse(ResponseEntity.notFound().build()));
     }
 
     /**
      * Complete a workflow instance
      * 
      * @param id the workflow instance ID
-     * @return Updated workflow instance or 404 if not found
+     * @param request the current request
+     * @return Updated workflow instance, 404 if not found, or a redirect to the owning node
      */
     @PostMapping("/{id}/complete")
-    public ResponseEntity<WorkflowInstance> completeWorkflowInstance(@PathVariable UUID id) {
-        return workflowInstanceService.completeWorkflowInstance(id)
+    public ResponseEntity<WorkflowInstance> completeWorkflowInstance(
+            @PathVariable UUID id,
+            HttpServletRequest request) {
+        return instanceRouter.route(id, request, () -> workflowInstanceService.completeWorkflowInstance(id)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElse(ResponseEntity.notFound().build()));
     }
 
     /**
      * Cancel a workflow instance
      * 
      * @param id the workflow instance ID
-     * @return Updated workflow instance or 404 if not found
+     * @param request the current request
+     * @return Updated workflow instance, 404 if not found, or a redirect to the owning node
      */
     @PostMapping("/{id}/cancel")
-    public ResponseEntity<WorkflowInstance> cancelWorkflowInstance(@PathVariable UUID id) {
-        return workflowInstanceService.cancelWorkflowInstance(id)
+    public ResponseEntity<WorkflowInstance> cancelWorkflowInstance(
+            @PathVariable UUID id,
+            HttpServletRequest request) {
+        return instanceRouter.route(id, request, () -> workflowInstanceService.cancelWorkflowInstance(id)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElse(ResponseEntity.notFound().build()));
     }
 
     /**
      * Suspend a workflow instance
      * 
      * @param id the workflow instance ID
-     * @return Updated workflow instance or 404 if not found
+     * @param request the current request
+     * @return Updated workflow instance, 404 if not found, or a redirect to the owning node
      */
     @PostMapping("/{id}/suspend")
-    public ResponseEntity<WorkflowInstance> suspendWorkflowInstance(@PathVariable UUID id) {
-        return workflowInstanceService.suspendWorkflowInstance(id)
+    public ResponseEntity<WorkflowInstance> suspendWorkflowInstance(
+            @PathVariable UUID id,
+            HttpServletRequest request) {
+        return instanceRouter.route(id, request, () -> workflowInstanceService.suspendWorkflowInstance(id)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElse(ResponseEntity.notFound().build()));
     }
 
     /**
      * Resume a suspended workflow instance
      * 
      * @param id the workflow instance ID
-     * @return Updated workflow instance or 404 if not found
+     * @param request the current request
+     * @return Updated workflow instance, 404 if not found, or a redirect to the owning node
      */
     @PostMapping("/{id}/resume")
-    public ResponseEntity<WorkflowInstance> resumeWorkflowInstance(@PathVariable UUID id) {
-        return workflowInstanceService.resumeWorkflowInstance(id)
+    public ResponseEntity<WorkflowInstance> resumeWorkflowInstance(
+            @PathVariable UUID id,
+            HttpServletRequest request) {
+        return instanceRouter.route(id, request, () -> workflowInstanceService.resumeWorkflowInstance(id)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElse(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Retry the failed step of a workflow instance
+     * 
+     * The instance runs again from the step it failed at, keeping its
+     * completed steps. Instances whose steps were compensated cannot be retried.
+     * 
+     * @param id the workflow instance ID
+     * @param request the current request
+     * @return Running workflow instance, 404 if not found, or a redirect to the owning node
+     */
+    @PostMapping("/{id}/retry")
+    public ResponseEntity<WorkflowInstance> retryWorkflowInstance(
+            @PathVariable UUID id,
+            HttpServletRequest request) {
+        return instanceRouter.route(id, request, () -> workflowInstanceService.retryFailedStep(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Complete the current step of a workflow instance
+     * 
+     * The response is sent once the completion has been committed together
+     * with the other completions of its batch.
+     * 
+     * @param id the workflow instance ID
+     * @param stepName the step being completed
+     * @param nextStep the next step to take, defaults to the step's first next step
+     * @param executedBy who completed the step
+     * @param outputData the step output as JSON
+     * @param request the current request
+     * @return Recorded step completion, 404 if not found, or a redirect to the owning node
+     */
+    @PostMapping("/{id}/steps/{stepName}/complete")
+    public CompletableFuture<ResponseEntity<StepCompletion>> completeStep(
+            @PathVariable UUID id,
+            @PathVariable String stepName,
+            @RequestParam(required = false) String nextStep,
+            @RequestParam(required = false) String executedBy,
+            @RequestBody(required = false) String outputData,
+            HttpServletRequest request) {
+        return instanceRouter.<StepCompletion>redirect(id, request)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> workflowInstanceService.completeStep(id, stepName, nextStep, outputData, executedBy)
+                        .map(future -> future.thenApply(ResponseEntity::ok))
+                        .orElseGet(() -> CompletableFuture.completedFuture(ResponseEntity.notFound().build())));
     }
 }
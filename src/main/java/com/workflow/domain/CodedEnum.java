@@ -0,0 +1,38 @@
+package com.workflow.domain;
+
+/**
+ * Enumeration persisted as a compact SMALLINT code
+ *
+ * Codes are part of the storage format: once assigned they must never be
+ * reused or renumbered, only appended.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public interface CodedEnum {
+
+    /**
+     * Get the stored code for this constant
+     *
+     * @return the SMALLINT code
+     */
+    short getCode();
+
+    /**
+     * Resolve a constant from its stored code
+     *
+     * @param type the enum type
+     * @param code the stored code
+     * @param <E> the enum type
+     * @return the matching constant
+     * @throws IllegalArgumentException if no constant has the code
+     */
+    static <E extends Enum<E> & CodedEnum> E fromCode(Class<E> type, short code) {
+        for (E constant : type.getEnumConstants()) {
+            if (constant.getCode() == code) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + type.getSimpleName() + " code: " + code);
+    }
+}
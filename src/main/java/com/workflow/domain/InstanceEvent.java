@@ -0,0 +1,97 @@
+package com.workflow.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * State transition of a workflow instance
+ *
+ * Describes a single change to an instance's lifecycle state. Applied
+ * directly to the row in in-place mode, or appended to the instance event
+ * log and folded into the row later in event-sourced mode. Both modes use
+ * {@link #applyTo(WorkflowInstance)}, so they share transition semantics.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record InstanceEvent(
+        Type type,
+        WorkflowInstance.InstanceStatus status,
+        String currentStep,
+        LocalDateTime occurredAt) {
+
+    public static InstanceEvent statusChanged(WorkflowInstance.InstanceStatus status) {
+        return new InstanceEvent(Type.STATUS_CHANGED, status, null, LocalDateTime.now());
+    }
+
+    public static InstanceEvent completed() {
+        return new InstanceEvent(Type.COMPLETED, WorkflowInstance.InstanceStatus.COMPLETED, null, LocalDateTime.now());
+    }
+
+    public static InstanceEvent cancelled() {
+        return new InstanceEvent(Type.CANCELLED, WorkflowInstance.InstanceStatus.CANCELLED, null, LocalDateTime.now());
+    }
+
+    public static InstanceEvent suspended() {
+        return new InstanceEvent(Type.SUSPENDED, WorkflowInstance.InstanceStatus.SUSPENDED, null, LocalDateTime.now());
+    }
+
+    public static InstanceEvent resumed() {
+        return new InstanceEvent(Type.RESUMED, WorkflowInstance.InstanceStatus.RUNNING, null, LocalDateTime.now());
+    }
+
+    public static InstanceEvent stepEntered(String stepName) {
+        return new InstanceEvent(Type.STEP_ENTERED, null, stepName, LocalDateTime.now());
+    }
+
+    /**
+     * Apply this transition to an instance
+     *
+     * @param instance the instance to update
+     */
+    public void applyTo(WorkflowInstance instance) {
+        if (status != null) {
+            instance.setStatus(status);
+        }
+        if (currentStep != null) {
+            instance.setCurrentStep(currentStep);
+        }
+        if (type == Type.COMPLETED || type == Type.CANCELLED
+                || (type == Type.STATUS_CHANGED && status == WorkflowInstance.InstanceStatus.COMPLETED)) {
+            instance.setCompletedAt(occurredAt);
+        }
+    }
+
+    /**
+     * Check whether this transition ends the instance
+     *
+     * @return true if the resulting status is terminal
+     */
+    public boolean isTerminal() {
+        return status == WorkflowInstance.InstanceStatus.COMPLETED
+                || status == WorkflowInstance.InstanceStatus.CANCELLED
+                || status == WorkflowInstance.InstanceStatus.FAILED;
+    }
+
+    /**
+     * Instance Event Type Enumeration
+     */
+    public enum Type implements CodedEnum {
+        STATUS_CHANGED(1),
+        COMPLETED(2),
+        CANCELLED(3),
+        SUSPENDED(4),
+        RESUMED(5),
+        STEP_ENTERED(6);
+
+        private final short code;
+
+        Type(int code) {
+            this.code = (short) code;
+        }
+
+        @Override
+        public short getCode() {
+            return code;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.workflow.domain;
 
+import com.workflow.domain.converter.AssignmentStatusConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -13,7 +14,9 @@ import java.util.UUID;
  * Workflow Assignment Entity
  * 
  * Represents the assignment of a human task to a specific user.
- * Tracks the assignment status and any comments provided.
+ * Tracks the assignment status and any comments provided. An assignment
+ * is created when an instance enters a human task step and is linked to
+ * the execution that completed the step once it is done.
  * 
  * @author WorkFlow Team
  * @version 1.0.0
@@ -30,9 +33,18 @@ public class WorkflowAssignment {
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "workflow_execution_id", nullable = false)
+    @JoinColumn(name = "workflow_execution_id")
     private WorkflowExecution workflowExecution;
 
+    @Column(name = "workflow_instance_id")
+    private UUID workflowInstanceId;
+
+    @Column(name = "step_name")
+    private String stepName;
+
+    @Column(name = "candidate_group")
+    private String candidateGroup;
+
     @Column(nullable = false)
     private String assignee;
 
@@ -43,8 +55,8 @@ public class WorkflowAssignment {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
-    @Enumerated(EnumType.STRING)
-    @Column(nullable = false)
+    @Convert(converter = AssignmentStatusConverter.class)
+    @Column(name = "status_code", nullable = false)
     private AssignmentStatus status = AssignmentStatus.ASSIGNED;
 
     @Column(columnDefinition = "TEXT")
@@ -53,7 +65,22 @@ public class WorkflowAssignment {
     /**
      * Assignment Status Enumeration
      */
-    public enum AssignmentStatus {
-        ASSIGNED, IN_PROGRESS, COMPLETED, REJECTED, DELEGATED
+    public enum AssignmentStatus implements CodedEnum {
+        ASSIGNED(1),
+        IN_PROGRESS(2),
+        COMPLETED(3),
+        REJECTED(4),
+        DELEGATED(5);
+
+        private final short code;
+
+        AssignmentStatus(int code) {
+            this.code = (short) code;
+        }
+
+        @Override
+        public short getCode() {
+            return code;
+        }
     }
 }
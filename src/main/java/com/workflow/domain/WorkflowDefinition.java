@@ -1,9 +1,13 @@
 package com.workflow.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.workflow.domain.converter.WorkflowStatusConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.TenantId;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -31,6 +35,11 @@ public class WorkflowDefinition {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
+    @TenantId
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "tenant_id", nullable = false, updatable = false)
+    private String tenantId;
+
     @Column(nullable = false)
     private String name;
 
@@ -40,13 +49,17 @@ public class WorkflowDefinition {
     @Column(nullable = false)
     private Integer version = 1;
 
-    @Enumerated(EnumType.STRING)
-    @Column(nullable = false)
+    @Convert(converter = WorkflowStatusConverter.class)
+    @Column(name = "status_code", nullable = false)
     private WorkflowStatus status = WorkflowStatus.DRAFT;
 
     @Column(columnDefinition = "jsonb", nullable = false)
     private String definition;
 
+    @JsonIgnore
+    @Column(name = "compiled_definition", columnDefinition = "jsonb")
+    private String compiledDefinition;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -70,7 +83,21 @@ public class WorkflowDefinition {
     /**
      * Workflow Status Enumeration
      */
-    public enum WorkflowStatus {
-        DRAFT, ACTIVE, INACTIVE, ARCHIVED
+    public enum WorkflowStatus implements CodedEnum {
+        DRAFT(1),
+        ACTIVE(2),
+        INACTIVE(3),
+        ARCHIVED(4);
+
+        private final short code;
+
+        WorkflowStatus(int code) {
+            this.code = (short) code;
+        }
+
+        @Override
+        public short getCode() {
+            return code;
+        }
     }
 }
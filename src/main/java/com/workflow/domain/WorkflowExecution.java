@@ -1,5 +1,6 @@
 package com.workflow.domain;
 
+import com.workflow.domain.converter.ExecutionStatusConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -37,8 +38,8 @@ public class WorkflowExecution {
     @Column(name = "step_name", nullable = false)
     private String stepName;
 
-    @Enumerated(EnumType.STRING)
-    @Column(nullable = false)
+    @Convert(converter = ExecutionStatusConverter.class)
+    @Column(name = "status_code", nullable = false)
     private ExecutionStatus status = ExecutionStatus.PENDING;
 
     @Column(name = "input_data", columnDefinition = "jsonb")
@@ -60,13 +61,37 @@ public class WorkflowExecution {
     @Column(name = "executed_by")
     private String executedBy;
 
+    @Column(nullable = false)
+    private Integer attempt = 1;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
     @OneToMany(mappedBy = "workflowExecution", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<WorkflowAssignment> assignments;
 
     /**
      * Execution Status Enumeration
      */
-    public enum ExecutionStatus {
-        PENDING, RUNNING, COMPLETED, FAILED, SKIPPED, CANCELLED
+    public enum ExecutionStatus implements CodedEnum {
+        PENDING(1),
+        RUNNING(2),
+        COMPLETED(3),
+        FAILED(4),
+        SKIPPED(5),
+        CANCELLED(6),
+        COMPENSATED(7),
+        COMPENSATION_FAILED(8);
+
+        private final short code;
+
+        ExecutionStatus(int code) {
+            this.code = (short) code;
+        }
+
+        @Override
+        public short getCode() {
+            return code;
+        }
     }
 }
@@ -1,9 +1,13 @@
 package com.workflow.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.workflow.domain.converter.InstanceStatusConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.TenantId;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
@@ -34,11 +38,16 @@ public class WorkflowInstance {
     @JoinColumn(name = "workflow_definition_id", nullable = false)
     private WorkflowDefinition workflowDefinition;
 
+    @TenantId
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "tenant_id", nullable = false, updatable = false)
+    private String tenantId;
+
     @Column(nullable = false)
     private String name;
 
-    @Enumerated(EnumType.STRING)
-    @Column(nullable = false)
+    @Convert(converter = InstanceStatusConverter.class)
+    @Column(name = "status_code", nullable = false)
     private InstanceStatus status = InstanceStatus.RUNNING;
 
     @Column(name = "current_step")
@@ -60,13 +69,46 @@ public class WorkflowInstance {
     @Column(name = "updated_by")
     private String updatedBy;
 
+    @JsonIgnore
+    @Column(name = "snapshot_sequence", insertable = false, updatable = false)
+    private Long snapshotSequence;
+
+    // Event-sourced mode: the last event applied to this copy
+    @JsonIgnore
+    @Transient
+    private Long eventSequence;
+
+    @JsonIgnore
+    @Column(name = "idempotency_key", insertable = false, updatable = false)
+    private String idempotencyKey;
+
+    @JsonIgnore
+    @Column(name = "idempotency_expires_at", insertable = false, updatable = false)
+    private LocalDateTime idempotencyExpiresAt;
+
     @OneToMany(mappedBy = "workflowInstance", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<WorkflowExecution> executions;
 
     /**
      * Instance Status Enumeration
      */
-    public enum InstanceStatus {
-        RUNNING, COMPLETED, FAILED, SUSPENDED, CANCELLED
+    public enum InstanceStatus implements CodedEnum {
+        RUNNING(1),
+        COMPLETED(2),
+        FAILED(3),
+        SUSPENDED(4),
+        CANCELLED(5),
+        COMPENSATING(6);
+
+        private final short code;
+
+        InstanceStatus(int code) {
+            this.code = (short) code;
+        }
+
+        @Override
+        public short getCode() {
+            return code;
+        }
     }
 }
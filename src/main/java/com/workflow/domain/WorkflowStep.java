@@ -1,5 +1,6 @@
 package com.workflow.domain;
 
+import com.workflow.domain.converter.StepTypeConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -38,8 +39,8 @@ public class WorkflowStep {
     @Column(name = "step_name", nullable = false)
     private String stepName;
 
-    @Enumerated(EnumType.STRING)
-    @Column(name = "step_type", nullable = false)
+    @Convert(converter = StepTypeConverter.class)
+    @Column(name = "step_type_code", nullable = false)
     private StepType stepType;
 
     @Column(name = "step_order", nullable = false)
@@ -65,7 +66,23 @@ public class WorkflowStep {
     /**
      * Step Type Enumeration
      */
-    public enum StepType {
-        HUMAN_TASK, AUTOMATED, GATEWAY, TIMER, SCRIPT, SERVICE_CALL
+    public enum StepType implements CodedEnum {
+        HUMAN_TASK(1),
+        AUTOMATED(2),
+        GATEWAY(3),
+        TIMER(4),
+        SCRIPT(5),
+        SERVICE_CALL(6);
+
+        private final short code;
+
+        StepType(int code) {
+            this.code = (short) code;
+        }
+
+        @Override
+        public short getCode() {
+            return code;
+        }
     }
 }
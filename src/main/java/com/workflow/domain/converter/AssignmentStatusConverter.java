@@ -0,0 +1,18 @@
+package com.workflow.domain.converter;
+
+import com.workflow.domain.WorkflowAssignment;
+import jakarta.persistence.Converter;
+
+/**
+ * Persists {@link WorkflowAssignment.AssignmentStatus} as a SMALLINT code
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Converter(autoApply = true)
+public class AssignmentStatusConverter extends CodedEnumConverter<WorkflowAssignment.AssignmentStatus> {
+
+    public AssignmentStatusConverter() {
+        super(WorkflowAssignment.AssignmentStatus.class);
+    }
+}
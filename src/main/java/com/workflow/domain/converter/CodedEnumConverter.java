@@ -0,0 +1,53 @@
+package com.workflow.domain.converter;
+
+import com.workflow.domain.CodedEnum;
+import jakarta.persistence.AttributeConverter;
+
+/**
+ * Base JPA converter between a {@link CodedEnum} and its SMALLINT code
+ *
+ * Codes are resolved through a dense lookup table built once per enum
+ * type, so conversion never allocates or scans the constants.
+ *
+ * @param <E> the enum type
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public abstract class CodedEnumConverter<E extends Enum<E> & CodedEnum> implements AttributeConverter<E, Short> {
+
+    private final Class<E> enumType;
+    private final Object[] byCode;
+
+    protected CodedEnumConverter(Class<E> enumType) {
+        this.enumType = enumType;
+        E[] constants = enumType.getEnumConstants();
+        int maxCode = 0;
+        for (E constant : constants) {
+            maxCode = Math.max(maxCode, constant.getCode());
+        }
+        this.byCode = new Object[maxCode + 1];
+        for (E constant : constants) {
+            if (byCode[constant.getCode()] != null) {
+                throw new IllegalStateException("Duplicate code " + constant.getCode() + " in " + enumType.getName());
+            }
+            byCode[constant.getCode()] = constant;
+        }
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(E attribute) {
+        return attribute != null ? attribute.getCode() : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E convertToEntityAttribute(Short dbData) {
+        if (dbData == null) {
+            return null;
+        }
+        if (dbData < 0 || dbData >= byCode.length || byCode[dbData] == null) {
+            throw new IllegalArgumentException("Unknown " + enumType.getSimpleName() + " code: " + dbData);
+        }
+        return (E) byCode[dbData];
+    }
+}
@@ -0,0 +1,18 @@
+package com.workflow.domain.converter;
+
+import com.workflow.domain.WorkflowExecution;
+import jakarta.persistence.Converter;
+
+/**
+ * Persists {@link WorkflowExecution.ExecutionStatus} as a SMALLINT code
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Converter(autoApply = true)
+public class ExecutionStatusConverter extends CodedEnumConverter<WorkflowExecution.ExecutionStatus> {
+
+    public ExecutionStatusConverter() {
+        super(WorkflowExecution.ExecutionStatus.class);
+    }
+}
@@ -0,0 +1,18 @@
+package com.workflow.domain.converter;
+
+import com.workflow.domain.WorkflowInstance;
+import jakarta.persistence.Converter;
+
+/**
+ * Persists {@link WorkflowInstance.InstanceStatus} as a SMALLINT code
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Converter(autoApply = true)
+public class InstanceStatusConverter extends CodedEnumConverter<WorkflowInstance.InstanceStatus> {
+
+    public InstanceStatusConverter() {
+        super(WorkflowInstance.InstanceStatus.class);
+    }
+}
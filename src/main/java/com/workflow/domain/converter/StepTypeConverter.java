@@ -0,0 +1,18 @@
+package com.workflow.domain.converter;
+
+import com.workflow.domain.WorkflowStep;
+import jakarta.persistence.Converter;
+
+/**
+ * Persists {@link WorkflowStep.StepType} as a SMALLINT code
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Converter(autoApply = true)
+public class StepTypeConverter extends CodedEnumConverter<WorkflowStep.StepType> {
+
+    public StepTypeConverter() {
+        super(WorkflowStep.StepType.class);
+    }
+}
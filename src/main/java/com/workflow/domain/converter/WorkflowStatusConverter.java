@@ -0,0 +1,18 @@
+package com.workflow.domain.converter;
+
+import com.workflow.domain.WorkflowDefinition;
+import jakarta.persistence.Converter;
+
+/**
+ * Persists {@link WorkflowDefinition.WorkflowStatus} as a SMALLINT code
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Converter(autoApply = true)
+public class WorkflowStatusConverter extends CodedEnumConverter<WorkflowDefinition.WorkflowStatus> {
+
+    public WorkflowStatusConverter() {
+        super(WorkflowDefinition.WorkflowStatus.class);
+    }
+}
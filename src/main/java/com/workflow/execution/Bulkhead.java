@@ -0,0 +1,77 @@
+package com.workflow.execution;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking concurrency limit of one call target
+ *
+ * At most maxConcurrent calls run at once; further calls wait in a
+ * bounded queue and are started by whichever call finishes first. No
+ * thread ever waits for a permit, so queued calls cost only their entry.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+final class Bulkhead {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    Bulkhead(int maxConcurrent, int maxQueued) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Start a call now, or once a running call releases its permit
+     *
+     * The call must eventually {@link #release()} its permit.
+     *
+     * @param call starts the call
+     * @return false if the queue is full and the call was not accepted
+     */
+    boolean submit(Runnable call) {
+        if (queued.get() == 0 && permits.tryAcquire()) {
+            call.run();
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        waiting.add(call);
+        drain();
+        return true;
+    }
+
+    void release() {
+        permits.release();
+        drain();
+    }
+
+    int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable call = waiting.poll();
+            if (call == null) {
+                permits.release();
+                continue;
+            }
+            queued.decrementAndGet();
+            call.run();
+        }
+    }
+}
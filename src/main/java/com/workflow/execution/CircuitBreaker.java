@@ -0,0 +1,77 @@
+package com.workflow.execution;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consecutive-failure circuit breaker of one call target
+ *
+ * Opens after failureThreshold failures in a row and rejects calls while
+ * open. Once the open duration has passed, a single probe call is let
+ * through: its success closes the breaker, its failure opens it again.
+ * State changes are single atomic writes, so callers never wait.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+final class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntil = new AtomicLong();
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Check whether a call may go out
+     *
+     * @return true while closed, and for the probe call once the open duration has passed
+     */
+    boolean tryAcquire() {
+        long until = openUntil.get();
+        if (until == 0) {
+            return true;
+        }
+        if (System.nanoTime() - until < 0) {
+            return false;
+        }
+        return probing.compareAndSet(false, true);
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        openUntil.set(0);
+        probing.set(false);
+    }
+
+    void onFailure() {
+        // A failed probe opens the breaker again at once
+        if (openUntil.get() != 0 || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            long until = System.nanoTime() + openNanos;
+            openUntil.set(until == 0 ? 1 : until);
+            consecutiveFailures.set(0);
+        }
+        probing.set(false);
+    }
+
+    boolean isOpen() {
+        return openUntil.get() != 0;
+    }
+
+    /**
+     * Get the time until the probe call is let through
+     *
+     * @return the remaining open duration, zero when closed or due for a probe
+     */
+    Duration remainingOpen() {
+        long until = openUntil.get();
+        return until == 0 ? Duration.ZERO : Duration.ofNanos(Math.max(0, until - System.nanoTime()));
+    }
+}
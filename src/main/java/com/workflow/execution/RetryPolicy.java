@@ -0,0 +1,137 @@
+package com.workflow.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy of an automated step or compensation
+ *
+ * Read from the "retry" object of the step configuration, with the
+ * engine-wide workflow.steps.* settings as defaults:
+ *
+ * <pre>
+ * "retry": {"maxAttempts": 5, "initialBackoff": "PT2S", "maxBackoff": "PT10M", "multiplier": 3,
+ *           "retryOn": ["TIMEOUT", "HTTP_5XX"], "abortOn": ["HTTP_501"]}
+ * </pre>
+ *
+ * Backoffs grow exponentially and are drawn with full jitter, so attempts
+ * that failed together do not come back together. Error codes are matched
+ * exactly, or by prefix for codes ending in "XX". Without "retryOn", a
+ * failure is retried if its handler marks it retryable. "retries": n is
+ * short for n + 1 attempts.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record RetryPolicy(
+        int maxAttempts,
+        Duration initialBackoff,
+        Duration maxBackoff,
+        double multiplier,
+        Set<String> retryOn,
+        Set<String> abortOn) {
+
+    /**
+     * Read the policy of a step, filling in what it does not set from the defaults
+     *
+     * @param configuration the step or compensation configuration
+     * @param defaults the engine-wide policy
+     * @return the policy
+     * @throws IllegalArgumentException if the "retry" object is invalid
+     */
+    public static RetryPolicy of(JsonNode configuration, RetryPolicy defaults) {
+        JsonNode retry = configuration.path("retry");
+        int maxAttempts = configuration.hasNonNull("retries")
+                ? configuration.get("retries").asInt() + 1
+                : retry.path("maxAttempts").asInt(defaults.maxAttempts());
+        double multiplier = retry.path("multiplier").asDouble(defaults.multiplier());
+        if (maxAttempts < 1 || multiplier < 1) {
+            throw new IllegalArgumentException("Retry policy needs at least one attempt and a multiplier of at least 1");
+        }
+        return new RetryPolicy(maxAttempts,
+                duration(retry, "initialBackoff", defaults.initialBackoff()),
+                duration(retry, "maxBackoff", defaults.maxBackoff()),
+                multiplier,
+                codes(retry, "retryOn", defaults.retryOn()),
+                codes(retry, "abortOn", defaults.abortOn()));
+    }
+
+    /**
+     * Decide whether a failed attempt is tried again
+     *
+     * @param failure the failure of the attempt
+     * @param attempt the failed attempt, starting at 1
+     * @return true if another attempt is allowed and the failure is retryable
+     */
+    public boolean shouldRetry(Throwable failure, int attempt) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        String errorCode = StepFailure.errorCodeOf(failure);
+        if (matches(abortOn, errorCode)) {
+            return false;
+        }
+        if (!retryOn.isEmpty()) {
+            return matches(retryOn, errorCode);
+        }
+        return !(failure instanceof StepFailure stepFailure) || stepFailure.isRetryable();
+    }
+
+    /**
+     * Draw the delay before the next attempt
+     *
+     * @param attempt the failed attempt, starting at 1
+     * @param failure the failure of the attempt, which may ask for a longer delay
+     * @return a delay between zero and the exponential backoff of the attempt
+     */
+    public Duration backoff(int attempt, Throwable failure) {
+        double exponential = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+        long cap = (long) Math.min(maxBackoff.toMillis(), exponential);
+        Duration delay = Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+        if (failure instanceof StepFailure stepFailure && stepFailure.getRetryAfter() != null
+                && stepFailure.getRetryAfter().compareTo(delay) > 0) {
+            return stepFailure.getRetryAfter();
+        }
+        return delay;
+    }
+
+    private static boolean matches(Set<String> codes, String errorCode) {
+        for (String code : codes) {
+            if (code.equals(errorCode)
+                    || code.endsWith("XX") && errorCode.startsWith(code.substring(0, code.length() - 2))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Duration duration(JsonNode retry, String field, Duration defaultValue) {
+        JsonNode value = retry.get(field);
+        if (value == null || value.isNull()) {
+            return defaultValue;
+        }
+        if (value.isNumber()) {
+            return Duration.ofMillis((long) (value.asDouble() * 1000));
+        }
+        try {
+            return Duration.parse(value.asText());
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Retry " + field + " must be seconds or an ISO-8601 duration");
+        }
+    }
+
+    private static Set<String> codes(JsonNode retry, String field, Set<String> defaultValue) {
+        JsonNode value = retry.get(field);
+        if (value == null || !value.isArray()) {
+            return defaultValue;
+        }
+        Set<String> codes = new LinkedHashSet<>();
+        value.forEach(code -> codes.add(code.asText().toUpperCase()));
+        return Set.copyOf(codes);
+    }
+}
@@ -0,0 +1,67 @@
+package com.workflow.execution;
+
+import java.time.Instant;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delay queue of step attempts waiting for their backoff to pass
+ *
+ * Waiting attempts hold no thread and no timer of their own. A single
+ * periodic release hands at most batchSize due attempts per tick to the
+ * worker executor, so when a downstream outage ends, the attempts that
+ * piled up are let through at a bounded rate instead of all at once.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+final class RetryQueue {
+
+    private final PriorityBlockingQueue<Retry> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Executor executor;
+    private final int batchSize;
+
+    RetryQueue(Executor executor, int batchSize) {
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Queue an attempt
+     *
+     * @param due when the attempt may run
+     * @param attempt the attempt
+     */
+    void schedule(Instant due, Runnable attempt) {
+        queue.add(new Retry(due.toEpochMilli(), sequence.incrementAndGet(), attempt));
+    }
+
+    /**
+     * Hand the next batch of due attempts to the executor; called by a single scheduler thread
+     */
+    void release() {
+        long now = System.currentTimeMillis();
+        for (int released = 0; released < batchSize; released++) {
+            Retry head = queue.peek();
+            if (head == null || head.dueMillis() > now) {
+                return;
+            }
+            executor.execute(queue.poll().attempt());
+        }
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    private record Retry(long dueMillis, long sequence, Runnable attempt) implements Comparable<Retry> {
+
+        @Override
+        public int compareTo(Retry other) {
+            int byDue = Long.compare(dueMillis, other.dueMillis);
+            return byDue != 0 ? byDue : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.workflow.execution;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+
+/**
+ * CPU time and allocation allowance of one script evaluation
+ *
+ * Measured on the evaluating thread from the JVM's per-thread counters.
+ * The sandbox checks the allowance while the script reads properties,
+ * before each method call together with the most the call can allocate,
+ * and once more when it returns; an exhausted allowance fails the step.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+final class ScriptBudget {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+            THREADS instanceof com.sun.management.ThreadMXBean allocations
+                    && allocations.isThreadAllocatedMemorySupported() ? allocations : null;
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    // Reading the counters costs about a microsecond, so only every 64th access checks them
+    private static final int CHECK_INTERVAL_MASK = 63;
+
+    private final long cpuLimitNanos;
+    private final long allocationLimitBytes;
+    private final long cpuStart;
+    private final long allocationStart;
+    private int accesses;
+
+    ScriptBudget(Duration cpuLimit, long allocationLimitBytes) {
+        this.cpuLimitNanos = cpuLimit.toNanos();
+        this.allocationLimitBytes = allocationLimitBytes;
+        this.cpuStart = CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+        this.allocationStart = ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Count one property read or method call, checking the allowance periodically
+     */
+    void onAccess() {
+        if ((++accesses & CHECK_INTERVAL_MASK) == 0) {
+            check();
+        }
+    }
+
+    /**
+     * Check the allowance now
+     *
+     * @throws StepFailure if the script used more CPU time or memory than allowed
+     */
+    void check() {
+        check(0);
+    }
+
+    /**
+     * Check the allowance now, as if the script had already allocated some more bytes
+     *
+     * @param reservedBytes the most the script is about to allocate
+     * @throws StepFailure if the script used, or is about to use, more CPU time or memory than allowed
+     */
+    void check(long reservedBytes) {
+        if (CPU_TIME && THREADS.getCurrentThreadCpuTime() - cpuStart > cpuLimitNanos) {
+            throw new StepFailure(ScriptStepHandler.LIMIT_EXCEEDED, "Script exceeded its CPU time limit of " + Duration.ofNanos(cpuLimitNanos), false);
+        }
+        if (reservedBytes > allocationLimitBytes || ALLOCATIONS != null
+                && ALLOCATIONS.getCurrentThreadAllocatedBytes() - allocationStart > allocationLimitBytes - reservedBytes) {
+            throw new StepFailure(ScriptStepHandler.LIMIT_EXCEEDED, "Script exceeded its allocation limit of " + allocationLimitBytes + " bytes", false);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.workflow.execution;
+
+import org.springframework.expression.Expression;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Least-recently-used cache of compiled step scripts
+ *
+ * Scripts are keyed by definition and step, so each definition version
+ * compiles its scripts once. An entry whose source no longer matches,
+ * e.g. after a draft was edited, is compiled again. The cache is bounded
+ * by the estimated size of the compiled scripts rather than their count.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+final class ScriptCache {
+
+    // Rough size of a parsed expression tree per source character, plus the entry itself
+    private static final long BYTES_PER_CHARACTER = 48;
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    ScriptCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the compiled script of a step, compiling it on a miss
+     *
+     * Compilation runs outside the lock; two threads missing the same
+     * script at once may both compile it.
+     *
+     * @param definitionId the workflow definition ID
+     * @param stepName the step name
+     * @param source the script source
+     * @param compiler compiles the source
+     * @return the compiled script
+     */
+    Expression get(UUID definitionId, String stepName, String source, Function<String, Expression> compiler) {
+        Key key = new Key(definitionId, stepName);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.source().equals(source)) {
+                return entry.expression();
+            }
+        }
+        Expression expression = compiler.apply(source);
+        Entry entry = new Entry(source, expression, ENTRY_OVERHEAD_BYTES + BYTES_PER_CHARACTER * source.length());
+        synchronized (this) {
+            Entry replaced = entries.put(key, entry);
+            bytes += entry.bytes() - (replaced != null ? replaced.bytes() : 0);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                if (evicted == entry) {
+                    break;
+                }
+                bytes -= evicted.bytes();
+                eldest.remove();
+            }
+        }
+        return expression;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    private record Key(UUID definitionId, String stepName) {
+    }
+
+    private record Entry(String source, Expression expression, long bytes) {
+    }
+}
@@ -0,0 +1,313 @@
+package com.workflow.execution;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.workflow.domain.WorkflowStep;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.expression.MapAccessor;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.expression.AccessException;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.MethodExecutor;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.DataBindingMethodResolver;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs SCRIPT steps as sandboxed expressions over the instance context
+ *
+ * The step configuration's "script" is a Spring Expression Language
+ * expression evaluated with the instance context as its root object, e.g.
+ * {@code {total: amount * quantity, approved: amount < 1000}}, with
+ * {@code #instanceId} and {@code #attempt} as variables. A map result
+ * becomes the step output; any other value is output as "result".
+ *
+ * Scripts are parsed once per definition version and step and kept in a
+ * least-recently-used cache bounded by workflow.scripts.cache-max-size.
+ * They run in a sandbox: the context is read-only, only an allowlist of
+ * methods of strings, numbers, lists and maps may be called, and type
+ * references, constructors and bean references are not available. Each evaluation
+ * may use at most workflow.scripts.cpu-time-limit of CPU time and
+ * allocate at most workflow.scripts.allocation-limit. Script failures
+ * (SCRIPT_ERROR, SCRIPT_LIMIT_EXCEEDED, CONFIGURATION) are not retried.
+ *
+ * Parsing and evaluation are timed as workflow.script.compile and
+ * workflow.script.evaluate; their counts give the cache hit rate.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+public class ScriptStepHandler implements StepHandler {
+
+    static final String SCRIPT_ERROR = "SCRIPT_ERROR";
+    static final String LIMIT_EXCEEDED = "SCRIPT_LIMIT_EXCEEDED";
+
+    private static final TypeReference<Map<String, Object>> CONTEXT = new TypeReference<>() {
+    };
+
+    private final SpelExpressionParser parser;
+    private final ScriptCache cache;
+    private final ObjectMapper objectMapper;
+    private final Timer compileTimer;
+    private final Timer evaluateTimer;
+    private final Duration cpuTimeLimit;
+    private final long allocationLimitBytes;
+
+    public ScriptStepHandler(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${workflow.scripts.max-length:10000}") int maxLength,
+            @Value("${workflow.scripts.cache-max-size:16MB}") DataSize cacheMaxSize,
+            @Value("${workflow.scripts.cpu-time-limit:PT0.1S}") Duration cpuTimeLimit,
+            @Value("${workflow.scripts.allocation-limit:64MB}") DataSize allocationLimit) {
+        this.parser = new SpelExpressionParser(
+                new SpelParserConfiguration(SpelCompilerMode.OFF, null, false, false, 0, maxLength));
+        this.cache = new ScriptCache(cacheMaxSize.toBytes());
+        this.objectMapper = objectMapper;
+        this.cpuTimeLimit = cpuTimeLimit;
+        this.allocationLimitBytes = allocationLimit.toBytes();
+        this.compileTimer = Timer.builder("workflow.script.compile").register(meterRegistry);
+        this.evaluateTimer = Timer.builder("workflow.script.evaluate").register(meterRegistry);
+        Gauge.builder("workflow.script.cache.size", cache, ScriptCache::size).register(meterRegistry);
+        Gauge.builder("workflow.script.cache.bytes", cache, ScriptCache::bytes).register(meterRegistry);
+    }
+
+    @Override
+    public WorkflowStep.StepType type() {
+        return WorkflowStep.StepType.SCRIPT;
+    }
+
+    @Override
+    public CompletableFuture<String> execute(StepInvocation invocation) {
+        try {
+            return CompletableFuture.completedFuture(run(invocation));
+        } catch (StepFailure ex) {
+            return CompletableFuture.failedFuture(ex);
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(new StepFailure(SCRIPT_ERROR, "Script failed: " + ex.getMessage(), ex, false));
+        }
+    }
+
+    private String run(StepInvocation invocation) {
+        String source = invocation.configuration().path("script").asText(null);
+        if (source == null || source.isBlank()) {
+            throw new StepFailure(CONFIGURATION, "Script step " + invocation.stepName() + " has no \"script\"", false);
+        }
+        Expression expression = cache.get(invocation.definitionId(), invocation.stepName(), source, this::compile);
+        Map<String, Object> context = parseContext(invocation.context());
+
+        ScriptBudget budget = new ScriptBudget(cpuTimeLimit, allocationLimitBytes);
+        SimpleEvaluationContext evaluationContext = SimpleEvaluationContext
+                .forPropertyAccessors(new BudgetedMapAccessor(budget))
+                .withMethodResolvers(new BudgetedMethodResolver(budget))
+                .withRootObject(context)
+                .build();
+        evaluationContext.setVariable("instanceId", invocation.instanceId().toString());
+        evaluationContext.setVariable("attempt", invocation.attempt());
+
+        Object result = evaluateTimer.record(() -> {
+            Object value = expression.getValue(evaluationContext);
+            budget.check();
+            return value;
+        });
+        return toOutput(result);
+    }
+
+    private Expression compile(String source) {
+        try {
+            return compileTimer.record(() -> parser.parseExpression(source));
+        } catch (ParseException ex) {
+            throw new StepFailure(CONFIGURATION, "Script does not parse: " + ex.getMessage(), false);
+        }
+    }
+
+    private Map<String, Object> parseContext(String context) {
+        if (context == null || context.isBlank()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return objectMapper.readValue(context, CONTEXT);
+        } catch (JsonProcessingException ex) {
+            throw new StepFailure(SCRIPT_ERROR, "Instance context is not a JSON object", false);
+        }
+    }
+
+    private String toOutput(Object result) {
+        if (result == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(result instanceof Map<?, ?> ? result : Map.of("result", result));
+        } catch (JsonProcessingException ex) {
+            throw new StepFailure(SCRIPT_ERROR, "Script result cannot be written as JSON: " + ex.getOriginalMessage(), false);
+        }
+    }
+
+    /**
+     * Read-only map property access that counts against the script's budget
+     */
+    private static final class BudgetedMapAccessor implements PropertyAccessor {
+
+        private final MapAccessor delegate = new MapAccessor();
+        private final ScriptBudget budget;
+
+        BudgetedMapAccessor(ScriptBudget budget) {
+            this.budget = budget;
+        }
+
+        @Override
+        public Class<?>[] getSpecificTargetClasses() {
+            return delegate.getSpecificTargetClasses();
+        }
+
+        @Override
+        public boolean canRead(EvaluationContext context, Object target, String name) throws AccessException {
+            return delegate.canRead(context, target, name);
+        }
+
+        @Override
+        public TypedValue read(EvaluationContext context, Object target, String name) throws AccessException {
+            budget.onAccess();
+            return delegate.read(context, target, name);
+        }
+
+        @Override
+        public boolean canWrite(EvaluationContext context, Object target, String name) {
+            return false;
+        }
+
+        @Override
+        public void write(EvaluationContext context, Object target, String name, Object newValue) throws AccessException {
+            throw new AccessException("Instance context is read-only in scripts");
+        }
+    }
+
+    /**
+     * Allowlisted instance method calls that count against the script's budget
+     *
+     * Only methods whose result size follows from their target and arguments
+     * are available. Before each call, that size is checked against what is
+     * left of the allowance, so a single call cannot allocate past it however
+     * large a value it is asked to build. Methods that take regular
+     * expressions or format strings are not available: the cost of one
+     * such call cannot be told in advance.
+     */
+    private static final class BudgetedMethodResolver implements MethodResolver {
+
+        private static final ResultSize SMALL = (target, arguments) -> 0;
+        private static final ResultSize COPY = (target, arguments) -> bytes(chars(target));
+
+        private static final List<Allowlist> ALLOWLISTS = List.of(
+                new Allowlist(String.class, Map.ofEntries(
+                        Map.entry("length", SMALL), Map.entry("isEmpty", SMALL), Map.entry("isBlank", SMALL),
+                        Map.entry("charAt", SMALL), Map.entry("indexOf", SMALL), Map.entry("lastIndexOf", SMALL),
+                        Map.entry("contains", SMALL), Map.entry("startsWith", SMALL), Map.entry("endsWith", SMALL),
+                        Map.entry("equals", SMALL), Map.entry("equalsIgnoreCase", SMALL),
+                        Map.entry("compareTo", SMALL), Map.entry("compareToIgnoreCase", SMALL),
+                        Map.entry("toString", SMALL),
+                        Map.entry("substring", COPY), Map.entry("trim", COPY), Map.entry("strip", COPY),
+                        Map.entry("stripLeading", COPY), Map.entry("stripTrailing", COPY),
+                        Map.entry("toLowerCase", COPY),
+                        // Some characters upper-case to up to three, e.g. U+0390
+                        Map.entry("toUpperCase", (target, arguments) -> 3 * bytes(chars(target))),
+                        Map.entry("concat", (target, arguments) -> bytes(chars(target) + chars(arguments[0]))),
+                        Map.entry("replace", BudgetedMethodResolver::replaced))),
+                new Allowlist(Number.class, Map.of(
+                        "intValue", SMALL, "longValue", SMALL, "doubleValue", SMALL,
+                        "compareTo", SMALL, "equals", SMALL, "toString", SMALL)),
+                new Allowlist(Boolean.class, Map.of(
+                        "booleanValue", SMALL, "compareTo", SMALL, "equals", SMALL, "toString", SMALL)),
+                // Lookups, and views onto the collection rather than copies of it
+                new Allowlist(List.class, Map.of(
+                        "size", SMALL, "isEmpty", SMALL, "contains", SMALL, "containsAll", SMALL, "get", SMALL,
+                        "indexOf", SMALL, "lastIndexOf", SMALL, "subList", SMALL)),
+                new Allowlist(Collection.class, Map.of(
+                        "size", SMALL, "isEmpty", SMALL, "contains", SMALL, "containsAll", SMALL)),
+                new Allowlist(Map.class, Map.of(
+                        "size", SMALL, "isEmpty", SMALL, "containsKey", SMALL, "containsValue", SMALL, "get", SMALL,
+                        "getOrDefault", SMALL, "keySet", SMALL, "values", SMALL)));
+
+        private final DataBindingMethodResolver delegate = DataBindingMethodResolver.forInstanceMethodInvocation();
+        private final ScriptBudget budget;
+
+        BudgetedMethodResolver(ScriptBudget budget) {
+            this.budget = budget;
+        }
+
+        @Override
+        public MethodExecutor resolve(EvaluationContext context, Object targetObject, String name,
+                                      List<TypeDescriptor> argumentTypes) throws AccessException {
+            ResultSize resultSize = ALLOWLISTS.stream()
+                    .filter(allowlist -> allowlist.type().isInstance(targetObject))
+                    .map(allowlist -> allowlist.methods().get(name))
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse(null);
+            if (resultSize == null) {
+                return null;
+            }
+            MethodExecutor executor = delegate.resolve(context, targetObject, name, argumentTypes);
+            if (executor == null) {
+                return null;
+            }
+            // Not cached by the expression, so each evaluation's own budget is charged
+            return (evaluationContext, target, arguments) -> {
+                budget.check(resultSize.bytes(target, arguments));
+                return executor.execute(evaluationContext, target, arguments);
+            };
+        }
+
+        private static long replaced(Object target, Object[] arguments) {
+            long length = chars(target);
+            long replaced = chars(arguments[0]);
+            long replacement = chars(arguments[1]);
+            if (replaced == 0) {
+                // An empty target is replaced before every character and at the end
+                return bytes(length + (length + 1) * replacement);
+            }
+            return bytes(length + length / replaced * Math.max(0, replacement - replaced));
+        }
+
+        private static long chars(Object value) {
+            return value instanceof CharSequence text ? text.length() : String.valueOf(value).length();
+        }
+
+        private static long bytes(long chars) {
+            return 2 * chars;
+        }
+
+        /**
+         * Most bytes a method call can allocate for its result
+         */
+        @FunctionalInterface
+        private interface ResultSize {
+
+            long bytes(Object target, Object[] arguments);
+        }
+
+        private record Allowlist(Class<?> type, Map<String, ResultSize> methods) {
+        }
+    }
+}
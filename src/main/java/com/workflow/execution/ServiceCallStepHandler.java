@@ -0,0 +1,277 @@
+package com.workflow.execution;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.workflow.domain.WorkflowStep;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs SERVICE_CALL steps as HTTP requests
+ *
+ * The step configuration names either a "url", or a "service" whose base
+ * URL is set as workflow.service-call.services.&lt;name&gt; (plus an optional
+ * "path"). The instance context is sent as the JSON body, with "method"
+ * defaulting to POST, and a JSON response body becomes the step output.
+ * "timeout" is in seconds, capped by workflow.service-call.max-timeout.
+ * Every attempt carries the same Idempotency-Key, so services can
+ * de-duplicate retries.
+ *
+ * All calls share one non-blocking HTTP client: a call in flight holds a
+ * pooled connection but no thread. Each target (scheme, host and port)
+ * has a bulkhead bounding its concurrent calls, and with them its open
+ * connections, and a circuit breaker that stops calling a target after
+ * repeated failures. Connection failures (CONNECTION), timeouts (TIMEOUT),
+ * rejections by the circuit breaker or bulkhead, and 408, 429 and 5xx
+ * responses (HTTP_&lt;status&gt;) are retryable; other responses fail the step.
+ *
+ * Calls are timed as workflow.service-call, tagged with the target and
+ * outcome; workflow.service-call.in-flight, .queued and .circuit-open
+ * report each target's state.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+public class ServiceCallStepHandler implements StepHandler {
+
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String INSTANCE_ID = "X-Workflow-Instance-Id";
+    static final String ATTEMPT = "X-Workflow-Attempt";
+
+    static final String TIMEOUT = "TIMEOUT";
+    static final String CONNECTION = "CONNECTION";
+    static final String CIRCUIT_OPEN = "CIRCUIT_OPEN";
+    static final String BULKHEAD_FULL = "BULKHEAD_FULL";
+
+    private static final String SERVICES = "workflow.service-call.services.";
+    private static final Set<String> METHODS_WITHOUT_BODY = Set.of("GET", "HEAD", "DELETE", "OPTIONS");
+
+    private final HttpClient httpClient;
+    private final Environment environment;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, Target> targets = new ConcurrentHashMap<>();
+
+    @Value("${workflow.service-call.default-timeout:PT30S}")
+    private Duration defaultTimeout;
+
+    @Value("${workflow.service-call.max-timeout:PT1H}")
+    private Duration maxTimeout;
+
+    @Value("${workflow.service-call.max-concurrent-per-target:64}")
+    private int maxConcurrentPerTarget;
+
+    @Value("${workflow.service-call.max-queued-per-target:10000}")
+    private int maxQueuedPerTarget;
+
+    @Value("${workflow.service-call.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${workflow.service-call.circuit-breaker.open-duration:PT30S}")
+    private Duration openDuration;
+
+    public ServiceCallStepHandler(
+            Environment environment,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${workflow.service-call.connect-timeout:PT5S}") Duration connectTimeout) {
+        this.environment = environment;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @Override
+    public WorkflowStep.StepType type() {
+        return WorkflowStep.StepType.SERVICE_CALL;
+    }
+
+    @Override
+    public CompletableFuture<String> execute(StepInvocation invocation) {
+        HttpRequest request;
+        try {
+            request = buildRequest(invocation);
+        } catch (IllegalArgumentException ex) {
+            return CompletableFuture.failedFuture(new StepFailure(StepHandler.CONFIGURATION, ex.getMessage(), false));
+        }
+        URI uri = request.uri();
+        Target target = targets.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(), this::newTarget);
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        boolean accepted = target.bulkhead().submit(() -> {
+            // Checked when the call starts, as the breaker may have opened while it was queued
+            if (!target.circuitBreaker().tryAcquire()) {
+                target.bulkhead().release();
+                record(target, "circuit_open", 0);
+                result.completeExceptionally(new StepFailure(CIRCUIT_OPEN, "Circuit open for " + target.name(), true,
+                        target.circuitBreaker().remainingOpen()));
+                return;
+            }
+            send(target, request, result);
+        });
+        if (!accepted) {
+            record(target, "rejected", 0);
+            return CompletableFuture.failedFuture(new StepFailure(BULKHEAD_FULL, "Too many calls queued for " + target.name(), true));
+        }
+        return result;
+    }
+
+    private HttpRequest buildRequest(StepInvocation invocation) {
+        JsonNode configuration = invocation.configuration();
+        URI uri = URI.create(resolveUrl(configuration));
+        if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme()) || uri.getHost() == null) {
+            throw new IllegalArgumentException("Service call URL must be http or https: " + uri);
+        }
+        String method = configuration.path("method").asText("POST").toUpperCase();
+        HttpRequest.BodyPublisher body = METHODS_WITHOUT_BODY.contains(method)
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(invocation.context() != null ? invocation.context() : "{}");
+
+        return HttpRequest.newBuilder(uri)
+                .timeout(timeout(configuration))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .header(IDEMPOTENCY_KEY, invocation.idempotencyKey())
+                .header(INSTANCE_ID, invocation.instanceId().toString())
+                .header(ATTEMPT, String.valueOf(invocation.attempt()))
+                .method(method, body)
+                .build();
+    }
+
+    private String resolveUrl(JsonNode configuration) {
+        if (configuration.hasNonNull("url")) {
+            return configuration.get("url").asText();
+        }
+        if (!configuration.hasNonNull("service")) {
+            throw new IllegalArgumentException("Service call step needs a \"url\" or \"service\"");
+        }
+        String service = configuration.get("service").asText();
+        String baseUrl = environment.getProperty(SERVICES + service);
+        if (baseUrl == null) {
+            throw new IllegalArgumentException("No URL configured for service " + service
+                    + "; set " + SERVICES + service);
+        }
+        String path = configuration.path("path").asText("");
+        if (path.isEmpty() || baseUrl.endsWith("/") != path.startsWith("/")) {
+            return baseUrl + path;
+        }
+        return path.startsWith("/") ? baseUrl + path.substring(1) : baseUrl + "/" + path;
+    }
+
+    private Duration timeout(JsonNode configuration) {
+        JsonNode seconds = configuration.get("timeout");
+        if (seconds == null || !seconds.isNumber() || seconds.asLong() <= 0) {
+            return defaultTimeout;
+        }
+        Duration timeout = Duration.ofSeconds(seconds.asLong());
+        return timeout.compareTo(maxTimeout) > 0 ? maxTimeout : timeout;
+    }
+
+    private void send(Target target, HttpRequest request, CompletableFuture<String> result) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException ex) {
+            response = CompletableFuture.failedFuture(ex);
+        }
+        response.whenComplete((completed, failure) -> {
+            target.bulkhead().release();
+            long elapsed = System.nanoTime() - start;
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                target.circuitBreaker().onFailure();
+                boolean timedOut = cause instanceof HttpTimeoutException;
+                record(target, timedOut ? "timeout" : "error", elapsed);
+                result.completeExceptionally(new StepFailure(timedOut ? TIMEOUT : CONNECTION,
+                        (timedOut ? "Timed out calling " : "Failed to call ") + request.uri() + ": " + cause, cause, true));
+                return;
+            }
+
+            int status = completed.statusCode();
+            if (status >= 500) {
+                target.circuitBreaker().onFailure();
+            } else {
+                target.circuitBreaker().onSuccess();
+            }
+            if (status >= 200 && status < 300) {
+                record(target, "success", elapsed);
+                result.complete(toOutput(completed.body()));
+                return;
+            }
+            boolean retryable = status >= 500 || status == 408 || status == 429;
+            record(target, status >= 500 ? "server_error" : "client_error", elapsed);
+            result.completeExceptionally(new StepFailure("HTTP_" + status,
+                    request.method() + " " + request.uri() + " returned " + status,
+                    retryable, retryAfter(completed)));
+        });
+    }
+
+    private String toOutput(String body) {
+        if (body == null || body.isBlank()) {
+            return null;
+        }
+        try {
+            objectMapper.readTree(body);
+            return body;
+        } catch (JsonProcessingException ex) {
+            // Output is stored as JSON, so other bodies are kept as a string
+            return objectMapper.createObjectNode().put("body", body).toString();
+        }
+    }
+
+    private static Duration retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After")
+                .filter(value -> !value.isEmpty() && value.length() < 10 && value.chars().allMatch(Character::isDigit))
+                .map(value -> Duration.ofSeconds(Long.parseLong(value)))
+                .orElse(null);
+    }
+
+    private void record(Target target, String outcome, long elapsedNanos) {
+        Timer.builder("workflow.service-call")
+                .tag("target", target.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Target newTarget(String name) {
+        Target target = new Target(name, new Bulkhead(maxConcurrentPerTarget, maxQueuedPerTarget),
+                new CircuitBreaker(failureThreshold, openDuration));
+        Gauge.builder("workflow.service-call.in-flight", target.bulkhead(), Bulkhead::inFlight)
+                .tag("target", name)
+                .register(meterRegistry);
+        Gauge.builder("workflow.service-call.queued", target.bulkhead(), Bulkhead::queued)
+                .tag("target", name)
+                .register(meterRegistry);
+        Gauge.builder("workflow.service-call.circuit-open", target.circuitBreaker(), breaker -> breaker.isOpen() ? 1 : 0)
+                .tag("target", name)
+                .register(meterRegistry);
+        return target;
+    }
+
+    private record Target(String name, Bulkhead bulkhead, CircuitBreaker circuitBreaker) {
+    }
+}
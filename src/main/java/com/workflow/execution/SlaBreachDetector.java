@@ -0,0 +1,187 @@
+package com.workflow.execution;
+
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.service.DefinitionSnapshot;
+import com.workflow.service.StepDeadlineIndex;
+import com.workflow.service.StepEnteredEvent;
+import com.workflow.service.StepSla;
+import com.workflow.service.WorkflowDefinitionCache;
+import com.workflow.service.WorkflowInstanceService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds workflow instances that are overdue at a step with an SLA
+ *
+ * Every workflow.sla.scan-interval, the detector claims the deadlines in
+ * the {@link StepDeadlineIndex} that have passed, earliest first and
+ * workflow.sla.batch-size at a time, so a scan reads only overdue
+ * instances. For each instance still running at the overdue step it
+ * publishes a {@link SlaBreachedEvent}, counts the breach as
+ * workflow.sla.breaches and takes the step's SLA action:
+ *
+ * - none: only report the breach
+ * - fail: fail the step as if it had run out of attempts, compensating
+ *   completed steps that declare a compensation
+ * - escalate: move the instance to the step's "escalateTo" step
+ *
+ * Deadlines of instances that have left the step are dropped without a
+ * breach. A claimed deadline whose action could not be taken is claimed
+ * again after workflow.sla.claim-timeout, also when the node stops, so
+ * breaches are handled at least once. Several nodes may scan at once;
+ * a deadline is claimed by one of them.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+@Slf4j
+public class SlaBreachDetector {
+
+    static final String SLA_BREACHED = "SLA_BREACHED";
+
+    private final StepDeadlineIndex stepDeadlineIndex;
+    private final WorkflowInstanceService workflowInstanceService;
+    private final WorkflowDefinitionCache workflowDefinitionCache;
+    private final StepDispatcher stepDispatcher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<StepSla.Action, Counter> breaches = new EnumMap<>(StepSla.Action.class);
+    private final Timer detectionLag;
+    private final StepSla.Action defaultAction;
+    private final Duration claimTimeout;
+    private final int batchSize;
+
+    public SlaBreachDetector(
+            StepDeadlineIndex stepDeadlineIndex,
+            WorkflowInstanceService workflowInstanceService,
+            WorkflowDefinitionCache workflowDefinitionCache,
+            StepDispatcher stepDispatcher,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${workflow.sla.action:none}") String defaultAction,
+            @Value("${workflow.sla.claim-timeout:PT5M}") Duration claimTimeout,
+            @Value("${workflow.sla.batch-size:500}") int batchSize) {
+        this.stepDeadlineIndex = stepDeadlineIndex;
+        this.workflowInstanceService = workflowInstanceService;
+        this.workflowDefinitionCache = workflowDefinitionCache;
+        this.stepDispatcher = stepDispatcher;
+        this.eventPublisher = eventPublisher;
+        this.defaultAction = StepSla.Action.of(defaultAction);
+        this.claimTimeout = claimTimeout;
+        this.batchSize = batchSize;
+        for (StepSla.Action action : StepSla.Action.values()) {
+            breaches.put(action, Counter.builder("workflow.sla.breaches")
+                    .description("Instances found overdue at a step, by the action taken")
+                    .tag("action", action.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.detectionLag = Timer.builder("workflow.sla.detection-lag")
+                .description("Time from a step's deadline until its breach was handled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Handle the deadlines that have passed until none are left
+     */
+    @Scheduled(fixedDelayString = "${workflow.sla.scan-interval:PT10S}",
+            initialDelayString = "${workflow.sla.scan-interval:PT10S}")
+    public void scan() {
+        long handled = 0;
+        List<StepDeadlineIndex.Deadline> claimed;
+        try {
+            do {
+                LocalDateTime now = LocalDateTime.now();
+                claimed = stepDeadlineIndex.claimOverdue(now, now.plus(claimTimeout), batchSize);
+                List<StepDeadlineIndex.Deadline> done = new ArrayList<>(claimed.size());
+                for (StepDeadlineIndex.Deadline deadline : claimed) {
+                    if (handle(deadline)) {
+                        done.add(deadline);
+                    }
+                }
+                stepDeadlineIndex.release(done);
+                handled += done.size();
+            } while (claimed.size() == batchSize);
+        } catch (RuntimeException ex) {
+            log.warn("Scanning step deadlines failed: {}", ex.getMessage());
+        }
+        if (handled > 0) {
+            log.debug("Handled {} overdue step deadlines", handled);
+        }
+    }
+
+    private boolean handle(StepDeadlineIndex.Deadline deadline) {
+        try {
+            Optional<WorkflowInstance> found =
+                    workflowInstanceService.findRunningAt(deadline.instanceId(), deadline.stepName());
+            if (found.isEmpty()) {
+                // Left the step, e.g. was suspended or cancelled; resuming sets a new deadline
+                return true;
+            }
+            WorkflowInstance instance = found.get();
+            Optional<DefinitionSnapshot> definition =
+                    workflowDefinitionCache.get(instance.getWorkflowDefinition().getId());
+            Optional<DefinitionSnapshot.StepSnapshot> step =
+                    definition.flatMap(snapshot -> snapshot.step(deadline.stepName()));
+            Optional<StepSla> sla = step.flatMap(stepDeadlineIndex::sla);
+            StepSla.Action action = sla.map(StepSla::action).orElse(null);
+            if (action == null) {
+                action = defaultAction;
+            }
+
+            log.info("Workflow instance {} is overdue at step {} since {}, action {}",
+                    deadline.instanceId(), deadline.stepName(), deadline.dueAt(), action);
+            eventPublisher.publishEvent(new SlaBreachedEvent(deadline.instanceId(),
+                    instance.getWorkflowDefinition().getId(), instance.getTenantId(), deadline.stepName(),
+                    deadline.dueAt(), action));
+            String overdue = "Step " + deadline.stepName() + " was due at " + deadline.dueAt();
+            switch (action) {
+                case FAIL -> step.ifPresent(snapshot -> stepDispatcher.failStep(
+                        new StepEnteredEvent(deadline.instanceId(), definition.get().id(), snapshot),
+                        new StepFailure(SLA_BREACHED, overdue, false)));
+                case ESCALATE -> {
+                    String escalateTo = sla.map(StepSla::escalateTo).orElse(null);
+                    if (escalateTo == null) {
+                        log.warn("Step {} has no escalation step; workflow instance {} stays overdue",
+                                deadline.stepName(), deadline.instanceId());
+                    } else {
+                        workflowInstanceService.escalateStep(deadline.instanceId(), deadline.stepName(), escalateTo,
+                                "[" + SLA_BREACHED + "] " + overdue, StepDispatcher.EXECUTED_BY);
+                    }
+                }
+                case NONE -> {
+                }
+            }
+            breaches.get(action).increment();
+            detectionLag.record(Duration.between(deadline.dueAt(), LocalDateTime.now()));
+            return true;
+        } catch (IllegalStateException ex) {
+            log.debug("Workflow instance {} left step {} during the breach: {}",
+                    deadline.instanceId(), deadline.stepName(), ex.getMessage());
+            return true;
+        } catch (IllegalArgumentException ex) {
+            log.warn("Cannot take the SLA action of step {} of workflow instance {}: {}",
+                    deadline.stepName(), deadline.instanceId(), ex.getMessage());
+            return true;
+        } catch (RuntimeException ex) {
+            log.error("Could not handle the overdue step {} of workflow instance {}",
+                    deadline.stepName(), deadline.instanceId(), ex);
+            return false;
+        }
+    }
+}
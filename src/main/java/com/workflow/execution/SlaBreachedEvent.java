@@ -0,0 +1,25 @@
+package com.workflow.execution;
+
+import com.workflow.service.StepSla;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Published when a workflow instance is found overdue at a step
+ *
+ * Published once per overdue step visit, before the SLA action is taken.
+ * A visit whose action could not be taken is reported again on a later
+ * scan.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record SlaBreachedEvent(
+        UUID instanceId,
+        UUID definitionId,
+        String tenantId,
+        String stepName,
+        LocalDateTime dueAt,
+        StepSla.Action action) {
+}
@@ -0,0 +1,495 @@
+package com.workflow.execution;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.workflow.domain.WorkflowExecution;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.domain.WorkflowStep;
+import com.workflow.service.DefinitionSnapshot;
+import com.workflow.service.StepEnteredEvent;
+import com.workflow.service.StepRetryIndex;
+import com.workflow.service.WorkflowDefinitionCache;
+import com.workflow.service.WorkflowInstanceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Hands automated steps to their {@link StepHandler} and records the outcome
+ *
+ * When an instance enters a step that has a handler, the handler is
+ * started once the move is committed. A successful attempt completes the
+ * step with the handler's output and moves the instance on. Every failed
+ * attempt is recorded as a FAILED workflow_executions row and retried as
+ * the step's {@link RetryPolicy} allows. Retries wait in a
+ * {@link RetryQueue} that releases at most workflow.steps.retry-batch-size
+ * attempts every workflow.steps.retry-interval. Retries are skipped if
+ * the instance has left the step in the meantime, e.g. was cancelled.
+ *
+ * The time of each retry is also kept in the {@link StepRetryIndex}.
+ * Every workflow.steps.retry-scan-interval, retries that are overdue by
+ * more than that interval are claimed from the index and queued here, so
+ * retries and compensations queued by a node that stopped are run by
+ * another one. A claimed retry that has not run after
+ * workflow.steps.retry-claim-timeout is claimed again, so retries run at
+ * least once.
+ *
+ * When a step fails for good, the completed steps that declare a
+ * "compensation" are compensated, latest first: the instance becomes
+ * COMPENSATING and each compensation runs through the handler of its
+ * "type" (by default the step's own type) with the output of the step it
+ * undoes as its context. Attempts are recorded as COMPENSATED or
+ * COMPENSATION_FAILED rows and retried under the compensation's own
+ * "retry" policy. The instance then fails; if a compensation gives up,
+ * the remaining ones are not run. Without compensations, the instance
+ * fails at once and can be retried from the failed step.
+ *
+ * Handlers complete asynchronously, so waiting attempts hold no thread;
+ * database work runs on the application task executor. First attempts in
+ * flight are not resumed after a restart.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Slf4j
+public class StepDispatcher {
+
+    static final String EXECUTED_BY = "engine";
+    static final String COMPENSATION_SUFFIX = " (compensation)";
+
+    private final Map<WorkflowStep.StepType, StepHandler> handlers = new EnumMap<>(WorkflowStep.StepType.class);
+    private final WorkflowInstanceService workflowInstanceService;
+    private final WorkflowDefinitionCache workflowDefinitionCache;
+    private final StepRetryIndex stepRetryIndex;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor taskExecutor;
+    private final TaskScheduler taskScheduler;
+    private final RetryPolicy defaultPolicy;
+    private final RetryQueue retryQueue;
+    private final Duration retryInterval;
+    private final int retryBatchSize;
+    private final Duration retryScanInterval;
+    private final Duration retryClaimTimeout;
+    private ScheduledFuture<?> retryRelease;
+    private ScheduledFuture<?> retryScan;
+
+    public StepDispatcher(
+            List<StepHandler> stepHandlers,
+            WorkflowInstanceService workflowInstanceService,
+            WorkflowDefinitionCache workflowDefinitionCache,
+            StepRetryIndex stepRetryIndex,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+            TaskScheduler taskScheduler,
+            @Value("${workflow.steps.max-attempts:3}") int maxAttempts,
+            @Value("${workflow.steps.initial-backoff:PT1S}") Duration initialBackoff,
+            @Value("${workflow.steps.max-backoff:PT5M}") Duration maxBackoff,
+            @Value("${workflow.steps.backoff-multiplier:2}") double multiplier,
+            @Value("${workflow.steps.retry-interval:PT0.1S}") Duration retryInterval,
+            @Value("${workflow.steps.retry-batch-size:100}") int retryBatchSize,
+            @Value("${workflow.steps.retry-scan-interval:PT30S}") Duration retryScanInterval,
+            @Value("${workflow.steps.retry-claim-timeout:PT5M}") Duration retryClaimTimeout) {
+        for (StepHandler handler : stepHandlers) {
+            if (handlers.putIfAbsent(handler.type(), handler) != null) {
+                throw new IllegalStateException("More than one handler for step type " + handler.type());
+            }
+        }
+        this.workflowInstanceService = workflowInstanceService;
+        this.workflowDefinitionCache = workflowDefinitionCache;
+        this.stepRetryIndex = stepRetryIndex;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+        this.taskScheduler = taskScheduler;
+        this.defaultPolicy = new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier, Set.of(), Set.of());
+        this.retryQueue = new RetryQueue(taskExecutor, retryBatchSize);
+        this.retryInterval = retryInterval;
+        this.retryBatchSize = retryBatchSize;
+        this.retryScanInterval = retryScanInterval;
+        this.retryClaimTimeout = retryClaimTimeout;
+        Gauge.builder("workflow.steps.retry-queue.size", retryQueue, RetryQueue::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void startRetryRelease() {
+        retryRelease = taskScheduler.scheduleWithFixedDelay(retryQueue::release, retryInterval);
+        retryScan = taskScheduler.scheduleWithFixedDelay(this::recoverRetries,
+                Instant.now().plus(retryScanInterval), retryScanInterval);
+    }
+
+    @PreDestroy
+    void stopRetryRelease() {
+        if (retryRelease != null) {
+            retryRelease.cancel(false);
+        }
+        if (retryScan != null) {
+            retryScan.cancel(false);
+        }
+    }
+
+    /**
+     * Start the handler of an entered step once the move is committed
+     *
+     * @param event the entered step
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStepEntered(StepEnteredEvent event) {
+        StepHandler handler = handlers.get(event.step().stepType());
+        if (handler != null) {
+            taskExecutor.execute(() -> attempt(handler, event, 1));
+        }
+    }
+
+    private void attempt(StepHandler handler, StepEnteredEvent event, int attempt) {
+        UUID id = event.instanceId();
+        String stepName = event.step().stepName();
+
+        CompletableFuture<String> result;
+        RetryPolicy policy = defaultPolicy;
+        try {
+            JsonNode configuration = parse(event.step().configuration());
+            policy = RetryPolicy.of(configuration, defaultPolicy);
+            Optional<WorkflowInstance> instance = workflowInstanceService.findRunningAt(id, stepName);
+            if (instance.isEmpty()) {
+                log.debug("Workflow instance {} left step {} before attempt {}", id, stepName, attempt);
+                return;
+            }
+            result = handler.execute(new StepInvocation(id, event.definitionId(), stepName, configuration,
+                    instance.get().getContext(), attempt));
+        } catch (IllegalArgumentException ex) {
+            result = CompletableFuture.failedFuture(new StepFailure(StepHandler.CONFIGURATION, ex.getMessage(), false));
+        } catch (RuntimeException ex) {
+            result = CompletableFuture.failedFuture(ex);
+        }
+        RetryPolicy stepPolicy = policy;
+        result.whenCompleteAsync((output, failure) -> {
+            if (failure == null) {
+                complete(event, output, attempt);
+            } else {
+                fail(handler, event, stepPolicy, attempt, unwrap(failure));
+            }
+        }, taskExecutor);
+    }
+
+    private void complete(StepEnteredEvent event, String output, int attempt) {
+        UUID id = event.instanceId();
+        String stepName = event.step().stepName();
+        try {
+            workflowInstanceService.completeStep(id, stepName, null, output, EXECUTED_BY, attempt)
+                    .ifPresent(completion -> completion.whenComplete((recorded, ex) -> {
+                        if (ex != null) {
+                            log.warn("Could not complete step {} of workflow instance {}: {}", stepName, id, ex.toString());
+                        } else if (attempt > 1) {
+                            // The retry has run
+                            stepRetryIndex.clearInstance(id);
+                        }
+                    }));
+        } catch (IllegalStateException ex) {
+            log.debug("Workflow instance {} left step {} during attempt {}", id, stepName, attempt);
+        } catch (RuntimeException ex) {
+            log.error("Could not complete step {} of workflow instance {}", stepName, id, ex);
+        }
+    }
+
+    private void fail(StepHandler handler, StepEnteredEvent event, RetryPolicy policy, int attempt, Throwable failure) {
+        UUID id = event.instanceId();
+        String stepName = event.step().stepName();
+        try {
+            if (policy.shouldRetry(failure, attempt)) {
+                Duration delay = policy.backoff(attempt, failure);
+                LocalDateTime nextAttemptAt = nextAttemptAt(delay);
+                UUID failed = workflowInstanceService.recordFailedAttempt(id, stepName, describe(failure),
+                        EXECUTED_BY, attempt, nextAttemptAt);
+                log.info("Attempt {} at step {} of workflow instance {} failed, retrying in {}: {}",
+                        attempt, stepName, id, delay, failure.getMessage());
+                retry(failed, nextAttemptAt, () -> attempt(handler, event, attempt + 1));
+                return;
+            }
+            workflowInstanceService.recordFailedAttempt(id, stepName, describe(failure), EXECUTED_BY, attempt, null);
+            log.warn("Step {} of workflow instance {} failed after {} attempts: {}",
+                    stepName, id, attempt, failure.getMessage());
+            giveUp(event);
+        } catch (RuntimeException ex) {
+            log.error("Could not record failed attempt {} at step {} of workflow instance {}", attempt, stepName, id, ex);
+        }
+    }
+
+    /**
+     * Fail the current step of an instance for good, without further attempts
+     *
+     * Completed steps are compensated as if the step had run out of
+     * attempts. Attempts still in flight find the instance gone from the
+     * step and are dropped.
+     *
+     * @param event the step the instance is at
+     * @param failure why the step fails
+     */
+    void failStep(StepEnteredEvent event, StepFailure failure) {
+        workflowInstanceService.recordFailedAttempt(event.instanceId(), event.step().stepName(), describe(failure),
+                EXECUTED_BY, 1, null);
+        giveUp(event);
+    }
+
+    private void giveUp(StepEnteredEvent event) {
+        UUID id = event.instanceId();
+        String stepName = event.step().stepName();
+        if (workflowInstanceService.findRunningAt(id, stepName).isEmpty()) {
+            return;
+        }
+        List<Compensation> compensations = compensations(id, event.definitionId());
+        if (compensations.isEmpty()) {
+            workflowInstanceService.updateInstanceStatus(id, WorkflowInstance.InstanceStatus.FAILED);
+        } else {
+            workflowInstanceService.beginCompensation(id, stepName);
+            compensate(id, event.definitionId(), compensations, 0, 1);
+        }
+    }
+
+    private List<Compensation> compensations(UUID id, UUID definitionId) {
+        DefinitionSnapshot definition = workflowDefinitionCache.get(definitionId).orElse(null);
+        if (definition == null) {
+            return List.of();
+        }
+        List<Compensation> compensations = new ArrayList<>();
+        for (WorkflowExecution execution : workflowInstanceService.findCompletedExecutions(id)) {
+            definition.step(execution.getStepName()).ifPresent(step -> {
+                JsonNode compensation = parseQuietly(step.configuration()).path("compensation");
+                if (compensation.isObject()) {
+                    compensations.add(new Compensation(step.stepName(), step.stepType(), compensation,
+                            execution.getOutputData()));
+                }
+            });
+        }
+        return compensations;
+    }
+
+    private void compensate(UUID id, UUID definitionId, List<Compensation> compensations, int index, int attempt) {
+        if (index == compensations.size()) {
+            finishCompensation(id);
+            return;
+        }
+        Compensation compensation = compensations.get(index);
+        CompletableFuture<String> result;
+        RetryPolicy policy = defaultPolicy;
+        try {
+            Optional<WorkflowInstance> instance =
+                    workflowInstanceService.findInStatus(id, WorkflowInstance.InstanceStatus.COMPENSATING);
+            if (instance.isEmpty()) {
+                log.info("Workflow instance {} stopped compensating before step {}", id, compensation.stepName());
+                return;
+            }
+            policy = RetryPolicy.of(compensation.configuration(), defaultPolicy);
+            StepHandler handler = handlers.get(compensation.type());
+            if (handler == null) {
+                throw new StepFailure(StepHandler.CONFIGURATION,
+                        "No handler for compensation type " + compensation.type(), false);
+            }
+            String context = compensation.output() != null ? compensation.output() : instance.get().getContext();
+            result = handler.execute(new StepInvocation(id, definitionId, compensation.stepName() + COMPENSATION_SUFFIX,
+                    compensation.configuration(), context, attempt));
+        } catch (IllegalArgumentException ex) {
+            result = CompletableFuture.failedFuture(new StepFailure(StepHandler.CONFIGURATION, ex.getMessage(), false));
+        } catch (RuntimeException ex) {
+            result = CompletableFuture.failedFuture(ex);
+        }
+        RetryPolicy compensationPolicy = policy;
+        result.whenCompleteAsync((output, failure) -> {
+            try {
+                if (failure == null) {
+                    workflowInstanceService.recordCompensation(id, compensation.stepName(), output, null,
+                            EXECUTED_BY, attempt, null);
+                    compensate(id, definitionId, compensations, index + 1, 1);
+                    return;
+                }
+                Throwable cause = unwrap(failure);
+                if (compensationPolicy.shouldRetry(cause, attempt)) {
+                    LocalDateTime nextAttemptAt = nextAttemptAt(compensationPolicy.backoff(attempt, cause));
+                    UUID failed = workflowInstanceService.recordCompensation(id, compensation.stepName(), null,
+                            describe(cause), EXECUTED_BY, attempt, nextAttemptAt);
+                    retry(failed, nextAttemptAt, () -> compensate(id, definitionId, compensations, index, attempt + 1));
+                    return;
+                }
+                workflowInstanceService.recordCompensation(id, compensation.stepName(), null, describe(cause),
+                        EXECUTED_BY, attempt, null);
+                log.error("Compensation of step {} of workflow instance {} failed after {} attempts, {} left undone: {}",
+                        compensation.stepName(), id, attempt, compensations.size() - index, cause.getMessage());
+                finishCompensation(id);
+            } catch (RuntimeException ex) {
+                log.error("Could not record compensation of step {} of workflow instance {}",
+                        compensation.stepName(), id, ex);
+            }
+        }, taskExecutor);
+    }
+
+    /**
+     * Queue the overdue retries, e.g. of a node that stopped, that this scan claims
+     */
+    void recoverRetries() {
+        int recovered = 0;
+        List<StepRetryIndex.PendingRetry> claimed;
+        try {
+            do {
+                LocalDateTime now = LocalDateTime.now();
+                claimed = stepRetryIndex.claimOverdue(now.minus(retryScanInterval), now.plus(retryClaimTimeout),
+                        retryBatchSize);
+                for (StepRetryIndex.PendingRetry retry : claimed) {
+                    if (recover(retry)) {
+                        recovered++;
+                    }
+                }
+            } while (claimed.size() == retryBatchSize);
+        } catch (RuntimeException ex) {
+            log.warn("Scanning overdue retries failed: {}", ex.getMessage());
+        }
+        if (recovered > 0) {
+            log.info("Recovered {} overdue retries", recovered);
+        }
+    }
+
+    private boolean recover(StepRetryIndex.PendingRetry retry) {
+        UUID id = retry.instanceId();
+        try {
+            if (retry.status() == WorkflowExecution.ExecutionStatus.COMPENSATION_FAILED) {
+                return recoverCompensation(retry);
+            }
+            Optional<StepEnteredEvent> event = workflowInstanceService.findRunningAt(id, retry.stepName())
+                    .flatMap(instance -> workflowDefinitionCache.get(instance.getWorkflowDefinition().getId()))
+                    .flatMap(definition -> definition.step(retry.stepName())
+                            .map(step -> new StepEnteredEvent(id, definition.id(), step)));
+            StepHandler handler = event.map(entered -> handlers.get(entered.step().stepType())).orElse(null);
+            if (handler == null) {
+                // Left the step, e.g. was cancelled
+                stepRetryIndex.clear(retry.executionId());
+                return false;
+            }
+            retryQueue.schedule(Instant.now(), () -> attempt(handler, event.get(), retry.attempt() + 1));
+            return true;
+        } catch (RuntimeException ex) {
+            // Claimed again after the claim timeout
+            log.warn("Could not recover retry of step {} of workflow instance {}: {}",
+                    retry.stepName(), id, ex.getMessage());
+            return false;
+        }
+    }
+
+    private boolean recoverCompensation(StepRetryIndex.PendingRetry retry) {
+        UUID id = retry.instanceId();
+        Optional<WorkflowInstance> instance =
+                workflowInstanceService.findInStatus(id, WorkflowInstance.InstanceStatus.COMPENSATING);
+        if (instance.isEmpty()) {
+            stepRetryIndex.clear(retry.executionId());
+            return false;
+        }
+        UUID definitionId = instance.get().getWorkflowDefinition().getId();
+        List<Compensation> compensations = compensations(id, definitionId);
+        // Compensations run one at a time in this order, so the ones that succeeded come first
+        int index = (int) workflowInstanceService.countExecutions(id, WorkflowExecution.ExecutionStatus.COMPENSATED);
+        if (index >= compensations.size() || !compensations.get(index).stepName().equals(retry.stepName())) {
+            log.warn("Compensation of step {} of workflow instance {} no longer matches its definition, not retried",
+                    retry.stepName(), id);
+            stepRetryIndex.clear(retry.executionId());
+            return false;
+        }
+        retryQueue.schedule(Instant.now(), () -> compensate(id, definitionId, compensations, index, retry.attempt() + 1));
+        return true;
+    }
+
+    private void retry(UUID executionId, LocalDateTime nextAttemptAt, Runnable attempt) {
+        retryQueue.schedule(nextAttemptAt.atZone(ZoneId.systemDefault()).toInstant(), () -> {
+            try {
+                // A scan may have claimed the retry if it came up late
+                if (stepRetryIndex.hold(executionId, nextAttemptAt, LocalDateTime.now().plus(retryClaimTimeout))) {
+                    attempt.run();
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Could not take retry of execution {}, leaving it to the retry scan: {}",
+                        executionId, ex.getMessage());
+            }
+        });
+    }
+
+    private static LocalDateTime nextAttemptAt(Duration delay) {
+        // Held by comparing with the stored time, which keeps microseconds at most
+        return LocalDateTime.now().plus(delay).truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private void finishCompensation(UUID id) {
+        try {
+            workflowInstanceService.finishCompensation(id);
+        } catch (IllegalStateException ex) {
+            log.debug("Workflow instance {} stopped compensating: {}", id, ex.getMessage());
+        }
+    }
+
+    private JsonNode parse(String configuration) {
+        if (configuration == null) {
+            return objectMapper.createObjectNode();
+        }
+        try {
+            JsonNode parsed = objectMapper.readTree(configuration);
+            if (!parsed.isObject()) {
+                throw new IllegalArgumentException("Step configuration must be a JSON object");
+            }
+            return parsed;
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Step configuration is not valid JSON");
+        }
+    }
+
+    private JsonNode parseQuietly(String configuration) {
+        try {
+            return parse(configuration);
+        } catch (IllegalArgumentException ex) {
+            return objectMapper.createObjectNode();
+        }
+    }
+
+    private static String describe(Throwable failure) {
+        return "[" + StepFailure.errorCodeOf(failure) + "] " + failure.getMessage();
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private record Compensation(String stepName, WorkflowStep.StepType stepType, JsonNode configuration, String output) {
+
+        /**
+         * Get the step type whose handler runs the compensation
+         *
+         * @return the compensation's "type", or the type of the compensated step
+         * @throws IllegalArgumentException if "type" is not a step type
+         */
+        WorkflowStep.StepType type() {
+            return configuration.hasNonNull("type")
+                    ? WorkflowStep.StepType.valueOf(configuration.get("type").asText())
+                    : stepType;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.workflow.execution;
+
+import java.time.Duration;
+
+/**
+ * Failed attempt at an automated step
+ *
+ * The error code classifies the failure for retry policies, e.g.
+ * TIMEOUT, CONNECTION or HTTP_503. Retryable failures are attempted again
+ * after a backoff, at least {@link #getRetryAfter()} if the handler knows
+ * when to come back, unless the step's retry policy says otherwise.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class StepFailure extends RuntimeException {
+
+    /**
+     * Code of failures that are not a {@link StepFailure}
+     */
+    public static final String ERROR = "ERROR";
+
+    private final String errorCode;
+    private final boolean retryable;
+    private final Duration retryAfter;
+
+    public StepFailure(String errorCode, String message, boolean retryable) {
+        this(errorCode, message, null, retryable, null);
+    }
+
+    public StepFailure(String errorCode, String message, boolean retryable, Duration retryAfter) {
+        this(errorCode, message, null, retryable, retryAfter);
+    }
+
+    public StepFailure(String errorCode, String message, Throwable cause, boolean retryable) {
+        this(errorCode, message, cause, retryable, null);
+    }
+
+    private StepFailure(String errorCode, String message, Throwable cause, boolean retryable, Duration retryAfter) {
+        super(message, cause);
+        this.errorCode = errorCode;
+        this.retryable = retryable;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Classify any failure of a step attempt
+     *
+     * @param failure the failure
+     * @return the failure's error code, or {@link #ERROR}
+     */
+    public static String errorCodeOf(Throwable failure) {
+        return failure instanceof StepFailure stepFailure ? stepFailure.errorCode : ERROR;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * Get the earliest time to retry, if the failure names one
+     *
+     * @return the delay, or null for the default backoff
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,40 @@
+package com.workflow.execution;
+
+import com.workflow.domain.WorkflowStep;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs automated steps of one step type
+ *
+ * Handlers are invoked by {@link StepDispatcher} when an instance enters
+ * a step of their type and must not block the calling thread: long-running
+ * work completes the returned future later. The step is completed with the
+ * future's value as its output. A failure is retried according to the
+ * step's {@link RetryPolicy}.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public interface StepHandler {
+
+    /**
+     * Error code of steps whose configuration cannot be used
+     */
+    String CONFIGURATION = "CONFIGURATION";
+
+    /**
+     * Get the step type this handler runs
+     *
+     * @return the step type
+     */
+    WorkflowStep.StepType type();
+
+    /**
+     * Start one attempt at a step
+     *
+     * @param invocation the step, its configuration and the instance context
+     * @return future of the step output as JSON, or of null for no output
+     */
+    CompletableFuture<String> execute(StepInvocation invocation);
+}
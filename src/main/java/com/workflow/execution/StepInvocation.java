@@ -0,0 +1,29 @@
+package com.workflow.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.UUID;
+
+/**
+ * One attempt at an automated step of a workflow instance
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record StepInvocation(
+        UUID instanceId,
+        UUID definitionId,
+        String stepName,
+        JsonNode configuration,
+        String context,
+        int attempt) {
+
+    /**
+     * Key identifying the step visit across its attempts
+     *
+     * @return the instance ID and step name
+     */
+    public String idempotencyKey() {
+        return instanceId + ":" + stepName;
+    }
+}
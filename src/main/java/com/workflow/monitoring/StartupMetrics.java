@@ -0,0 +1,70 @@
+package com.workflow.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-to-first-request metric for autoscaled engine nodes
+ *
+ * Records the wall-clock time from JVM start until the first API request
+ * finishes, which is what an autoscaler actually waits for. Health checks
+ * and metric scrapes under /actuator arrive long before any real traffic,
+ * so only /api requests count. Exposed as the
+ * workflow.startup.time-to-first-request gauge; it stays NaN until the
+ * first API request has been served.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class StartupMetrics extends OncePerRequestFilter {
+
+    private static final String API_PATH = "/api/";
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final AtomicLong timeToFirstRequestMillis = new AtomicLong(-1);
+
+    public StartupMetrics(MeterRegistry meterRegistry) {
+        TimeGauge.builder("workflow.startup.time-to-first-request", timeToFirstRequestMillis, TimeUnit.MILLISECONDS,
+                        value -> value.get() < 0 ? Double.NaN : value.get())
+                .description("Time from JVM start until the first API request completed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return timeToFirstRequestMillis.get() >= 0
+                || !request.getRequestURI().startsWith(request.getContextPath() + API_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (timeToFirstRequestMillis.get() < 0) {
+                long elapsed = System.currentTimeMillis() - jvmStartMillis;
+                if (timeToFirstRequestMillis.compareAndSet(-1, elapsed)) {
+                    log.info("First request served {} ms after JVM start", elapsed);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.workflow.persistence;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service or method as a read-only query path
+ *
+ * Annotated calls run in a read-only transaction routed to the read
+ * DataSource. When follower reads are enabled, the transaction is also
+ * pinned to a historical timestamp so CockroachDB can serve it from the
+ * nearest replica without contending with writes on the leaseholder.
+ *
+ * Calls made while a transaction is already active are left on the
+ * primary so lifecycle writes keep strict consistency.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadOnly {
+
+    /**
+     * Staleness bound using CockroachDB's follower read timestamp
+     */
+    String FOLLOWER_READ = "follower_read_timestamp()";
+
+    /**
+     * No staleness; the read sees the latest committed data
+     */
+    String NONE = "";
+
+    /**
+     * AS OF SYSTEM TIME expression bounding how stale the read may be,
+     * e.g. {@link #FOLLOWER_READ} or an interval such as {@code '-10s'}
+     *
+     * @return the staleness expression, or {@link #NONE} for a consistent read
+     */
+    String staleness() default FOLLOWER_READ;
+}
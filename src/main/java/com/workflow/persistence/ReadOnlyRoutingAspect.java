@@ -0,0 +1,97 @@
+package com.workflow.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Aspect applying {@link ReadOnly} routing to service calls
+ *
+ * Opens a read-only transaction on the read route and, when follower reads
+ * are enabled, issues {@code SET TRANSACTION AS OF SYSTEM TIME} as the first
+ * statement so CockroachDB can serve it from any replica.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@Slf4j
+public class ReadOnlyRoutingAspect {
+
+    private final PlatformTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${workflow.datasource.follower-reads.enabled:false}")
+    private boolean followerReadsEnabled;
+
+    public ReadOnlyRoutingAspect(PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate) {
+        this.transactionManager = transactionManager;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Run a read-only call on the read route
+     *
+     * @param joinPoint the intercepted call
+     * @return the call result
+     * @throws Throwable any failure raised by the call
+     */
+    @Around("@within(com.workflow.persistence.ReadOnly) || @annotation(com.workflow.persistence.ReadOnly)")
+    public Object routeReadOnly(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Already inside a (possibly writing) transaction: stay on its connection
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        ReadOnly readOnly = findAnnotation(joinPoint);
+        ReadRoutingDataSource.Route previous = ReadRoutingDataSource.currentRoute();
+        ReadRoutingDataSource.setRoute(ReadRoutingDataSource.Route.READ);
+        try {
+            DefaultTransactionDefinition definition = new DefaultTransactionDefinition(
+                    TransactionDefinition.PROPAGATION_REQUIRED);
+            definition.setReadOnly(true);
+            definition.setName(joinPoint.getSignature().toShortString());
+
+            TransactionStatus status = transactionManager.getTransaction(definition);
+            Object result;
+            try {
+                if (followerReadsEnabled && !readOnly.staleness().isEmpty()) {
+                    jdbcTemplate.execute("SET TRANSACTION AS OF SYSTEM TIME " + readOnly.staleness());
+                }
+                result = joinPoint.proceed();
+            } catch (Throwable ex) {
+                transactionManager.rollback(status);
+                throw ex;
+            }
+            transactionManager.commit(status);
+            return result;
+        } finally {
+            ReadRoutingDataSource.setRoute(previous);
+        }
+    }
+
+    private ReadOnly findAnnotation(ProceedingJoinPoint joinPoint) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        ReadOnly readOnly = AnnotatedElementUtils.findMergedAnnotation(signature.getMethod(), ReadOnly.class);
+        if (readOnly == null) {
+            readOnly = AnnotatedElementUtils.findMergedAnnotation(
+                    joinPoint.getTarget().getClass(), ReadOnly.class);
+        }
+        return readOnly;
+    }
+}
@@ -0,0 +1,53 @@
+package com.workflow.persistence;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routing DataSource that sends read-only work to the read pool
+ *
+ * The route is held per thread and set by {@link ReadOnlyRoutingAspect}
+ * before a read-only transaction acquires its connection. Everything else,
+ * including Flyway and all write transactions, goes to the primary.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class ReadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Route> CURRENT_ROUTE = new ThreadLocal<>();
+
+    /**
+     * DataSource route enumeration
+     */
+    public enum Route {
+        PRIMARY, READ
+    }
+
+    /**
+     * Route connections acquired by the current thread
+     *
+     * @param route the route to use, or null to fall back to the primary
+     */
+    public static void setRoute(Route route) {
+        if (route == null) {
+            CURRENT_ROUTE.remove();
+        } else {
+            CURRENT_ROUTE.set(route);
+        }
+    }
+
+    /**
+     * Get the route used by the current thread
+     *
+     * @return the current route
+     */
+    public static Route currentRoute() {
+        Route route = CURRENT_ROUTE.get();
+        return route != null ? route : Route.PRIMARY;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute();
+    }
+}
@@ -0,0 +1,119 @@
+package com.workflow.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Client-side transaction retry for CockroachDB serialization conflicts
+ *
+ * Wraps the outermost @Transactional service call and re-runs the whole
+ * transaction when the database aborts it with SQLSTATE 40001, or when a
+ * write-write conflict is reported as a {@link ConcurrencyFailureException}.
+ * Backoff is exponential with full jitter so contending clients spread out
+ * instead of colliding again on the next attempt.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class TransactionRetryAspect {
+
+    static final String SERIALIZATION_FAILURE = "40001";
+
+    private final Counter retries;
+    private final Counter exhausted;
+
+    @Value("${workflow.transaction.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${workflow.transaction.retry.initial-backoff-ms:10}")
+    private long initialBackoffMs;
+
+    @Value("${workflow.transaction.retry.max-backoff-ms:1000}")
+    private long maxBackoffMs;
+
+    public TransactionRetryAspect(MeterRegistry meterRegistry) {
+        this.retries = Counter.builder("workflow.transaction.retries")
+                .description("Transactions re-run after a conflict")
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("workflow.transaction.retries.exhausted")
+                .description("Transactions that still conflicted after the last attempt")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Retry transactional service methods on serialization failures and write conflicts
+     *
+     * @param joinPoint the intercepted service call
+     * @return the result of the first successful attempt
+     * @throws Throwable the original failure if it is not retryable or attempts are exhausted
+     */
+    @Around("within(com.workflow.service..*) && "
+            + "(@within(org.springframework.transaction.annotation.Transactional) || "
+            + "@annotation(org.springframework.transaction.annotation.Transactional))")
+    public Object retryOnConflict(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Only the outermost call owns the transaction and can safely re-run it
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        int attempt = 1;
+        while (true) {
+            try {
+                return joinPoint.proceed();
+            } catch (Throwable ex) {
+                if (!isRetryable(ex)) {
+                    throw ex;
+                }
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("Giving up on {} after {} attempts", joinPoint.getSignature().toShortString(), attempt);
+                    throw ex;
+                }
+                retries.increment();
+                long backoff = backoffMillis(attempt);
+                log.debug("Transaction conflict in {}, retry {} in {} ms",
+                        joinPoint.getSignature().toShortString(), attempt, backoff);
+                Thread.sleep(backoff);
+                attempt++;
+            }
+        }
+    }
+
+    long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public static boolean isRetryable(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConcurrencyFailureException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException
+                    && SERIALIZATION_FAILURE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
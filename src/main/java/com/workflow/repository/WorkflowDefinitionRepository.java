@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -22,6 +23,29 @@ import java.util.UUID;
 @Repository
 public interface WorkflowDefinitionRepository extends JpaRepository<WorkflowDefinition, UUID> {
 
+    /**
+     * Find a workflow definition of the current tenant by ID
+     * 
+     * Declared as a query because Hibernate does not apply the tenant
+     * filter when loading by primary key.
+     * 
+     * @param id the workflow definition ID
+     * @return Optional containing the workflow definition if found
+     */
+    @Override
+    @Query("SELECT wd FROM WorkflowDefinition wd WHERE wd.id = :id")
+    Optional<WorkflowDefinition> findById(@Param("id") UUID id);
+
+    /**
+     * Check if a workflow definition of the current tenant exists
+     * 
+     * @param id the workflow definition ID
+     * @return true if exists, false otherwise
+     */
+    @Override
+    @Query("SELECT CASE WHEN COUNT(wd) > 0 THEN true ELSE false END FROM WorkflowDefinition wd WHERE wd.id = :id")
+    boolean existsById(@Param("id") UUID id);
+
     /**
      * Find workflow definition by name and version
      * 
@@ -55,6 +79,51 @@ public interface WorkflowDefinitionRepository extends JpaRepository<WorkflowDefi
     @Query("SELECT wd FROM WorkflowDefinition wd WHERE wd.name = :name ORDER BY wd.version DESC LIMIT 1")
     Optional<WorkflowDefinition> findLatestVersionByName(@Param("name") String name);
 
+    /**
+     * Find the version stamp of a workflow definition by ID
+     * 
+     * @param id the workflow definition ID
+     * @return Optional containing the stamp, without the definition document
+     */
+    Optional<VersionStamp> findStampById(UUID id);
+
+    /**
+     * Find the version stamp of a workflow definition by name and version
+     * 
+     * @param name the workflow name
+     * @param version the version number
+     * @return Optional containing the stamp, without the definition document
+     */
+    Optional<VersionStamp> findStampByNameAndVersion(String name, Integer version);
+
+    /**
+     * Find the version stamp of the latest version of a workflow by name
+     * 
+     * @param name the workflow name
+     * @return Optional containing the stamp, without the definition document
+     */
+    @Query("SELECT wd.id AS id, wd.version AS version, wd.updatedAt AS updatedAt FROM WorkflowDefinition wd"
+            + " WHERE wd.name = :name ORDER BY wd.version DESC LIMIT 1")
+    Optional<VersionStamp> findLatestStampByName(@Param("name") String name);
+
+    /**
+     * Find a workflow definition together with its steps
+     * 
+     * @param id the workflow definition ID
+     * @return Optional containing the workflow definition with steps loaded
+     */
+    @Query("SELECT wd FROM WorkflowDefinition wd LEFT JOIN FETCH wd.steps WHERE wd.id = :id")
+    Optional<WorkflowDefinition> findWithStepsById(@Param("id") UUID id);
+
+    /**
+     * Find workflow definitions by status together with their steps
+     * 
+     * @param status the workflow status
+     * @return List of workflow definitions with steps loaded
+     */
+    @Query("SELECT DISTINCT wd FROM WorkflowDefinition wd LEFT JOIN FETCH wd.steps WHERE wd.status = :status")
+    List<WorkflowDefinition> findWithStepsByStatus(@Param("status") WorkflowDefinition.WorkflowStatus status);
+
     /**
      * Find workflow definitions created by a specific user
      * 
@@ -71,4 +140,16 @@ public interface WorkflowDefinitionRepository extends JpaRepository<WorkflowDefi
      * @return true if exists, false otherwise
      */
     boolean existsByNameAndVersion(String name, Integer version);
+
+    /**
+     * The columns that identify one state of a workflow definition
+     */
+    interface VersionStamp {
+
+        UUID getId();
+
+        Integer getVersion();
+
+        LocalDateTime getUpdatedAt();
+    }
 }
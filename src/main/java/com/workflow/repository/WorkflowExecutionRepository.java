@@ -0,0 +1,59 @@
+package com.workflow.repository;
+
+import com.workflow.domain.WorkflowExecution;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository interface for WorkflowExecution entity
+ * 
+ * Provides data access methods for the step execution history
+ * of workflow instances.
+ * 
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Repository
+public interface WorkflowExecutionRepository extends JpaRepository<WorkflowExecution, UUID> {
+
+    /**
+     * Find all step executions of a workflow instance
+     * 
+     * @param workflowInstanceId the workflow instance ID
+     * @return List of step executions for the given instance
+     */
+    List<WorkflowExecution> findByWorkflowInstanceId(UUID workflowInstanceId);
+
+    /**
+     * Find the step executions of a workflow instance with a status, latest first
+     * 
+     * @param workflowInstanceId the workflow instance ID
+     * @param status the execution status
+     * @return List of matching step executions, most recently completed first
+     */
+    List<WorkflowExecution> findByWorkflowInstanceIdAndStatusOrderByCompletedAtDescIdDesc(
+            UUID workflowInstanceId, WorkflowExecution.ExecutionStatus status);
+
+    /**
+     * Check whether a workflow instance has step executions with any of the given statuses
+     * 
+     * @param workflowInstanceId the workflow instance ID
+     * @param statuses the execution statuses
+     * @return true if at least one execution has one of the statuses
+     */
+    boolean existsByWorkflowInstanceIdAndStatusIn(
+            UUID workflowInstanceId, Collection<WorkflowExecution.ExecutionStatus> statuses);
+
+    /**
+     * Count the step executions of a workflow instance with a status
+     * 
+     * @param workflowInstanceId the workflow instance ID
+     * @param status the execution status
+     * @return the number of matching step executions
+     */
+    long countByWorkflowInstanceIdAndStatus(UUID workflowInstanceId, WorkflowExecution.ExecutionStatus status);
+}
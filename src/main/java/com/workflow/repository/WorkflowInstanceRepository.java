@@ -2,12 +2,14 @@ package com.workflow.repository;
 
 import com.workflow.domain.WorkflowInstance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -22,6 +24,29 @@ import java.util.UUID;
 @Repository
 public interface WorkflowInstanceRepository extends JpaRepository<WorkflowInstance, UUID> {
 
+    /**
+     * Find a workflow instance of the current tenant by ID
+     * 
+     * Declared as a query because Hibernate does not apply the tenant
+     * filter when loading by primary key.
+     * 
+     * @param id the workflow instance ID
+     * @return Optional containing the workflow instance if found
+     */
+    @Override
+    @Query("SELECT wi FROM WorkflowInstance wi WHERE wi.id = :id")
+    Optional<WorkflowInstance> findById(@Param("id") UUID id);
+
+    /**
+     * Check if a workflow instance of the current tenant exists
+     * 
+     * @param id the workflow instance ID
+     * @return true if exists, false otherwise
+     */
+    @Override
+    @Query("SELECT CASE WHEN COUNT(wi) > 0 THEN true ELSE false END FROM WorkflowInstance wi WHERE wi.id = :id")
+    boolean existsById(@Param("id") UUID id);
+
     /**
      * Find all workflow instances by workflow definition
      * 
@@ -38,6 +63,21 @@ public interface WorkflowInstanceRepository extends JpaRepository<WorkflowInstan
      */
     List<WorkflowInstance> findByStatus(WorkflowInstance.InstanceStatus status);
 
+    /**
+     * Find the listing of workflow instances by status
+     * 
+     * Covered by idx_workflow_instances_tenant_status_started, which stores
+     * exactly these columns and not the context document.
+     * 
+     * @param status the instance status
+     * @return List of listings, newest first, without the context
+     */
+    @Query("SELECT wi.id AS id, wi.workflowDefinition.id AS workflowDefinitionId, wi.name AS name,"
+            + " wi.status AS status, wi.currentStep AS currentStep, wi.startedAt AS startedAt,"
+            + " wi.completedAt AS completedAt, wi.createdBy AS createdBy, wi.updatedBy AS updatedBy"
+            + " FROM WorkflowInstance wi WHERE wi.status = :status ORDER BY wi.startedAt DESC")
+    List<Listing> findListingsByStatus(@Param("status") WorkflowInstance.InstanceStatus status);
+
     /**
      * Find workflow instances created by a specific user
      * 
@@ -60,8 +100,9 @@ public interface WorkflowInstanceRepository extends JpaRepository<WorkflowInstan
      * 
      * @return List of currently running workflow instances
      */
-    @Query("SELECT wi FROM WorkflowInstance wi WHERE wi.status = 'RUNNING'")
-    List<WorkflowInstance> findRunningInstances();
+    default List<WorkflowInstance> findRunningInstances() {
+        return findByStatus(WorkflowInstance.InstanceStatus.RUNNING);
+    }
 
     /**
      * Find workflow instances by current step
@@ -78,4 +119,92 @@ public interface WorkflowInstanceRepository extends JpaRepository<WorkflowInstan
      * @return Count of workflow instances with the given status
      */
     long countByStatus(WorkflowInstance.InstanceStatus status);
+
+    /**
+     * Insert a keyed instance, or return the instance already holding the key
+     * 
+     * The no-op update on conflict makes RETURNING yield the existing row,
+     * so both outcomes take a single statement. The caller compares the
+     * returned ID with the one passed in to tell them apart.
+     * 
+     * @param id the ID for the new instance
+     * @param tenantId the tenant starting the instance
+     * @param workflowDefinitionId the workflow definition ID
+     * @param name the instance name
+     * @param status the status code
+     * @param currentStep the first step, or null
+     * @param context the initial context as JSON, or null
+     * @param startedAt the start time
+     * @param idempotencyKey the client-supplied key
+     * @param expiresAt when the key may be reused
+     * @return the new instance, or the existing one holding the key
+     */
+    @Query(value = "INSERT INTO workflow_instances"
+            + " (id, tenant_id, workflow_definition_id, name, status_code, current_step, context, started_at,"
+            + " idempotency_key, idempotency_expires_at)"
+            + " VALUES (:id, :tenantId, :workflowDefinitionId, :name, :status, CAST(:currentStep AS VARCHAR),"
+            + " CAST(:context AS JSONB), :startedAt, :idempotencyKey, :expiresAt)"
+            + " ON CONFLICT (tenant_id, idempotency_key) WHERE idempotency_key IS NOT NULL"
+            + " DO UPDATE SET idempotency_key = EXCLUDED.idempotency_key"
+            + " RETURNING *", nativeQuery = true)
+    WorkflowInstance insertOrGetByIdempotencyKey(
+            @Param("id") UUID id,
+            @Param("tenantId") String tenantId,
+            @Param("workflowDefinitionId") UUID workflowDefinitionId,
+            @Param("name") String name,
+            @Param("status") short status,
+            @Param("currentStep") String currentStep,
+            @Param("context") String context,
+            @Param("startedAt") LocalDateTime startedAt,
+            @Param("idempotencyKey") String idempotencyKey,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Release the idempotency key of an instance
+     * 
+     * @param id the workflow instance ID
+     * @param idempotencyKey the key expected on the instance
+     * @return the number of instances updated
+     */
+    @Modifying
+    @Query(value = "UPDATE workflow_instances SET idempotency_key = NULL, idempotency_expires_at = NULL"
+            + " WHERE id = :id AND idempotency_key = :idempotencyKey", nativeQuery = true)
+    int releaseIdempotencyKey(@Param("id") UUID id, @Param("idempotencyKey") String idempotencyKey);
+
+    /**
+     * Release a batch of expired idempotency keys
+     * 
+     * @param limit the maximum number of keys to release
+     * @return the number of keys released
+     */
+    @Modifying
+    @Query(value = "UPDATE workflow_instances SET idempotency_key = NULL, idempotency_expires_at = NULL"
+            + " WHERE id IN (SELECT id FROM workflow_instances"
+            + " WHERE idempotency_expires_at IS NOT NULL AND idempotency_expires_at < NOW() LIMIT :limit)",
+            nativeQuery = true)
+    int releaseExpiredIdempotencyKeys(@Param("limit") int limit);
+
+    /**
+     * The columns of a workflow instance shown in instance lists
+     */
+    interface Listing {
+
+        UUID getId();
+
+        UUID getWorkflowDefinitionId();
+
+        String getName();
+
+        WorkflowInstance.InstanceStatus getStatus();
+
+        String getCurrentStep();
+
+        LocalDateTime getStartedAt();
+
+        LocalDateTime getCompletedAt();
+
+        String getCreatedBy();
+
+        String getUpdatedBy();
+    }
 }
@@ -0,0 +1,447 @@
+package com.workflow.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.workflow.persistence.ReadRoutingDataSource;
+import com.workflow.tenancy.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming bulk export and import of definitions and instances
+ *
+ * The export format is gzip-compressed NDJSON. The first line identifies
+ * the format, then each table starts with a header line naming the table
+ * and its columns, followed by one JSON array of column values per row.
+ * Values are kept in their PostgreSQL text form, so they load back
+ * without conversion. Tables are written in foreign key order.
+ *
+ * Export streams each table with a server-side cursor inside one
+ * read-only transaction, so the file is a consistent snapshot. Import
+ * converts rows to CSV and loads them with COPY FROM STDIN, committing every
+ * workflow.transfer.copy-batch-rows rows. Memory use is constant in both
+ * directions. An import that fails part-way leaves the committed batches
+ * in place; imported ids must not already exist in the target tables.
+ *
+ * Both directions are limited to the tenant bound to the calling thread.
+ * Export only reads that tenant's rows. Import rejects rows of another
+ * tenant, and rows whose parent row (a definition, instance or execution)
+ * is not the tenant's, before they are sent to COPY. Work without a bound
+ * tenant covers all tenants.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+@Slf4j
+public class BulkTransferService {
+
+    static final String FORMAT = "workflow-engine-export";
+    static final int VERSION = 1;
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+    private final DataSource dataSource;
+
+    @Value("${workflow.transfer.fetch-size:5000}")
+    private int fetchSize;
+
+    @Value("${workflow.transfer.copy-batch-rows:50000}")
+    private int copyBatchRows;
+
+    public BulkTransferService(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Write the tenant's definitions, and optionally its instances, to a channel
+     *
+     * @param channel the destination; closed when the export is complete
+     * @param includeInstances whether to export instances and their history
+     * @return row counts per table
+     * @throws IOException if writing fails
+     * @throws SQLException if reading fails
+     */
+    public Map<String, Long> export(WritableByteChannel channel, boolean includeInstances)
+            throws IOException, SQLException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        String tenantId = TenantContext.current();
+        ReadRoutingDataSource.setRoute(ReadRoutingDataSource.Route.READ);
+        try (Connection connection = dataSource.getConnection();
+             OutputStream out = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+             JsonGenerator json = JSON.createGenerator(out)) {
+            // Cursors need a transaction; one transaction also makes the export a consistent snapshot
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            json.setRootValueSeparator(new SerializedString("\n"));
+
+            json.writeStartObject();
+            json.writeStringField("format", FORMAT);
+            json.writeNumberField("version", VERSION);
+            json.writeEndObject();
+
+            for (TransferTable table : TransferTable.values()) {
+                if (table.isInstanceData() && !includeInstances) {
+                    continue;
+                }
+                counts.put(table.getTableName(), exportTable(connection, table, tenantId, json));
+            }
+            json.writeRaw('\n');
+            connection.commit();
+        } finally {
+            ReadRoutingDataSource.setRoute(null);
+        }
+        log.info("Exported {}", counts);
+        return counts;
+    }
+
+    /**
+     * Load an export into the database
+     *
+     * Every row has to belong to the tenant bound to the calling thread.
+     *
+     * @param channel the export to read
+     * @return row counts per table
+     * @throws IOException if the input cannot be read or is not a valid export
+     * @throws SQLException if loading fails
+     */
+    public Map<String, Long> importFrom(ReadableByteChannel channel) throws IOException, SQLException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        String tenantId = TenantContext.current();
+        try (InputStream in = new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+             JsonParser json = JSON.createParser(in);
+             Connection connection = dataSource.getConnection();
+             // The COPY connection is busy while a batch streams, so parent rows are checked on another one
+             Connection checkConnection = tenantId != null ? dataSource.getConnection() : null) {
+            readFormatHeader(json);
+            connection.setAutoCommit(true);
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            TenantScope scope = tenantId != null ? new TenantScope(tenantId, checkConnection) : null;
+
+            TableLoader loader = null;
+            JsonToken token;
+            while ((token = json.nextToken()) != null) {
+                if (token == JsonToken.START_OBJECT) {
+                    if (loader != null) {
+                        counts.merge(loader.table.getTableName(), loader.finish(), Long::sum);
+                    }
+                    loader = readTableHeader(json, copyManager, scope);
+                } else if (token == JsonToken.START_ARRAY) {
+                    if (loader == null) {
+                        throw new IOException("Row before the first table header");
+                    }
+                    loader.add(json);
+                } else {
+                    throw new IOException("Unexpected " + token + " in export");
+                }
+            }
+            if (loader != null) {
+                counts.merge(loader.table.getTableName(), loader.finish(), Long::sum);
+            }
+        }
+        log.info("Imported {}", counts);
+        return counts;
+    }
+
+    private long exportTable(Connection connection, TransferTable table, String tenantId, JsonGenerator json)
+            throws SQLException, IOException {
+        List<String> columns = table.getColumns();
+        json.writeStartObject();
+        json.writeStringField("table", table.getTableName());
+        json.writeArrayFieldStart("columns");
+        for (String column : columns) {
+            json.writeString(column);
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+
+        String sql = "SELECT " + String.join(", ", columns) + " FROM " + table.getTableName();
+        if (tenantId != null) {
+            sql += " WHERE " + table.tenantCondition();
+        }
+        long rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(fetchSize);
+            if (tenantId != null) {
+                statement.setString(1, tenantId);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    json.writeStartArray();
+                    for (int i = 1; i <= columns.size(); i++) {
+                        String value = rs.getString(i);
+                        if (value == null) {
+                            json.writeNull();
+                        } else {
+                            json.writeString(value);
+                        }
+                    }
+                    json.writeEndArray();
+                    rows++;
+                }
+            }
+        }
+        log.debug("Exported {} rows of {}", rows, table.getTableName());
+        return rows;
+    }
+
+    private void readFormatHeader(JsonParser json) throws IOException {
+        String format = null;
+        int version = 0;
+        if (json.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Not a workflow engine export");
+        }
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String field = json.currentName();
+            json.nextToken();
+            if ("format".equals(field)) {
+                format = json.getText();
+            } else if ("version".equals(field)) {
+                version = json.getIntValue();
+            } else {
+                json.skipChildren();
+            }
+        }
+        if (!FORMAT.equals(format) || version != VERSION) {
+            throw new IOException("Unsupported export format " + format + " version " + version);
+        }
+    }
+
+    private TableLoader readTableHeader(JsonParser json, CopyManager copyManager, TenantScope scope)
+            throws IOException {
+        String tableName = null;
+        List<String> columns = new ArrayList<>();
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String field = json.currentName();
+            json.nextToken();
+            if ("table".equals(field)) {
+                tableName = json.getText();
+            } else if ("columns".equals(field)) {
+                while (json.nextToken() == JsonToken.VALUE_STRING) {
+                    columns.add(json.getText());
+                }
+            } else {
+                json.skipChildren();
+            }
+        }
+
+        // Names end up in SQL, so only known tables and columns are accepted
+        String name = tableName;
+        TransferTable table = TransferTable.byTableName(name)
+                .orElseThrow(() -> new IOException("Unknown table " + name + " in export"));
+        if (columns.isEmpty() || !table.getColumns().containsAll(columns)) {
+            throw new IOException("Unknown columns " + columns + " for table " + name);
+        }
+        // Without them a row would take the default tenant or could not be traced to one
+        if (scope != null) {
+            for (String column : new String[] {table.getTenantColumn(), table.getParentColumn()}) {
+                if (column != null && !columns.contains(column)) {
+                    throw new IOException("Table " + name + " lacks column " + column);
+                }
+            }
+        }
+        return new TableLoader(copyManager, table, columns, scope);
+    }
+
+    /**
+     * Tenant an import is limited to, with the connection its parent rows are checked on
+     */
+    private record TenantScope(String tenantId, Connection connection) {
+
+        /**
+         * Check that parent rows exist and belong to the tenant
+         */
+        void checkParents(TransferTable table, Set<String> parentIds) throws IOException {
+            TransferTable parent = table.getParent();
+            String sql = "SELECT count(*) FROM " + parent.getTableName()
+                    + " WHERE id = ANY (?) AND " + parent.tenantCondition();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setArray(1, connection.createArrayOf("uuid", parentIds.toArray()));
+                statement.setString(2, tenantId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    if (rs.getLong(1) != parentIds.size()) {
+                        throw new IOException("Rows of " + table.getTableName() + " reference "
+                                + parent.getTableName() + " rows that are not tenant " + tenantId + "'s");
+                    }
+                }
+            } catch (SQLException ex) {
+                throw new IOException("Could not check the " + parent.getTableName()
+                        + " rows referenced by " + table.getTableName(), ex);
+            }
+        }
+    }
+
+    /**
+     * Loads the rows of one table with COPY, in batches of copyBatchRows
+     */
+    private final class TableLoader {
+
+        private final CopyManager copyManager;
+        private final TransferTable table;
+        private final String sql;
+        private final int columnCount;
+        private final TenantScope scope;
+        private final int tenantIndex;
+        private final int parentIndex;
+        private final Set<String> parentIds = new HashSet<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(COPY_BUFFER_SIZE + BUFFER_SIZE);
+        private final StringBuilder line = new StringBuilder(256);
+
+        private CopyIn copyIn;
+        private long batchRows;
+        private long totalRows;
+
+        TableLoader(CopyManager copyManager, TransferTable table, List<String> columns, TenantScope scope) {
+            this.copyManager = copyManager;
+            this.table = table;
+            this.columnCount = columns.size();
+            this.scope = scope;
+            this.tenantIndex = scope != null ? columns.indexOf(table.getTenantColumn()) : -1;
+            this.parentIndex = scope != null ? columns.indexOf(table.getParentColumn()) : -1;
+            this.sql = "COPY " + table.getTableName() + " (" + String.join(", ", columns) + ") FROM STDIN WITH CSV";
+        }
+
+        void add(JsonParser json) throws IOException {
+            line.setLength(0);
+            int column = 0;
+            JsonToken token;
+            while ((token = json.nextToken()) != JsonToken.END_ARRAY) {
+                if (column > 0) {
+                    line.append(',');
+                }
+                if (column == tenantIndex) {
+                    checkTenant(token == JsonToken.VALUE_NULL ? null : json.getText());
+                } else if (column == parentIndex && token != JsonToken.VALUE_NULL) {
+                    parentIds.add(json.getText());
+                }
+                // Unquoted empty is NULL in CSV; everything else is quoted
+                if (token != JsonToken.VALUE_NULL) {
+                    line.append('"');
+                    String value = json.getText();
+                    for (int i = 0; i < value.length(); i++) {
+                        char c = value.charAt(i);
+                        if (c == '"') {
+                            line.append('"');
+                        }
+                        line.append(c);
+                    }
+                    line.append('"');
+                }
+                column++;
+            }
+            if (column != columnCount) {
+                throw new IOException("Row of " + table.getTableName() + " has " + column
+                        + " values, expected " + columnCount);
+            }
+            line.append('\n');
+            buffer.writeBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+
+            batchRows++;
+            if (buffer.size() >= COPY_BUFFER_SIZE) {
+                flushBuffer();
+            }
+            if (batchRows >= copyBatchRows) {
+                endBatch();
+            }
+        }
+
+        private void checkTenant(String tenantId) throws IOException {
+            if (!scope.tenantId().equals(tenantId)) {
+                cancel();
+                throw new IOException("Row of " + table.getTableName() + " belongs to tenant " + tenantId
+                        + ", not " + scope.tenantId());
+            }
+        }
+
+        long finish() throws IOException {
+            endBatch();
+            log.debug("Imported {} rows of {}", totalRows, table.getTableName());
+            return totalRows;
+        }
+
+        private void flushBuffer() throws IOException {
+            if (buffer.size() == 0) {
+                return;
+            }
+            // Buffered rows are checked before any of them reach the table
+            if (!parentIds.isEmpty()) {
+                try {
+                    scope.checkParents(table, parentIds);
+                } catch (IOException ex) {
+                    cancel();
+                    throw ex;
+                }
+                parentIds.clear();
+            }
+            try {
+                if (copyIn == null) {
+                    copyIn = copyManager.copyIn(sql);
+                }
+                copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+                buffer.reset();
+            } catch (SQLException ex) {
+                cancel();
+                throw new IOException("COPY into " + table.getTableName() + " failed", ex);
+            }
+        }
+
+        private void endBatch() throws IOException {
+            flushBuffer();
+            if (copyIn == null) {
+                return;
+            }
+            try {
+                totalRows += copyIn.endCopy();
+                copyIn = null;
+                batchRows = 0;
+            } catch (SQLException ex) {
+                cancel();
+                throw new IOException("COPY into " + table.getTableName() + " failed", ex);
+            }
+        }
+
+        private void cancel() {
+            if (copyIn != null && copyIn.isActive()) {
+                try {
+                    copyIn.cancelCopy();
+                } catch (SQLException ex) {
+                    log.debug("Could not cancel COPY into {}", table.getTableName(), ex);
+                }
+            }
+            copyIn = null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.workflow.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+
+/**
+ * Validated step graph of a workflow definition, as stored in compiled_definition
+ *
+ * Steps are in step order, so the first step is the start step, and every
+ * next step reference is known to exist.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record CompiledDefinition(int format, List<DefinitionSnapshot.StepSnapshot> steps) {
+
+    static final int FORMAT = 1;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Serialize for the compiled_definition column
+     *
+     * @return the JSON form
+     */
+    public String toJson() {
+        try {
+            return JSON.writeValueAsString(this);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize compiled definition", ex);
+        }
+    }
+
+    /**
+     * Read a stored compiled definition
+     *
+     * @param json the compiled_definition column value
+     * @return the compiled definition
+     */
+    public static CompiledDefinition fromJson(String json) {
+        try {
+            CompiledDefinition compiled = JSON.readValue(json, CompiledDefinition.class);
+            if (compiled.format() != FORMAT) {
+                throw new IllegalStateException("Unsupported compiled definition format " + compiled.format());
+            }
+            return compiled;
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot read compiled definition", ex);
+        }
+    }
+}
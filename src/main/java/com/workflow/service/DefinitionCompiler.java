@@ -0,0 +1,301 @@
+package com.workflow.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowStep;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates workflow definitions and compiles their step graph
+ *
+ * Parses the definition document and every step's JSON once, resolves
+ * next step references to indexes, and checks the graph:
+ *
+ * - every referenced step exists and step names and orders are unique
+ * - every step is reachable from the start step (the lowest step order)
+ * - there is at least one end step (no next steps)
+ * - an end step is reachable from every step, so no loop can run forever
+ * - step SLAs are valid and escalate to existing steps
+ *
+ * All checks are linear in the number of steps and references, so large
+ * definitions with thousands of steps stay cheap to compile.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Slf4j
+public class DefinitionCompiler {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final int MAX_LISTED_STEPS = 10;
+
+    /**
+     * Validate the definition document of a definition without steps
+     *
+     * @param definition the workflow definition
+     * @throws DefinitionValidationException if the document is not a JSON object
+     */
+    public void checkDocument(WorkflowDefinition definition) {
+        List<String> problems = new ArrayList<>();
+        checkObject("definition", definition.getDefinition(), false, problems);
+        if (!problems.isEmpty()) {
+            throw new DefinitionValidationException(definition.getName(), problems);
+        }
+    }
+
+    /**
+     * Validate a definition and compile its step graph
+     *
+     * @param definition the workflow definition with its steps
+     * @return the compiled definition
+     * @throws DefinitionValidationException listing every problem found
+     */
+    public CompiledDefinition compile(WorkflowDefinition definition) {
+        long started = System.nanoTime();
+        List<String> problems = new ArrayList<>();
+        checkObject("definition", definition.getDefinition(), false, problems);
+
+        List<WorkflowStep> steps = definition.getSteps() == null ? List.of() : new ArrayList<>(definition.getSteps());
+        if (steps.isEmpty()) {
+            problems.add("definition has no steps");
+            throw new DefinitionValidationException(definition.getName(), problems);
+        }
+        for (WorkflowStep step : steps) {
+            if (step.getStepName() == null || step.getStepName().isBlank()) {
+                problems.add("a step has no name");
+            }
+            if (step.getStepOrder() == null) {
+                problems.add("step " + step.getStepName() + " has no step order");
+            }
+            if (step.getStepType() == null) {
+                problems.add("step " + step.getStepName() + " has no step type");
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new DefinitionValidationException(definition.getName(), problems);
+        }
+        steps.sort(Comparator.comparing(WorkflowStep::getStepOrder));
+
+        int count = steps.size();
+        Map<String, Integer> indexes = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            WorkflowStep step = steps.get(i);
+            if (indexes.putIfAbsent(step.getStepName(), i) != null) {
+                problems.add("step name " + step.getStepName() + " is used more than once");
+            }
+            if (i > 0 && step.getStepOrder().equals(steps.get(i - 1).getStepOrder())) {
+                problems.add("step order " + step.getStepOrder() + " is used more than once");
+            }
+        }
+
+        // Resolve references to indexes; unresolved ones are reported and left out of the graph
+        int[][] next = new int[count][];
+        List<List<String>> nextNames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WorkflowStep step = steps.get(i);
+            int known = problems.size();
+            checkObject("configuration of step " + step.getStepName(), step.getConfiguration(), true, problems);
+            if (problems.size() == known) {
+                checkSla(step, indexes, problems);
+            }
+            checkObject("conditions of step " + step.getStepName(), step.getConditions(), true, problems);
+
+            List<String> names;
+            try {
+                names = parseNextSteps(step.getNextSteps());
+            } catch (IllegalArgumentException ex) {
+                problems.add("next steps of step " + step.getStepName() + " " + ex.getMessage());
+                names = List.of();
+            }
+            nextNames.add(names);
+            int[] edges = new int[names.size()];
+            int resolved = 0;
+            for (String name : names) {
+                Integer target = indexes.get(name);
+                if (target == null) {
+                    problems.add("step " + step.getStepName() + " references unknown step " + name);
+                } else {
+                    edges[resolved++] = target;
+                }
+            }
+            next[i] = resolved == edges.length ? edges : Arrays.copyOf(edges, resolved);
+        }
+
+        analyzeGraph(steps, next, problems);
+        if (!problems.isEmpty()) {
+            throw new DefinitionValidationException(definition.getName(), problems);
+        }
+
+        List<DefinitionSnapshot.StepSnapshot> compiled = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WorkflowStep step = steps.get(i);
+            compiled.add(new DefinitionSnapshot.StepSnapshot(step.getStepName(), step.getStepType(),
+                    step.getStepOrder(), step.getConfiguration(), List.copyOf(nextNames.get(i)), step.getConditions()));
+        }
+        log.debug("Compiled workflow definition {} with {} steps in {} us",
+                definition.getName(), count, (System.nanoTime() - started) / 1000);
+        return new CompiledDefinition(CompiledDefinition.FORMAT, compiled);
+    }
+
+    /**
+     * Parse a next_steps value
+     *
+     * @param nextSteps JSON array of step names, or null
+     * @return the step names, empty for an end step
+     * @throws IllegalArgumentException if the value is not an array of strings
+     */
+    static List<String> parseNextSteps(String nextSteps) {
+        if (nextSteps == null || nextSteps.isBlank()) {
+            return List.of();
+        }
+        JsonNode node;
+        try {
+            node = JSON.readTree(nextSteps);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("are not valid JSON");
+        }
+        if (node.isNull()) {
+            return List.of();
+        }
+        if (!node.isArray()) {
+            throw new IllegalArgumentException("are not a JSON array");
+        }
+        List<String> names = new ArrayList<>(node.size());
+        for (JsonNode element : node) {
+            if (!element.isTextual()) {
+                throw new IllegalArgumentException("contain a value that is not a step name");
+            }
+            names.add(element.asText());
+        }
+        return names;
+    }
+
+    private void analyzeGraph(List<WorkflowStep> steps, int[][] next, List<String> problems) {
+        int count = next.length;
+
+        // Forward reachability from the start step
+        boolean[] reachable = new boolean[count];
+        int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+        reachable[0] = true;
+        queue[tail++] = 0;
+        while (head < tail) {
+            for (int target : next[queue[head++]]) {
+                if (!reachable[target]) {
+                    reachable[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+
+        // Reverse adjacency in compressed form: predecessors of i are
+        // predecessors[offsets[i] .. offsets[i + 1])
+        int[] offsets = new int[count + 1];
+        for (int[] edges : next) {
+            for (int target : edges) {
+                offsets[target + 1]++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] predecessors = new int[offsets[count]];
+        int[] fill = Arrays.copyOf(offsets, count);
+        for (int source = 0; source < count; source++) {
+            for (int target : next[source]) {
+                predecessors[fill[target]++] = source;
+            }
+        }
+
+        // Backward reachability from the end steps
+        boolean[] canFinish = new boolean[count];
+        head = 0;
+        tail = 0;
+        for (int i = 0; i < count; i++) {
+            if (next[i].length == 0) {
+                canFinish[i] = true;
+                queue[tail++] = i;
+            }
+        }
+        if (tail == 0) {
+            problems.add("definition has no end step");
+        }
+        while (head < tail) {
+            int step = queue[head++];
+            for (int p = offsets[step]; p < offsets[step + 1]; p++) {
+                int source = predecessors[p];
+                if (!canFinish[source]) {
+                    canFinish[source] = true;
+                    queue[tail++] = source;
+                }
+            }
+        }
+
+        List<String> unreachable = new ArrayList<>();
+        List<String> looping = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (!reachable[i]) {
+                unreachable.add(steps.get(i).getStepName());
+            } else if (!canFinish[i] && tail > 0) {
+                looping.add(steps.get(i).getStepName());
+            }
+        }
+        if (!unreachable.isEmpty()) {
+            problems.add("steps not reachable from start step " + steps.get(0).getStepName() + ": "
+                    + describe(unreachable));
+        }
+        if (!looping.isEmpty()) {
+            problems.add("steps that can never reach an end step: " + describe(looping));
+        }
+    }
+
+    private static void checkSla(WorkflowStep step, Map<String, Integer> indexes, List<String> problems) {
+        try {
+            StepSla.of(step.getConfiguration())
+                    .map(StepSla::escalateTo)
+                    .filter(escalateTo -> !indexes.containsKey(escalateTo))
+                    .ifPresent(escalateTo -> problems.add("step " + step.getStepName()
+                            + " escalates to unknown step " + escalateTo));
+        } catch (IllegalArgumentException ex) {
+            problems.add("SLA of step " + step.getStepName() + ": " + ex.getMessage());
+        }
+    }
+
+    private static void checkObject(String what, String json, boolean optional, List<String> problems) {
+        if (json == null || json.isBlank()) {
+            if (!optional) {
+                problems.add(what + " is missing");
+            }
+            return;
+        }
+        try {
+            JsonNode node = JSON.readTree(json);
+            if (!node.isObject() && !(optional && node.isNull())) {
+                problems.add(what + " is not a JSON object");
+            }
+        } catch (JsonProcessingException ex) {
+            problems.add(what + " is not valid JSON");
+        }
+    }
+
+    private static String describe(List<String> stepNames) {
+        if (stepNames.size() <= MAX_LISTED_STEPS) {
+            return String.join(", ", stepNames);
+        }
+        return String.join(", ", stepNames.subList(0, MAX_LISTED_STEPS))
+                + " and " + (stepNames.size() - MAX_LISTED_STEPS) + " more";
+    }
+}
@@ -0,0 +1,107 @@
+package com.workflow.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Step-level difference between two versions of a workflow definition
+ *
+ * Every source step is mapped to a target step: explicitly, or to the
+ * target step of the same name. Source steps without a mapping are
+ * listed as unmapped; instances waiting in them cannot be migrated.
+ *
+ * @param sourceId the workflow definition instances are migrated from
+ * @param targetId the workflow definition instances are migrated to
+ * @param mappings the step mapping, in source step order
+ * @param addedSteps target steps no source step maps to
+ * @param changedSteps steps of the same name whose type, configuration, conditions or next steps differ
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record DefinitionDiff(
+        UUID sourceId,
+        UUID targetId,
+        List<StepMapping> mappings,
+        List<String> addedSteps,
+        List<String> changedSteps) {
+
+    /**
+     * Target of one source step
+     *
+     * @param sourceStep the step in the source definition
+     * @param targetStep the step in the target definition, or null if unmapped
+     * @param explicit true if the mapping was given rather than matched by name
+     */
+    public record StepMapping(String sourceStep, String targetStep, boolean explicit) {
+    }
+
+    /**
+     * Compute the difference between two definitions
+     *
+     * @param source the definition to migrate from
+     * @param target the definition to migrate to
+     * @param stepMapping explicit source to target step names; overrides matching by name
+     * @return the diff
+     * @throws DefinitionMigrationException if the explicit mapping names unknown steps
+     */
+    public static DefinitionDiff between(DefinitionSnapshot source, DefinitionSnapshot target,
+                                         Map<String, String> stepMapping) {
+        for (Map.Entry<String, String> entry : stepMapping.entrySet()) {
+            if (source.step(entry.getKey()).isEmpty()) {
+                throw new DefinitionMigrationException("Step " + entry.getKey() + " is not in the source definition");
+            }
+            if (target.step(entry.getValue()).isEmpty()) {
+                throw new DefinitionMigrationException("Step " + entry.getValue() + " is not in the target definition");
+            }
+        }
+
+        List<StepMapping> mappings = new ArrayList<>(source.steps().size());
+        List<String> changed = new ArrayList<>();
+        Map<String, Boolean> reached = new LinkedHashMap<>();
+        target.steps().forEach(step -> reached.put(step.stepName(), false));
+
+        for (DefinitionSnapshot.StepSnapshot step : source.steps()) {
+            String explicit = stepMapping.get(step.stepName());
+            String mapped = explicit != null ? explicit
+                    : target.step(step.stepName()).map(DefinitionSnapshot.StepSnapshot::stepName).orElse(null);
+            mappings.add(new StepMapping(step.stepName(), mapped, explicit != null));
+            if (mapped != null) {
+                reached.put(mapped, true);
+            }
+            target.step(step.stepName())
+                    .filter(same -> !sameBehaviour(step, same))
+                    .ifPresent(same -> changed.add(step.stepName()));
+        }
+
+        List<String> added = reached.entrySet().stream()
+                .filter(entry -> !entry.getValue())
+                .map(Map.Entry::getKey)
+                .toList();
+        return new DefinitionDiff(source.id(), target.id(), List.copyOf(mappings), added, List.copyOf(changed));
+    }
+
+    /**
+     * Get the target of a source step
+     *
+     * @param sourceStep the step in the source definition
+     * @return the target step, or null if unmapped
+     */
+    public String targetOf(String sourceStep) {
+        return mappings.stream()
+                .filter(mapping -> mapping.sourceStep().equals(sourceStep))
+                .map(StepMapping::targetStep)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static boolean sameBehaviour(DefinitionSnapshot.StepSnapshot a, DefinitionSnapshot.StepSnapshot b) {
+        return a.stepType() == b.stepType()
+                && Objects.equals(a.configuration(), b.configuration())
+                && Objects.equals(a.conditions(), b.conditions())
+                && a.nextSteps().equals(b.nextSteps());
+    }
+}
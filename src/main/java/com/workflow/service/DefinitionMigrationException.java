@@ -0,0 +1,14 @@
+package com.workflow.service;
+
+/**
+ * Thrown when running instances cannot be migrated between two definitions
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class DefinitionMigrationException extends IllegalArgumentException {
+
+    public DefinitionMigrationException(String message) {
+        super(message);
+    }
+}
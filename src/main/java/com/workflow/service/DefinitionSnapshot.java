@@ -0,0 +1,141 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowStep;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of a workflow definition and its steps
+ *
+ * Detached from the persistence context so it can be shared between
+ * threads and served from {@link WorkflowDefinitionCache} without
+ * touching the database. Steps are indexed by name when the snapshot is
+ * created, so finding a step does not scan the step list.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record DefinitionSnapshot(
+        UUID id,
+        String tenantId,
+        String name,
+        Integer version,
+        WorkflowDefinition.WorkflowStatus status,
+        LocalDateTime updatedAt,
+        List<StepSnapshot> steps,
+        List<SearchKey> searchKeys,
+        Map<String, StepSnapshot> stepsByName) {
+
+    /**
+     * Create a snapshot, indexing its steps by name
+     *
+     * @param id the definition ID
+     * @param tenantId the tenant ID
+     * @param name the definition name
+     * @param version the definition version
+     * @param status the definition status
+     * @param updatedAt when the definition was last updated
+     * @param steps the steps in step order
+     * @param searchKeys the searchable context keys
+     */
+    public DefinitionSnapshot(UUID id, String tenantId, String name, Integer version,
+                              WorkflowDefinition.WorkflowStatus status, LocalDateTime updatedAt,
+                              List<StepSnapshot> steps, List<SearchKey> searchKeys) {
+        this(id, tenantId, name, version, status, updatedAt, steps, searchKeys, index(steps));
+    }
+
+    /**
+     * Create a snapshot from a managed definition, without searchable keys
+     *
+     * Uses the compiled step graph when the definition has one, so the
+     * steps are not loaded. Definitions compiled before are read from their
+     * workflow_steps rows.
+     *
+     * @param definition the definition, with its steps loadable
+     * @return the snapshot
+     */
+    public static DefinitionSnapshot of(WorkflowDefinition definition) {
+        List<StepSnapshot> steps;
+        if (definition.getCompiledDefinition() != null) {
+            steps = CompiledDefinition.fromJson(definition.getCompiledDefinition()).steps();
+        } else {
+            steps = definition.getSteps() == null ? List.of() : definition.getSteps().stream()
+                    .sorted(Comparator.comparing(WorkflowStep::getStepOrder))
+                    .map(StepSnapshot::of)
+                    .toList();
+        }
+        return new DefinitionSnapshot(definition.getId(), definition.getTenantId(), definition.getName(),
+                definition.getVersion(), definition.getStatus(), definition.getUpdatedAt(), steps, List.of());
+    }
+
+    /**
+     * Copy this snapshot with the definition's searchable context keys
+     *
+     * @param searchKeys the searchable keys
+     * @return the snapshot with the keys
+     */
+    public DefinitionSnapshot withSearchKeys(List<SearchKey> searchKeys) {
+        return new DefinitionSnapshot(id, tenantId, name, version, status, updatedAt, steps, List.copyOf(searchKeys),
+                stepsByName);
+    }
+
+    /**
+     * Get the step with the lowest step order
+     *
+     * @return the first step, or null if the definition has no steps
+     */
+    public StepSnapshot firstStep() {
+        return steps.isEmpty() ? null : steps.get(0);
+    }
+
+    /**
+     * Find a step by name
+     *
+     * @param stepName the step name
+     * @return Optional containing the step if the definition has it
+     */
+    public Optional<StepSnapshot> step(String stepName) {
+        return Optional.ofNullable(stepsByName.get(stepName));
+    }
+
+    /**
+     * Check whether new instances can be started from this definition
+     *
+     * @return true if the definition is active
+     */
+    public boolean isActive() {
+        return status == WorkflowDefinition.WorkflowStatus.ACTIVE;
+    }
+
+    private static Map<String, StepSnapshot> index(List<StepSnapshot> steps) {
+        Map<String, StepSnapshot> stepsByName = new HashMap<>(steps.size() * 2);
+        // Definitions stored before compilation may repeat a name; the first step wins as before
+        steps.forEach(step -> stepsByName.putIfAbsent(step.stepName(), step));
+        return Collections.unmodifiableMap(stepsByName);
+    }
+
+    /**
+     * Immutable snapshot of a workflow step
+     */
+    public record StepSnapshot(
+            String stepName,
+            WorkflowStep.StepType stepType,
+            Integer stepOrder,
+            String configuration,
+            List<String> nextSteps,
+            String conditions) {
+
+        static StepSnapshot of(WorkflowStep step) {
+            return new StepSnapshot(step.getStepName(), step.getStepType(), step.getStepOrder(),
+                    step.getConfiguration(), DefinitionCompiler.parseNextSteps(step.getNextSteps()), step.getConditions());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowDefinition;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * Identifies one state of a workflow definition for HTTP validation
+ *
+ * Every change to a definition moves its updated_at, so the ID, version
+ * and update time together name exactly one response body and serve as a
+ * strong entity tag. Stamps can be taken from the definition cache or a
+ * narrow query, without loading the definition document.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record DefinitionStamp(UUID id, Integer version, LocalDateTime updatedAt) {
+
+    public static DefinitionStamp of(WorkflowDefinition definition) {
+        return new DefinitionStamp(definition.getId(), definition.getVersion(), definition.getUpdatedAt());
+    }
+
+    public static DefinitionStamp of(DefinitionSnapshot snapshot) {
+        return new DefinitionStamp(snapshot.id(), snapshot.version(), snapshot.updatedAt());
+    }
+
+    /**
+     * Get the entity tag
+     *
+     * @return the quoted strong entity tag
+     */
+    public String eTag() {
+        // Microseconds, as stored, so a stamp taken before and after a round trip to the database agrees
+        long updated = updatedAt == null ? 0
+                : ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), updatedAt);
+        return "\"" + id + "-" + version + "-" + Long.toString(updated, 36) + "\"";
+    }
+
+    /**
+     * Get the last modification time
+     *
+     * @return the update time in the server's zone, or null if never updated
+     */
+    public ZonedDateTime lastModified() {
+        return updatedAt == null ? null : updatedAt.atZone(ZoneId.systemDefault());
+    }
+}
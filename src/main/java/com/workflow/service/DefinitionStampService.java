@@ -0,0 +1,70 @@
+package com.workflow.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Looks up definition version stamps for conditional requests
+ *
+ * Clients revalidate definitions far more often than definitions change,
+ * so stamps are taken from {@link WorkflowDefinitionCache} first and an
+ * unchanged definition is confirmed without a transaction or a pooled
+ * connection. Only on a cache miss is the stamp queried, still without
+ * reading the definition document. The cache may miss changes made on
+ * other nodes for up to workflow.definition-cache.ttl, as instance starts
+ * do.
+ *
+ * The latest version of a name is always queried, since a newer version
+ * may have been created on any node.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+public class DefinitionStampService {
+
+    private final WorkflowDefinitionCache workflowDefinitionCache;
+    private final WorkflowQueryService workflowQueryService;
+
+    public DefinitionStampService(WorkflowDefinitionCache workflowDefinitionCache,
+                                  WorkflowQueryService workflowQueryService) {
+        this.workflowDefinitionCache = workflowDefinitionCache;
+        this.workflowQueryService = workflowQueryService;
+    }
+
+    /**
+     * Get the version stamp of a workflow definition by ID
+     *
+     * @param id the workflow definition ID
+     * @return Optional containing the stamp if found
+     */
+    public Optional<DefinitionStamp> find(UUID id) {
+        Optional<DefinitionSnapshot> cached = workflowDefinitionCache.getIfPresent(id);
+        return cached.isPresent() ? cached.map(DefinitionStamp::of) : workflowQueryService.findDefinitionStamp(id);
+    }
+
+    /**
+     * Get the version stamp of a workflow definition by name and version
+     *
+     * @param name the workflow name
+     * @param version the workflow version
+     * @return Optional containing the stamp if found
+     */
+    public Optional<DefinitionStamp> find(String name, Integer version) {
+        Optional<DefinitionSnapshot> cached = workflowDefinitionCache.getIfPresent(name, version);
+        return cached.isPresent() ? cached.map(DefinitionStamp::of)
+                : workflowQueryService.findDefinitionStamp(name, version);
+    }
+
+    /**
+     * Get the version stamp of the latest version of a workflow definition
+     *
+     * @param name the workflow name
+     * @return Optional containing the stamp if found
+     */
+    public Optional<DefinitionStamp> findLatest(String name) {
+        return workflowQueryService.findLatestDefinitionStamp(name);
+    }
+}
@@ -0,0 +1,23 @@
+package com.workflow.service;
+
+import java.util.List;
+
+/**
+ * Thrown when a workflow definition fails compilation
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class DefinitionValidationException extends IllegalArgumentException {
+
+    private final List<String> problems;
+
+    public DefinitionValidationException(String definitionName, List<String> problems) {
+        super(String.format("Workflow definition '%s' is invalid: %s", definitionName, String.join("; ", problems)));
+        this.problems = List.copyOf(problems);
+    }
+
+    public List<String> getProblems() {
+        return problems;
+    }
+}
@@ -0,0 +1,150 @@
+package com.workflow.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mergeable sketch of durations for percentile estimates
+ *
+ * Durations in milliseconds are counted in logarithmic bins, each about
+ * 2% wider than the one before, so every percentile is estimated within
+ * 1% of the true duration whatever the spread of the data. Sketches merge
+ * exactly by adding bin counts, so percentiles over any range of rollup
+ * buckets need no raw data. A bucket holds a few hundred bins at most,
+ * however many durations it counts.
+ *
+ * Serialized as variable-length integers: the count of zero durations,
+ * then the index delta and count of every non-empty bin.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public final class DurationSketch {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final TreeMap<Integer, Long> bins = new TreeMap<>();
+    private long zeros;
+    private long count;
+
+    /**
+     * Count a duration
+     *
+     * @param millis the duration in milliseconds; negative durations count as zero
+     */
+    public void add(long millis) {
+        if (millis <= 0) {
+            zeros++;
+        } else {
+            bins.merge((int) Math.ceil(Math.log(millis) / LOG_GAMMA), 1L, Long::sum);
+        }
+        count++;
+    }
+
+    /**
+     * Add the durations counted by another sketch
+     *
+     * @param other the other sketch
+     */
+    public void merge(DurationSketch other) {
+        other.bins.forEach((index, binCount) -> bins.merge(index, binCount, Long::sum));
+        zeros += other.zeros;
+        count += other.count;
+    }
+
+    /**
+     * Estimate a percentile
+     *
+     * @param quantile the quantile, between 0 and 1
+     * @return the estimated duration in milliseconds, or null if the sketch is empty
+     */
+    public Long quantile(double quantile) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, quantile)) * (count - 1));
+        if (rank < zeros) {
+            return 0L;
+        }
+        long seen = zeros;
+        for (Map.Entry<Integer, Long> bin : bins.entrySet()) {
+            seen += bin.getValue();
+            if (seen > rank) {
+                // Midpoint of the bin in relative terms, so the error is the same on both sides
+                return Math.round(2 * Math.pow(GAMMA, bin.getKey()) / (GAMMA + 1));
+            }
+        }
+        return Math.round(2 * Math.pow(GAMMA, bins.lastKey()) / (GAMMA + 1));
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Serialize the sketch
+     *
+     * @return the compact binary form
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + bins.size() * 3);
+        writeVarLong(out, zeros);
+        int previous = 0;
+        for (Map.Entry<Integer, Long> bin : bins.entrySet()) {
+            int delta = bin.getKey() - previous;
+            writeVarLong(out, (delta << 1) ^ (delta >> 31));
+            writeVarLong(out, bin.getValue());
+            previous = bin.getKey();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Read a serialized sketch
+     *
+     * @param bytes the binary form written by {@link #toBytes()}
+     * @return the sketch
+     * @throws IllegalArgumentException if the bytes are not a sketch
+     */
+    public static DurationSketch fromBytes(byte[] bytes) {
+        DurationSketch sketch = new DurationSketch();
+        int[] position = {0};
+        sketch.zeros = readVarLong(bytes, position);
+        sketch.count = sketch.zeros;
+        int index = 0;
+        while (position[0] < bytes.length) {
+            int zigzag = (int) readVarLong(bytes, position);
+            index += (zigzag >>> 1) ^ -(zigzag & 1);
+            long binCount = readVarLong(bytes, position);
+            sketch.bins.put(index, binCount);
+            sketch.count += binCount;
+        }
+        return sketch;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Duration sketch is truncated");
+            }
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Duration sketch is malformed");
+    }
+}
@@ -0,0 +1,265 @@
+package com.workflow.service;
+
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.InstanceEvent;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.repository.WorkflowInstanceRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Instance state store backed by an append-only event log
+ *
+ * Each transition inserts one compact row into workflow_instance_events
+ * instead of rewriting the instance row and every index on it. The
+ * workflow_instances row serves as a snapshot. Step changes, the bulk of
+ * all transitions, are folded into it every
+ * workflow.persistence.snapshot-interval events. Status changes are folded
+ * at once: they are rare, and status lists, inboxes and routing filter on
+ * the status column. So the status column is always current, while the
+ * current step of the row may lag behind the log.
+ *
+ * Current state is rebuilt in memory from the snapshot plus the tail of
+ * events after it. Status lists take the current step from the same tail
+ * (see {@link #findListingsByStatus}). Two writers racing on the same
+ * instance collide on the event primary key; that is reported as a
+ * concurrency failure so the transaction is retried against the new tail.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(name = "workflow.persistence.mode", havingValue = "event-sourced")
+@Slf4j
+public class EventSourcedInstanceStateStore implements InstanceStateStore {
+
+    private static final String SELECT_TAIL = "SELECT sequence_number, event_type, status, current_step, occurred_at"
+            + " FROM workflow_instance_events"
+            + " WHERE workflow_instance_id = ? AND sequence_number > ?"
+            + " ORDER BY sequence_number";
+
+    private static final String INSERT_EVENT = "INSERT INTO workflow_instance_events"
+            + " (workflow_instance_id, sequence_number, event_type, status, current_step, occurred_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String FOLD_SNAPSHOT = "UPDATE workflow_instances"
+            + " SET status_code = ?, current_step = ?, completed_at = ?, snapshot_sequence = ?"
+            + " WHERE id = ? AND snapshot_sequence < ?";
+
+    private static final String SELECT_TAIL_STEPS = "SELECT DISTINCT ON (e.workflow_instance_id)"
+            + " e.workflow_instance_id, e.current_step"
+            + " FROM workflow_instance_events e JOIN workflow_instances i ON i.id = e.workflow_instance_id"
+            + " WHERE e.workflow_instance_id = ANY(?) AND e.sequence_number > i.snapshot_sequence"
+            + " AND e.current_step IS NOT NULL"
+            + " ORDER BY e.workflow_instance_id, e.sequence_number DESC";
+
+    private static final String SELECT_VERSION = "SELECT workflow_definition_id, GREATEST(snapshot_sequence,"
+            + " COALESCE((SELECT max(sequence_number) FROM workflow_instance_events WHERE workflow_instance_id = ?), 0))"
+            + " AS sequence_number FROM workflow_instances WHERE id = ?";
+
+    private final WorkflowInstanceRepository workflowInstanceRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final int snapshotInterval;
+
+    public EventSourcedInstanceStateStore(
+            WorkflowInstanceRepository workflowInstanceRepository,
+            JdbcTemplate jdbcTemplate,
+            EntityManager entityManager,
+            @Value("${workflow.persistence.snapshot-interval:16}") int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("workflow.persistence.snapshot-interval must be positive");
+        }
+        this.workflowInstanceRepository = workflowInstanceRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.snapshotInterval = snapshotInterval;
+        log.info("Using event-sourced instance persistence, folding steps every {} events", snapshotInterval);
+    }
+
+    @Override
+    public Optional<WorkflowInstance> load(UUID id) {
+        return rebuild(id).map(Rebuilt::instance);
+    }
+
+    @Override
+    public Optional<WorkflowInstance> transition(UUID id, Function<WorkflowInstance, InstanceEvent> decide) {
+        return rebuild(id).map(rebuilt -> {
+            WorkflowInstance instance = rebuilt.instance();
+            InstanceEvent event = decide.apply(instance);
+            long sequence = rebuilt.sequence() + 1;
+
+            append(id, sequence, event);
+            event.applyTo(instance);
+            instance.setEventSequence(sequence);
+            if (event.status() != null || sequence - rebuilt.snapshotSequence() >= snapshotInterval) {
+                fold(instance, sequence);
+            }
+            return instance;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Instances are found by the status column of their row, which every
+     * status change is folded into, and get the current step from their
+     * unfolded tail with one query for the whole list.
+     */
+    @Override
+    public List<WorkflowInstanceRepository.Listing> findListingsByStatus(WorkflowInstance.InstanceStatus status) {
+        List<WorkflowInstanceRepository.Listing> listings = workflowInstanceRepository.findListingsByStatus(status);
+        if (listings.isEmpty()) {
+            return listings;
+        }
+        Map<UUID, String> steps = new HashMap<>();
+        jdbcTemplate.query(SELECT_TAIL_STEPS,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid",
+                        listings.stream().map(WorkflowInstanceRepository.Listing::getId).toArray())),
+                rs -> {
+                    steps.put(rs.getObject("workflow_instance_id", UUID.class), rs.getString("current_step"));
+                });
+        if (steps.isEmpty()) {
+            return listings;
+        }
+        return listings.stream()
+                .map(listing -> steps.containsKey(listing.getId())
+                        ? new TailListing(listing, steps.get(listing.getId()))
+                        : listing)
+                .toList();
+    }
+
+    @Override
+    public boolean isCurrent(WorkflowInstance instance) {
+        // Every transition appends an event; migrations change the definition in the row
+        return instance.getEventSequence() != null
+                && Boolean.TRUE.equals(jdbcTemplate.query(SELECT_VERSION, rs -> rs.next()
+                        && rs.getLong("sequence_number") == instance.getEventSequence()
+                        && Objects.equals(rs.getObject("workflow_definition_id", UUID.class),
+                                instance.getWorkflowDefinition().getId()), instance.getId(), instance.getId()));
+    }
+
+    private Optional<Rebuilt> rebuild(UUID id) {
+        return workflowInstanceRepository.findById(id).map(instance -> {
+            // Detached so folding the tail in memory never turns into an UPDATE
+            entityManager.detach(instance);
+            long snapshotSequence = instance.getSnapshotSequence() != null ? instance.getSnapshotSequence() : 0L;
+
+            List<InstanceEvent> tail = jdbcTemplate.query(SELECT_TAIL, (rs, rowNum) -> new InstanceEvent(
+                    CodedEnum.fromCode(InstanceEvent.Type.class, rs.getShort("event_type")),
+                    rs.getObject("status") != null
+                            ? CodedEnum.fromCode(WorkflowInstance.InstanceStatus.class, rs.getShort("status"))
+                            : null,
+                    rs.getString("current_step"),
+                    rs.getTimestamp("occurred_at").toLocalDateTime()), id, snapshotSequence);
+
+            tail.forEach(event -> event.applyTo(instance));
+            instance.setEventSequence(snapshotSequence + tail.size());
+            return new Rebuilt(instance, snapshotSequence, snapshotSequence + tail.size());
+        });
+    }
+
+    private void append(UUID id, long sequence, InstanceEvent event) {
+        try {
+            jdbcTemplate.update(INSERT_EVENT, ps -> {
+                ps.setObject(1, id);
+                ps.setLong(2, sequence);
+                ps.setShort(3, event.type().getCode());
+                if (event.status() != null) {
+                    ps.setShort(4, event.status().getCode());
+                } else {
+                    ps.setNull(4, Types.SMALLINT);
+                }
+                ps.setString(5, event.currentStep());
+                ps.setTimestamp(6, Timestamp.valueOf(event.occurredAt()));
+            });
+        } catch (DuplicateKeyException ex) {
+            throw new ConcurrencyFailureException("Concurrent transition on workflow instance " + id, ex);
+        }
+    }
+
+    private void fold(WorkflowInstance instance, long sequence) {
+        jdbcTemplate.update(FOLD_SNAPSHOT, ps -> {
+            ps.setShort(1, instance.getStatus().getCode());
+            ps.setString(2, instance.getCurrentStep());
+            ps.setTimestamp(3, instance.getCompletedAt() != null ? Timestamp.valueOf(instance.getCompletedAt()) : null);
+            ps.setLong(4, sequence);
+            ps.setObject(5, instance.getId());
+            ps.setLong(6, sequence);
+        });
+        instance.setSnapshotSequence(sequence);
+        log.debug("Folded events up to {} into workflow instance {}", sequence, instance.getId());
+    }
+
+    private record Rebuilt(WorkflowInstance instance, long snapshotSequence, long sequence) {
+    }
+
+    /**
+     * Listing of an instance whose current step has not been folded into its row yet
+     */
+    private record TailListing(WorkflowInstanceRepository.Listing row, String currentStep)
+            implements WorkflowInstanceRepository.Listing {
+
+        @Override
+        public UUID getId() {
+            return row.getId();
+        }
+
+        @Override
+        public UUID getWorkflowDefinitionId() {
+            return row.getWorkflowDefinitionId();
+        }
+
+        @Override
+        public String getName() {
+            return row.getName();
+        }
+
+        @Override
+        public WorkflowInstance.InstanceStatus getStatus() {
+            return row.getStatus();
+        }
+
+        @Override
+        public String getCurrentStep() {
+            return currentStep;
+        }
+
+        @Override
+        public LocalDateTime getStartedAt() {
+            return row.getStartedAt();
+        }
+
+        @Override
+        public LocalDateTime getCompletedAt() {
+            return row.getCompletedAt();
+        }
+
+        @Override
+        public String getCreatedBy() {
+            return row.getCreatedBy();
+        }
+
+        @Override
+        public String getUpdatedBy() {
+            return row.getUpdatedBy();
+        }
+    }
+}
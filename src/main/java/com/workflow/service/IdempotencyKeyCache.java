@@ -0,0 +1,92 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Small per-node LRU of recently used idempotency keys
+ *
+ * Answers hot retries of the same start request without a database
+ * round-trip. Entries are keyed by tenant and key. The unique index on
+ * workflow_instances (tenant_id, idempotency_key) remains the authority; a miss here only costs the single upsert.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+public class IdempotencyKeyCache {
+
+    private final Map<String, WorkflowInstance> entries;
+
+    public IdempotencyKeyCache(@Value("${workflow.idempotency.local-cache-size:10000}") int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WorkflowInstance> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the instance started with a key, if the key is cached and not expired
+     *
+     * @param tenantId the tenant of the request
+     * @param idempotencyKey the client-supplied key
+     * @return Optional containing the instance as returned to the first request
+     */
+    public Optional<WorkflowInstance> get(String tenantId, String idempotencyKey) {
+        String cacheKey = cacheKey(tenantId, idempotencyKey);
+        synchronized (entries) {
+            WorkflowInstance instance = entries.get(cacheKey);
+            if (instance == null) {
+                return Optional.empty();
+            }
+            if (instance.getIdempotencyExpiresAt() == null
+                    || instance.getIdempotencyExpiresAt().isBefore(LocalDateTime.now())) {
+                entries.remove(cacheKey);
+                return Optional.empty();
+            }
+            return Optional.of(instance);
+        }
+    }
+
+    /**
+     * Remember the instance started with a key once the current transaction commits
+     *
+     * @param tenantId the tenant of the request
+     * @param idempotencyKey the client-supplied key
+     * @param instance the instance holding the key
+     */
+    public void putAfterCommit(String tenantId, String idempotencyKey, WorkflowInstance instance) {
+        String cacheKey = cacheKey(tenantId, idempotencyKey);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(cacheKey, instance);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(cacheKey, instance);
+            }
+        });
+    }
+
+    private void put(String cacheKey, WorkflowInstance instance) {
+        synchronized (entries) {
+            entries.put(cacheKey, instance);
+        }
+    }
+
+    private static String cacheKey(String tenantId, String idempotencyKey) {
+        // Tenant IDs cannot contain ':'
+        return tenantId + ':' + idempotencyKey;
+    }
+}
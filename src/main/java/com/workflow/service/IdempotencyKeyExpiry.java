@@ -0,0 +1,61 @@
+package com.workflow.service;
+
+import com.workflow.repository.WorkflowInstanceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Releases idempotency keys once their retention has passed
+ *
+ * Keys are cleared in small batches, each in its own transaction, so the
+ * job never holds long locks. Running it on several nodes at once is
+ * harmless.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+@Slf4j
+public class IdempotencyKeyExpiry {
+
+    private final WorkflowInstanceRepository workflowInstanceRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${workflow.idempotency.cleanup-batch-size:1000}")
+    private int batchSize;
+
+    public IdempotencyKeyExpiry(
+            WorkflowInstanceRepository workflowInstanceRepository,
+            PlatformTransactionManager transactionManager) {
+        this.workflowInstanceRepository = workflowInstanceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Clear expired keys until none are left
+     */
+    @Scheduled(fixedDelayString = "${workflow.idempotency.cleanup-interval:PT1M}",
+            initialDelayString = "${workflow.idempotency.cleanup-interval:PT1M}")
+    public void releaseExpiredKeys() {
+        long released = 0;
+        int batch;
+        try {
+            do {
+                batch = transactionTemplate.execute(status ->
+                        workflowInstanceRepository.releaseExpiredIdempotencyKeys(batchSize));
+                released += batch;
+            } while (batch == batchSize);
+        } catch (RuntimeException ex) {
+            log.warn("Releasing expired idempotency keys failed: {}", ex.getMessage());
+        }
+        if (released > 0) {
+            log.debug("Released {} expired idempotency keys", released);
+        }
+    }
+}
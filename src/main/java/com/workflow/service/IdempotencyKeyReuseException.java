@@ -0,0 +1,14 @@
+package com.workflow.service;
+
+/**
+ * Thrown when an idempotency key is reused for a different request
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class IdempotencyKeyReuseException extends IllegalArgumentException {
+
+    public IdempotencyKeyReuseException(String idempotencyKey) {
+        super("Idempotency key " + idempotencyKey + " was already used for a different request");
+    }
+}
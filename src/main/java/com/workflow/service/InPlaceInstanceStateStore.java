@@ -0,0 +1,81 @@
+package com.workflow.service;
+
+import com.workflow.domain.InstanceEvent;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.repository.WorkflowInstanceRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Instance state store that updates the workflow_instances row in place
+ *
+ * A transition only writes the columns it can change: status, step and
+ * completion time. The context document and the rest of the row are left
+ * as they are.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "workflow.persistence.mode", havingValue = "in-place", matchIfMissing = true)
+public class InPlaceInstanceStateStore implements InstanceStateStore {
+
+    private static final String SELECT_STATE = "SELECT status_code, current_step, workflow_definition_id"
+            + " FROM workflow_instances WHERE id = ?";
+
+    private static final String UPDATE_STATE = "UPDATE workflow_instances"
+            + " SET status_code = ?, current_step = ?, completed_at = ? WHERE id = ?";
+
+    private final WorkflowInstanceRepository workflowInstanceRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    @Override
+    public Optional<WorkflowInstance> load(UUID id) {
+        return workflowInstanceRepository.findById(id);
+    }
+
+    @Override
+    public Optional<WorkflowInstance> transition(UUID id, Function<WorkflowInstance, InstanceEvent> decide) {
+        return workflowInstanceRepository.findById(id)
+                .map(instance -> {
+                    // Detached so the transition is written by the UPDATE below and not by a flush of the whole row
+                    entityManager.detach(instance);
+                    decide.apply(instance).applyTo(instance);
+                    jdbcTemplate.update(UPDATE_STATE, ps -> {
+                        ps.setShort(1, instance.getStatus().getCode());
+                        ps.setString(2, instance.getCurrentStep());
+                        ps.setTimestamp(3, instance.getCompletedAt() != null
+                                ? Timestamp.valueOf(instance.getCompletedAt()) : null);
+                        ps.setObject(4, id);
+                    });
+                    return instance;
+                });
+    }
+
+    @Override
+    public List<WorkflowInstanceRepository.Listing> findListingsByStatus(WorkflowInstance.InstanceStatus status) {
+        return workflowInstanceRepository.findListingsByStatus(status);
+    }
+
+    @Override
+    public boolean isCurrent(WorkflowInstance instance) {
+        // The context is only written on start, so status, step and definition are all that can change
+        return Boolean.TRUE.equals(jdbcTemplate.query(SELECT_STATE, rs -> rs.next()
+                && rs.getShort("status_code") == instance.getStatus().getCode()
+                && Objects.equals(rs.getString("current_step"), instance.getCurrentStep())
+                && Objects.equals(rs.getObject("workflow_definition_id", UUID.class),
+                        instance.getWorkflowDefinition().getId()), instance.getId()));
+    }
+}
@@ -0,0 +1,200 @@
+package com.workflow.service;
+
+import com.workflow.changes.ChangeOutbox;
+import com.workflow.cluster.OwnedInstanceCache;
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Moves unfinished instances to another version of their workflow definition
+ *
+ * Instances are moved with set-based UPDATEs of at most
+ * workflow.migration.chunk-size rows, one short transaction per chunk, so
+ * a migration of any size never holds locks on many rows at once and
+ * concurrent transitions only ever wait for one chunk. Each chunk only
+ * touches instances that are still unfinished and still at the expected
+ * step, so instances that move on during the migration are picked up by
+ * their new step or left alone once finished. Deadlines move with the
+ * instances in the same chunk transaction, so migrated instances keep the
+ * SLA of their target step.
+ *
+ * In event-sourced mode, instances with step changes that have not been
+ * folded into their row yet are skipped and reported; they can be
+ * migrated by a later run.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+@Slf4j
+public class InstanceMigrationService {
+
+    private static final short RUNNING = WorkflowInstance.InstanceStatus.RUNNING.getCode();
+    private static final short SUSPENDED = WorkflowInstance.InstanceStatus.SUSPENDED.getCode();
+
+    private static final String COUNT_BY_STEP = "SELECT " + InstanceStateStore.CURRENT_STEP + " AS current_step,"
+            + " COUNT(*) AS instances FROM workflow_instances i"
+            + " WHERE i.workflow_definition_id = ? AND i.status_code IN (?, ?) GROUP BY 1";
+
+    private static final String UNFOLDED_STEP = " AND NOT EXISTS (SELECT 1 FROM workflow_instance_events e"
+            + " WHERE e.workflow_instance_id = i.id AND e.sequence_number > i.snapshot_sequence"
+            + " AND e.current_step IS NOT NULL)";
+
+    private final WorkflowDefinitionCache workflowDefinitionCache;
+    private final SearchProjectionService searchProjectionService;
+    private final StepDeadlineIndex stepDeadlineIndex;
+    private final OwnedInstanceCache ownedInstanceCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final ChangeOutbox changeOutbox;
+    private final TransactionTemplate chunkTransaction;
+    private final String migrateChunkSql;
+
+    @Value("${workflow.migration.chunk-size:1000}")
+    private int chunkSize;
+
+    public InstanceMigrationService(
+            WorkflowDefinitionCache workflowDefinitionCache,
+            SearchProjectionService searchProjectionService,
+            StepDeadlineIndex stepDeadlineIndex,
+            OwnedInstanceCache ownedInstanceCache,
+            JdbcTemplate jdbcTemplate,
+            ChangeOutbox changeOutbox,
+            PlatformTransactionManager transactionManager,
+            @Value("${workflow.persistence.mode:in-place}") String persistenceMode) {
+        this.workflowDefinitionCache = workflowDefinitionCache;
+        this.searchProjectionService = searchProjectionService;
+        this.stepDeadlineIndex = stepDeadlineIndex;
+        this.ownedInstanceCache = ownedInstanceCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeOutbox = changeOutbox;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        // IS NOT DISTINCT FROM also matches instances that have no current step
+        this.migrateChunkSql = "UPDATE workflow_instances SET workflow_definition_id = ?, current_step = ?"
+                + " WHERE id IN (SELECT i.id FROM workflow_instances i"
+                + " WHERE i.workflow_definition_id = ? AND i.current_step IS NOT DISTINCT FROM ?"
+                + " AND i.status_code IN (?, ?)"
+                + ("event-sourced".equals(persistenceMode) ? UNFOLDED_STEP : "")
+                + " LIMIT ?)"
+                + " AND workflow_definition_id = ? AND current_step IS NOT DISTINCT FROM ? AND status_code IN (?, ?)"
+                + " RETURNING id, tenant_id, status_code";
+    }
+
+    /**
+     * Compute the step mapping between two versions of a definition
+     *
+     * @param sourceId the workflow definition to migrate from
+     * @param targetId the workflow definition to migrate to
+     * @param stepMapping explicit source to target step names
+     * @return the diff
+     * @throws DefinitionMigrationException if the definitions cannot be migrated between
+     */
+    public DefinitionDiff diff(UUID sourceId, UUID targetId, Map<String, String> stepMapping) {
+        DefinitionSnapshot source = workflowDefinitionCache.get(sourceId)
+                .orElseThrow(() -> new DefinitionMigrationException("Workflow definition not found: " + sourceId));
+        DefinitionSnapshot target = workflowDefinitionCache.get(targetId)
+                .orElseThrow(() -> new DefinitionMigrationException("Workflow definition not found: " + targetId));
+        if (sourceId.equals(targetId) || !source.name().equals(target.name())) {
+            throw new DefinitionMigrationException("Instances can only be migrated to another version of "
+                    + source.name());
+        }
+        return DefinitionDiff.between(source, target, stepMapping);
+    }
+
+    /**
+     * Migrate the unfinished instances of a definition to another version
+     *
+     * @param sourceId the workflow definition to migrate from
+     * @param targetId the workflow definition to migrate to; must be active
+     * @param stepMapping explicit source to target step names
+     * @param dryRun only report what would be migrated
+     * @return the report
+     * @throws DefinitionMigrationException if the target is not active or instances wait in unmapped steps
+     */
+    public MigrationReport migrate(UUID sourceId, UUID targetId, Map<String, String> stepMapping, boolean dryRun) {
+        DefinitionDiff diff = diff(sourceId, targetId, stepMapping);
+        DefinitionSnapshot source = workflowDefinitionCache.get(sourceId).orElseThrow();
+        DefinitionSnapshot target = workflowDefinitionCache.get(targetId).orElseThrow();
+        List<MigrationReport.StepCount> steps = countByStep(diff);
+        MigrationReport plan = new MigrationReport(diff, true, steps, 0,
+                steps.stream().filter(step -> step.sourceStep() != null && step.targetStep() == null)
+                        .mapToLong(MigrationReport.StepCount::instances).sum());
+        if (dryRun) {
+            return plan;
+        }
+        if (!target.isActive()) {
+            throw new DefinitionMigrationException("Target workflow definition " + targetId + " is not active");
+        }
+        if (!plan.isComplete()) {
+            throw new DefinitionMigrationException("Instances wait in steps without a target step; map them first");
+        }
+
+        long started = System.nanoTime();
+        long migrated = 0;
+        // Searchable values follow the keys of the instance's definition
+        boolean reproject = !source.searchKeys().isEmpty() || !target.searchKeys().isEmpty();
+        for (MigrationReport.StepCount step : steps) {
+            migrated += migrateStep(source, target, step.sourceStep(), step.targetStep(), reproject);
+        }
+        long remaining = countByStep(diff).stream().mapToLong(MigrationReport.StepCount::instances).sum();
+        log.info("Migrated {} instances from workflow definition {} to {} in {} ms, {} remaining",
+                migrated, sourceId, targetId, (System.nanoTime() - started) / 1_000_000, remaining);
+        return new MigrationReport(diff, false, steps, migrated, remaining);
+    }
+
+    private List<MigrationReport.StepCount> countByStep(DefinitionDiff diff) {
+        List<MigrationReport.StepCount> steps = new ArrayList<>();
+        jdbcTemplate.query(COUNT_BY_STEP, rs -> {
+            String sourceStep = rs.getString("current_step");
+            String targetStep = sourceStep != null ? diff.targetOf(sourceStep) : null;
+            steps.add(new MigrationReport.StepCount(sourceStep, targetStep, rs.getLong("instances")));
+        }, diff.sourceId(), RUNNING, SUSPENDED);
+        return steps;
+    }
+
+    private long migrateStep(DefinitionSnapshot source, DefinitionSnapshot target, String sourceStep,
+                             String targetStep, boolean reproject) {
+        UUID sourceId = source.id();
+        UUID targetId = target.id();
+        DefinitionSnapshot.StepSnapshot sourceSnapshot = sourceStep != null ? source.step(sourceStep).orElse(null) : null;
+        DefinitionSnapshot.StepSnapshot targetSnapshot = targetStep != null ? target.step(targetStep).orElse(null) : null;
+        long migrated = 0;
+        while (true) {
+            List<UUID> ids = Objects.requireNonNull(chunkTransaction.execute(status -> {
+                LocalDateTime migratedAt = LocalDateTime.now();
+                List<ChangeOutbox.Change> changes = jdbcTemplate.query(migrateChunkSql,
+                        (rs, rowNum) -> ChangeOutbox.Change.instance(rs.getString("tenant_id"),
+                                rs.getObject("id", UUID.class),
+                                CodedEnum.fromCode(WorkflowInstance.InstanceStatus.class, rs.getShort("status_code")),
+                                targetStep, migratedAt),
+                        targetId, targetStep,
+                        sourceId, sourceStep, RUNNING, SUSPENDED, chunkSize,
+                        sourceId, sourceStep, RUNNING, SUSPENDED);
+                changeOutbox.recordAll(changes);
+                List<UUID> moved = changes.stream().map(ChangeOutbox.Change::id).toList();
+                stepDeadlineIndex.migrate(moved, sourceSnapshot, targetSnapshot, migratedAt);
+                if (reproject && !moved.isEmpty()) {
+                    searchProjectionService.reproject(moved);
+                }
+                return moved;
+            }));
+            ids.forEach(ownedInstanceCache::evict);
+            migrated += ids.size();
+            if (ids.size() < chunkSize) {
+                return migrated;
+            }
+        }
+    }
+}
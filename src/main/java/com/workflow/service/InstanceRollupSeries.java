@@ -0,0 +1,43 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowInstance;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Finished instances per time bucket and final status
+ *
+ * Buckets without finished instances are left out. Durations are in
+ * milliseconds from start to finish.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record InstanceRollupSeries(
+        UUID workflowDefinitionId,
+        RollupResolution resolution,
+        LocalDateTime from,
+        LocalDateTime to,
+        List<Bucket> buckets,
+        Map<WorkflowInstance.InstanceStatus, Stats> totals) {
+
+    /**
+     * One time bucket
+     */
+    public record Bucket(LocalDateTime start, Map<WorkflowInstance.InstanceStatus, Stats> statuses) {
+    }
+
+    /**
+     * Instances that finished in a status
+     */
+    public record Stats(
+            long instances,
+            long averageDurationMs,
+            long minDurationMs,
+            long maxDurationMs,
+            Map<String, Long> percentilesMs) {
+    }
+}
@@ -0,0 +1,157 @@
+package com.workflow.service;
+
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.persistence.ReadOnly;
+import com.workflow.tenancy.TenantContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Serves historical instance statistics from the rollup buckets
+ *
+ * Any time range is answered from the buckets of one resolution, so a
+ * query reads one row per bucket and status (and definition, if it spans
+ * all definitions) and never touches workflow_instances. Without a
+ * requested resolution, the finest one is used that still keeps the range
+ * and needs at most workflow.rollups.max-buckets buckets. Percentiles of
+ * several buckets are computed by merging their duration sketches.
+ *
+ * Instances show up once the node that finished them has flushed its
+ * counts, i.e. after at most workflow.rollups.flush-interval.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+@ReadOnly
+public class InstanceRollupService {
+
+    private static final String SELECT_SERIES = "SELECT bucket_start, status, instances, duration_sum_ms,"
+            + " duration_min_ms, duration_max_ms, duration_sketch FROM workflow_instance_rollups"
+            + " WHERE tenant_id = ? AND resolution = ? AND bucket_start >= ? AND bucket_start < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InstanceRollupWriter instanceRollupWriter;
+
+    @Value("${workflow.rollups.max-buckets:1000}")
+    private int maxBuckets;
+
+    public InstanceRollupService(JdbcTemplate jdbcTemplate, InstanceRollupWriter instanceRollupWriter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.instanceRollupWriter = instanceRollupWriter;
+    }
+
+    /**
+     * Get the finished instances of the current tenant per bucket and status
+     *
+     * @param workflowDefinitionId the definition, or null for all definitions
+     * @param from the start of the range, rounded down to a bucket
+     * @param to the end of the range, exclusive, rounded up to a bucket
+     * @param resolution the bucket width, or null to choose one
+     * @param percentiles the duration quantiles to estimate, between 0 and 1
+     * @return the series
+     * @throws InvalidRollupQueryException if the range is empty, too long for the resolution or no longer kept
+     */
+    public InstanceRollupSeries query(UUID workflowDefinitionId, LocalDateTime from, LocalDateTime to,
+                                      RollupResolution resolution, List<Double> percentiles) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new InvalidRollupQueryException("Range needs a start before its end");
+        }
+        for (Double quantile : percentiles) {
+            if (quantile == null || quantile < 0 || quantile > 1) {
+                throw new InvalidRollupQueryException("Percentiles must be between 0 and 1");
+            }
+        }
+        RollupResolution chosen = resolution != null ? check(resolution, from, to) : choose(from, to);
+        LocalDateTime start = chosen.bucketOf(from);
+        LocalDateTime end = chosen.bucketOf(to).equals(to) ? to : chosen.bucketOf(to).plus(chosen.width());
+
+        String tenantId = TenantContext.current() != null ? TenantContext.current() : TenantContext.DEFAULT_TENANT;
+        StringBuilder sql = new StringBuilder(SELECT_SERIES);
+        List<Object> args = new ArrayList<>(List.of(tenantId, chosen.getCode(),
+                Timestamp.valueOf(start), Timestamp.valueOf(end)));
+        if (workflowDefinitionId != null) {
+            sql.append(" AND workflow_definition_id = ?");
+            args.add(workflowDefinitionId);
+        }
+
+        Map<LocalDateTime, Map<WorkflowInstance.InstanceStatus, RollupAggregate>> buckets = new TreeMap<>();
+        Map<WorkflowInstance.InstanceStatus, RollupAggregate> totals = new EnumMap<>(WorkflowInstance.InstanceStatus.class);
+        jdbcTemplate.query(sql.toString(), rs -> {
+            WorkflowInstance.InstanceStatus status =
+                    CodedEnum.fromCode(WorkflowInstance.InstanceStatus.class, rs.getShort("status"));
+            RollupAggregate aggregate = RollupAggregate.of(rs.getLong("instances"), rs.getLong("duration_sum_ms"),
+                    rs.getLong("duration_min_ms"), rs.getLong("duration_max_ms"), rs.getBytes("duration_sketch"));
+            buckets.computeIfAbsent(rs.getTimestamp("bucket_start").toLocalDateTime(),
+                            bucket -> new EnumMap<>(WorkflowInstance.InstanceStatus.class))
+                    .computeIfAbsent(status, key -> new RollupAggregate()).merge(aggregate);
+            totals.computeIfAbsent(status, key -> new RollupAggregate()).merge(aggregate);
+        }, args.toArray());
+
+        List<InstanceRollupSeries.Bucket> series = new ArrayList<>(buckets.size());
+        buckets.forEach((bucketStart, statuses) ->
+                series.add(new InstanceRollupSeries.Bucket(bucketStart, stats(statuses, percentiles))));
+        return new InstanceRollupSeries(workflowDefinitionId, chosen, start, end, series, stats(totals, percentiles));
+    }
+
+    private RollupResolution choose(LocalDateTime from, LocalDateTime to) {
+        for (RollupResolution resolution : RollupResolution.values()) {
+            if (kept(resolution, from) && bucketCount(resolution, from, to) <= maxBuckets) {
+                return resolution;
+            }
+        }
+        throw new InvalidRollupQueryException("Range needs more than " + maxBuckets + " buckets or is no longer kept");
+    }
+
+    private RollupResolution check(RollupResolution resolution, LocalDateTime from, LocalDateTime to) {
+        if (!kept(resolution, from)) {
+            throw new InvalidRollupQueryException(resolution + " rollups are kept for "
+                    + instanceRollupWriter.retentionOf(resolution) + "; use a coarser resolution");
+        }
+        if (bucketCount(resolution, from, to) > maxBuckets) {
+            throw new InvalidRollupQueryException("Range needs more than " + maxBuckets + " " + resolution
+                    + " buckets; use a coarser resolution");
+        }
+        return resolution;
+    }
+
+    private boolean kept(RollupResolution resolution, LocalDateTime from) {
+        Duration retention = instanceRollupWriter.retentionOf(resolution);
+        return retention.isZero() || retention.isNegative() || !from.isBefore(LocalDateTime.now().minus(retention));
+    }
+
+    private static long bucketCount(RollupResolution resolution, LocalDateTime from, LocalDateTime to) {
+        return Duration.between(resolution.bucketOf(from), to).toMillis() / resolution.width().toMillis() + 1;
+    }
+
+    private static Map<WorkflowInstance.InstanceStatus, InstanceRollupSeries.Stats> stats(
+            Map<WorkflowInstance.InstanceStatus, RollupAggregate> aggregates, List<Double> percentiles) {
+        Map<WorkflowInstance.InstanceStatus, InstanceRollupSeries.Stats> stats =
+                new EnumMap<>(WorkflowInstance.InstanceStatus.class);
+        aggregates.forEach((status, aggregate) -> {
+            Map<String, Long> estimates = new LinkedHashMap<>();
+            for (double quantile : percentiles) {
+                String name = "p" + BigDecimal.valueOf(quantile * 100).stripTrailingZeros().toPlainString();
+                estimates.put(name, aggregate.durationSketch().quantile(quantile));
+            }
+            stats.put(status, new InstanceRollupSeries.Stats(aggregate.instances(),
+                    aggregate.durationSumMs() / aggregate.instances(), aggregate.durationMinMs(),
+                    aggregate.durationMaxMs(), estimates));
+        });
+        return stats;
+    }
+}
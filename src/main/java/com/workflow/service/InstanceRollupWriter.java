@@ -0,0 +1,284 @@
+package com.workflow.service;
+
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.persistence.TransactionRetryAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Maintains the instance rollups as instances finish
+ *
+ * Every instance that completes, fails or is cancelled is counted in
+ * memory under its tenant, definition, final status and minute. Every
+ * workflow.rollups.flush-interval the counts are merged into the minute,
+ * hour and day buckets of workflow_instance_rollups, each touched bucket
+ * read and rewritten once per flush however many instances it gained, all
+ * in one transaction. The table therefore takes a handful of writes per
+ * node and interval rather than several per finished instance, and many
+ * nodes can flush into the same buckets. Counts that could not be written
+ * are kept for the next flush; counts of a node that is killed before its
+ * last flush are lost.
+ *
+ * Fine buckets are downsampled by retention: minute buckets are kept for
+ * workflow.rollups.minute-retention and hour buckets for
+ * workflow.rollups.hour-retention, while the coarser buckets covering the
+ * same time stay.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+@Slf4j
+public class InstanceRollupWriter {
+
+    private static final String SELECT_BUCKETS = "SELECT tenant_id, resolution, bucket_start, workflow_definition_id,"
+            + " status, instances, duration_sum_ms, duration_min_ms, duration_max_ms, duration_sketch"
+            + " FROM workflow_instance_rollups"
+            + " WHERE (tenant_id, resolution, bucket_start, workflow_definition_id, status) IN (%s) FOR UPDATE";
+
+    private static final String UPSERT_BUCKET = "UPSERT INTO workflow_instance_rollups"
+            + " (tenant_id, resolution, bucket_start, workflow_definition_id, status,"
+            + " instances, duration_sum_ms, duration_min_ms, duration_max_ms, duration_sketch)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_EXPIRED = "DELETE FROM workflow_instance_rollups"
+            + " WHERE resolution = ? AND bucket_start < ? LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Minute, RollupAggregate> pending = new ConcurrentHashMap<>();
+    private final Map<RollupResolution, Duration> retention = new EnumMap<>(RollupResolution.class);
+
+    @Value("${workflow.rollups.read-batch-size:200}")
+    private int readBatchSize;
+
+    @Value("${workflow.rollups.cleanup-batch-size:1000}")
+    private int cleanupBatchSize;
+
+    @Value("${workflow.transaction.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    public InstanceRollupWriter(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${workflow.rollups.minute-retention:P2D}") Duration minuteRetention,
+            @Value("${workflow.rollups.hour-retention:P90D}") Duration hourRetention,
+            @Value("${workflow.rollups.day-retention:P0D}") Duration dayRetention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        retention.put(RollupResolution.MINUTE, minuteRetention);
+        retention.put(RollupResolution.HOUR, hourRetention);
+        retention.put(RollupResolution.DAY, dayRetention);
+        Gauge.builder("workflow.rollups.pending", pending, Map::size)
+                .description("Minute buckets of finished instances waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get how long buckets of a resolution are kept
+     *
+     * @param resolution the resolution
+     * @return the retention, or zero if the buckets are kept forever
+     */
+    public Duration retentionOf(RollupResolution resolution) {
+        return retention.get(resolution);
+    }
+
+    /**
+     * Count an instance that finished, once the current transaction commits
+     *
+     * @param instance the instance, with its start time
+     * @param status the final status
+     * @param finishedAt when the instance finished
+     */
+    public void recordAfterCommit(WorkflowInstance instance, WorkflowInstance.InstanceStatus status,
+                                  LocalDateTime finishedAt) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(instance, status, finishedAt);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(instance, status, finishedAt);
+            }
+        });
+    }
+
+    /**
+     * Count an instance that finished
+     *
+     * @param instance the instance, with its start time
+     * @param status the final status
+     * @param finishedAt when the instance finished
+     */
+    public void record(WorkflowInstance instance, WorkflowInstance.InstanceStatus status, LocalDateTime finishedAt) {
+        long durationMs = instance.getStartedAt() != null
+                ? Duration.between(instance.getStartedAt(), finishedAt).toMillis() : 0;
+        Minute minute = new Minute(instance.getTenantId(), instance.getWorkflowDefinition().getId(), status,
+                RollupResolution.MINUTE.bucketOf(finishedAt));
+        pending.compute(minute, (key, aggregate) ->
+                (aggregate != null ? aggregate : new RollupAggregate()).add(durationMs));
+    }
+
+    /**
+     * Merge the counted instances into the rollup buckets
+     */
+    @Scheduled(fixedDelayString = "${workflow.rollups.flush-interval:PT10S}",
+            initialDelayString = "${workflow.rollups.flush-interval:PT10S}")
+    @PreDestroy
+    public void flush() {
+        Map<Minute, RollupAggregate> drained = new HashMap<>();
+        for (Minute minute : pending.keySet()) {
+            RollupAggregate aggregate = pending.remove(minute);
+            if (aggregate != null) {
+                drained.put(minute, aggregate);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        Map<Bucket, RollupAggregate> buckets = new HashMap<>();
+        drained.forEach((minute, aggregate) -> {
+            for (RollupResolution resolution : RollupResolution.values()) {
+                Bucket bucket = new Bucket(minute.tenantId(), resolution, resolution.bucketOf(minute.start()),
+                        minute.definitionId(), minute.status());
+                buckets.computeIfAbsent(bucket, key -> new RollupAggregate()).merge(aggregate);
+            }
+        });
+        try {
+            writeWithRetry(new ArrayList<>(buckets.entrySet()));
+        } catch (RuntimeException ex) {
+            log.warn("Writing instance rollups failed, retrying with the next flush: {}", ex.getMessage());
+            drained.forEach((minute, aggregate) -> pending.merge(minute, aggregate, RollupAggregate::merge));
+        }
+    }
+
+    /**
+     * Remove buckets that are past their resolution's retention
+     */
+    @Scheduled(fixedDelayString = "${workflow.rollups.cleanup-interval:PT1H}",
+            initialDelayString = "${workflow.rollups.cleanup-interval:PT1H}")
+    public void removeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        retention.forEach((resolution, kept) -> {
+            if (kept.isZero() || kept.isNegative()) {
+                return;
+            }
+            Timestamp before = Timestamp.valueOf(resolution.bucketOf(now.minus(kept)));
+            try {
+                int removed;
+                do {
+                    removed = jdbcTemplate.update(DELETE_EXPIRED, resolution.getCode(), before, cleanupBatchSize);
+                } while (removed == cleanupBatchSize);
+            } catch (RuntimeException ex) {
+                log.warn("Removing expired {} rollups failed: {}", resolution, ex.getMessage());
+            }
+        });
+    }
+
+    private void writeWithRetry(List<Map.Entry<Bucket, RollupAggregate>> entries) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(entries));
+                return;
+            } catch (RuntimeException ex) {
+                if (!TransactionRetryAspect.isRetryable(ex) || attempt >= maxAttempts) {
+                    throw ex;
+                }
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(10L << Math.min(attempt, 6)));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private void write(List<Map.Entry<Bucket, RollupAggregate>> entries) {
+        Map<Bucket, RollupAggregate> stored = new HashMap<>();
+        for (int from = 0; from < entries.size(); from += readBatchSize) {
+            read(entries.subList(from, Math.min(entries.size(), from + readBatchSize)), stored);
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_BUCKET, entries, entries.size(), (ps, entry) -> {
+            Bucket bucket = entry.getKey();
+            // Merge into a copy, so a retried transaction starts from the counts of this flush again
+            RollupAggregate merged = entry.getValue().copy();
+            RollupAggregate existing = stored.get(bucket);
+            if (existing != null) {
+                merged.merge(existing);
+            }
+            ps.setString(1, bucket.tenantId());
+            ps.setShort(2, bucket.resolution().getCode());
+            ps.setTimestamp(3, Timestamp.valueOf(bucket.start()));
+            ps.setObject(4, bucket.definitionId());
+            ps.setShort(5, bucket.status().getCode());
+            ps.setLong(6, merged.instances());
+            ps.setLong(7, merged.durationSumMs());
+            ps.setLong(8, merged.durationMinMs());
+            ps.setLong(9, merged.durationMaxMs());
+            ps.setBytes(10, merged.durationSketch().toBytes());
+        });
+    }
+
+    private void read(List<Map.Entry<Bucket, RollupAggregate>> entries, Map<Bucket, RollupAggregate> stored) {
+        List<Object> keys = new ArrayList<>(entries.size() * 5);
+        for (Map.Entry<Bucket, RollupAggregate> entry : entries) {
+            Bucket bucket = entry.getKey();
+            keys.add(bucket.tenantId());
+            keys.add(bucket.resolution().getCode());
+            keys.add(Timestamp.valueOf(bucket.start()));
+            keys.add(bucket.definitionId());
+            keys.add(bucket.status().getCode());
+        }
+        String placeholders = String.join(", ", Collections.nCopies(entries.size(), "(?, ?, ?, ?, ?)"));
+        jdbcTemplate.query(String.format(SELECT_BUCKETS, placeholders), rs -> {
+            stored.put(new Bucket(
+                            rs.getString("tenant_id"),
+                            CodedEnum.fromCode(RollupResolution.class, rs.getShort("resolution")),
+                            rs.getTimestamp("bucket_start").toLocalDateTime(),
+                            rs.getObject("workflow_definition_id", UUID.class),
+                            CodedEnum.fromCode(WorkflowInstance.InstanceStatus.class, rs.getShort("status"))),
+                    RollupAggregate.of(rs.getLong("instances"), rs.getLong("duration_sum_ms"),
+                            rs.getLong("duration_min_ms"), rs.getLong("duration_max_ms"), rs.getBytes("duration_sketch")));
+        }, keys.toArray());
+    }
+
+    private record Minute(String tenantId, UUID definitionId, WorkflowInstance.InstanceStatus status,
+                          LocalDateTime start) {
+    }
+
+    private record Bucket(String tenantId, RollupResolution resolution, LocalDateTime start, UUID definitionId,
+                          WorkflowInstance.InstanceStatus status) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.workflow.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.workflow.domain.WorkflowInstance;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Criteria of an instance search; all given criteria must match
+ *
+ * @param workflowDefinitionId only instances of this definition, or null
+ * @param status only instances in this status, or null
+ * @param text substring of the instance name or of a searchable text value, or null
+ * @param filters conditions on the instance context, or null
+ * @param limit the maximum number of results, or null for the default
+ * @param after the cursor returned with the previous page, or null
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record InstanceSearchRequest(
+        UUID workflowDefinitionId,
+        WorkflowInstance.InstanceStatus status,
+        String text,
+        List<Filter> filters,
+        Integer limit,
+        String after) {
+
+    /**
+     * Condition on one context value
+     *
+     * Either names a searchable key of the definition, which supports all
+     * operators, or gives a dotted context path, which supports EQ only.
+     *
+     * @param key the searchable key name, or null
+     * @param path the dotted context path, or null
+     * @param op the comparison
+     * @param value the JSON value to compare with
+     */
+    public record Filter(String key, String path, Operator op, JsonNode value) {
+    }
+
+    /**
+     * Comparison of a filter
+     */
+    public enum Operator {
+        EQ("="),
+        LT("<"),
+        LTE("<="),
+        GT(">"),
+        GTE(">=");
+
+        private final String sql;
+
+        Operator(String sql) {
+            this.sql = sql;
+        }
+
+        String sql() {
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowInstance;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One page of instance search results, newest first
+ *
+ * @param items the matching instances
+ * @param next the cursor of the next page, or null on the last page
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record InstanceSearchResult(List<Item> items, String next) {
+
+    /**
+     * Summary of a matching instance
+     */
+    public record Item(
+            UUID id,
+            UUID workflowDefinitionId,
+            String name,
+            WorkflowInstance.InstanceStatus status,
+            String currentStep,
+            LocalDateTime startedAt,
+            LocalDateTime completedAt) {
+    }
+}
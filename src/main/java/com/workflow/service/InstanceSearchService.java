@@ -0,0 +1,218 @@
+package com.workflow.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.persistence.ReadOnly;
+import com.workflow.tenancy.TenantContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Searches instances by name, status and context values
+ *
+ * Every criterion maps to an index: searchable keys to the projected
+ * values in workflow_instance_search_values, context path equality to
+ * the inverted index on workflow_instances.context, and text to the
+ * trigram indexes on instance names and searchable text values. Range
+ * filters therefore need a searchable key. Results are ordered newest
+ * first and paged with an opaque keyset cursor, so deep pages cost the
+ * same as the first.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+@RequiredArgsConstructor
+@ReadOnly
+public class InstanceSearchService {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final int MIN_TEXT_LENGTH = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${workflow.search.default-limit:50}")
+    private int defaultLimit;
+
+    @Value("${workflow.search.max-limit:500}")
+    private int maxLimit;
+
+    /**
+     * Search instances of the current tenant
+     *
+     * @param request the search criteria
+     * @return the first page after the request's cursor
+     * @throws InvalidSearchException if the criteria cannot be served by an index
+     */
+    public InstanceSearchResult search(InstanceSearchRequest request) {
+        String tenantId = TenantContext.current() != null ? TenantContext.current() : TenantContext.DEFAULT_TENANT;
+        int limit = request.limit() == null ? defaultLimit : Math.max(1, Math.min(request.limit(), maxLimit));
+
+        StringBuilder sql = new StringBuilder(512).append(
+                "SELECT i.id, i.workflow_definition_id, i.name, i.status_code, " + InstanceStateStore.CURRENT_STEP
+                        + " AS current_step, i.started_at, i.completed_at FROM workflow_instances i WHERE i.tenant_id = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(tenantId);
+
+        if (request.workflowDefinitionId() != null) {
+            sql.append(" AND i.workflow_definition_id = ?");
+            args.add(request.workflowDefinitionId());
+        }
+        if (request.status() != null) {
+            sql.append(" AND i.status_code = ?");
+            args.add(request.status().getCode());
+        }
+        if (request.text() != null && !request.text().isBlank()) {
+            String text = request.text().strip();
+            if (text.length() < MIN_TEXT_LENGTH) {
+                throw new InvalidSearchException("Search text must have at least " + MIN_TEXT_LENGTH + " characters");
+            }
+            String pattern = "%" + escapeLike(text) + "%";
+            sql.append(" AND (i.name ILIKE ? OR i.id IN (SELECT v.instance_id FROM workflow_instance_search_values v"
+                    + " WHERE v.tenant_id = ? AND v.text_value ILIKE ?))");
+            args.add(pattern);
+            args.add(tenantId);
+            args.add(pattern);
+        }
+        if (request.filters() != null) {
+            for (InstanceSearchRequest.Filter filter : request.filters()) {
+                appendFilter(filter, tenantId, sql, args);
+            }
+        }
+        if (request.after() != null) {
+            Cursor cursor = Cursor.decode(request.after());
+            sql.append(" AND (i.started_at, i.id) < (?, ?)");
+            args.add(cursor.startedAt());
+            args.add(cursor.id());
+        }
+        sql.append(" ORDER BY i.started_at DESC, i.id DESC LIMIT ?");
+        // One extra row tells whether there is a next page
+        args.add(limit + 1);
+
+        List<Timestamp> startedAt = new ArrayList<>(limit + 1);
+        List<InstanceSearchResult.Item> items = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Timestamp started = rs.getTimestamp("started_at");
+            Timestamp completed = rs.getTimestamp("completed_at");
+            startedAt.add(started);
+            return new InstanceSearchResult.Item(
+                    rs.getObject("id", UUID.class),
+                    rs.getObject("workflow_definition_id", UUID.class),
+                    rs.getString("name"),
+                    CodedEnum.fromCode(WorkflowInstance.InstanceStatus.class, rs.getShort("status_code")),
+                    rs.getString("current_step"),
+                    started.toLocalDateTime(),
+                    completed != null ? completed.toLocalDateTime() : null);
+        }, args.toArray());
+
+        if (items.size() <= limit) {
+            return new InstanceSearchResult(items, null);
+        }
+        InstanceSearchResult.Item last = items.get(limit - 1);
+        String next = new Cursor(startedAt.get(limit - 1), last.id()).encode();
+        return new InstanceSearchResult(items.subList(0, limit), next);
+    }
+
+    private static void appendFilter(InstanceSearchRequest.Filter filter, String tenantId,
+                                     StringBuilder sql, List<Object> args) {
+        if (filter.op() == null || filter.value() == null || filter.value().isNull()) {
+            throw new InvalidSearchException("Search filters need an operator and a value");
+        }
+        JsonNode value = filter.value();
+        if (filter.key() != null) {
+            String column;
+            if (value.isNumber()) {
+                column = "number_value";
+                args.add(tenantId);
+                args.add(filter.key());
+                args.add(value.decimalValue());
+            } else if (value.isTextual() || value.isBoolean()) {
+                column = "text_value";
+                args.add(tenantId);
+                args.add(filter.key());
+                args.add(value.asText());
+            } else {
+                throw new InvalidSearchException("Search key " + filter.key() + " can only be compared with a scalar");
+            }
+            sql.append(" AND i.id IN (SELECT v.instance_id FROM workflow_instance_search_values v"
+                    + " WHERE v.tenant_id = ? AND v.key_name = ? AND v.").append(column)
+                    .append(' ').append(filter.op().sql()).append(" ?)");
+        } else if (filter.path() != null) {
+            if (filter.op() != InstanceSearchRequest.Operator.EQ) {
+                throw new InvalidSearchException("Context path " + filter.path()
+                        + " only supports EQ; declare a searchable key for range filters");
+            }
+            sql.append(" AND i.context @> CAST(? AS JSONB)");
+            args.add(containment(SearchKey.splitPath(filter.path()), value));
+        } else {
+            throw new InvalidSearchException("Search filters need a key or a path");
+        }
+    }
+
+    /**
+     * Build the JSON document matched by a path equality, e.g. {"order":{"id":"A-1"}}
+     */
+    private static String containment(List<String> path, JsonNode value) {
+        ObjectNode root = JSON.createObjectNode();
+        ObjectNode parent = root;
+        for (int i = 0; i < path.size() - 1; i++) {
+            parent = parent.putObject(path.get(i));
+        }
+        parent.set(path.get(path.size() - 1), value);
+        return root.toString();
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Position after the last result of a page
+     */
+    private record Cursor(Timestamp startedAt, UUID id) {
+
+        String encode() {
+            Instant instant = startedAt.toInstant();
+            ByteBuffer buffer = ByteBuffer.allocate(28)
+                    .putLong(instant.getEpochSecond())
+                    .putInt(instant.getNano())
+                    .putLong(id.getMostSignificantBits())
+                    .putLong(id.getLeastSignificantBits());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        }
+
+        static Cursor decode(String cursor) {
+            byte[] bytes;
+            try {
+                bytes = Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII));
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidSearchException("Invalid search cursor");
+            }
+            if (bytes.length != 28) {
+                throw new InvalidSearchException("Invalid search cursor");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            try {
+                Timestamp startedAt = Timestamp.from(Instant.ofEpochSecond(buffer.getLong(), buffer.getInt()));
+                return new Cursor(startedAt, new UUID(buffer.getLong(), buffer.getLong()));
+            } catch (DateTimeException ex) {
+                throw new InvalidSearchException("Invalid search cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowInstance;
+
+/**
+ * Outcome of an idempotent instance start
+ *
+ * @param instance the instance holding the idempotency key
+ * @param replayed true if the key had already been used and no new instance was created
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record InstanceStartResult(WorkflowInstance instance, boolean replayed) {
+}
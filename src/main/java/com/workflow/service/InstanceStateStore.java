@@ -0,0 +1,73 @@
+package com.workflow.service;
+
+import com.workflow.domain.InstanceEvent;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.repository.WorkflowInstanceRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Persistence strategy for workflow instance state transitions
+ *
+ * Selected with workflow.persistence.mode: "in-place" (default) updates
+ * the workflow_instances row on every transition, "event-sourced" appends
+ * transitions to workflow_instance_events and folds status changes into
+ * the row at once and step changes every
+ * workflow.persistence.snapshot-interval events.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public interface InstanceStateStore {
+
+    /**
+     * Current step of the workflow_instances row aliased i, as an SQL expression
+     *
+     * In event-sourced mode the step in the row may lag behind the event
+     * log, so queries that compare or return the current step use this
+     * rather than i.current_step. In in-place mode the log is empty and
+     * this is the column.
+     */
+    String CURRENT_STEP = "COALESCE((SELECT e.current_step FROM workflow_instance_events e"
+            + " WHERE e.workflow_instance_id = i.id AND e.sequence_number > i.snapshot_sequence"
+            + " AND e.current_step IS NOT NULL ORDER BY e.sequence_number DESC LIMIT 1), i.current_step)";
+
+    /**
+     * Load the current state of an instance
+     *
+     * @param id the workflow instance ID
+     * @return Optional containing the instance with all transitions applied
+     */
+    Optional<WorkflowInstance> load(UUID id);
+
+    /**
+     * Apply a transition to an instance
+     *
+     * @param id the workflow instance ID
+     * @param decide computes the transition from the current state; may throw to reject it
+     * @return the instance after the transition, or empty if not found
+     */
+    Optional<WorkflowInstance> transition(UUID id, Function<WorkflowInstance, InstanceEvent> decide);
+
+    /**
+     * List the instances in a status with their current step, newest first
+     *
+     * @param status the instance status
+     * @return the listings, without the context document
+     */
+    List<WorkflowInstanceRepository.Listing> findListingsByStatus(WorkflowInstance.InstanceStatus status);
+
+    /**
+     * Check whether a copy of an instance still matches its stored state
+     *
+     * Compares only what transitions and migrations change, with one
+     * narrow read, so it is cheaper than loading the instance again.
+     *
+     * @param instance a copy of the instance, as returned by {@link #load} or {@link #transition}
+     * @return true if the instance has not been written since the copy was taken
+     */
+    boolean isCurrent(WorkflowInstance instance);
+}
@@ -0,0 +1,14 @@
+package com.workflow.service;
+
+/**
+ * Thrown when a rollup query asks for a range or resolution that cannot be served
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class InvalidRollupQueryException extends IllegalArgumentException {
+
+    public InvalidRollupQueryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.workflow.service;
+
+/**
+ * Thrown when search criteria or searchable key declarations are invalid
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class InvalidSearchException extends IllegalArgumentException {
+
+    public InvalidSearchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,41 @@
+package com.workflow.service;
+
+import java.util.List;
+
+/**
+ * Outcome of migrating running instances between definition versions
+ *
+ * @param diff the step mapping that was applied
+ * @param dryRun true if nothing was changed
+ * @param steps instance counts per source step
+ * @param migrated instances moved to the target definition; 0 for a dry run
+ * @param skipped instances that could not be moved and stay on the source definition
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record MigrationReport(
+        DefinitionDiff diff,
+        boolean dryRun,
+        List<StepCount> steps,
+        long migrated,
+        long skipped) {
+
+    /**
+     * Unfinished instances waiting in one source step
+     *
+     * @param sourceStep the current step in the source definition, or null for instances without one
+     * @param targetStep the step they move to, or null if unmapped
+     * @param instances the number of RUNNING and SUSPENDED instances
+     */
+    public record StepCount(String sourceStep, String targetStep, long instances) {
+    }
+
+    /**
+     * Check whether every waiting instance has a target step
+     *
+     * @return true if a migration would move all instances
+     */
+    public boolean isComplete() {
+        return steps.stream().noneMatch(step -> step.sourceStep() != null && step.targetStep() == null);
+    }
+}
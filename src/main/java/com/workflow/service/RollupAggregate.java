@@ -0,0 +1,107 @@
+package com.workflow.service;
+
+/**
+ * Count and durations of finished instances in one rollup bucket
+ *
+ * Aggregates are merged by addition, so a bucket of any width is the
+ * merge of the finer buckets it spans.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public final class RollupAggregate {
+
+    private long instances;
+    private long durationSumMs;
+    private long durationMinMs = Long.MAX_VALUE;
+    private long durationMaxMs = Long.MIN_VALUE;
+    private final DurationSketch durationSketch;
+
+    public RollupAggregate() {
+        this.durationSketch = new DurationSketch();
+    }
+
+    /**
+     * Restore a stored aggregate
+     *
+     * @param instances the instance count
+     * @param durationSumMs the sum of durations
+     * @param durationMinMs the shortest duration
+     * @param durationMaxMs the longest duration
+     * @param durationSketch the serialized sketch of the durations
+     * @return the aggregate
+     */
+    public static RollupAggregate of(long instances, long durationSumMs, long durationMinMs, long durationMaxMs,
+                                     byte[] durationSketch) {
+        RollupAggregate aggregate = new RollupAggregate(DurationSketch.fromBytes(durationSketch));
+        aggregate.instances = instances;
+        aggregate.durationSumMs = durationSumMs;
+        aggregate.durationMinMs = durationMinMs;
+        aggregate.durationMaxMs = durationMaxMs;
+        return aggregate;
+    }
+
+    private RollupAggregate(DurationSketch durationSketch) {
+        this.durationSketch = durationSketch;
+    }
+
+    /**
+     * Count a finished instance
+     *
+     * @param durationMs how long the instance ran
+     * @return this aggregate
+     */
+    public RollupAggregate add(long durationMs) {
+        long duration = Math.max(0, durationMs);
+        instances++;
+        durationSumMs += duration;
+        durationMinMs = Math.min(durationMinMs, duration);
+        durationMaxMs = Math.max(durationMaxMs, duration);
+        durationSketch.add(duration);
+        return this;
+    }
+
+    /**
+     * Add the instances of another aggregate
+     *
+     * @param other the other aggregate
+     * @return this aggregate
+     */
+    public RollupAggregate merge(RollupAggregate other) {
+        instances += other.instances;
+        durationSumMs += other.durationSumMs;
+        durationMinMs = Math.min(durationMinMs, other.durationMinMs);
+        durationMaxMs = Math.max(durationMaxMs, other.durationMaxMs);
+        durationSketch.merge(other.durationSketch);
+        return this;
+    }
+
+    /**
+     * Copy this aggregate
+     *
+     * @return an independent copy
+     */
+    public RollupAggregate copy() {
+        return new RollupAggregate().merge(this);
+    }
+
+    public long instances() {
+        return instances;
+    }
+
+    public long durationSumMs() {
+        return durationSumMs;
+    }
+
+    public long durationMinMs() {
+        return durationMinMs;
+    }
+
+    public long durationMaxMs() {
+        return durationMaxMs;
+    }
+
+    public DurationSketch durationSketch() {
+        return durationSketch;
+    }
+}
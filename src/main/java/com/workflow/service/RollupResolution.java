@@ -0,0 +1,51 @@
+package com.workflow.service;
+
+import com.workflow.domain.CodedEnum;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Bucket width of instance rollups
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public enum RollupResolution implements CodedEnum {
+    MINUTE(1, ChronoUnit.MINUTES),
+    HOUR(2, ChronoUnit.HOURS),
+    DAY(3, ChronoUnit.DAYS);
+
+    private final short code;
+    private final ChronoUnit unit;
+
+    RollupResolution(int code, ChronoUnit unit) {
+        this.code = (short) code;
+        this.unit = unit;
+    }
+
+    @Override
+    public short getCode() {
+        return code;
+    }
+
+    /**
+     * Get the start of the bucket containing a time
+     *
+     * @param time the time
+     * @return the bucket start
+     */
+    public LocalDateTime bucketOf(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * Get the width of a bucket
+     *
+     * @return the bucket width
+     */
+    public Duration width() {
+        return unit.getDuration();
+    }
+}
@@ -0,0 +1,73 @@
+package com.workflow.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Context key of a workflow definition that is projected for search
+ *
+ * @param name the name used in search filters
+ * @param path the dotted path of the value in the instance context, e.g. order.id
+ * @param type how the value is indexed
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record SearchKey(String name, String path, ValueType type) {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    private static final int MAX_PATH_SEGMENTS = 16;
+
+    /**
+     * How a searchable value is indexed
+     */
+    public enum ValueType {
+        /**
+         * Indexed as text; numbers and booleans are indexed in their JSON form
+         */
+        TEXT,
+        /**
+         * Indexed as a number; values that are not JSON numbers are skipped
+         */
+        NUMBER
+    }
+
+    /**
+     * Check the key and split its path
+     *
+     * @return the path segments
+     * @throws InvalidSearchException if the name or path is invalid
+     */
+    public List<String> pathSegments() {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new InvalidSearchException("Invalid search key name: " + name);
+        }
+        if (type == null) {
+            throw new InvalidSearchException("Search key " + name + " has no type");
+        }
+        List<String> segments = splitPath(path);
+        if (segments.size() > MAX_PATH_SEGMENTS) {
+            throw new InvalidSearchException("Path of search key " + name + " is too deep");
+        }
+        return segments;
+    }
+
+    /**
+     * Split a dotted context path
+     *
+     * @param path the path, e.g. order.id
+     * @return the keys leading to the value
+     * @throws InvalidSearchException if the path is empty or has an empty segment
+     */
+    static List<String> splitPath(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new InvalidSearchException("Context path is missing");
+        }
+        List<String> segments = Arrays.asList(path.split("\\.", -1));
+        if (segments.stream().anyMatch(String::isEmpty)) {
+            throw new InvalidSearchException("Invalid context path: " + path);
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,200 @@
+package com.workflow.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Maintains the searchable context keys of definitions and their projected values
+ *
+ * Values are extracted in SQL from the instance context, so starts and
+ * backfills share one definition of the projection. An instance is
+ * projected when it starts if its definition has searchable keys. When
+ * the keys of a definition change, existing instances are re-projected
+ * in chunks in the background, once every node's definition cache has
+ * picked up the new keys.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+@Slf4j
+public class SearchProjectionService {
+
+    private static final String SELECT_KEYS =
+            "SELECT workflow_definition_id, key_name, json_path, value_type FROM workflow_search_keys"
+                    + " WHERE workflow_definition_id = ANY(?) ORDER BY key_name";
+
+    private static final String DELETE_KEYS =
+            "DELETE FROM workflow_search_keys WHERE workflow_definition_id = ?";
+
+    private static final String INSERT_KEY =
+            "INSERT INTO workflow_search_keys (workflow_definition_id, key_name, json_path, value_type)"
+                    + " VALUES (?, ?, ?, ?)";
+
+    private static final String PROJECT =
+            "INSERT INTO workflow_instance_search_values (instance_id, key_name, tenant_id, text_value, number_value)"
+                    + " SELECT i.id, k.key_name, i.tenant_id,"
+                    + " CASE WHEN k.value_type = 'TEXT' THEN i.context #>> k.json_path END,"
+                    + " CASE WHEN k.value_type = 'NUMBER' THEN (i.context #>> k.json_path)::DECIMAL END"
+                    + " FROM workflow_instances i"
+                    + " JOIN workflow_search_keys k ON k.workflow_definition_id = i.workflow_definition_id"
+                    + " WHERE i.id = ANY(?) AND CASE WHEN k.value_type = 'NUMBER'"
+                    + " THEN jsonb_typeof(i.context #> k.json_path) = 'number'"
+                    + " ELSE jsonb_typeof(i.context #> k.json_path) IN ('string', 'number', 'boolean') END"
+                    + " ON CONFLICT (instance_id, key_name) DO UPDATE"
+                    + " SET text_value = EXCLUDED.text_value, number_value = EXCLUDED.number_value";
+
+    private static final String DELETE_VALUES =
+            "DELETE FROM workflow_instance_search_values WHERE instance_id = ANY(?)";
+
+    private static final String SELECT_CHUNK =
+            "SELECT id, started_at FROM workflow_instances"
+                    + " WHERE workflow_definition_id = ? AND (started_at, id) < (?, ?)"
+                    + " ORDER BY started_at DESC, id DESC LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${workflow.search.backfill-chunk-size:1000}")
+    private int backfillChunkSize;
+
+    @Value("${workflow.definition-cache.ttl:PT30S}")
+    private Duration definitionCacheTtl;
+
+    public SearchProjectionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   TaskScheduler taskScheduler) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Get the searchable keys of definitions
+     *
+     * @param definitionIds the workflow definition IDs
+     * @return keys per definition; definitions without keys are absent
+     */
+    public Map<UUID, List<SearchKey>> findSearchKeys(Collection<UUID> definitionIds) {
+        Map<UUID, List<SearchKey>> keys = new HashMap<>();
+        if (definitionIds.isEmpty()) {
+            return keys;
+        }
+        jdbcTemplate.query(SELECT_KEYS, ps -> ps.setArray(1, uuidArray(ps.getConnection(), definitionIds)), rs -> {
+            String[] path = (String[]) rs.getArray("json_path").getArray();
+            keys.computeIfAbsent(rs.getObject("workflow_definition_id", UUID.class), id -> new ArrayList<>())
+                    .add(new SearchKey(rs.getString("key_name"), String.join(".", path),
+                            SearchKey.ValueType.valueOf(rs.getString("value_type"))));
+        });
+        return keys;
+    }
+
+    /**
+     * Replace the searchable keys of a definition and re-project its instances
+     *
+     * Must run in a transaction; the backfill is scheduled once it commits.
+     *
+     * @param definitionId the workflow definition ID
+     * @param keys the new keys
+     * @throws InvalidSearchException if a key is invalid or used twice
+     */
+    public void replaceSearchKeys(UUID definitionId, List<SearchKey> keys) {
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (SearchKey key : keys) {
+            List<String> path = key.pathSegments();
+            if (rows.stream().anyMatch(row -> row[1].equals(key.name()))) {
+                throw new InvalidSearchException("Search key " + key.name() + " is declared twice");
+            }
+            rows.add(new Object[] {definitionId, key.name(), path.toArray(String[]::new), key.type().name()});
+        }
+        jdbcTemplate.update(DELETE_KEYS, definitionId);
+        jdbcTemplate.batchUpdate(INSERT_KEY, rows, rows.size(), (ps, row) -> {
+            ps.setObject(1, row[0]);
+            ps.setString(2, (String) row[1]);
+            ps.setArray(3, ps.getConnection().createArrayOf("text", (String[]) row[2]));
+            ps.setString(4, (String) row[3]);
+        });
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                taskScheduler.schedule(() -> backfill(definitionId), Instant.now().plus(definitionCacheTtl));
+            }
+        });
+    }
+
+    /**
+     * Project the searchable values of a new instance
+     *
+     * @param instanceId the workflow instance ID
+     */
+    public void project(UUID instanceId) {
+        jdbcTemplate.update(PROJECT, ps -> ps.setArray(1, uuidArray(ps.getConnection(), List.of(instanceId))));
+    }
+
+    /**
+     * Replace the searchable values of instances with those of their current definition
+     *
+     * @param instanceIds the workflow instance IDs
+     */
+    public void reproject(List<UUID> instanceIds) {
+        jdbcTemplate.update(DELETE_VALUES, ps -> ps.setArray(1, uuidArray(ps.getConnection(), instanceIds)));
+        jdbcTemplate.update(PROJECT, ps -> ps.setArray(1, uuidArray(ps.getConnection(), instanceIds)));
+    }
+
+    /**
+     * Re-project all instances of a definition, newest first, one chunk per transaction
+     *
+     * @param definitionId the workflow definition ID
+     */
+    void backfill(UUID definitionId) {
+        long started = System.nanoTime();
+        Timestamp cursorStartedAt = Timestamp.from(Instant.now().plus(Duration.ofDays(1)));
+        UUID cursorId = new UUID(-1L, -1L);
+        long instances = 0;
+        try {
+            while (true) {
+                List<UUID> ids = new ArrayList<>(backfillChunkSize);
+                List<Timestamp> startedAt = new ArrayList<>(backfillChunkSize);
+                jdbcTemplate.query(SELECT_CHUNK, rs -> {
+                    ids.add(rs.getObject("id", UUID.class));
+                    startedAt.add(rs.getTimestamp("started_at"));
+                }, definitionId, cursorStartedAt, cursorId, backfillChunkSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                transactionTemplate.executeWithoutResult(status -> reproject(ids));
+                instances += ids.size();
+                cursorStartedAt = startedAt.get(startedAt.size() - 1);
+                cursorId = ids.get(ids.size() - 1);
+            }
+            log.info("Re-projected search values of {} instances of definition {} in {} ms",
+                    instances, definitionId, (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException ex) {
+            log.error("Search backfill of definition {} stopped after {} instances", definitionId, instances, ex);
+        }
+    }
+
+    private static Array uuidArray(Connection connection, Collection<UUID> ids) throws SQLException {
+        return connection.createArrayOf("uuid", ids.toArray());
+    }
+}
@@ -0,0 +1,38 @@
+package com.workflow.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Completion of the current step of a workflow instance
+ *
+ * Recorded as a COMPLETED workflow_executions row, and moves the instance
+ * to the next step or completes it when there is none. Automated steps
+ * may take several attempts; earlier ones are recorded as FAILED rows.
+ * If the next step has an SLA, its deadline is set in the same write.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record StepCompletion(
+        UUID executionId,
+        UUID instanceId,
+        String stepName,
+        String nextStep,
+        String outputData,
+        String executedBy,
+        LocalDateTime completedAt,
+        int attempt,
+        @JsonIgnore LocalDateTime nextStepDueAt) {
+
+    /**
+     * Check whether this completion finishes the instance
+     *
+     * @return true if the completed step was the last one
+     */
+    public boolean finishesInstance() {
+        return nextStep == null;
+    }
+}
@@ -0,0 +1,308 @@
+package com.workflow.service;
+
+import com.workflow.changes.ChangeOutbox;
+import com.workflow.cluster.OwnedInstanceCache;
+import com.workflow.domain.WorkflowExecution;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.persistence.TransactionRetryAspect;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit of step completions
+ *
+ * Completions are queued in memory and written by a single flusher thread,
+ * which collects up to workflow.step-batch.max-size completions or waits at
+ * most workflow.step-batch.max-delay after the first one. Each batch is one
+ * transaction: one batched UPDATE advancing the instances, one batched
+ * multi-row INSERT of the execution records, the batched writes of the
+ * next steps' deadlines to the {@link StepDeadlineIndex} and of the changes
+ * to the {@link ChangeOutbox}. Callers get a
+ * future that completes once their batch has committed.
+ *
+ * The instance update only applies if the instance is still RUNNING at the
+ * completed step of the definition the next step was resolved in, so a
+ * duplicate or stale completion, or one racing a migration, is rejected
+ * without affecting the rest of its batch. If a batch fails for any other reason,
+ * its completions are written one by one so a single bad record cannot
+ * fail its neighbours.
+ *
+ * The queue is bounded; when it is full, callers wait up to
+ * workflow.step-batch.enqueue-timeout and are then rejected.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(name = "workflow.persistence.mode", havingValue = "in-place", matchIfMissing = true)
+@Slf4j
+public class StepCompletionBatcher {
+
+    private static final String ADVANCE_INSTANCE = "UPDATE workflow_instances"
+            + " SET current_step = ?, status_code = ?, completed_at = ?"
+            + " WHERE id = ? AND current_step = ? AND status_code = ? AND workflow_definition_id = ?";
+
+    private static final String INSERT_EXECUTION = "INSERT INTO workflow_executions"
+            + " (id, workflow_instance_id, step_name, status_code, output_data, started_at, completed_at, executed_by, attempt)"
+            + " VALUES (?, ?, ?, ?, CAST(? AS JSONB), ?, ?, ?, ?)";
+
+    private static final short RUNNING = WorkflowInstance.InstanceStatus.RUNNING.getCode();
+    private static final short COMPLETED = WorkflowInstance.InstanceStatus.COMPLETED.getCode();
+    private static final short EXECUTION_COMPLETED = WorkflowExecution.ExecutionStatus.COMPLETED.getCode();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OwnedInstanceCache ownedInstanceCache;
+    private final StepDeadlineIndex stepDeadlineIndex;
+    private final ChangeOutbox changeOutbox;
+    private final BlockingQueue<Pending> queue;
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+
+    @Value("${workflow.step-batch.max-size:256}")
+    private int maxBatchSize;
+
+    @Value("${workflow.step-batch.max-delay:PT0.005S}")
+    private Duration maxDelay;
+
+    @Value("${workflow.step-batch.enqueue-timeout:PT1S}")
+    private Duration enqueueTimeout;
+
+    @Value("${workflow.transaction.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    public StepCompletionBatcher(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            OwnedInstanceCache ownedInstanceCache,
+            StepDeadlineIndex stepDeadlineIndex,
+            ChangeOutbox changeOutbox,
+            MeterRegistry meterRegistry,
+            @Value("${workflow.step-batch.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ownedInstanceCache = ownedInstanceCache;
+        this.stepDeadlineIndex = stepDeadlineIndex;
+        this.changeOutbox = changeOutbox;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSizes = DistributionSummary.builder("workflow.step-batch.size")
+                .description("Step completions written per batch")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("workflow.step-batch.flush")
+                .description("Time to write and commit one batch of step completions")
+                .register(meterRegistry);
+        Gauge.builder("workflow.step-batch.queued", queue, BlockingQueue::size)
+                .description("Step completions waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = new Thread(this::run, "step-completion-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // The flusher drains what is already queued before it exits
+        running = false;
+        flusher.join(Duration.ofSeconds(10).toMillis());
+    }
+
+    /**
+     * Queue a step completion for the next batch
+     *
+     * @param completion the completion to write
+     * @param definitionId the definition the next step was resolved in
+     * @return future completing with the completion once it is durable, or
+     *         exceptionally if it was rejected or could not be written
+     */
+    public CompletableFuture<StepCompletion> submit(StepCompletion completion, UUID definitionId) {
+        Pending pending = new Pending(completion, definitionId, new CompletableFuture<>());
+        try {
+            if (!running || !queue.offer(pending, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                pending.future().completeExceptionally(
+                        new RejectedExecutionException("Step completion queue is full"));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            pending.future().completeExceptionally(ex);
+        }
+        return pending.future();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flushTimer.record(() -> flush(batch));
+                batchSizes.record(batch.size());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException ex) {
+                log.error("Step completion flusher failed", ex);
+            } finally {
+                batch.forEach(pending -> pending.future().completeExceptionally(
+                        new IllegalStateException("Step completion was not written")));
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        try {
+            writeWithRetry(batch);
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                batch.get(0).future().completeExceptionally(ex);
+                return;
+            }
+            log.warn("Batch of {} step completions failed, writing them one by one: {}", batch.size(), ex.getMessage());
+            for (Pending pending : batch) {
+                try {
+                    writeWithRetry(List.of(pending));
+                } catch (RuntimeException single) {
+                    pending.future().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void writeWithRetry(List<Pending> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Pending> accepted = transactionTemplate.execute(status -> write(batch));
+                batch.forEach(pending -> ownedInstanceCache.evict(pending.completion().instanceId()));
+                for (Pending pending : batch) {
+                    if (accepted.contains(pending)) {
+                        pending.future().complete(pending.completion());
+                    } else {
+                        pending.future().completeExceptionally(new IllegalStateException(
+                                "Step " + pending.completion().stepName() + " is not the current step of workflow instance "
+                                        + pending.completion().instanceId()));
+                    }
+                }
+                return;
+            } catch (RuntimeException ex) {
+                if (!TransactionRetryAspect.isRetryable(ex) || attempt >= maxAttempts) {
+                    throw ex;
+                }
+                sleepQuietly(ThreadLocalRandom.current().nextLong(10L << Math.min(attempt, 6)));
+            }
+        }
+    }
+
+    private List<Pending> write(List<Pending> batch) {
+        // Statements of one batch apply in order, so consecutive steps of one instance both succeed
+        int[] updated = jdbcTemplate.batchUpdate(ADVANCE_INSTANCE, batch, batch.size(), (ps, pending) -> {
+            StepCompletion completion = pending.completion();
+            if (completion.finishesInstance()) {
+                ps.setString(1, completion.stepName());
+                ps.setShort(2, COMPLETED);
+                ps.setTimestamp(3, Timestamp.valueOf(completion.completedAt()));
+            } else {
+                ps.setString(1, completion.nextStep());
+                ps.setShort(2, RUNNING);
+                ps.setTimestamp(3, null);
+            }
+            ps.setObject(4, completion.instanceId());
+            ps.setString(5, completion.stepName());
+            ps.setShort(6, RUNNING);
+            ps.setObject(7, pending.definitionId());
+        })[0];
+
+        List<Pending> accepted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (updated[i] != 0) {
+                accepted.add(batch.get(i));
+            }
+        }
+        if (accepted.isEmpty()) {
+            return accepted;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_EXECUTION, accepted, accepted.size(), (ps, pending) -> {
+            StepCompletion completion = pending.completion();
+            Timestamp completedAt = Timestamp.valueOf(completion.completedAt());
+            ps.setObject(1, completion.executionId());
+            ps.setObject(2, completion.instanceId());
+            ps.setString(3, completion.stepName());
+            ps.setShort(4, EXECUTION_COMPLETED);
+            ps.setString(5, completion.outputData());
+            ps.setTimestamp(6, completedAt);
+            ps.setTimestamp(7, completedAt);
+            ps.setString(8, completion.executedBy());
+            ps.setInt(9, completion.attempt());
+        });
+        stepDeadlineIndex.enterAll(accepted.stream().map(Pending::completion).toList());
+        List<ChangeOutbox.Change> changes = new ArrayList<>(accepted.size() * 2);
+        for (Pending pending : accepted) {
+            StepCompletion completion = pending.completion();
+            changes.add(ChangeOutbox.Change.execution(completion.executionId(), completion.instanceId(),
+                    WorkflowExecution.ExecutionStatus.COMPLETED, completion.stepName(), completion.completedAt()));
+            changes.add(completion.finishesInstance()
+                    ? ChangeOutbox.Change.instance(null, completion.instanceId(),
+                            WorkflowInstance.InstanceStatus.COMPLETED, completion.stepName(), completion.completedAt())
+                    : ChangeOutbox.Change.instance(null, completion.instanceId(),
+                            WorkflowInstance.InstanceStatus.RUNNING, completion.nextStep(), completion.completedAt()));
+        }
+        changeOutbox.recordAll(changes);
+        return accepted;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Pending(StepCompletion completion, UUID definitionId, CompletableFuture<StepCompletion> future) {
+    }
+}
@@ -0,0 +1,219 @@
+package com.workflow.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Deadline index of instances waiting in steps with an SLA
+ *
+ * Holds one workflow_step_deadlines row per instance whose current step
+ * has a {@link StepSla}, written in the transaction that moves the
+ * instance into the step. Rows are only read by deadline range, so
+ * finding overdue instances costs as much as there are overdue instances,
+ * however many are running.
+ *
+ * Rows of instances that left their step some other way, e.g. were
+ * cancelled, are not removed eagerly; the detector drops them when their
+ * deadline comes up. Instances migrated to another definition get the
+ * deadline of their target step in the migration's transaction.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Slf4j
+public class StepDeadlineIndex {
+
+    private static final String UPSERT = "UPSERT INTO workflow_step_deadlines"
+            + " (workflow_instance_id, step_name, due_at, check_at) VALUES (?, ?, ?, ?)";
+
+    private static final String DELETE = "DELETE FROM workflow_step_deadlines WHERE workflow_instance_id = ?";
+
+    private static final String DELETE_ALL = "DELETE FROM workflow_step_deadlines WHERE workflow_instance_id = ANY(?)";
+
+    private static final String SELECT_DUE = "SELECT workflow_instance_id, due_at FROM workflow_step_deadlines"
+            + " WHERE workflow_instance_id = ANY(?) AND step_name = ?";
+
+    // Moves the claimed rows' next check to the end of the claim, so a node that stops before releasing them
+    // hands them to the next scan
+    private static final String CLAIM = "UPDATE workflow_step_deadlines SET check_at = ?"
+            + " WHERE check_at <= ? ORDER BY check_at LIMIT ?"
+            + " RETURNING workflow_instance_id, step_name, due_at";
+
+    // A row the instance has rewritten since the claim belongs to its next step
+    private static final String RELEASE = "DELETE FROM workflow_step_deadlines"
+            + " WHERE workflow_instance_id = ? AND step_name = ? AND due_at = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StepDeadlineIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Compute when an instance entering a step breaches the step's SLA
+     *
+     * @param step the entered step, or null if the instance finished
+     * @param enteredAt when the instance entered the step
+     * @return the deadline, or null if the step has no valid SLA
+     */
+    public LocalDateTime dueAt(DefinitionSnapshot.StepSnapshot step, LocalDateTime enteredAt) {
+        return sla(step).map(sla -> enteredAt.plus(sla.after())).orElse(null);
+    }
+
+    /**
+     * Read the SLA of a step
+     *
+     * @param step the step, or null
+     * @return the SLA, or empty if the step has none or its SLA is invalid
+     */
+    public Optional<StepSla> sla(DefinitionSnapshot.StepSnapshot step) {
+        if (step == null) {
+            return Optional.empty();
+        }
+        try {
+            return StepSla.of(step.configuration());
+        } catch (IllegalArgumentException ex) {
+            // Definitions compiled before SLAs were validated may carry invalid ones
+            log.debug("Ignoring SLA of step {}: {}", step.stepName(), ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Set the deadline of an instance that entered a step, within the transaction that moved it
+     *
+     * @param instanceId the workflow instance ID
+     * @param stepName the entered step, or null if the instance finished
+     * @param dueAt when the step's SLA runs out, or null if it has none
+     */
+    public void enter(UUID instanceId, String stepName, LocalDateTime dueAt) {
+        if (stepName == null || dueAt == null) {
+            jdbcTemplate.update(DELETE, instanceId);
+        } else {
+            Timestamp due = Timestamp.valueOf(dueAt);
+            jdbcTemplate.update(UPSERT, instanceId, stepName, due, due);
+        }
+    }
+
+    /**
+     * Set the deadlines of a batch of completed steps, within the batch's transaction
+     *
+     * @param completions the completions that moved their instance
+     */
+    public void enterAll(List<StepCompletion> completions) {
+        List<StepCompletion> due = completions.stream()
+                .filter(completion -> !completion.finishesInstance() && completion.nextStepDueAt() != null)
+                .toList();
+        List<StepCompletion> cleared = completions.stream()
+                .filter(completion -> completion.finishesInstance() || completion.nextStepDueAt() == null)
+                .toList();
+        if (!due.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, due, due.size(), (ps, completion) -> {
+                Timestamp dueAt = Timestamp.valueOf(completion.nextStepDueAt());
+                ps.setObject(1, completion.instanceId());
+                ps.setString(2, completion.nextStep());
+                ps.setTimestamp(3, dueAt);
+                ps.setTimestamp(4, dueAt);
+            });
+        }
+        if (!cleared.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE, cleared, cleared.size(),
+                    (ps, completion) -> ps.setObject(1, completion.instanceId()));
+        }
+    }
+
+    /**
+     * Move the deadlines of instances migrated to another step, within the migration's transaction
+     *
+     * Instances keep the time they have spent in their step: the target
+     * step's SLA counts from when they entered the source step, as told by
+     * the source step's deadline. Instances without one start the target
+     * step's SLA at the migration.
+     *
+     * @param instanceIds the migrated instances
+     * @param source the step they were migrated from, or null
+     * @param target the step they were migrated to, or null
+     * @param migratedAt when they were migrated
+     */
+    public void migrate(List<UUID> instanceIds, DefinitionSnapshot.StepSnapshot source,
+                        DefinitionSnapshot.StepSnapshot target, LocalDateTime migratedAt) {
+        if (instanceIds.isEmpty()) {
+            return;
+        }
+        Optional<Duration> targetSla = sla(target).map(StepSla::after);
+        if (targetSla.isEmpty()) {
+            jdbcTemplate.update(DELETE_ALL,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", instanceIds.toArray())));
+            return;
+        }
+
+        Map<UUID, LocalDateTime> enteredAt = new HashMap<>();
+        sla(source).map(StepSla::after).ifPresent(sourceSla -> jdbcTemplate.query(SELECT_DUE, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("uuid", instanceIds.toArray()));
+            ps.setString(2, source.stepName());
+        }, rs -> {
+            enteredAt.put(rs.getObject("workflow_instance_id", UUID.class),
+                    rs.getTimestamp("due_at").toLocalDateTime().minus(sourceSla));
+        }));
+        jdbcTemplate.batchUpdate(UPSERT, instanceIds, instanceIds.size(), (ps, instanceId) -> {
+            Timestamp dueAt = Timestamp.valueOf(enteredAt.getOrDefault(instanceId, migratedAt).plus(targetSla.get()));
+            ps.setObject(1, instanceId);
+            ps.setString(2, target.stepName());
+            ps.setTimestamp(3, dueAt);
+            ps.setTimestamp(4, dueAt);
+        });
+    }
+
+    /**
+     * Claim the next overdue deadlines, earliest first
+     *
+     * Claimed rows are not returned by other claims until releaseAt. Each
+     * call is its own statement, so concurrent detectors never claim the
+     * same row.
+     *
+     * @param now the current time
+     * @param releaseAt when unreleased claims become due again
+     * @param limit the most deadlines to claim
+     * @return the claimed deadlines
+     */
+    public List<Deadline> claimOverdue(LocalDateTime now, LocalDateTime releaseAt, int limit) {
+        return jdbcTemplate.query(CLAIM, (rs, rowNum) -> new Deadline(
+                        rs.getObject("workflow_instance_id", UUID.class),
+                        rs.getString("step_name"),
+                        rs.getTimestamp("due_at").toLocalDateTime()),
+                Timestamp.valueOf(releaseAt), Timestamp.valueOf(now), limit);
+    }
+
+    /**
+     * Remove handled deadlines, unless their instance has entered the step again since
+     *
+     * @param deadlines the handled deadlines
+     */
+    public void release(List<Deadline> deadlines) {
+        if (deadlines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(RELEASE, deadlines, deadlines.size(), (ps, deadline) -> {
+            ps.setObject(1, deadline.instanceId());
+            ps.setString(2, deadline.stepName());
+            ps.setTimestamp(3, Timestamp.valueOf(deadline.dueAt()));
+        });
+    }
+
+    /**
+     * Deadline of an instance at a step
+     */
+    public record Deadline(UUID instanceId, String stepName, LocalDateTime dueAt) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.workflow.service;
+
+import java.util.UUID;
+
+/**
+ * Published when a workflow instance enters a step
+ *
+ * Published within the transaction that moved the instance, or after the
+ * batch that recorded the move has committed. Step handlers act on it
+ * once the move is durable.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record StepEnteredEvent(
+        UUID instanceId,
+        UUID definitionId,
+        DefinitionSnapshot.StepSnapshot step) {
+}
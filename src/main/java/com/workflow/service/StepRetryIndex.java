@@ -0,0 +1,110 @@
+package com.workflow.service;
+
+import com.workflow.domain.CodedEnum;
+import com.workflow.domain.WorkflowExecution;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Index of failed step and compensation attempts that are retried
+ *
+ * A failed attempt that will be retried keeps the time of its retry in
+ * next_attempt_at of its FAILED or COMPENSATION_FAILED workflow_executions
+ * row, written with the row. The retry waits in memory on the node that
+ * recorded it. Whoever runs it moves next_attempt_at past the time the
+ * retry may take: the node that queued it when the retry comes up, or a
+ * scan claiming retries that are overdue, e.g. because that node stopped.
+ * Only one of them succeeds, so a retry is not run twice. The next attempt
+ * of the instance clears the column.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+public class StepRetryIndex {
+
+    // Holds the retry only if nobody has claimed it since it was queued
+    private static final String HOLD = "UPDATE workflow_executions SET next_attempt_at = ?"
+            + " WHERE id = ? AND next_attempt_at = ?";
+
+    // The outer condition is checked again against rows a concurrent claim has changed
+    private static final String CLAIM = "UPDATE workflow_executions SET next_attempt_at = ?"
+            + " WHERE id IN (SELECT id FROM workflow_executions WHERE next_attempt_at <= ?"
+            + " ORDER BY next_attempt_at LIMIT ?) AND next_attempt_at <= ?"
+            + " RETURNING id, workflow_instance_id, step_name, status_code, attempt";
+
+    private static final String CLEAR = "UPDATE workflow_executions SET next_attempt_at = NULL WHERE id = ?";
+
+    private static final String CLEAR_INSTANCE = "UPDATE workflow_executions SET next_attempt_at = NULL"
+            + " WHERE workflow_instance_id = ? AND next_attempt_at IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StepRetryIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Take a queued retry when it comes up
+     *
+     * @param executionId the execution of the failed attempt
+     * @param nextAttemptAt when the retry was queued for
+     * @param heldUntil when the retry is given to the scan, should it not have run by then
+     * @return true if the retry is still pending and is now held; false if a scan has claimed it
+     */
+    public boolean hold(UUID executionId, LocalDateTime nextAttemptAt, LocalDateTime heldUntil) {
+        return jdbcTemplate.update(HOLD, Timestamp.valueOf(heldUntil), executionId,
+                Timestamp.valueOf(nextAttemptAt)) == 1;
+    }
+
+    /**
+     * Claim the retries that have been due for a while, earliest first
+     *
+     * Claimed retries are not returned by other claims until heldUntil.
+     *
+     * @param dueBefore claim retries due before this time
+     * @param heldUntil when unfinished claims become due again
+     * @param limit the most retries to claim
+     * @return the claimed retries
+     */
+    public List<PendingRetry> claimOverdue(LocalDateTime dueBefore, LocalDateTime heldUntil, int limit) {
+        Timestamp before = Timestamp.valueOf(dueBefore);
+        return jdbcTemplate.query(CLAIM, (rs, rowNum) -> new PendingRetry(
+                        rs.getObject("id", UUID.class),
+                        rs.getObject("workflow_instance_id", UUID.class),
+                        rs.getString("step_name"),
+                        CodedEnum.fromCode(WorkflowExecution.ExecutionStatus.class, rs.getShort("status_code")),
+                        rs.getInt("attempt")),
+                Timestamp.valueOf(heldUntil), before, limit, before);
+    }
+
+    /**
+     * Drop a retry that is not run, e.g. because its instance has moved on
+     *
+     * @param executionId the execution of the failed attempt
+     */
+    public void clear(UUID executionId) {
+        jdbcTemplate.update(CLEAR, executionId);
+    }
+
+    /**
+     * Drop the retries of an instance once one of them has run, within the transaction that records it
+     *
+     * @param instanceId the workflow instance ID
+     */
+    public void clearInstance(UUID instanceId) {
+        jdbcTemplate.update(CLEAR_INSTANCE, instanceId);
+    }
+
+    /**
+     * Retry of a failed step or compensation attempt
+     */
+    public record PendingRetry(UUID executionId, UUID instanceId, String stepName,
+                               WorkflowExecution.ExecutionStatus status, int attempt) {
+    }
+}
@@ -0,0 +1,134 @@
+package com.workflow.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Service level agreement of a workflow step
+ *
+ * Read from the step configuration, in order of precedence:
+ *
+ * <pre>
+ * "sla": {"after": "PT4H", "action": "escalate", "escalateTo": "managerReview"}
+ * "sla": "PT4H"            (or seconds)
+ * "dueDays": 2
+ * "timeout": 3600          (seconds)
+ * </pre>
+ *
+ * An instance breaches the SLA when it is still at the step "after" it
+ * entered it. Without an "action", the engine-wide workflow.sla.action
+ * applies.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record StepSla(Duration after, Action action, String escalateTo) {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Read the SLA of a step
+     *
+     * @param configuration the step configuration as JSON, or null
+     * @return the SLA, or empty if the step has none
+     * @throws IllegalArgumentException if the SLA settings are invalid
+     */
+    public static Optional<StepSla> of(String configuration) {
+        // Most steps have no SLA; skip parsing their configuration
+        if (configuration == null || !(configuration.contains("\"sla\"")
+                || configuration.contains("\"dueDays\"") || configuration.contains("\"timeout\""))) {
+            return Optional.empty();
+        }
+        try {
+            return of(JSON.readTree(configuration));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Step configuration is not valid JSON");
+        }
+    }
+
+    /**
+     * Read the SLA of a step from its parsed configuration
+     *
+     * @param configuration the step configuration
+     * @return the SLA, or empty if the step has none
+     * @throws IllegalArgumentException if the SLA settings are invalid
+     */
+    public static Optional<StepSla> of(JsonNode configuration) {
+        JsonNode sla = configuration.get("sla");
+        if (sla != null && sla.isObject()) {
+            Action action = sla.hasNonNull("action") ? Action.of(sla.get("action").asText()) : null;
+            String escalateTo = sla.path("escalateTo").asText(null);
+            if (action == Action.ESCALATE && escalateTo == null) {
+                throw new IllegalArgumentException("SLA action escalate needs an \"escalateTo\" step");
+            }
+            Duration after = sla.hasNonNull("after") ? duration(sla.get("after")) : dueAfter(configuration);
+            if (after == null) {
+                throw new IllegalArgumentException("SLA needs an \"after\" duration");
+            }
+            return Optional.of(new StepSla(after, action, escalateTo));
+        }
+        Duration after = sla != null && !sla.isNull() ? duration(sla) : dueAfter(configuration);
+        return after == null ? Optional.empty() : Optional.of(new StepSla(after, null, null));
+    }
+
+    private static Duration dueAfter(JsonNode configuration) {
+        if (configuration.hasNonNull("dueDays")) {
+            return positive(Duration.ofDays(configuration.get("dueDays").asLong()));
+        }
+        if (configuration.hasNonNull("timeout")) {
+            return positive(Duration.ofSeconds(configuration.get("timeout").asLong()));
+        }
+        return null;
+    }
+
+    private static Duration duration(JsonNode value) {
+        if (value.isNumber()) {
+            return positive(Duration.ofMillis((long) (value.asDouble() * 1000)));
+        }
+        try {
+            return positive(Duration.parse(value.asText()));
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("SLA must be seconds or an ISO-8601 duration");
+        }
+    }
+
+    private static Duration positive(Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("SLA must be longer than zero");
+        }
+        return duration;
+    }
+
+    /**
+     * What happens to an instance that breaches a step's SLA
+     */
+    public enum Action {
+        /** Only report the breach */
+        NONE,
+        /** Fail the step, compensating completed steps that declare a compensation */
+        FAIL,
+        /** Move the instance to the step's "escalateTo" step */
+        ESCALATE;
+
+        /**
+         * Parse an action name
+         *
+         * @param name the name, in any case
+         * @return the action
+         * @throws IllegalArgumentException if there is no such action
+         */
+        public static Action of(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Unknown SLA action " + name + "; use none, fail or escalate");
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.workflow.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tables covered by bulk export and import, in foreign key order
+ *
+ * Each table names the tenant of its rows, references a parent row that
+ * belongs to the same tenant, or both; that is how exports and imports are
+ * kept to one tenant.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public enum TransferTable {
+
+    WORKFLOW_DEFINITIONS("workflow_definitions", false, null, null,
+            "id", "tenant_id", "name", "description", "version", "status_code", "definition", "compiled_definition",
+            "created_at", "updated_at", "created_by", "updated_by"),
+    WORKFLOW_STEPS("workflow_steps", false, "workflow_definition_id", WORKFLOW_DEFINITIONS,
+            "id", "workflow_definition_id", "step_name", "step_type_code", "step_order", "configuration",
+            "next_steps", "conditions", "created_at", "updated_at"),
+    WORKFLOW_SEARCH_KEYS("workflow_search_keys", false, "workflow_definition_id", WORKFLOW_DEFINITIONS,
+            "workflow_definition_id", "key_name", "json_path", "value_type"),
+    WORKFLOW_INSTANCES("workflow_instances", true, "workflow_definition_id", WORKFLOW_DEFINITIONS,
+            "id", "tenant_id", "workflow_definition_id", "name", "status_code", "current_step", "context", "started_at",
+            "completed_at", "created_by", "updated_by", "snapshot_sequence", "idempotency_key",
+            "idempotency_expires_at"),
+    WORKFLOW_INSTANCE_SEARCH_VALUES("workflow_instance_search_values", true, "instance_id", WORKFLOW_INSTANCES,
+            "instance_id", "key_name", "tenant_id", "text_value", "number_value"),
+    WORKFLOW_INSTANCE_EVENTS("workflow_instance_events", true, "workflow_instance_id", WORKFLOW_INSTANCES,
+            "workflow_instance_id", "sequence_number", "event_type", "status", "current_step", "occurred_at"),
+    WORKFLOW_EXECUTIONS("workflow_executions", true, "workflow_instance_id", WORKFLOW_INSTANCES,
+            "id", "workflow_instance_id", "step_name", "status_code", "input_data", "output_data", "error_message",
+            "started_at", "completed_at", "executed_by", "attempt", "next_attempt_at"),
+    WORKFLOW_ASSIGNMENTS("workflow_assignments", true, "workflow_execution_id", WORKFLOW_EXECUTIONS,
+            "id", "workflow_execution_id", "assignee", "assigned_at", "completed_at", "status_code", "comments",
+            "workflow_instance_id", "step_name", "candidate_group");
+
+    static final String TENANT_COLUMN = "tenant_id";
+
+    private final String tableName;
+    private final boolean instanceData;
+    private final String parentColumn;
+    private final TransferTable parent;
+    private final List<String> columns;
+
+    TransferTable(String tableName, boolean instanceData, String parentColumn, TransferTable parent,
+                  String... columns) {
+        this.tableName = tableName;
+        this.instanceData = instanceData;
+        this.parentColumn = parentColumn;
+        this.parent = parent;
+        this.columns = List.of(columns);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Check whether the table holds instance data rather than definitions
+     *
+     * @return true for instances and their history
+     */
+    public boolean isInstanceData() {
+        return instanceData;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the column naming the row's tenant, for tables that have one
+     *
+     * @return tenant_id, or null if the tenant follows from the parent row
+     */
+    public String getTenantColumn() {
+        return columns.contains(TENANT_COLUMN) ? TENANT_COLUMN : null;
+    }
+
+    /**
+     * Get the column referencing the parent row, which belongs to the same tenant
+     *
+     * @return the foreign key column, or null for definitions
+     */
+    public String getParentColumn() {
+        return parentColumn;
+    }
+
+    public TransferTable getParent() {
+        return parent;
+    }
+
+    /**
+     * SQL condition limiting the rows of this table to one tenant
+     *
+     * Tables without a tenant column are limited through their parent rows.
+     * The condition takes the tenant ID as its only parameter.
+     *
+     * @return the condition, for use in a WHERE clause on this table
+     */
+    public String tenantCondition() {
+        if (getTenantColumn() != null) {
+            return TENANT_COLUMN + " = ?";
+        }
+        return parentColumn + " IN (SELECT id FROM " + parent.tableName + " WHERE " + parent.tenantCondition() + ")";
+    }
+
+    /**
+     * Find a table by its SQL name
+     *
+     * @param tableName the table name as written in an export
+     * @return Optional containing the table if it can be imported
+     */
+    public static Optional<TransferTable> byTableName(String tableName) {
+        return Arrays.stream(values()).filter(table -> table.tableName.equals(tableName)).findFirst();
+    }
+}
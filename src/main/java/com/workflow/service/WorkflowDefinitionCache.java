@@ -0,0 +1,177 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.repository.WorkflowDefinitionRepository;
+import com.workflow.tenancy.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of workflow definition snapshots
+ *
+ * Definitions change rarely but are read on every instance start, so
+ * snapshots are kept per node and evicted after local changes commit.
+ * Entries also expire after a short TTL so changes made on other nodes
+ * are picked up. Active definitions are loaded in the background once
+ * the application is ready, keeping the warm-up off the startup path.
+ * Compiled definitions are read from their compiled_definition column
+ * without loading the step rows. Snapshots also carry the definition's
+ * searchable context keys. The cache is shared by all tenants, so
+ * lookups only return definitions of the current tenant.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Slf4j
+public class WorkflowDefinitionCache {
+
+    private final WorkflowDefinitionRepository workflowDefinitionRepository;
+    private final SearchProjectionService searchProjectionService;
+    private final TransactionTemplate readTransaction;
+    private final TaskExecutor taskExecutor;
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${workflow.definition-cache.ttl:PT30S}")
+    private Duration ttl;
+
+    @Value("${workflow.definition-cache.warm-up:true}")
+    private boolean warmUp;
+
+    public WorkflowDefinitionCache(
+            WorkflowDefinitionRepository workflowDefinitionRepository,
+            SearchProjectionService searchProjectionService,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+        this.workflowDefinitionRepository = workflowDefinitionRepository;
+        this.searchProjectionService = searchProjectionService;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Get a definition snapshot, loading it on a miss
+     *
+     * @param id the workflow definition ID
+     * @return Optional containing the snapshot if the definition exists
+     */
+    public Optional<DefinitionSnapshot> get(UUID id) {
+        Entry entry = entries.get(id);
+        if (entry != null && !entry.isExpired(ttl)) {
+            return visible(entry.snapshot());
+        }
+        Optional<DefinitionSnapshot> loaded = readTransaction.execute(status ->
+                workflowDefinitionRepository.findById(id).map(definition -> DefinitionSnapshot.of(definition)
+                        .withSearchKeys(searchProjectionService.findSearchKeys(List.of(id))
+                                .getOrDefault(id, List.of()))));
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    /**
+     * Get a cached snapshot without loading it
+     *
+     * @param id the workflow definition ID
+     * @return Optional containing the snapshot if cached and not expired
+     */
+    public Optional<DefinitionSnapshot> getIfPresent(UUID id) {
+        Entry entry = entries.get(id);
+        return entry != null && !entry.isExpired(ttl) ? visible(entry.snapshot()) : Optional.empty();
+    }
+
+    /**
+     * Get a cached snapshot by name and version without loading it
+     *
+     * @param name the workflow name
+     * @param version the version number
+     * @return Optional containing the snapshot if cached and not expired
+     */
+    public Optional<DefinitionSnapshot> getIfPresent(String name, Integer version) {
+        for (Entry entry : entries.values()) {
+            DefinitionSnapshot snapshot = entry.snapshot();
+            if (snapshot.name().equals(name) && snapshot.version().equals(version) && !entry.isExpired(ttl)
+                    && TenantContext.canAccess(snapshot.tenantId())) {
+                return Optional.of(snapshot);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Evict a definition once the current transaction commits
+     *
+     * @param id the workflow definition ID
+     */
+    public void evictAfterCommit(UUID id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entries.remove(id);
+                }
+            });
+        } else {
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * Start loading all active definitions in the background
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpInBackground() {
+        if (!warmUp) {
+            return;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                List<DefinitionSnapshot> snapshots = readTransaction.execute(status -> {
+                    List<WorkflowDefinition> active =
+                            workflowDefinitionRepository.findWithStepsByStatus(WorkflowDefinition.WorkflowStatus.ACTIVE);
+                    Map<UUID, List<SearchKey>> searchKeys = searchProjectionService.findSearchKeys(
+                            active.stream().map(WorkflowDefinition::getId).toList());
+                    return active.stream()
+                            .map(definition -> DefinitionSnapshot.of(definition)
+                                    .withSearchKeys(searchKeys.getOrDefault(definition.getId(), List.of())))
+                            .toList();
+                });
+                snapshots.forEach(this::put);
+                log.info("Warmed definition cache with {} active definitions", snapshots.size());
+            } catch (RuntimeException ex) {
+                log.warn("Definition cache warm-up failed, definitions will load on demand", ex);
+            }
+        });
+    }
+
+    private static Optional<DefinitionSnapshot> visible(DefinitionSnapshot snapshot) {
+        return TenantContext.canAccess(snapshot.tenantId()) ? Optional.of(snapshot) : Optional.empty();
+    }
+
+    private void put(DefinitionSnapshot snapshot) {
+        entries.put(snapshot.id(), new Entry(snapshot, System.nanoTime()));
+    }
+
+    private record Entry(DefinitionSnapshot snapshot, long loadedAtNanos) {
+
+        boolean isExpired(Duration ttl) {
+            return System.nanoTime() - loadedAtNanos > ttl.toNanos();
+        }
+    }
+}
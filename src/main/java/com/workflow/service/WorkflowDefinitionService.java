@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -26,6 +27,9 @@ import java.util.UUID;
 public class WorkflowDefinitionService {
 
     private final WorkflowDefinitionRepository workflowDefinitionRepository;
+    private final WorkflowDefinitionCache workflowDefinitionCache;
+    private final DefinitionCompiler definitionCompiler;
+    private final SearchProjectionService searchProjectionService;
 
     /**
      * Create a new workflow definition
@@ -44,6 +48,14 @@ public class WorkflowDefinitionService {
             workflowDefinition.setStatus(WorkflowDefinition.WorkflowStatus.DRAFT);
         }
         
+        // Compile up front so invalid definitions are rejected before they are stored
+        if (workflowDefinition.getSteps() == null || workflowDefinition.getSteps().isEmpty()) {
+            definitionCompiler.checkDocument(workflowDefinition);
+        } else {
+            workflowDefinition.getSteps().forEach(step -> step.setWorkflowDefinition(workflowDefinition));
+            workflowDefinition.setCompiledDefinition(definitionCompiler.compile(workflowDefinition).toJson());
+        }
+        
         // Check if version already exists
         if (workflowDefinitionRepository.existsByNameAndVersion(
                 workflowDefinition.getName(), workflowDefinition.getVersion())) {
@@ -72,9 +84,16 @@ public class WorkflowDefinitionService {
                     existing.setName(workflowDefinition.getName());
                     existing.setDescription(workflowDefinition.getDescription());
                     existing.setDefinition(workflowDefinition.getDefinition());
+                    // Active definitions start instances from their compiled form, so keep it current
+                    if (existing.getStatus() == WorkflowDefinition.WorkflowStatus.ACTIVE) {
+                        existing.setCompiledDefinition(definitionCompiler.compile(existing).toJson());
+                    } else {
+                        definitionCompiler.checkDocument(existing);
+                    }
                     existing.setUpdatedBy(workflowDefinition.getUpdatedBy());
                     
                     WorkflowDefinition updated = workflowDefinitionRepository.save(existing);
+                    workflowDefinitionCache.evictAfterCommit(id);
                     log.info("Updated workflow definition: {}", updated.getId());
                     return updated;
                 });
@@ -89,10 +108,13 @@ public class WorkflowDefinitionService {
     public Optional<WorkflowDefinition> activateWorkflowDefinition(UUID id) {
         log.info("Activating workflow definition: {}", id);
         
-        return workflowDefinitionRepository.findById(id)
+        return workflowDefinitionRepository.findWithStepsById(id)
                 .map(definition -> {
+                    // Instances only ever start from a compiled definition
+                    definition.setCompiledDefinition(definitionCompiler.compile(definition).toJson());
                     definition.setStatus(WorkflowDefinition.WorkflowStatus.ACTIVE);
                     WorkflowDefinition activated = workflowDefinitionRepository.save(definition);
+                    workflowDefinitionCache.evictAfterCommit(id);
                     log.info("Activated workflow definition: {}", activated.getId());
                     return activated;
                 });
@@ -111,11 +133,30 @@ public class WorkflowDefinitionService {
                 .map(definition -> {
                     definition.setStatus(WorkflowDefinition.WorkflowStatus.INACTIVE);
                     WorkflowDefinition deactivated = workflowDefinitionRepository.save(definition);
+                    workflowDefinitionCache.evictAfterCommit(id);
                     log.info("Deactivated workflow definition: {}", deactivated.getId());
                     return deactivated;
                 });
     }
 
+    /**
+     * Delete a workflow definition
+     * 
+     * @param id the workflow definition ID
+     * @return true if the definition existed and was deleted
+     */
+    public boolean deleteWorkflowDefinition(UUID id) {
+        log.info("Deleting workflow definition: {}", id);
+        
+        if (!workflowDefinitionRepository.existsById(id)) {
+            return false;
+        }
+        workflowDefinitionRepository.deleteById(id);
+        workflowDefinitionCache.evictAfterCommit(id);
+        log.info("Deleted workflow definition: {}", id);
+        return true;
+    }
+
     /**
      * Create a new version of an existing workflow definition
      * 
@@ -138,4 +179,25 @@ public class WorkflowDefinitionService {
         log.info("Created new version {} for workflow: {}", newVersion, name);
         return saved;
     }
+
+    /**
+     * Replace the searchable context keys of a workflow definition
+     * 
+     * Instances started from now on are projected with the new keys;
+     * existing instances are re-projected in the background.
+     * 
+     * @param id the workflow definition ID
+     * @param searchKeys the new searchable keys
+     * @return the keys, or empty if the definition was not found
+     */
+    public Optional<List<SearchKey>> replaceSearchKeys(UUID id, List<SearchKey> searchKeys) {
+        log.info("Replacing search keys of workflow definition: {}", id);
+        
+        if (!workflowDefinitionRepository.existsById(id)) {
+            return Optional.empty();
+        }
+        searchProjectionService.replaceSearchKeys(id, searchKeys);
+        workflowDefinitionCache.evictAfterCommit(id);
+        return Optional.of(searchKeys);
+    }
 }
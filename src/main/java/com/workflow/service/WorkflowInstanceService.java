@@ -1,19 +1,30 @@
 package com.workflow.service;
 
+import com.workflow.changes.ChangeOutbox;
+import com.workflow.cluster.OwnedInstanceCache;
+import com.workflow.domain.InstanceEvent;
 import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowExecution;
 import com.workflow.domain.WorkflowInstance;
-import com.workflow.domain.WorkflowStep;
 import com.workflow.repository.WorkflowDefinitionRepository;
+import com.workflow.repository.WorkflowExecutionRepository;
 import com.workflow.repository.WorkflowInstanceRepository;
+import com.workflow.tenancy.TenantContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Service class for Workflow Instance business logic
@@ -32,6 +43,21 @@ public class WorkflowInstanceService {
 
     private final WorkflowInstanceRepository workflowInstanceRepository;
     private final WorkflowDefinitionRepository workflowDefinitionRepository;
+    private final WorkflowDefinitionCache workflowDefinitionCache;
+    private final InstanceStateStore instanceStateStore;
+    private final OwnedInstanceCache ownedInstanceCache;
+    private final WorkflowExecutionRepository workflowExecutionRepository;
+    private final ObjectProvider<StepCompletionBatcher> stepCompletionBatcher;
+    private final IdempotencyKeyCache idempotencyKeyCache;
+    private final SearchProjectionService searchProjectionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StepDeadlineIndex stepDeadlineIndex;
+    private final StepRetryIndex stepRetryIndex;
+    private final InstanceRollupWriter instanceRollupWriter;
+    private final ChangeOutbox changeOutbox;
+
+    @Value("${workflow.idempotency.retention:PT24H}")
+    private Duration idempotencyRetention;
 
     /**
      * Create a new workflow instance
@@ -42,6 +68,12 @@ public class WorkflowInstanceService {
     public WorkflowInstance createWorkflowInstance(WorkflowInstance workflowInstance) {
         log.info("Creating workflow instance: {}", workflowInstance.getName());
         
+        // Instances may only reference definitions of their own tenant
+        DefinitionSnapshot definition = Optional.ofNullable(workflowInstance.getWorkflowDefinition())
+                .map(WorkflowDefinition::getId)
+                .flatMap(workflowDefinitionCache::get)
+                .orElseThrow(() -> new IllegalArgumentException("Workflow definition not found"));
+        
         // Set default values
         if (workflowInstance.getStatus() == null) {
             workflowInstance.setStatus(WorkflowInstance.InstanceStatus.RUNNING);
@@ -50,7 +82,7 @@ public class WorkflowInstanceService {
             workflowInstance.setStartedAt(LocalDateTime.now());
         }
         
-        WorkflowInstance saved = workflowInstanceRepository.save(workflowInstance);
+        WorkflowInstance saved = save(workflowInstance, definition);
         log.info("Created workflow instance with ID: {}", saved.getId());
         return saved;
     }
@@ -66,36 +98,89 @@ public class WorkflowInstanceService {
     public WorkflowInstance startWorkflowInstance(UUID workflowDefinitionId, String instanceName, String context) {
         log.info("Starting workflow instance from definition: {}", workflowDefinitionId);
         
-        WorkflowDefinition definition = workflowDefinitionRepository.findById(workflowDefinitionId)
+        DefinitionSnapshot definition = workflowDefinitionCache.get(workflowDefinitionId)
                 .orElseThrow(() -> new IllegalArgumentException("Workflow definition not found: " + workflowDefinitionId));
         
-        if (definition.getStatus() != WorkflowDefinition.WorkflowStatus.ACTIVE) {
+        if (!definition.isActive()) {
             throw new IllegalStateException("Cannot start instance from inactive workflow definition");
         }
         
         WorkflowInstance instance = new WorkflowInstance();
-        instance.setWorkflowDefinition(definition);
+        instance.setWorkflowDefinition(workflowDefinitionRepository.getReferenceById(workflowDefinitionId));
         instance.setName(instanceName);
         instance.setContext(context);
         instance.setStatus(WorkflowInstance.InstanceStatus.RUNNING);
         instance.setStartedAt(LocalDateTime.now());
         
         // Set current step to the first step
-        List<WorkflowStep> steps = definition.getSteps();
-        if (!steps.isEmpty()) {
-            WorkflowStep firstStep = steps.stream()
-                    .min((s1, s2) -> Integer.compare(s1.getStepOrder(), s2.getStepOrder()))
-                    .orElse(null);
-            if (firstStep != null) {
-                instance.setCurrentStep(firstStep.getStepName());
-            }
+        DefinitionSnapshot.StepSnapshot firstStep = definition.firstStep();
+        if (firstStep != null) {
+            instance.setCurrentStep(firstStep.stepName());
         }
         
-        WorkflowInstance saved = workflowInstanceRepository.save(instance);
+        WorkflowInstance saved = save(instance, definition);
         log.info("Started workflow instance with ID: {}", saved.getId());
+        enterStep(saved.getId(), definition, null, instance.getCurrentStep());
         return saved;
     }
 
+    /**
+     * Start a workflow instance at most once per idempotency key
+     * 
+     * The insert and the lookup of an earlier start with the same key are a
+     * single upsert on the unique key index. Keys are scoped to the tenant
+     * of the request. Recently used keys are also answered from a local cache.
+     * 
+     * @param workflowDefinitionId the workflow definition ID
+     * @param instanceName the name for the new instance
+     * @param context the initial context data
+     * @param idempotencyKey the client-supplied key
+     * @return the started instance, or the one started earlier with the same key
+     */
+    public InstanceStartResult startWorkflowInstance(
+            UUID workflowDefinitionId, String instanceName, String context, String idempotencyKey) {
+        String tenantId = TenantContext.current() != null ? TenantContext.current() : TenantContext.DEFAULT_TENANT;
+        Optional<WorkflowInstance> cached = idempotencyKeyCache.get(tenantId, idempotencyKey);
+        if (cached.isPresent()) {
+            return replay(cached.get(), workflowDefinitionId, idempotencyKey);
+        }
+        
+        DefinitionSnapshot definition = workflowDefinitionCache.get(workflowDefinitionId)
+                .orElseThrow(() -> new IllegalArgumentException("Workflow definition not found: " + workflowDefinitionId));
+        if (!definition.isActive()) {
+            throw new IllegalStateException("Cannot start instance from inactive workflow definition");
+        }
+        DefinitionSnapshot.StepSnapshot firstStep = definition.firstStep();
+        
+        // A second round only runs after releasing a key that expired but was not cleared yet
+        for (int round = 0; round < 2; round++) {
+            UUID id = UUID.randomUUID();
+            LocalDateTime now = LocalDateTime.now();
+            WorkflowInstance instance = workflowInstanceRepository.insertOrGetByIdempotencyKey(id, tenantId,
+                    workflowDefinitionId, instanceName, WorkflowInstance.InstanceStatus.RUNNING.getCode(),
+                    firstStep != null ? firstStep.stepName() : null, context, now,
+                    idempotencyKey, now.plus(idempotencyRetention));
+            
+            if (id.equals(instance.getId())) {
+                log.info("Started workflow instance with ID: {} for idempotency key {}", id, idempotencyKey);
+                if (!definition.searchKeys().isEmpty()) {
+                    searchProjectionService.project(id);
+                }
+                idempotencyKeyCache.putAfterCommit(tenantId, idempotencyKey, instance);
+                changeOutbox.record(ChangeOutbox.Change.instance(instance));
+                enterStep(id, definition, null, instance.getCurrentStep());
+                return new InstanceStartResult(instance, false);
+            }
+            if (instance.getIdempotencyExpiresAt() != null && instance.getIdempotencyExpiresAt().isBefore(now)) {
+                workflowInstanceRepository.releaseIdempotencyKey(instance.getId(), idempotencyKey);
+                continue;
+            }
+            idempotencyKeyCache.putAfterCommit(tenantId, idempotencyKey, instance);
+            return replay(instance, workflowDefinitionId, idempotencyKey);
+        }
+        throw new IllegalStateException("Idempotency key " + idempotencyKey + " could not be claimed");
+    }
+
     /**
      * Update workflow instance status
      * 
@@ -106,13 +191,8 @@ public class WorkflowInstanceService {
     public Optional<WorkflowInstance> updateInstanceStatus(UUID id, WorkflowInstance.InstanceStatus status) {
         log.info("Updating workflow instance status: {} to {}", id, status);
         
-        return workflowInstanceRepository.findById(id)
-                .map(instance -> {
-                    instance.setStatus(status);
-                    if (status == WorkflowInstance.InstanceStatus.COMPLETED) {
-                        instance.setCompletedAt(LocalDateTime.now());
-                    }
-                    WorkflowInstance updated = workflowInstanceRepository.save(instance);
+        return transition(id, instance -> InstanceEvent.statusChanged(status))
+                .map(updated -> {
                     log.info("Updated workflow instance status: {}", updated.getId());
                     return updated;
                 });
@@ -127,11 +207,8 @@ public class WorkflowInstanceService {
     public Optional<WorkflowInstance> completeWorkflowInstance(UUID id) {
         log.info("Completing workflow instance: {}", id);
         
-        return workflowInstanceRepository.findById(id)
-                .map(instance -> {
-                    instance.setStatus(WorkflowInstance.InstanceStatus.COMPLETED);
-                    instance.setCompletedAt(LocalDateTime.now());
-                    WorkflowInstance completed = workflowInstanceRepository.save(instance);
+        return transition(id, instance -> InstanceEvent.completed())
+                .map(completed -> {
                     log.info("Completed workflow instance: {}", completed.getId());
                     return completed;
                 });
@@ -146,11 +223,8 @@ public class WorkflowInstanceService {
     public Optional<WorkflowInstance> cancelWorkflowInstance(UUID id) {
         log.info("Cancelling workflow instance: {}", id);
         
-        return workflowInstanceRepository.findById(id)
-                .map(instance -> {
-                    instance.setStatus(WorkflowInstance.InstanceStatus.CANCELLED);
-                    instance.setCompletedAt(LocalDateTime.now());
-                    WorkflowInstance cancelled = workflowInstanceRepository.save(instance);
+        return transition(id, instance -> InstanceEvent.cancelled())
+                .map(cancelled -> {
                     log.info("Cancelled workflow instance: {}", cancelled.getId());
                     return cancelled;
                 });
@@ -165,13 +239,13 @@ public class WorkflowInstanceService {
     public Optional<WorkflowInstance> suspendWorkflowInstance(UUID id) {
         log.info("Suspending workflow instance: {}", id);
         
-        return workflowInstanceRepository.findById(id)
-                .map(instance -> {
+        return transition(id, instance -> {
                     if (instance.getStatus() != WorkflowInstance.InstanceStatus.RUNNING) {
                         throw new IllegalStateException("Only running instances can be suspended");
                     }
-                    instance.setStatus(WorkflowInstance.InstanceStatus.SUSPENDED);
-                    WorkflowInstance suspended = workflowInstanceRepository.save(instance);
+                    return InstanceEvent.suspended();
+                })
+                .map(suspended -> {
                     log.info("Suspended workflow instance: {}", suspended.getId());
                     return suspended;
                 });
@@ -186,15 +260,404 @@ public class WorkflowInstanceService {
     public Optional<WorkflowInstance> resumeWorkflowInstance(UUID id) {
         log.info("Resuming workflow instance: {}", id);
         
-        return workflowInstanceRepository.findById(id)
-                .map(instance -> {
+        return transition(id, instance -> {
                     if (instance.getStatus() != WorkflowInstance.InstanceStatus.SUSPENDED) {
                         throw new IllegalStateException("Only suspended instances can be resumed");
                     }
-                    instance.setStatus(WorkflowInstance.InstanceStatus.RUNNING);
-                    WorkflowInstance resumed = workflowInstanceRepository.save(instance);
+                    return InstanceEvent.resumed();
+                })
+                .map(resumed -> {
+                    // Time spent suspended does not count against the step's SLA
+                    workflowDefinitionCache.get(resumed.getWorkflowDefinition().getId())
+                            .flatMap(definition -> definition.step(resumed.getCurrentStep()))
+                            .ifPresent(step -> Optional.ofNullable(stepDeadlineIndex.dueAt(step, LocalDateTime.now()))
+                                    .ifPresent(dueAt -> stepDeadlineIndex.enter(id, step.stepName(), dueAt)));
                     log.info("Resumed workflow instance: {}", resumed.getId());
                     return resumed;
                 });
     }
+
+    /**
+     * Complete the current step of a running workflow instance
+     * 
+     * The instance moves to the requested next step, or to the first of the
+     * step's next steps if none is requested, and completes after its last
+     * step. With in-place persistence the write is group-committed with
+     * other completions; the returned future completes once it is durable.
+     * 
+     * @param id the workflow instance ID
+     * @param stepName the step being completed
+     * @param nextStep the next step to take, or null for the default
+     * @param outputData the step output as JSON
+     * @param executedBy who completed the step
+     * @return future of the recorded completion, or empty if the instance was not found
+     */
+    public Optional<CompletableFuture<StepCompletion>> completeStep(
+            UUID id, String stepName, String nextStep, String outputData, String executedBy) {
+        return completeStep(id, stepName, nextStep, outputData, executedBy, 1);
+    }
+
+    /**
+     * Complete the current step of a running workflow instance after several attempts
+     * 
+     * Once the completion is recorded, an automated next step is handed
+     * to its step handler.
+     * 
+     * @param id the workflow instance ID
+     * @param stepName the step being completed
+     * @param nextStep the next step to take, or null for the default
+     * @param outputData the step output as JSON
+     * @param executedBy who completed the step
+     * @param attempt the attempt that completed the step, starting at 1
+     * @return future of the recorded completion, or empty if the instance was not found
+     */
+    public Optional<CompletableFuture<StepCompletion>> completeStep(
+            UUID id, String stepName, String nextStep, String outputData, String executedBy, int attempt) {
+        log.debug("Completing step {} of workflow instance: {}", stepName, id);
+        
+        Optional<WorkflowInstance> found =
+                ownedInstanceCache.getOrLoad(id, instanceStateStore::load, instanceStateStore::isCurrent);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        WorkflowInstance instance = found.get();
+        if (instance.getStatus() != WorkflowInstance.InstanceStatus.RUNNING
+                || !stepName.equals(instance.getCurrentStep())) {
+            throw new IllegalStateException("Step " + stepName + " is not the current step of workflow instance " + id);
+        }
+        
+        UUID definitionId = instance.getWorkflowDefinition().getId();
+        DefinitionSnapshot definition = workflowDefinitionCache.get(definitionId)
+                .orElseThrow(() -> new IllegalStateException("Workflow definition not found: " + definitionId));
+        DefinitionSnapshot.StepSnapshot step = definition.step(stepName)
+                .orElseThrow(() -> new IllegalStateException("Step " + stepName + " not found in workflow definition " + definitionId));
+        
+        List<String> candidates = step.nextSteps();
+        if (nextStep != null && !candidates.contains(nextStep)) {
+            throw new IllegalArgumentException("Step " + nextStep + " does not follow step " + stepName);
+        }
+        String resolvedNextStep = nextStep != null ? nextStep : candidates.isEmpty() ? null : candidates.get(0);
+        DefinitionSnapshot.StepSnapshot next = resolvedNextStep != null
+                ? definition.step(resolvedNextStep).orElse(null) : null;
+        
+        LocalDateTime completedAt = LocalDateTime.now();
+        StepCompletion completion = new StepCompletion(UUID.randomUUID(), id, stepName, resolvedNextStep,
+                outputData, executedBy, completedAt, attempt, stepDeadlineIndex.dueAt(next, completedAt));
+        
+        StepCompletionBatcher batcher = stepCompletionBatcher.getIfAvailable();
+        if (batcher != null) {
+            return Optional.of(batcher.submit(completion, definitionId)
+                    .thenApply(recorded -> {
+                        if (recorded.finishesInstance()) {
+                            instanceRollupWriter.record(instance, WorkflowInstance.InstanceStatus.COMPLETED,
+                                    recorded.completedAt());
+                        }
+                        // The batch has set the next step's deadline
+                        publishStepEntered(id, definition, next);
+                        return recorded;
+                    }));
+        }
+        
+        // Event-sourced instances record the step change in their event log
+        transition(id, current -> {
+            if (!stepName.equals(current.getCurrentStep())) {
+                throw new IllegalStateException("Step " + stepName + " is not the current step of workflow instance " + id);
+            }
+            if (!definitionId.equals(current.getWorkflowDefinition().getId())) {
+                throw new IllegalStateException("Workflow instance " + id + " was migrated during the completion of step " + stepName);
+            }
+            return completion.finishesInstance() ? InstanceEvent.completed() : InstanceEvent.stepEntered(resolvedNextStep);
+        });
+        WorkflowExecution execution = new WorkflowExecution();
+        execution.setWorkflowInstance(workflowInstanceRepository.getReferenceById(id));
+        execution.setStepName(stepName);
+        execution.setStatus(WorkflowExecution.ExecutionStatus.COMPLETED);
+        execution.setOutputData(outputData);
+        execution.setCompletedAt(completion.completedAt());
+        execution.setExecutedBy(executedBy);
+        execution.setAttempt(attempt);
+        WorkflowExecution saved = workflowExecutionRepository.save(execution);
+        changeOutbox.record(ChangeOutbox.Change.execution(saved.getId(), id, saved.getStatus(), stepName, completedAt));
+        enterStep(id, definition, step, resolvedNextStep);
+        return Optional.of(CompletableFuture.completedFuture(new StepCompletion(saved.getId(), id, stepName,
+                resolvedNextStep, outputData, executedBy, completedAt, attempt, completion.nextStepDueAt())));
+    }
+
+    /**
+     * Record a failed attempt at the current step of a workflow instance
+     * 
+     * The instance stays at the step; it is retried or failed by the caller.
+     * 
+     * @param id the workflow instance ID
+     * @param stepName the step that failed
+     * @param errorMessage why the attempt failed
+     * @param executedBy who ran the attempt
+     * @param attempt the failed attempt, starting at 1
+     * @param nextAttemptAt when the step is retried, or null if it is not
+     * @return the ID of the recorded execution
+     */
+    public UUID recordFailedAttempt(UUID id, String stepName, String errorMessage, String executedBy, int attempt,
+                                    LocalDateTime nextAttemptAt) {
+        log.debug("Attempt {} at step {} of workflow instance {} failed: {}", attempt, stepName, id, errorMessage);
+        return recordExecution(id, stepName, WorkflowExecution.ExecutionStatus.FAILED, null, errorMessage, executedBy,
+                attempt, nextAttemptAt);
+    }
+
+    /**
+     * Retry the failed step of a workflow instance
+     * 
+     * Instances whose completed steps were compensated cannot be retried.
+     * 
+     * @param id the workflow instance ID
+     * @return the running instance, or empty if not found
+     */
+    public Optional<WorkflowInstance> retryFailedStep(UUID id) {
+        log.info("Retrying failed step of workflow instance: {}", id);
+        
+        if (workflowExecutionRepository.existsByWorkflowInstanceIdAndStatusIn(id, List.of(
+                WorkflowExecution.ExecutionStatus.COMPENSATED, WorkflowExecution.ExecutionStatus.COMPENSATION_FAILED))) {
+            throw new IllegalStateException("Workflow instance " + id + " was compensated and cannot be retried");
+        }
+        return transition(id, instance -> {
+                    if (instance.getStatus() != WorkflowInstance.InstanceStatus.FAILED || instance.getCurrentStep() == null) {
+                        throw new IllegalStateException("Only instances that failed at a step can be retried");
+                    }
+                    return InstanceEvent.statusChanged(WorkflowInstance.InstanceStatus.RUNNING);
+                })
+                .map(retried -> {
+                    workflowDefinitionCache.get(retried.getWorkflowDefinition().getId())
+                            .ifPresent(definition -> enterStep(id, definition,
+                                    definition.step(retried.getCurrentStep()).orElse(null), retried.getCurrentStep()));
+                    log.info("Retrying step {} of workflow instance: {}", retried.getCurrentStep(), id);
+                    return retried;
+                });
+    }
+
+    /**
+     * Move a workflow instance that is overdue at a step to an escalation step
+     * 
+     * The overdue step is recorded as a SKIPPED execution with the reason.
+     * 
+     * @param id the workflow instance ID
+     * @param stepName the overdue step
+     * @param escalationStep the step to move to
+     * @param reason why the instance is escalated
+     * @param executedBy who escalated the instance
+     * @return the escalated instance, or empty if not found
+     * @throws IllegalStateException if the instance is no longer running at the step
+     * @throws IllegalArgumentException if the instance's definition has no such escalation step
+     */
+    public Optional<WorkflowInstance> escalateStep(UUID id, String stepName, String escalationStep,
+                                                   String reason, String executedBy) {
+        log.info("Escalating workflow instance {} from step {} to step {}", id, stepName, escalationStep);
+        
+        return transition(id, instance -> {
+                    if (instance.getStatus() != WorkflowInstance.InstanceStatus.RUNNING
+                            || !stepName.equals(instance.getCurrentStep())) {
+                        throw new IllegalStateException("Workflow instance " + id + " is not running at step " + stepName);
+                    }
+                    if (workflowDefinitionCache.get(instance.getWorkflowDefinition().getId())
+                            .flatMap(definition -> definition.step(escalationStep)).isEmpty()) {
+                        throw new IllegalArgumentException("Escalation step " + escalationStep + " not found");
+                    }
+                    return InstanceEvent.stepEntered(escalationStep);
+                })
+                .map(escalated -> {
+                    recordExecution(id, stepName, WorkflowExecution.ExecutionStatus.SKIPPED, null, reason, executedBy, 1,
+                            null);
+                    workflowDefinitionCache.get(escalated.getWorkflowDefinition().getId())
+                            .ifPresent(definition -> enterStep(id, definition,
+                                    definition.step(stepName).orElse(null), escalationStep));
+                    return escalated;
+                });
+    }
+
+    /**
+     * Start compensating a workflow instance that failed at a step
+     * 
+     * @param id the workflow instance ID
+     * @param stepName the step that failed
+     * @return the compensating instance, or empty if not found
+     * @throws IllegalStateException if the instance is no longer running at the step
+     */
+    public Optional<WorkflowInstance> beginCompensation(UUID id, String stepName) {
+        log.info("Compensating workflow instance {} after step {} failed", id, stepName);
+        
+        return transition(id, instance -> {
+            if (instance.getStatus() != WorkflowInstance.InstanceStatus.RUNNING
+                    || !stepName.equals(instance.getCurrentStep())) {
+                throw new IllegalStateException("Workflow instance " + id + " is not running at step " + stepName);
+            }
+            return InstanceEvent.statusChanged(WorkflowInstance.InstanceStatus.COMPENSATING);
+        });
+    }
+
+    /**
+     * Find the completed step executions of a workflow instance, latest first
+     * 
+     * @param id the workflow instance ID
+     * @return the completed executions in the order they are compensated
+     */
+    @Transactional(readOnly = true)
+    public List<WorkflowExecution> findCompletedExecutions(UUID id) {
+        return workflowExecutionRepository.findByWorkflowInstanceIdAndStatusOrderByCompletedAtDescIdDesc(
+                id, WorkflowExecution.ExecutionStatus.COMPLETED);
+    }
+
+    /**
+     * Record an attempt at compensating a completed step
+     * 
+     * @param id the workflow instance ID
+     * @param stepName the compensated step
+     * @param outputData the compensation output as JSON, if it succeeded
+     * @param errorMessage why the attempt failed, or null if it succeeded
+     * @param executedBy who ran the attempt
+     * @param attempt the attempt, starting at 1
+     * @param nextAttemptAt when a failed attempt is retried, or null if it is not
+     * @return the ID of the recorded execution
+     */
+    public UUID recordCompensation(UUID id, String stepName, String outputData, String errorMessage,
+                                   String executedBy, int attempt, LocalDateTime nextAttemptAt) {
+        return recordExecution(id, stepName, errorMessage == null
+                        ? WorkflowExecution.ExecutionStatus.COMPENSATED
+                        : WorkflowExecution.ExecutionStatus.COMPENSATION_FAILED,
+                outputData, errorMessage, executedBy, attempt, nextAttemptAt);
+    }
+
+    /**
+     * Count the step executions of a workflow instance with a status
+     * 
+     * @param id the workflow instance ID
+     * @param status the execution status
+     * @return the number of executions
+     */
+    @Transactional(readOnly = true)
+    public long countExecutions(UUID id, WorkflowExecution.ExecutionStatus status) {
+        return workflowExecutionRepository.countByWorkflowInstanceIdAndStatus(id, status);
+    }
+
+    /**
+     * Fail a compensating workflow instance once its compensations have run or given up
+     * 
+     * @param id the workflow instance ID
+     * @return the failed instance, or empty if not found
+     */
+    public Optional<WorkflowInstance> finishCompensation(UUID id) {
+        return transition(id, instance -> {
+            if (instance.getStatus() != WorkflowInstance.InstanceStatus.COMPENSATING) {
+                throw new IllegalStateException("Workflow instance " + id + " is not compensating");
+            }
+            return InstanceEvent.statusChanged(WorkflowInstance.InstanceStatus.FAILED);
+        });
+    }
+
+    /**
+     * Find a workflow instance that is running at a step
+     * 
+     * @param id the workflow instance ID
+     * @param stepName the step name
+     * @return Optional containing the instance if it is running and its current step is the given one
+     */
+    @Transactional(readOnly = true)
+    public Optional<WorkflowInstance> findRunningAt(UUID id, String stepName) {
+        return findInStatus(id, WorkflowInstance.InstanceStatus.RUNNING)
+                .filter(instance -> stepName.equals(instance.getCurrentStep()));
+    }
+
+    /**
+     * Find a workflow instance in a status
+     * 
+     * @param id the workflow instance ID
+     * @param status the status
+     * @return Optional containing the instance if it has the status
+     */
+    @Transactional(readOnly = true)
+    public Optional<WorkflowInstance> findInStatus(UUID id, WorkflowInstance.InstanceStatus status) {
+        return ownedInstanceCache.getOrLoad(id, instanceStateStore::load, instanceStateStore::isCurrent)
+                .filter(instance -> instance.getStatus() == status);
+    }
+
+    private UUID recordExecution(UUID id, String stepName, WorkflowExecution.ExecutionStatus status,
+                                 String outputData, String errorMessage, String executedBy, int attempt,
+                                 LocalDateTime nextAttemptAt) {
+        if (attempt > 1) {
+            // This attempt is the retry an earlier one was waiting for
+            stepRetryIndex.clearInstance(id);
+        }
+        WorkflowExecution execution = new WorkflowExecution();
+        execution.setWorkflowInstance(workflowInstanceRepository.getReferenceById(id));
+        execution.setStepName(stepName);
+        execution.setStatus(status);
+        execution.setOutputData(outputData);
+        execution.setErrorMessage(errorMessage);
+        execution.setCompletedAt(LocalDateTime.now());
+        execution.setExecutedBy(executedBy);
+        execution.setAttempt(attempt);
+        execution.setNextAttemptAt(nextAttemptAt);
+        WorkflowExecution saved = workflowExecutionRepository.save(execution);
+        changeOutbox.record(ChangeOutbox.Change.execution(saved.getId(), id, status, stepName, saved.getCompletedAt()));
+        return saved.getId();
+    }
+
+    private void enterStep(UUID id, DefinitionSnapshot definition, DefinitionSnapshot.StepSnapshot left, String stepName) {
+        DefinitionSnapshot.StepSnapshot step = stepName != null ? definition.step(stepName).orElse(null) : null;
+        LocalDateTime dueAt = stepDeadlineIndex.dueAt(step, LocalDateTime.now());
+        // Only a step with an SLA can have left a deadline behind
+        if (dueAt != null || stepDeadlineIndex.sla(left).isPresent()) {
+            stepDeadlineIndex.enter(id, stepName, dueAt);
+        }
+        publishStepEntered(id, definition, step);
+    }
+
+    private void publishStepEntered(UUID id, DefinitionSnapshot definition, DefinitionSnapshot.StepSnapshot step) {
+        // Handlers pick the step up once the transaction that entered it has committed
+        if (step != null) {
+            eventPublisher.publishEvent(new StepEnteredEvent(id, definition.id(), step));
+        }
+    }
+
+    private WorkflowInstance save(WorkflowInstance instance, DefinitionSnapshot definition) {
+        WorkflowInstance saved;
+        if (definition.searchKeys().isEmpty()) {
+            saved = workflowInstanceRepository.save(instance);
+        } else {
+            // The projection reads the instance row, so it has to be written first
+            saved = workflowInstanceRepository.saveAndFlush(instance);
+            searchProjectionService.project(saved.getId());
+        }
+        changeOutbox.record(ChangeOutbox.Change.instance(saved));
+        return saved;
+    }
+
+    private Optional<WorkflowInstance> transition(UUID id, Function<WorkflowInstance, InstanceEvent> decide) {
+        InstanceEvent[] finishing = new InstanceEvent[1];
+        return instanceStateStore.transition(id, instance -> {
+                    boolean finished = isFinished(instance.getStatus());
+                    InstanceEvent event = decide.apply(instance);
+                    finishing[0] = !finished && event.isTerminal() ? event : null;
+                    return event;
+                })
+                .map(ownedInstanceCache::putAfterCommit)
+                .map(updated -> {
+                    changeOutbox.record(ChangeOutbox.Change.instance(updated));
+                    if (finishing[0] != null) {
+                        instanceRollupWriter.recordAfterCommit(updated, updated.getStatus(), finishing[0].occurredAt());
+                    }
+                    return updated;
+                });
+    }
+
+    private static boolean isFinished(WorkflowInstance.InstanceStatus status) {
+        return status == WorkflowInstance.InstanceStatus.COMPLETED
+                || status == WorkflowInstance.InstanceStatus.CANCELLED
+                || status == WorkflowInstance.InstanceStatus.FAILED;
+    }
+
+    private InstanceStartResult replay(WorkflowInstance instance, UUID workflowDefinitionId, String idempotencyKey) {
+        if (!workflowDefinitionId.equals(instance.getWorkflowDefinition().getId())) {
+            throw new IdempotencyKeyReuseException(idempotencyKey);
+        }
+        log.info("Replayed start of workflow instance {} for idempotency key {}", instance.getId(), idempotencyKey);
+        return new InstanceStartResult(instance, true);
+    }
 }
@@ -0,0 +1,212 @@
+package com.workflow.service;
+
+import com.workflow.cluster.OwnedInstanceCache;
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.persistence.ReadOnly;
+import com.workflow.repository.WorkflowDefinitionRepository;
+import com.workflow.repository.WorkflowInstanceRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Service class for read-only workflow queries
+ *
+ * Serves the list and lookup endpoints from the read route so read-heavy
+ * traffic does not compete with lifecycle writes on the primary. Lookups
+ * by ID read the latest committed state; list queries may be served by
+ * follower reads.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+@RequiredArgsConstructor
+@ReadOnly
+public class WorkflowQueryService {
+
+    private final WorkflowDefinitionRepository workflowDefinitionRepository;
+    private final WorkflowInstanceRepository workflowInstanceRepository;
+    private final InstanceStateStore instanceStateStore;
+    private final OwnedInstanceCache ownedInstanceCache;
+    private final SearchProjectionService searchProjectionService;
+
+    /**
+     * Get all workflow definitions with pagination
+     *
+     * @param pageable pagination parameters
+     * @return Page of workflow definitions
+     */
+    public Page<WorkflowDefinition> findDefinitions(Pageable pageable) {
+        return workflowDefinitionRepository.findAll(pageable);
+    }
+
+    /**
+     * Get workflow definition by ID
+     *
+     * @param id the workflow definition ID
+     * @return Optional containing the workflow definition if found
+     */
+    @ReadOnly(staleness = ReadOnly.NONE)
+    public Optional<WorkflowDefinition> findDefinition(UUID id) {
+        return workflowDefinitionRepository.findById(id);
+    }
+
+    /**
+     * Get the searchable context keys of a workflow definition
+     *
+     * @param id the workflow definition ID
+     * @return Optional containing the keys if the definition exists
+     */
+    @ReadOnly(staleness = ReadOnly.NONE)
+    public Optional<List<SearchKey>> findSearchKeys(UUID id) {
+        if (!workflowDefinitionRepository.existsById(id)) {
+            return Optional.empty();
+        }
+        return Optional.of(searchProjectionService.findSearchKeys(List.of(id)).getOrDefault(id, List.of()));
+    }
+
+    /**
+     * Get workflow definition by name and version
+     *
+     * @param name the workflow name
+     * @param version the workflow version
+     * @return Optional containing the workflow definition if found
+     */
+    @ReadOnly(staleness = ReadOnly.NONE)
+    public Optional<WorkflowDefinition> findDefinition(String name, Integer version) {
+        return workflowDefinitionRepository.findByNameAndVersion(name, version);
+    }
+
+    /**
+     * Get latest version of workflow definition by name
+     *
+     * @param name the workflow name
+     * @return Optional containing the latest workflow definition
+     */
+    @ReadOnly(staleness = ReadOnly.NONE)
+    public Optional<WorkflowDefinition> findLatestDefinition(String name) {
+        return workflowDefinitionRepository.findLatestVersionByName(name);
+    }
+
+    /**
+     * Get the version stamp of a workflow definition by ID
+     *
+     * @param id the workflow definition ID
+     * @return Optional containing the stamp if found, read without the definition document
+     */
+    @ReadOnly(staleness = ReadOnly.NONE)
+    public Optional<DefinitionStamp> findDefinitionStamp(UUID id) {
+        return workflowDefinitionRepository.findStampById(id).map(WorkflowQueryService::stampOf);
+    }
+
+    /**
+     * Get the version stamp of a workflow definition by name and version
+     *
+     * @param name the workflow name
+     * @param version the workflow version
+     * @return Optional containing the stamp if found, read without the definition document
+     */
+    @ReadOnly(staleness = ReadOnly.NONE)
+    public Optional<DefinitionStamp> findDefinitionStamp(String name, Integer version) {
+        return workflowDefinitionRepository.findStampByNameAndVersion(name, version).map(WorkflowQueryService::stampOf);
+    }
+
+    /**
+     * Get the version stamp of the latest version of a workflow definition
+     *
+     * @param name the workflow name
+     * @return Optional containing the stamp if found, read without the definition document
+     */
+    @ReadOnly(staleness = ReadOnly.NONE)
+    public Optional<DefinitionStamp> findLatestDefinitionStamp(String name) {
+        return workflowDefinitionRepository.findLatestStampByName(name).map(WorkflowQueryService::stampOf);
+    }
+
+    /**
+     * Get all versions of a workflow definition by name
+     *
+     * @param name the workflow name
+     * @return List of workflow definitions with the given name
+     */
+    public List<WorkflowDefinition> findDefinitionsByName(String name) {
+        return workflowDefinitionRepository.findByName(name);
+    }
+
+    /**
+     * Get workflow definitions by status
+     *
+     * @param status the workflow status
+     * @return List of workflow definitions with the given status
+     */
+    public List<WorkflowDefinition> findDefinitionsByStatus(WorkflowDefinition.WorkflowStatus status) {
+        return workflowDefinitionRepository.findByStatus(status);
+    }
+
+    /**
+     * Get all workflow instances with pagination
+     *
+     * @param pageable pagination parameters
+     * @return Page of workflow instances
+     */
+    public Page<WorkflowInstance> findInstances(Pageable pageable) {
+        return workflowInstanceRepository.findAll(pageable);
+    }
+
+    /**
+     * Get workflow instance by ID
+     *
+     * @param id the workflow instance ID
+     * @return Optional containing the workflow instance if found
+     */
+    @ReadOnly(staleness = ReadOnly.NONE)
+    public Optional<WorkflowInstance> findInstance(UUID id) {
+        // Rows read here may come from a replica, so they never enter the working set;
+        // its copies only carry the definition ID, so attach the definition for the response
+        return ownedInstanceCache.getOrRead(id, instanceStateStore::load, instanceStateStore::isCurrent)
+                .map(instance -> {
+                    instance.setWorkflowDefinition(workflowDefinitionRepository.getReferenceById(
+                            instance.getWorkflowDefinition().getId()));
+                    return instance;
+                });
+    }
+
+    /**
+     * Get workflow instances by workflow definition ID
+     *
+     * @param workflowDefinitionId the workflow definition ID
+     * @return List of workflow instances for the given definition
+     */
+    public List<WorkflowInstance> findInstancesByDefinition(UUID workflowDefinitionId) {
+        return workflowInstanceRepository.findByWorkflowDefinitionId(workflowDefinitionId);
+    }
+
+    /**
+     * Get workflow instances by status
+     *
+     * @param status the instance status
+     * @return List of instance listings with the given status, without the context
+     */
+    public List<WorkflowInstanceRepository.Listing> findInstancesByStatus(WorkflowInstance.InstanceStatus status) {
+        return instanceStateStore.findListingsByStatus(status);
+    }
+
+    /**
+     * Get running workflow instances
+     *
+     * @return List of listings of currently running instances, without the context
+     */
+    public List<WorkflowInstanceRepository.Listing> findRunningInstances() {
+        return instanceStateStore.findListingsByStatus(WorkflowInstance.InstanceStatus.RUNNING);
+    }
+
+    private static DefinitionStamp stampOf(WorkflowDefinitionRepository.VersionStamp stamp) {
+        return new DefinitionStamp(stamp.getId(), stamp.getVersion(), stamp.getUpdatedAt());
+    }
+}
@@ -0,0 +1,91 @@
+package com.workflow.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue of simulation events in virtual time
+ *
+ * A binary heap over parallel primitive arrays, so millions of pending
+ * events cost 16 bytes each and no objects. Events at the same time are
+ * taken in payload order, which keeps runs with the same seed identical.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+final class EventQueue {
+
+    private long[] times = new long[1024];
+    private long[] payloads = new long[1024];
+    private int size;
+
+    void add(long time, long payload) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            payloads = Arrays.copyOf(payloads, size * 2);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(time, payload, times[parent], payloads[parent])) {
+                break;
+            }
+            times[index] = times[parent];
+            payloads[index] = payloads[parent];
+            index = parent;
+        }
+        times[index] = time;
+        payloads[index] = payload;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the time of the next event
+     *
+     * @return the earliest time in the queue
+     */
+    long peekTime() {
+        return times[0];
+    }
+
+    /**
+     * Remove the next event
+     *
+     * @return its payload; its time was {@link #peekTime()}
+     */
+    long poll() {
+        long head = payloads[0];
+        size--;
+        long time = times[size];
+        long payload = payloads[size];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(times[child + 1], payloads[child + 1], times[child], payloads[child])) {
+                child++;
+            }
+            if (!before(times[child], payloads[child], time, payload)) {
+                break;
+            }
+            times[index] = times[child];
+            payloads[index] = payloads[child];
+            index = child;
+        }
+        times[index] = time;
+        payloads[index] = payload;
+        return head;
+    }
+
+    private static boolean before(long time, long payload, long otherTime, long otherPayload) {
+        return time < otherTime || time == otherTime && payload < otherPayload;
+    }
+}
@@ -0,0 +1,14 @@
+package com.workflow.simulation;
+
+/**
+ * Thrown when a simulation request does not fit the definition it is run against
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class InvalidSimulationException extends IllegalArgumentException {
+
+    public InvalidSimulationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,59 @@
+package com.workflow.simulation;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Synthetic population to run through a workflow definition
+ *
+ * Instances arrive as a Poisson process at arrivalsPerHour, or all at once
+ * without it, and enter the definition's first step. Each step serves up
+ * to "servers" instances at a time (unlimited without it) for a duration
+ * drawn from its distribution, then routes the instance to one of its next
+ * steps by the given weights, or to the first next step like the engine
+ * does when none is named. An instance finishes at a step without next
+ * steps.
+ *
+ * <pre>
+ * {"instances": 100000, "arrivalsPerHour": 2000, "seed": 7, "horizon": "P30D",
+ *  "steps": {"managerApproval": {"servers": 40, "meanDuration": "PT1H",
+ *                                "next": {"financeReview": 0.2, "notify": 0.8}}}}
+ * </pre>
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record SimulationRequest(
+        Integer instances,
+        Double arrivalsPerHour,
+        Long seed,
+        Duration horizon,
+        Map<String, StepModel> steps) {
+
+    /**
+     * How a step serves instances
+     *
+     * @param servers how many instances the step works on at once, or null or 0 for unlimited
+     * @param meanDuration the mean service time, or null for workflow.simulation.default-step-duration
+     * @param distribution how service times vary around the mean, exponential by default
+     * @param next the relative weights of the next steps, or null to always take the first
+     */
+    public record StepModel(
+            Integer servers,
+            Duration meanDuration,
+            Distribution distribution,
+            Map<String, Double> next) {
+    }
+
+    /**
+     * Service time distribution
+     */
+    public enum Distribution {
+        /** Memoryless, as with independent workers picking up tasks */
+        EXPONENTIAL,
+        /** Always the mean, as with timers */
+        FIXED,
+        /** Uniform between zero and twice the mean */
+        UNIFORM
+    }
+}
@@ -0,0 +1,67 @@
+package com.workflow.simulation;
+
+import com.workflow.domain.WorkflowStep;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of a simulation run
+ *
+ * Times are in virtual milliseconds and rates per virtual hour. A step's
+ * arrival rate is measured between the first and the last instance that
+ * entered it; utilization and queue lengths are averaged over the whole
+ * run. A step whose arrival rate exceeds its capacity has a queue that
+ * keeps growing by the difference; the bottleneck is the step with the
+ * fastest growing queue, or the busiest step if every queue is stable.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public record SimulationResult(
+        UUID workflowDefinitionId,
+        long instances,
+        long completed,
+        long inFlight,
+        Duration virtualDuration,
+        boolean truncated,
+        Times cycleTime,
+        String bottleneckStep,
+        List<StepResult> steps,
+        long events,
+        long elapsedMs) {
+
+    /**
+     * One step of the definition
+     *
+     * @param servers the step's capacity, or 0 if unlimited
+     * @param utilization the busy fraction of the servers, or null if unlimited
+     * @param capacityPerHour the most instances the step can finish per hour, or null if unlimited
+     * @param projectedQueueGrowthPerHour how fast the queue grows if arrivals keep their rate
+     * @param slaBreaches instances that spent longer in the step than its SLA
+     */
+    public record StepResult(
+            String stepName,
+            WorkflowStep.StepType stepType,
+            int servers,
+            long entered,
+            long completed,
+            Double utilization,
+            double arrivalsPerHour,
+            Double capacityPerHour,
+            double projectedQueueGrowthPerHour,
+            double averageQueueLength,
+            int maxQueueLength,
+            int queueLengthAtEnd,
+            Times waitTime,
+            Times timeInStep,
+            long slaBreaches) {
+    }
+
+    /**
+     * Distribution of a time in milliseconds
+     */
+    public record Times(long count, long averageMs, Long p50Ms, Long p95Ms, Long p99Ms, long maxMs) {
+    }
+}
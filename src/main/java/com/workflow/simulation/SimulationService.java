@@ -0,0 +1,55 @@
+package com.workflow.simulation;
+
+import com.workflow.service.WorkflowDefinitionCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Simulates synthetic populations against stored workflow definitions
+ *
+ * Reads the definition from {@link WorkflowDefinitionCache} and runs the
+ * {@link Simulator} on the calling thread; nothing is written, so a
+ * simulation can run against a production node without touching its
+ * instances.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Service
+public class SimulationService {
+
+    private final WorkflowDefinitionCache workflowDefinitionCache;
+
+    @Value("${workflow.simulation.max-instances:1000000}")
+    private int maxInstances;
+
+    @Value("${workflow.simulation.max-events:50000000}")
+    private long maxEvents;
+
+    @Value("${workflow.simulation.default-step-duration:PT1M}")
+    private Duration defaultStepDuration;
+
+    public SimulationService(WorkflowDefinitionCache workflowDefinitionCache) {
+        this.workflowDefinitionCache = workflowDefinitionCache;
+    }
+
+    /**
+     * Run a synthetic population through a workflow definition
+     *
+     * @param workflowDefinitionId the definition
+     * @param request the population and step models
+     * @return Optional containing the result if the definition exists
+     * @throws InvalidSimulationException if the request does not fit the definition or is too large
+     */
+    public Optional<SimulationResult> simulate(UUID workflowDefinitionId, SimulationRequest request) {
+        if (request.instances() != null && request.instances() > maxInstances) {
+            throw new InvalidSimulationException("Simulation is limited to " + maxInstances + " instances");
+        }
+        return workflowDefinitionCache.get(workflowDefinitionId)
+                .map(definition -> Simulator.run(definition, request, defaultStepDuration, maxEvents));
+    }
+}
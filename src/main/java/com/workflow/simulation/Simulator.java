@@ -0,0 +1,426 @@
+package com.workflow.simulation;
+
+import com.workflow.service.DefinitionSnapshot;
+import com.workflow.service.DurationSketch;
+import com.workflow.service.StepSla;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Discrete-event simulation of a workflow definition in virtual time
+ *
+ * Runs a synthetic population through a definition's step graph as a
+ * network of queues, without a database or the engine's services: time
+ * jumps from one event (an instance arriving or finishing a step) to the
+ * next, so simulating a month of traffic takes as long as processing its
+ * events. Instance state lives in primitive arrays indexed by instance
+ * number and pending events in a primitive heap, so a million instances
+ * need a few tens of megabytes. Runs with the same seed give the same
+ * result.
+ *
+ * Works on any {@link DefinitionSnapshot}, including one built from an
+ * unsaved definition, which makes it usable to check a definition's
+ * routing and capacity without starting instances.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public final class Simulator {
+
+    private static final double MILLIS_PER_HOUR = 3_600_000d;
+
+    private static final int ARRIVAL = 0;
+    private static final int DONE = 1;
+
+    private final DefinitionSnapshot definition;
+    private final int instances;
+    private final double meanInterarrivalMs;
+    private final long horizonMs;
+    private final long maxEvents;
+    private final SplittableRandom random;
+    private final Step[] steps;
+
+    private final int[] stepOf;
+    private final long[] startedAt;
+    private final long[] enteredAt;
+    private final EventQueue events = new EventQueue();
+    private final Times cycleTimes = new Times();
+    private long now;
+    private long arrived;
+    private long completed;
+
+    private Simulator(DefinitionSnapshot definition, SimulationRequest request, Duration defaultStepDuration,
+                      long maxEvents) {
+        this.definition = definition;
+        this.instances = request.instances();
+        this.meanInterarrivalMs = request.arrivalsPerHour() != null ? MILLIS_PER_HOUR / request.arrivalsPerHour() : 0;
+        this.horizonMs = request.horizon() != null ? request.horizon().toMillis() : Long.MAX_VALUE;
+        this.maxEvents = maxEvents;
+        this.random = new SplittableRandom(request.seed() != null ? request.seed() : 0L);
+        this.steps = steps(definition, request.steps() != null ? request.steps() : Map.of(), defaultStepDuration);
+        this.stepOf = new int[instances];
+        this.startedAt = new long[instances];
+        this.enteredAt = new long[instances];
+    }
+
+    /**
+     * Run a synthetic population through a definition
+     *
+     * @param definition the definition, with at least one step
+     * @param request the population and step models
+     * @param defaultStepDuration the mean service time of steps without a model
+     * @param maxEvents the most events to process before stopping
+     * @return the result
+     * @throws InvalidSimulationException if the request does not fit the definition
+     */
+    public static SimulationResult run(DefinitionSnapshot definition, SimulationRequest request,
+                                       Duration defaultStepDuration, long maxEvents) {
+        if (definition.steps().isEmpty()) {
+            throw new InvalidSimulationException("Definition has no steps");
+        }
+        if (request.instances() == null || request.instances() < 1) {
+            throw new InvalidSimulationException("Simulation needs at least one instance");
+        }
+        if (request.arrivalsPerHour() != null && !(request.arrivalsPerHour() > 0)) {
+            throw new InvalidSimulationException("Arrivals per hour must be positive");
+        }
+        if (request.horizon() != null && (request.horizon().isNegative() || request.horizon().isZero())) {
+            throw new InvalidSimulationException("Horizon must be positive");
+        }
+        return new Simulator(definition, request, defaultStepDuration, maxEvents).simulate();
+    }
+
+    private SimulationResult simulate() {
+        long started = System.nanoTime();
+        long processed = 0;
+        events.add(0, payload(0, ARRIVAL));
+        while (!events.isEmpty() && events.peekTime() <= horizonMs && processed < maxEvents) {
+            now = events.peekTime();
+            long payload = events.poll();
+            int instance = (int) (payload >>> 1);
+            if ((payload & 1) == ARRIVAL) {
+                arrive(instance);
+            } else {
+                finishStep(instance);
+            }
+            processed++;
+        }
+        boolean truncated = !events.isEmpty() && events.peekTime() <= horizonMs;
+        if (!events.isEmpty() && !truncated) {
+            now = horizonMs;
+        }
+
+        List<SimulationResult.StepResult> results = new ArrayList<>(steps.length);
+        for (Step step : steps) {
+            results.add(step.result(now));
+        }
+        return new SimulationResult(definition.id(), arrived, completed, arrived - completed, Duration.ofMillis(now),
+                truncated, cycleTimes.result(), bottleneck(results), results, processed,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void arrive(int instance) {
+        arrived++;
+        startedAt[instance] = now;
+        // Arrivals are generated one ahead, so the heap holds only instances in flight
+        if (instance + 1 < instances) {
+            events.add(now + sample(meanInterarrivalMs, SimulationRequest.Distribution.EXPONENTIAL),
+                    payload(instance + 1, ARRIVAL));
+        }
+        enter(instance, 0);
+    }
+
+    private void enter(int instance, int index) {
+        Step step = steps[index];
+        step.advance(now);
+        if (step.entered++ == 0) {
+            step.firstEntered = now;
+        }
+        step.lastEntered = now;
+        stepOf[instance] = index;
+        enteredAt[instance] = now;
+        if (step.servers == 0 || step.busy < step.servers) {
+            serve(instance, step);
+        } else {
+            step.waiting.add(instance);
+            step.maxQueueLength = Math.max(step.maxQueueLength, step.waiting.size());
+        }
+    }
+
+    private void serve(int instance, Step step) {
+        step.busy++;
+        step.waitTimes.add(now - enteredAt[instance]);
+        events.add(now + sample(step.meanMs, step.distribution), payload(instance, DONE));
+    }
+
+    private void finishStep(int instance) {
+        Step step = steps[stepOf[instance]];
+        step.advance(now);
+        step.busy--;
+        step.completed++;
+        long timeInStep = now - enteredAt[instance];
+        step.timesInStep.add(timeInStep);
+        if (timeInStep > step.slaMs) {
+            step.slaBreaches++;
+        }
+        if (!step.waiting.isEmpty()) {
+            serve(step.waiting.poll(), step);
+        }
+
+        int next = step.route(random);
+        if (next < 0) {
+            completed++;
+            cycleTimes.add(now - startedAt[instance]);
+        } else {
+            enter(instance, next);
+        }
+    }
+
+    private long sample(double meanMs, SimulationRequest.Distribution distribution) {
+        if (meanMs <= 0) {
+            return 0;
+        }
+        return switch (distribution) {
+            case FIXED -> Math.round(meanMs);
+            case UNIFORM -> Math.round(random.nextDouble() * 2 * meanMs);
+            case EXPONENTIAL -> Math.round(-meanMs * Math.log(1 - random.nextDouble()));
+        };
+    }
+
+    private static long payload(int instance, int kind) {
+        return ((long) instance << 1) | kind;
+    }
+
+    private static String bottleneck(List<SimulationResult.StepResult> results) {
+        SimulationResult.StepResult growing = null;
+        SimulationResult.StepResult busiest = null;
+        SimulationResult.StepResult slowest = null;
+        for (SimulationResult.StepResult result : results) {
+            if (result.entered() == 0) {
+                continue;
+            }
+            if (result.projectedQueueGrowthPerHour() > 0 && (growing == null
+                    || result.projectedQueueGrowthPerHour() > growing.projectedQueueGrowthPerHour())) {
+                growing = result;
+            }
+            if (result.utilization() != null && (busiest == null || result.utilization() > busiest.utilization())) {
+                busiest = result;
+            }
+            if (slowest == null || result.timeInStep().averageMs() > slowest.timeInStep().averageMs()) {
+                slowest = result;
+            }
+        }
+        SimulationResult.StepResult bottleneck = growing != null ? growing : busiest != null ? busiest : slowest;
+        return bottleneck != null ? bottleneck.stepName() : null;
+    }
+
+    private static Step[] steps(DefinitionSnapshot definition, Map<String, SimulationRequest.StepModel> models,
+                                Duration defaultStepDuration) {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<DefinitionSnapshot.StepSnapshot> snapshots = definition.steps();
+        for (int i = 0; i < snapshots.size(); i++) {
+            indexes.put(snapshots.get(i).stepName(), i);
+        }
+        for (String stepName : models.keySet()) {
+            if (!indexes.containsKey(stepName)) {
+                throw new InvalidSimulationException("Definition has no step " + stepName);
+            }
+        }
+
+        Step[] steps = new Step[snapshots.size()];
+        for (int i = 0; i < steps.length; i++) {
+            DefinitionSnapshot.StepSnapshot snapshot = snapshots.get(i);
+            SimulationRequest.StepModel model = models.get(snapshot.stepName());
+            steps[i] = new Step(snapshot, model != null ? model : new SimulationRequest.StepModel(null, null, null, null),
+                    indexes, defaultStepDuration);
+        }
+        return steps;
+    }
+
+    /**
+     * A step as a queue in front of a number of servers
+     */
+    private static final class Step {
+
+        final DefinitionSnapshot.StepSnapshot snapshot;
+        final int servers;
+        final double meanMs;
+        final SimulationRequest.Distribution distribution;
+        final long slaMs;
+        final int[] next;
+        final double[] cumulativeWeights;
+
+        final IntQueue waiting = new IntQueue();
+        final Times waitTimes = new Times();
+        final Times timesInStep = new Times();
+        int busy;
+        long entered;
+        long completed;
+        long slaBreaches;
+        int maxQueueLength;
+        long firstEntered;
+        long lastEntered;
+        long lastChange;
+        double busyArea;
+        double queueArea;
+
+        Step(DefinitionSnapshot.StepSnapshot snapshot, SimulationRequest.StepModel model, Map<String, Integer> indexes,
+             Duration defaultStepDuration) {
+            this.snapshot = snapshot;
+            if (model.servers() != null && model.servers() < 0) {
+                throw new InvalidSimulationException("Step " + snapshot.stepName() + " needs servers of 0 or more");
+            }
+            if (model.meanDuration() != null && model.meanDuration().isNegative()) {
+                throw new InvalidSimulationException("Step " + snapshot.stepName() + " has a negative mean duration");
+            }
+            this.servers = model.servers() != null ? model.servers() : 0;
+            this.meanMs = (model.meanDuration() != null ? model.meanDuration() : defaultStepDuration).toMillis();
+            this.distribution = model.distribution() != null
+                    ? model.distribution() : SimulationRequest.Distribution.EXPONENTIAL;
+            this.slaMs = sla(snapshot);
+
+            List<String> nextSteps = snapshot.nextSteps();
+            this.next = new int[nextSteps.size()];
+            for (int i = 0; i < next.length; i++) {
+                // The compiler rejects unknown next steps; a stale graph ends the instance instead
+                next[i] = indexes.getOrDefault(nextSteps.get(i), -1);
+            }
+            this.cumulativeWeights = weights(snapshot, model.next());
+        }
+
+        int route(SplittableRandom random) {
+            if (next.length == 0) {
+                return -1;
+            }
+            if (cumulativeWeights == null) {
+                return next[0];
+            }
+            double draw = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (draw < cumulativeWeights[i]) {
+                    return next[i];
+                }
+            }
+            return next[next.length - 1];
+        }
+
+        /**
+         * Accumulate the time-weighted busy servers and queue length up to a point in time
+         */
+        void advance(long now) {
+            busyArea += (double) busy * (now - lastChange);
+            queueArea += (double) waiting.size() * (now - lastChange);
+            lastChange = now;
+        }
+
+        SimulationResult.StepResult result(long end) {
+            advance(end);
+            // Over the time instances kept arriving, so draining the queues afterwards does not hide overload
+            double arrivalHours = (lastEntered - firstEntered) / MILLIS_PER_HOUR;
+            double arrivalsPerHour = arrivalHours > 0 ? entered / arrivalHours : 0;
+            Double capacityPerHour = servers > 0 && meanMs > 0 ? servers * MILLIS_PER_HOUR / meanMs : null;
+            Double utilization = servers > 0 ? (end > 0 ? busyArea / ((double) servers * end) : 0) : null;
+            double growth = capacityPerHour != null ? Math.max(0, arrivalsPerHour - capacityPerHour) : 0;
+            return new SimulationResult.StepResult(snapshot.stepName(), snapshot.stepType(), servers, entered,
+                    completed, utilization, arrivalsPerHour, capacityPerHour, growth, end > 0 ? queueArea / end : 0,
+                    maxQueueLength, waiting.size(), waitTimes.result(), timesInStep.result(), slaBreaches);
+        }
+
+        private static long sla(DefinitionSnapshot.StepSnapshot snapshot) {
+            try {
+                return StepSla.of(snapshot.configuration()).map(sla -> sla.after().toMillis()).orElse(Long.MAX_VALUE);
+            } catch (IllegalArgumentException ex) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        private static double[] weights(DefinitionSnapshot.StepSnapshot snapshot, Map<String, Double> weights) {
+            if (weights == null || weights.isEmpty()) {
+                return null;
+            }
+            for (String stepName : weights.keySet()) {
+                if (!snapshot.nextSteps().contains(stepName)) {
+                    throw new InvalidSimulationException("Step " + snapshot.stepName() + " does not lead to " + stepName);
+                }
+            }
+            double[] cumulative = new double[snapshot.nextSteps().size()];
+            double sum = 0;
+            for (int i = 0; i < cumulative.length; i++) {
+                Double weight = weights.get(snapshot.nextSteps().get(i));
+                if (weight != null && !(weight >= 0)) {
+                    throw new InvalidSimulationException("Step " + snapshot.stepName() + " has a negative weight");
+                }
+                sum += weight != null ? weight : 0;
+                cumulative[i] = sum;
+            }
+            if (sum <= 0) {
+                throw new InvalidSimulationException("Step " + snapshot.stepName() + " needs a positive weight");
+            }
+            return cumulative;
+        }
+    }
+
+    /**
+     * Accumulates times for averages and percentiles
+     */
+    private static final class Times {
+
+        private final DurationSketch sketch = new DurationSketch();
+        private long sum;
+        private long max;
+
+        void add(long millis) {
+            sketch.add(millis);
+            sum += millis;
+            max = Math.max(max, millis);
+        }
+
+        SimulationResult.Times result() {
+            long count = sketch.count();
+            return new SimulationResult.Times(count, count > 0 ? sum / count : 0,
+                    sketch.quantile(0.5), sketch.quantile(0.95), sketch.quantile(0.99), max);
+        }
+    }
+
+    /**
+     * First-in first-out queue of instance numbers in a growable ring buffer
+     */
+    private static final class IntQueue {
+
+        private int[] elements = new int[16];
+        private int head;
+        private int size;
+
+        void add(int element) {
+            if (size == elements.length) {
+                int[] grown = new int[size * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = elements[(head + i) & (elements.length - 1)];
+                }
+                elements = grown;
+                head = 0;
+            }
+            elements[(head + size++) & (elements.length - 1)] = element;
+        }
+
+        int poll() {
+            int element = elements[head];
+            head = (head + 1) & (elements.length - 1);
+            size--;
+            return element;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
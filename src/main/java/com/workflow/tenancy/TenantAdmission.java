@@ -0,0 +1,277 @@
+package com.workflow.tenancy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Per-tenant rate limit and concurrency quota for instance writes
+ *
+ * The rate limit is a token bucket in its GCRA form: each tenant keeps a
+ * single theoretical arrival time, advanced by one emission interval per
+ * admitted request with a compare-and-set. A request is admitted while
+ * that time is at most burst intervals ahead of now, so a tenant can
+ * burst to workflow.tenancy.burst requests and then sustain
+ * workflow.tenancy.permits-per-second. The concurrency quota caps the
+ * request workers one tenant can occupy at once. Neither takes a lock,
+ * so a tenant that is being throttled does not slow down the others.
+ *
+ * Metrics are tagged with the tenant: workflow.tenant.requests times
+ * admitted requests, workflow.tenant.rejected counts throttled ones and
+ * workflow.tenant.in-flight reports occupied workers.
+ *
+ * With workflow.tenancy.tenants set, each listed tenant keeps its state
+ * for good. Without a list, any tenant ID can show up, so state is kept
+ * for at most workflow.tenancy.max-tracked-tenants tenants. A tenant
+ * without writes for workflow.tenancy.idle-expiry loses its state and
+ * meters. While the limit is reached, new tenants share the limits and
+ * meters tagged tenant=*.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Lazy(false)
+public class TenantAdmission {
+
+    private final MeterRegistry meterRegistry;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxConcurrent;
+    private final boolean listed;
+    private final int maxTrackedTenants;
+    private final long idleNanos;
+    private final ConcurrentHashMap<String, TenantState> tenants = new ConcurrentHashMap<>();
+    private final TenantState untracked;
+
+    public TenantAdmission(
+            MeterRegistry meterRegistry,
+            @Value("${workflow.tenancy.permits-per-second:200}") double permitsPerSecond,
+            @Value("${workflow.tenancy.burst:400}") int burst,
+            @Value("${workflow.tenancy.max-concurrent:32}") int maxConcurrent,
+            @Value("${workflow.tenancy.tenants:}") List<String> tenants,
+            @Value("${workflow.tenancy.max-tracked-tenants:1000}") int maxTrackedTenants,
+            @Value("${workflow.tenancy.idle-expiry:PT10M}") Duration idleExpiry) {
+        if (permitsPerSecond <= 0 || burst < 1 || maxConcurrent < 1 || maxTrackedTenants < 1) {
+            throw new IllegalArgumentException("Tenant rate, burst, concurrency and tracking limits must be positive");
+        }
+        this.meterRegistry = meterRegistry;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxConcurrent = maxConcurrent;
+        this.maxTrackedTenants = maxTrackedTenants;
+        this.idleNanos = idleExpiry.toNanos();
+
+        Set<String> configured = tenants.stream()
+                .filter(StringUtils::hasText)
+                .map(String::trim)
+                .collect(Collectors.toSet());
+        this.listed = !configured.isEmpty();
+        configured.forEach(tenantId -> this.tenants.put(tenantId, new TenantState(tenantId)));
+        this.untracked = new TenantState(TenantContext.ROOT);
+    }
+
+    /**
+     * Admit a request of a tenant
+     *
+     * An admitted request holds one of the tenant's concurrency permits
+     * until {@link Ticket#close()}.
+     *
+     * @param tenantId the tenant ID
+     * @return the outcome; a ticket if admitted
+     */
+    public Admission tryAdmit(String tenantId) {
+        TenantState state = stateOf(tenantId);
+
+        long waitNanos = state.tryAcquireRate();
+        if (waitNanos > 0) {
+            state.rateLimited.increment();
+            return Admission.rejected(Rejection.RATE_LIMITED, Duration.ofNanos(waitNanos));
+        }
+        if (!state.inFlight.tryAcquire()) {
+            // The rate token stays spent; a tenant at its quota is already busy enough
+            state.quotaExceeded.increment();
+            return Admission.rejected(Rejection.QUOTA_EXCEEDED, Duration.ofSeconds(1));
+        }
+        return Admission.admitted(new Ticket(state, System.nanoTime()));
+    }
+
+    /**
+     * Drop the state and meters of tenants that have been idle for workflow.tenancy.idle-expiry
+     */
+    @Scheduled(fixedDelayString = "${workflow.tenancy.idle-expiry:PT10M}",
+            initialDelayString = "${workflow.tenancy.idle-expiry:PT10M}")
+    public void expireIdleTenants() {
+        if (listed) {
+            return;
+        }
+        long now = System.nanoTime();
+        tenants.forEach((tenantId, state) -> {
+            if (state.isIdle(now) && tenants.remove(tenantId, state)) {
+                state.removeMeters();
+            }
+        });
+    }
+
+    /**
+     * Count the tenants that have state of their own
+     *
+     * @return the number of tracked tenants
+     */
+    public int getTrackedTenants() {
+        return tenants.size();
+    }
+
+    private TenantState stateOf(String tenantId) {
+        TenantState state = tenants.get(tenantId);
+        if (state != null) {
+            return state;
+        }
+        // Concurrent first requests can overshoot the limit by a few tenants, which is harmless
+        if (listed || tenants.size() >= maxTrackedTenants) {
+            return untracked;
+        }
+        return tenants.computeIfAbsent(tenantId, TenantState::new);
+    }
+
+    /**
+     * Why a request was not admitted
+     */
+    public enum Rejection {
+        RATE_LIMITED,
+        QUOTA_EXCEEDED
+    }
+
+    /**
+     * Outcome of {@link #tryAdmit(String)}
+     *
+     * @param ticket the ticket of an admitted request, or null
+     * @param rejection why the request was rejected, or null
+     * @param retryAfter when the tenant may retry, or null
+     */
+    public record Admission(Ticket ticket, Rejection rejection, Duration retryAfter) {
+
+        static Admission admitted(Ticket ticket) {
+            return new Admission(ticket, null, null);
+        }
+
+        static Admission rejected(Rejection rejection, Duration retryAfter) {
+            return new Admission(null, rejection, retryAfter);
+        }
+
+        public boolean isAdmitted() {
+            return ticket != null;
+        }
+    }
+
+    /**
+     * Concurrency permit of an admitted request
+     */
+    public static final class Ticket implements AutoCloseable {
+
+        private final TenantState state;
+        private final long admittedAtNanos;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Ticket(TenantState state, long admittedAtNanos) {
+            this.state = state;
+            this.admittedAtNanos = admittedAtNanos;
+        }
+
+        /**
+         * Release the permit and record the request latency; later calls do nothing
+         */
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            state.inFlight.release();
+            state.requests.record(System.nanoTime() - admittedAtNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private final class TenantState {
+
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+        private final Semaphore inFlight = new Semaphore(maxConcurrent);
+        private final Timer requests;
+        private final Counter rateLimited;
+        private final Counter quotaExceeded;
+        private final Gauge inFlightGauge;
+
+        TenantState(String tenantId) {
+            requests = Timer.builder("workflow.tenant.requests")
+                    .description("Latency of admitted instance writes per tenant")
+                    .tag("tenant", tenantId)
+                    .register(meterRegistry);
+            rateLimited = rejectedCounter(tenantId, "rate_limited");
+            quotaExceeded = rejectedCounter(tenantId, "quota_exceeded");
+            inFlightGauge = Gauge.builder("workflow.tenant.in-flight", inFlight, permits -> maxConcurrent - permits.availablePermits())
+                    .description("Instance writes of a tenant currently being processed")
+                    .tag("tenant", tenantId)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Check whether the tenant has had no writes for the idle expiry
+         *
+         * A tenant being throttled keeps its arrival time ahead of now, so it never counts as idle.
+         */
+        boolean isIdle(long now) {
+            return now - theoreticalArrival.get() > idleNanos && inFlight.availablePermits() == maxConcurrent;
+        }
+
+        void removeMeters() {
+            for (Meter meter : List.of(requests, rateLimited, quotaExceeded, inFlightGauge)) {
+                meterRegistry.remove(meter);
+            }
+        }
+
+        /**
+         * Take one rate token
+         *
+         * @return 0 if taken, otherwise nanoseconds until one is available
+         */
+        long tryAcquireRate() {
+            while (true) {
+                long now = System.nanoTime();
+                long tat = theoreticalArrival.get();
+                // An idle tenant's arrival time lags behind; it restarts from now with a full burst
+                long base = tat - now < 0 ? now : tat;
+                long ahead = base - now;
+                if (ahead > toleranceNanos) {
+                    return ahead - toleranceNanos;
+                }
+                if (theoreticalArrival.compareAndSet(tat, base + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        private Counter rejectedCounter(String tenantId, String reason) {
+            return Counter.builder("workflow.tenant.rejected")
+                    .description("Instance writes rejected by the tenant limits")
+                    .tag("tenant", tenantId)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.workflow.tenancy;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Applies the tenant limits of {@link TenantAdmission} to instance starts and transitions
+ *
+ * Only writes are limited; reads stay unthrottled. Rejected requests get
+ * 429 Too Many Requests with a Retry-After header. An asynchronous
+ * request keeps its permit until the async dispatch completes.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TenantAdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String TICKET_ATTRIBUTE = TenantAdmissionInterceptor.class.getName() + ".ticket";
+
+    private final TenantAdmission tenantAdmission;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        if (request.getDispatcherType() == DispatcherType.ASYNC
+                || HttpMethod.GET.matches(request.getMethod())
+                || HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        String tenantId = TenantContext.current();
+        TenantAdmission.Admission admission = tenantAdmission.tryAdmit(
+                tenantId != null ? tenantId : TenantContext.DEFAULT_TENANT);
+        if (!admission.isAdmitted()) {
+            long retryAfterSeconds = Math.max(1, (admission.retryAfter().toMillis() + 999) / 1000);
+            log.debug("Rejected {} {} of tenant {}: {}", request.getMethod(), request.getRequestURI(),
+                    tenantId, admission.rejection());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Tenant limit exceeded");
+            return false;
+        }
+        request.setAttribute(TICKET_ATTRIBUTE, admission.ticket());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.isAsyncStarted()) {
+            return;
+        }
+        Object ticket = request.getAttribute(TICKET_ATTRIBUTE);
+        if (ticket instanceof TenantAdmission.Ticket admitted) {
+            request.removeAttribute(TICKET_ATTRIBUTE);
+            admitted.close();
+        }
+    }
+}
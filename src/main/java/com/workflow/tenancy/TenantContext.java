@@ -0,0 +1,57 @@
+package com.workflow.tenancy;
+
+/**
+ * Tenant of the work running on the current thread
+ *
+ * Bound per request by {@link TenantFilter}. Background work such as
+ * cache warm-up and scheduled jobs runs without a tenant and sees all
+ * tenants.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public final class TenantContext {
+
+    /**
+     * Tenant of requests that do not name one
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    /**
+     * Hibernate tenant identifier of work across all tenants; never a valid tenant ID
+     */
+    static final String ROOT = "*";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * Get the tenant bound to the current thread
+     *
+     * @return the tenant ID, or null for background work across tenants
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Check whether the current thread may see data of a tenant
+     *
+     * @param tenantId the tenant owning the data
+     * @return true for the bound tenant, or for any tenant in background work
+     */
+    public static boolean canAccess(String tenantId) {
+        String current = CURRENT.get();
+        return current == null || current.equals(tenantId);
+    }
+
+    static void bind(String tenantId) {
+        CURRENT.set(tenantId);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,77 @@
+package com.workflow.tenancy;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Binds the tenant named in the request header to the request thread
+ *
+ * Requests without the header belong to the default tenant. Runs before
+ * the persistence context is opened, so every Hibernate session of the
+ * request is scoped to the tenant. When workflow.tenancy.tenants is set,
+ * other tenants are rejected.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class TenantFilter extends OncePerRequestFilter {
+
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final String header;
+    private final Set<String> tenants;
+
+    public TenantFilter(
+            @Value("${workflow.tenancy.header:X-Tenant-ID}") String header,
+            @Value("${workflow.tenancy.tenants:}") List<String> tenants) {
+        this.header = header;
+        this.tenants = tenants.stream().filter(StringUtils::hasText).map(String::trim).collect(Collectors.toSet());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String tenantId = request.getHeader(header);
+        if (tenantId == null) {
+            tenantId = TenantContext.DEFAULT_TENANT;
+        } else if (!TENANT_ID.matcher(tenantId).matches()) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + header + " header");
+            return;
+        }
+        // Tenants get their own limiter state and meters, so only configured ones are accepted
+        if (!tenants.isEmpty() && !tenants.contains(tenantId)) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Unknown tenant " + tenantId);
+            return;
+        }
+
+        TenantContext.bind(tenantId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // Async completions of step requests run on another thread and need the tenant too
+        return false;
+    }
+}
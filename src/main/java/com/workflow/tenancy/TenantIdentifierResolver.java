@@ -0,0 +1,32 @@
+package com.workflow.tenancy;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+
+/**
+ * Resolves the Hibernate tenant of new sessions from {@link TenantContext}
+ *
+ * Sessions opened for a tenant only see and write that tenant's
+ * definitions and instances. Sessions of background work are root
+ * sessions, which Hibernate does not filter.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class TenantIdentifierResolver implements CurrentTenantIdentifierResolver {
+
+    @Override
+    public String resolveCurrentTenantIdentifier() {
+        String tenantId = TenantContext.current();
+        return tenantId != null ? tenantId : TenantContext.ROOT;
+    }
+
+    @Override
+    public boolean validateExistingCurrentSessions() {
+        return false;
+    }
+
+    @Override
+    public boolean isRoot(String tenantId) {
+        return TenantContext.ROOT.equals(tenantId);
+    }
+}
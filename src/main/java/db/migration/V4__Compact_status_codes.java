@@ -0,0 +1,223 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * V4__Compact_status_codes
+ *
+ * Expand step of moving the VARCHAR status and step_type columns to SMALLINT
+ * codes while nodes of the previous release keep running:
+ *
+ * 1. add a nullable *_code column next to the VARCHAR one (online schema change)
+ * 2. install a trigger that keeps both columns in step on every insert and
+ *    update, whichever of them the writing node knows about
+ * 3. backfill the code column in small batches, each in its own transaction
+ * 4. build the *_v4 indexes on the code column next to the existing ones
+ *
+ * Nothing is dropped, renamed or made NOT NULL here: nodes of the previous
+ * release still read and write the VARCHAR column, and the code column has no
+ * default so an insert from them never ends up with a code that does not
+ * match its status. The contract step (db/contract/V16__Contract_status_codes.sql)
+ * removes the triggers and the VARCHAR columns once no such node is left.
+ *
+ * The codes below are a frozen copy of the {@code CodedEnum} codes. A value
+ * added to one of these enums while the triggers are still in place has to be
+ * added here too, or the trigger rejects every row written with it; that is
+ * how COMPENSATED and COMPENSATION_FAILED came to the executions list.
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+public class V4__Compact_status_codes extends BaseJavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V4__Compact_status_codes.class);
+
+    private static final int BATCH_SIZE = 5000;
+
+    static final List<ColumnMigration> MIGRATIONS = List.of(
+            new ColumnMigration("workflow_definitions", "status",
+                    List.of("DRAFT", "ACTIVE", "INACTIVE", "ARCHIVED"),
+                    List.of("CREATE INDEX IF NOT EXISTS idx_workflow_definitions_status_v4"
+                            + " ON workflow_definitions (status_code)")),
+            new ColumnMigration("workflow_instances", "status",
+                    List.of("RUNNING", "COMPLETED", "FAILED", "SUSPENDED", "CANCELLED", "COMPENSATING"),
+                    List.of("CREATE INDEX IF NOT EXISTS idx_workflow_instances_status_started_v4"
+                                    + " ON workflow_instances (status_code, started_at DESC) USING HASH"
+                                    + " STORING (workflow_definition_id, name, current_step, completed_at,"
+                                    + " created_by, updated_by)",
+                            "CREATE INDEX IF NOT EXISTS idx_workflow_instances_definition_started_v4"
+                                    + " ON workflow_instances (workflow_definition_id, started_at DESC) USING HASH"
+                                    + " STORING (name, status_code, current_step, completed_at, created_by, updated_by)",
+                            "CREATE INDEX IF NOT EXISTS idx_workflow_instances_started_v4"
+                                    + " ON workflow_instances (started_at) USING HASH"
+                                    + " STORING (workflow_definition_id, name, status_code, current_step, completed_at)",
+                            "CREATE INDEX IF NOT EXISTS idx_workflow_instances_current_step_v4"
+                                    + " ON workflow_instances (current_step)"
+                                    + " STORING (workflow_definition_id, name, status_code, started_at)",
+                            "CREATE INDEX IF NOT EXISTS idx_workflow_instances_created_by_v4"
+                                    + " ON workflow_instances (created_by)"
+                                    + " STORING (workflow_definition_id, name, status_code, current_step, started_at)")),
+            new ColumnMigration("workflow_executions", "status",
+                    List.of("PENDING", "RUNNING", "COMPLETED", "FAILED", "SKIPPED", "CANCELLED",
+                            "COMPENSATED", "COMPENSATION_FAILED"),
+                    List.of("CREATE INDEX IF NOT EXISTS idx_workflow_executions_status_started_v4"
+                                    + " ON workflow_executions (status_code, started_at DESC) USING HASH"
+                                    + " STORING (workflow_instance_id, step_name, completed_at, executed_by)",
+                            "CREATE INDEX IF NOT EXISTS idx_workflow_executions_started_v4"
+                                    + " ON workflow_executions (started_at) USING HASH"
+                                    + " STORING (workflow_instance_id, step_name, status_code)")),
+            new ColumnMigration("workflow_assignments", "status",
+                    List.of("ASSIGNED", "IN_PROGRESS", "COMPLETED", "REJECTED", "DELEGATED"),
+                    List.of("CREATE INDEX IF NOT EXISTS idx_workflow_assignments_assignee_status_v4"
+                            + " ON workflow_assignments (assignee, status_code, assigned_at DESC)"
+                            + " STORING (workflow_execution_id, completed_at)")),
+            new ColumnMigration("workflow_steps", "step_type",
+                    List.of("HUMAN_TASK", "AUTOMATED", "GATEWAY", "TIMER", "SCRIPT", "SERVICE_CALL"),
+                    List.of()));
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        // Each backfill batch commits on its own
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        connection.setAutoCommit(true);
+        for (ColumnMigration migration : MIGRATIONS) {
+            migrate(connection, migration);
+        }
+    }
+
+    private void migrate(Connection connection, ColumnMigration migration) throws SQLException {
+        mirror(connection, migration);
+        for (String ddl : migration.createIndexes()) {
+            execute(connection, ddl);
+        }
+    }
+
+    /**
+     * Add the code column, keep it in step with the VARCHAR column and backfill it
+     */
+    void mirror(Connection connection, ColumnMigration migration) throws SQLException {
+        String table = migration.table();
+        String codeColumn = migration.codeColumn();
+
+        execute(connection, "ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + codeColumn + " SMALLINT");
+
+        // From here on every write fills both columns, so the backfill below sees each row once
+        execute(connection, syncFunction(migration));
+        execute(connection, "DROP TRIGGER IF EXISTS " + migration.syncName() + " ON " + table);
+        execute(connection, "CREATE TRIGGER " + migration.syncName()
+                + " BEFORE INSERT OR UPDATE ON " + table
+                + " FOR EACH ROW EXECUTE FUNCTION " + migration.syncName() + "()");
+
+        long rows = backfill(connection, migration);
+        log.info("Backfilled {} rows of {}.{}", rows, table, codeColumn);
+    }
+
+    /**
+     * Trigger function keeping the VARCHAR column and the code column in step.
+     *
+     * Nodes of the previous release only write the VARCHAR column and leave
+     * the code NULL on insert and unchanged on update; nodes of this release
+     * only write the code, so the VARCHAR column holds its default or old value.
+     */
+    private String syncFunction(ColumnMigration migration) {
+        String column = migration.column();
+        String codeColumn = migration.codeColumn();
+        String toCode = caseExpression("NEW." + column, migration.names(), true, "NULL");
+        String toName = caseExpression("NEW." + codeColumn, migration.names(), false, "NULL");
+        return "CREATE OR REPLACE FUNCTION " + migration.syncName() + "() RETURNS TRIGGER LANGUAGE PLpgSQL AS $$\n"
+                + "BEGIN\n"
+                + "  IF (TG_OP = 'INSERT' AND NEW." + codeColumn + " IS NULL)\n"
+                + "      OR (TG_OP = 'UPDATE' AND NEW." + column + " IS DISTINCT FROM OLD." + column
+                + " AND NEW." + codeColumn + " IS NOT DISTINCT FROM OLD." + codeColumn + ") THEN\n"
+                + "    NEW." + codeColumn + " := " + toCode + ";\n"
+                + "    IF NEW." + codeColumn + " IS NULL THEN\n"
+                + "      RAISE EXCEPTION 'Unknown " + migration.table() + "." + column + " %', NEW." + column + ";\n"
+                + "    END IF;\n"
+                + "  ELSIF TG_OP = 'INSERT' OR NEW." + codeColumn + " IS DISTINCT FROM OLD." + codeColumn + " THEN\n"
+                + "    NEW." + column + " := " + toName + ";\n"
+                + "    IF NEW." + column + " IS NULL THEN\n"
+                + "      RAISE EXCEPTION 'Unknown " + migration.table() + "." + codeColumn + " %', NEW." + codeColumn + ";\n"
+                + "    END IF;\n"
+                + "  END IF;\n"
+                + "  RETURN NEW;\n"
+                + "END;\n"
+                + "$$";
+    }
+
+    private long backfill(Connection connection, ColumnMigration migration) throws SQLException {
+        // The trigger rejects unknown values from now on, so checking once is enough for the loop to terminate
+        String names = String.join(", ", migration.names().stream().map(name -> "'" + name + "'").toList());
+        String sql = "UPDATE " + migration.table() + " SET " + migration.codeColumn() + " = "
+                + caseExpression(migration.column(), migration.names(), true, "NULL")
+                + " WHERE id IN (SELECT id FROM " + migration.table()
+                + " WHERE " + migration.codeColumn() + " IS NULL LIMIT " + BATCH_SIZE + ")";
+
+        long total = 0;
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet unknown = statement.executeQuery("SELECT count(*) FROM " + migration.table()
+                    + " WHERE " + migration.column() + " NOT IN (" + names + ")")) {
+                unknown.next();
+                if (unknown.getLong(1) > 0) {
+                    throw new IllegalStateException(String.format("%d rows of %s.%s hold an unknown value",
+                            unknown.getLong(1), migration.table(), migration.column()));
+                }
+            }
+
+            int updated;
+            do {
+                updated = statement.executeUpdate(sql);
+                total += updated;
+            } while (updated > 0);
+        }
+        return total;
+    }
+
+    private static String caseExpression(String operand, List<String> names, boolean toCode, String otherwise) {
+        StringBuilder expression = new StringBuilder("CASE ").append(operand);
+        for (int i = 0; i < names.size(); i++) {
+            String name = "'" + names.get(i) + "'";
+            String code = String.valueOf(i + 1);
+            expression.append(" WHEN ").append(toCode ? name : code)
+                    .append(" THEN ").append(toCode ? code : name);
+        }
+        return expression.append(" ELSE ").append(otherwise).append(" END").toString();
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * One VARCHAR column to mirror into a code column, with the indexes on the code column
+     */
+    record ColumnMigration(
+            String table,
+            String column,
+            List<String> names,
+            List<String> createIndexes) {
+
+        String codeColumn() {
+            return column + "_code";
+        }
+
+        String syncName() {
+            return table + "_" + column + "_sync";
+        }
+    }
+}
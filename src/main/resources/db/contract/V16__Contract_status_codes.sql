@@ -0,0 +1,57 @@
+-- V16__Contract_status_codes.sql
+-- Contract step of V4__Compact_status_codes (CockroachDB syntax)
+
+-- Only run this once every node runs a release that reads and writes the
+-- *_code columns: nodes of older releases still use the VARCHAR columns it
+-- drops. It is kept out of db/migration for that reason and moves there with
+-- the next release; until then add classpath:db/contract to
+-- spring.flyway.locations to apply it.
+
+-- Nodes only write the codes now, so the columns no longer need mirroring
+DROP TRIGGER IF EXISTS workflow_definitions_status_sync ON workflow_definitions;
+DROP TRIGGER IF EXISTS workflow_instances_status_sync ON workflow_instances;
+DROP TRIGGER IF EXISTS workflow_executions_status_sync ON workflow_executions;
+DROP TRIGGER IF EXISTS workflow_assignments_status_sync ON workflow_assignments;
+DROP TRIGGER IF EXISTS workflow_steps_step_type_sync ON workflow_steps;
+DROP FUNCTION IF EXISTS workflow_definitions_status_sync;
+DROP FUNCTION IF EXISTS workflow_instances_status_sync;
+DROP FUNCTION IF EXISTS workflow_executions_status_sync;
+DROP FUNCTION IF EXISTS workflow_assignments_status_sync;
+DROP FUNCTION IF EXISTS workflow_steps_step_type_sync;
+
+-- Every row was backfilled or written with a code by the triggers
+ALTER TABLE workflow_definitions ALTER COLUMN status_code SET NOT NULL;
+ALTER TABLE workflow_instances ALTER COLUMN status_code SET NOT NULL;
+ALTER TABLE workflow_executions ALTER COLUMN status_code SET NOT NULL;
+ALTER TABLE workflow_assignments ALTER COLUMN status_code SET NOT NULL;
+ALTER TABLE workflow_steps ALTER COLUMN step_type_code SET NOT NULL;
+
+-- Indexes on the VARCHAR columns; their *_v4 replacements take over the names
+DROP INDEX IF EXISTS workflow_definitions@idx_workflow_definitions_status;
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_started;
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_current_step;
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_created_by;
+DROP INDEX IF EXISTS workflow_executions@idx_workflow_executions_status_started;
+DROP INDEX IF EXISTS workflow_executions@idx_workflow_executions_started;
+DROP INDEX IF EXISTS workflow_assignments@idx_workflow_assignments_assignee_status;
+
+ALTER TABLE workflow_definitions DROP COLUMN status;
+ALTER TABLE workflow_instances DROP COLUMN status;
+ALTER TABLE workflow_executions DROP COLUMN status;
+ALTER TABLE workflow_assignments DROP COLUMN status;
+ALTER TABLE workflow_steps DROP COLUMN step_type;
+
+ALTER INDEX workflow_definitions@idx_workflow_definitions_status_v4
+    RENAME TO idx_workflow_definitions_status;
+ALTER INDEX workflow_instances@idx_workflow_instances_started_v4
+    RENAME TO idx_workflow_instances_started;
+ALTER INDEX workflow_instances@idx_workflow_instances_current_step_v4
+    RENAME TO idx_workflow_instances_current_step;
+ALTER INDEX workflow_instances@idx_workflow_instances_created_by_v4
+    RENAME TO idx_workflow_instances_created_by;
+ALTER INDEX workflow_executions@idx_workflow_executions_status_started_v4
+    RENAME TO idx_workflow_executions_status_started;
+ALTER INDEX workflow_executions@idx_workflow_executions_started_v4
+    RENAME TO idx_workflow_executions_started;
+ALTER INDEX workflow_assignments@idx_workflow_assignments_assignee_status_v4
+    RENAME TO idx_workflow_assignments_assignee_status;
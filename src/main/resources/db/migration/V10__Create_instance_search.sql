@@ -0,0 +1,42 @@
+-- V10__Create_instance_search.sql
+-- Search over instance names and context (CockroachDB syntax)
+
+-- Context keys declared searchable per definition; json_path holds the keys leading to the value
+CREATE TABLE workflow_search_keys (
+    workflow_definition_id UUID NOT NULL REFERENCES workflow_definitions(id) ON DELETE CASCADE,
+    key_name VARCHAR(64) NOT NULL,
+    json_path STRING[] NOT NULL,
+    value_type VARCHAR(16) NOT NULL,
+    PRIMARY KEY (workflow_definition_id, key_name)
+);
+
+-- Values of searchable keys, projected from the instance context when an instance starts
+CREATE TABLE workflow_instance_search_values (
+    instance_id UUID NOT NULL REFERENCES workflow_instances(id) ON DELETE CASCADE,
+    key_name VARCHAR(64) NOT NULL,
+    tenant_id VARCHAR(64) NOT NULL,
+    text_value STRING,
+    number_value DECIMAL,
+    PRIMARY KEY (instance_id, key_name)
+);
+
+-- Equality and prefix lookups on text keys
+CREATE INDEX idx_search_values_text
+    ON workflow_instance_search_values (tenant_id, key_name, text_value);
+
+-- Range lookups on numeric keys
+CREATE INDEX idx_search_values_number
+    ON workflow_instance_search_values (tenant_id, key_name, number_value)
+    WHERE number_value IS NOT NULL;
+
+-- Substring search over text keys
+CREATE INVERTED INDEX idx_search_values_text_trgm
+    ON workflow_instance_search_values (tenant_id, text_value gin_trgm_ops);
+
+-- Substring search over instance names
+CREATE INVERTED INDEX idx_workflow_instances_name_trgm
+    ON workflow_instances (tenant_id, name gin_trgm_ops);
+
+-- Containment (@>) filters on any context path
+CREATE INVERTED INDEX idx_workflow_instances_context
+    ON workflow_instances (tenant_id, context);
@@ -0,0 +1,4 @@
+-- V11__Add_execution_attempt.sql
+-- Number executions of the same step visit, so retried automated steps keep one row per attempt
+
+ALTER TABLE workflow_executions ADD COLUMN attempt INT NOT NULL DEFAULT 1;
@@ -0,0 +1,18 @@
+-- V12__Create_step_deadlines.sql
+-- Deadline index of instances waiting in steps that have an SLA (CockroachDB syntax)
+
+-- One row per instance while its current step has an SLA. due_at is when the
+-- SLA runs out; check_at is when the detector looks at the row next, which is
+-- due_at until a detector has claimed it.
+CREATE TABLE workflow_step_deadlines (
+    workflow_instance_id UUID PRIMARY KEY REFERENCES workflow_instances(id) ON DELETE CASCADE,
+    step_name VARCHAR(255) NOT NULL,
+    due_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    check_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- Deadlines are roughly monotonic, so the index is hash-sharded like the
+-- started_at indexes of V3; scans by check_at range fan out over the shards.
+CREATE INDEX idx_workflow_step_deadlines_check_at
+    ON workflow_step_deadlines (check_at) USING HASH
+    STORING (step_name, due_at);
@@ -0,0 +1,27 @@
+-- V13__Create_instance_rollups.sql
+-- Pre-aggregated counts and durations of finished instances per time bucket (CockroachDB syntax)
+
+-- resolution: 1 = minute, 2 = hour, 3 = day; bucket_start is the start of the bucket.
+-- duration_sketch holds a mergeable log-bucketed histogram of the durations in milliseconds.
+CREATE TABLE workflow_instance_rollups (
+    tenant_id VARCHAR(64) NOT NULL,
+    resolution SMALLINT NOT NULL,
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    workflow_definition_id UUID NOT NULL,
+    status SMALLINT NOT NULL,
+    instances BIGINT NOT NULL,
+    duration_sum_ms BIGINT NOT NULL,
+    duration_min_ms BIGINT NOT NULL,
+    duration_max_ms BIGINT NOT NULL,
+    duration_sketch BYTES NOT NULL,
+    PRIMARY KEY (tenant_id, resolution, bucket_start, workflow_definition_id, status)
+);
+
+-- Series of one definition
+CREATE INDEX idx_workflow_instance_rollups_definition
+    ON workflow_instance_rollups (tenant_id, workflow_definition_id, resolution, bucket_start)
+    STORING (instances, duration_sum_ms, duration_min_ms, duration_max_ms, duration_sketch);
+
+-- Retention of fine resolutions across tenants; recent buckets take all writes, so the index is hash-sharded
+CREATE INDEX idx_workflow_instance_rollups_retention
+    ON workflow_instance_rollups (resolution, bucket_start) USING HASH;
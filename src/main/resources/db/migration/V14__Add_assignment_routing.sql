@@ -0,0 +1,16 @@
+-- V14__Add_assignment_routing.sql
+-- Human task assignments belong to an instance waiting at a step (CockroachDB syntax)
+
+-- An assignment is created when the instance enters the step and only gets
+-- the execution that completed it once the task is done.
+ALTER TABLE workflow_assignments ALTER COLUMN workflow_execution_id DROP NOT NULL;
+ALTER TABLE workflow_assignments ADD COLUMN workflow_instance_id UUID;
+ALTER TABLE workflow_assignments ADD COLUMN step_name VARCHAR(255);
+ALTER TABLE workflow_assignments ADD COLUMN candidate_group VARCHAR(255);
+ALTER TABLE workflow_assignments ADD CONSTRAINT fk_workflow_assignments_instance
+    FOREIGN KEY (workflow_instance_id) REFERENCES workflow_instances(id) ON DELETE CASCADE;
+
+-- Open assignment of an instance at a step, checked before routing a new one
+CREATE INDEX idx_workflow_assignments_instance_step
+    ON workflow_assignments (workflow_instance_id, step_name)
+    STORING (assignee, status_code);
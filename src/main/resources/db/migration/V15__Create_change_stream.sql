@@ -0,0 +1,39 @@
+-- V15__Create_change_stream.sql
+-- Transactional outbox and ordered change stream of instance state (CockroachDB syntax)
+
+-- entity: 1 = instance, 2 = execution, 3 = assignment; status is the entity's
+-- status code. Rows are written in the transaction that changes the entity,
+-- with the tenant of its instance, and removed by the relay once copied to
+-- workflow_changes. unique_rowid() keys are roughly time-ordered, so the key
+-- is hash-sharded like V3's.
+CREATE TABLE workflow_change_outbox (
+    id INT8 NOT NULL DEFAULT unique_rowid(),
+    tenant_id VARCHAR(64) NOT NULL,
+    entity SMALLINT NOT NULL,
+    entity_id UUID NOT NULL,
+    workflow_instance_id UUID NOT NULL,
+    status SMALLINT NOT NULL,
+    step_name VARCHAR(255),
+    occurred_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id) USING HASH
+);
+
+-- The stream: dense offsets assigned by the relay in the order it copies
+-- changes, so a consumer that has read up to an offset has seen every
+-- change below it. Offsets only grow at the end and are read by range.
+CREATE TABLE workflow_changes (
+    change_offset INT8 PRIMARY KEY,
+    tenant_id VARCHAR(64) NOT NULL,
+    entity SMALLINT NOT NULL,
+    entity_id UUID NOT NULL,
+    workflow_instance_id UUID NOT NULL,
+    status SMALLINT NOT NULL,
+    step_name VARCHAR(255),
+    occurred_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    relayed_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- Consumers read the changes of their tenant only
+CREATE INDEX idx_workflow_changes_tenant_offset
+    ON workflow_changes (tenant_id, change_offset)
+    STORING (entity, entity_id, workflow_instance_id, status, step_name, occurred_at);
@@ -0,0 +1,13 @@
+-- V17__Add_execution_next_attempt.sql
+-- Keep retries of failed step and compensation attempts across restarts (CockroachDB syntax)
+
+-- When the attempt recorded by a FAILED or COMPENSATION_FAILED row runs again;
+-- NULL once it has run, and on all other rows.
+ALTER TABLE workflow_executions ADD COLUMN next_attempt_at TIMESTAMP WITH TIME ZONE;
+
+-- Only pending retries are indexed, and there are few of them at any time, so
+-- the index is neither hash-sharded nor in the way of the execution inserts.
+CREATE INDEX idx_workflow_executions_next_attempt
+    ON workflow_executions (next_attempt_at)
+    STORING (workflow_instance_id, step_name, status_code, attempt)
+    WHERE next_attempt_at IS NOT NULL;
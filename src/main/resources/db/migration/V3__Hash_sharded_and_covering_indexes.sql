@@ -0,0 +1,54 @@
+-- V3__Hash_sharded_and_covering_indexes.sql
+-- Remove write hotspots on monotonically increasing index keys and cover
+-- the list/inbox queries of WorkflowInstanceRepository (CockroachDB syntax)
+
+-- Every new instance is inserted as RUNNING with started_at = NOW(), so plain
+-- indexes on these columns send all inserts to the last range of the index.
+-- Hash-sharded indexes spread those keys over several ranges; the optimizer
+-- fans equality and range scans out over all shards automatically.
+
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_status;
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_definition;
+DROP INDEX IF EXISTS workflow_executions@idx_workflow_executions_status;
+DROP INDEX IF EXISTS workflow_assignments@idx_workflow_assignments_assignee;
+
+-- findListingsByStatus / countByStatus
+-- Stores the listed columns only: storing the context document would copy it
+-- into the index on every insert and on every context update
+CREATE INDEX idx_workflow_instances_status_started
+    ON workflow_instances (status, started_at DESC) USING HASH
+    STORING (workflow_definition_id, name, current_step, completed_at, created_by, updated_by);
+
+-- findByWorkflowDefinitionId
+CREATE INDEX idx_workflow_instances_definition_started
+    ON workflow_instances (workflow_definition_id, started_at DESC) USING HASH
+    STORING (name, status, current_step, completed_at, created_by, updated_by);
+
+-- findByStartedAtBetween
+CREATE INDEX idx_workflow_instances_started
+    ON workflow_instances (started_at) USING HASH
+    STORING (workflow_definition_id, name, status, current_step, completed_at);
+
+-- findByCurrentStep
+CREATE INDEX idx_workflow_instances_current_step
+    ON workflow_instances (current_step)
+    STORING (workflow_definition_id, name, status, started_at);
+
+-- findByCreatedBy
+CREATE INDEX idx_workflow_instances_created_by
+    ON workflow_instances (created_by)
+    STORING (workflow_definition_id, name, status, current_step, started_at);
+
+-- Step executions are appended in started_at order and mostly start as PENDING/RUNNING
+CREATE INDEX idx_workflow_executions_status_started
+    ON workflow_executions (status, started_at DESC) USING HASH
+    STORING (workflow_instance_id, step_name, completed_at, executed_by);
+
+CREATE INDEX idx_workflow_executions_started
+    ON workflow_executions (started_at) USING HASH
+    STORING (workflow_instance_id, step_name, status);
+
+-- Task inbox: open assignments per assignee
+CREATE INDEX idx_workflow_assignments_assignee_status
+    ON workflow_assignments (assignee, status, assigned_at DESC)
+    STORING (workflow_execution_id, completed_at);
@@ -0,0 +1,17 @@
+-- V5__Create_instance_event_log.sql
+-- Append-only transition log for the event-sourced persistence mode
+
+-- One row per transition; the primary key keeps each instance's events
+-- contiguous and ordered, and random instance ids spread appends over ranges
+CREATE TABLE workflow_instance_events (
+    workflow_instance_id UUID NOT NULL REFERENCES workflow_instances(id),
+    sequence_number BIGINT NOT NULL,
+    event_type SMALLINT NOT NULL,
+    status SMALLINT,
+    current_step VARCHAR(255),
+    occurred_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (workflow_instance_id, sequence_number)
+);
+
+-- Highest event sequence already folded into the instance row
+ALTER TABLE workflow_instances ADD COLUMN snapshot_sequence BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,19 @@
+-- V6__Create_partition_leases.sql
+-- Engine node membership and instance partition leases
+
+-- Live engine nodes; a node is considered alive while its heartbeat is recent
+CREATE TABLE engine_nodes (
+    node_id VARCHAR(255) PRIMARY KEY,
+    base_url VARCHAR(255) NOT NULL,
+    heartbeat_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- One row per virtual partition of the instance id space. Rows are created
+-- by the engine for the configured partition count. epoch counts the changes
+-- of owner; it is informational, writes are not fenced by it.
+CREATE TABLE engine_partition_leases (
+    partition_id INTEGER PRIMARY KEY,
+    owner_node VARCHAR(255),
+    lease_expires_at TIMESTAMP WITH TIME ZONE,
+    epoch BIGINT NOT NULL DEFAULT 0
+);
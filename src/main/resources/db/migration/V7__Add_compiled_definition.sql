@@ -0,0 +1,7 @@
+-- V7__Add_compiled_definition.sql
+-- Validated, precompiled step graph stored next to each definition
+
+-- Written when a definition is created with steps or activated; instance
+-- starts read it instead of the workflow_steps rows. NULL for definitions
+-- that have not been compiled yet.
+ALTER TABLE workflow_definitions ADD COLUMN compiled_definition JSONB;
@@ -0,0 +1,15 @@
+-- V8__Add_instance_idempotency_key.sql
+-- Deduplicate retried instance starts by client-supplied Idempotency-Key
+
+ALTER TABLE workflow_instances ADD COLUMN idempotency_key VARCHAR(255);
+ALTER TABLE workflow_instances ADD COLUMN idempotency_expires_at TIMESTAMP WITH TIME ZONE;
+
+-- Arbiter for INSERT ... ON CONFLICT; only keyed starts take part
+CREATE UNIQUE INDEX idx_workflow_instances_idempotency_key
+    ON workflow_instances (idempotency_key)
+    WHERE idempotency_key IS NOT NULL;
+
+-- Expired keys are cleared in batches; expiry times only grow, so shard the index
+CREATE INDEX idx_workflow_instances_idempotency_expires
+    ON workflow_instances (idempotency_expires_at) USING HASH
+    WHERE idempotency_expires_at IS NOT NULL;
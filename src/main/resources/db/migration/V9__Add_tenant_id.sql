@@ -0,0 +1,31 @@
+-- V9__Add_tenant_id.sql
+-- Tenant dimension on definitions and instances (CockroachDB syntax)
+
+-- Existing rows belong to the default tenant
+ALTER TABLE workflow_definitions ADD COLUMN tenant_id VARCHAR(64) NOT NULL DEFAULT 'default';
+ALTER TABLE workflow_instances ADD COLUMN tenant_id VARCHAR(64) NOT NULL DEFAULT 'default';
+
+-- Definition names and versions are unique per tenant
+DROP INDEX workflow_definitions@workflow_definitions_name_version_key CASCADE;
+CREATE UNIQUE INDEX idx_workflow_definitions_tenant_name_version
+    ON workflow_definitions (tenant_id, name, version);
+
+-- Tenant-scoped inbox lists; replaces the status indexes of V3 and V4 so the lists stay covered
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_status_started;
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_status_started_v4;
+CREATE INDEX idx_workflow_instances_tenant_status_started
+    ON workflow_instances (tenant_id, status_code, started_at DESC) USING HASH
+    STORING (workflow_definition_id, name, current_step, completed_at, created_by, updated_by);
+
+-- A definition belongs to one tenant; storing the tenant keeps the filter off the primary index
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_definition_started;
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_definition_started_v4;
+CREATE INDEX idx_workflow_instances_definition_started
+    ON workflow_instances (workflow_definition_id, started_at DESC) USING HASH
+    STORING (tenant_id, name, status_code, current_step, completed_at, created_by, updated_by);
+
+-- Idempotency keys are chosen by clients, so they only need to be unique per tenant
+DROP INDEX IF EXISTS workflow_instances@idx_workflow_instances_idempotency_key;
+CREATE UNIQUE INDEX idx_workflow_instances_idempotency_key
+    ON workflow_instances (tenant_id, idempotency_key)
+    WHERE idempotency_key IS NOT NULL;
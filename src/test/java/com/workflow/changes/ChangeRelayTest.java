@@ -0,0 +1,33 @@
+package com.workflow.changes;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Change relay switched off on a node at runtime
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class ChangeRelayTest {
+
+    @Test
+    void disabledRelayLeavesTheOutboxAndStreamAlone() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        ChangeRelay relay = new ChangeRelay(jdbcTemplate, transactionManager, mock(ChangeStream.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relay, "enabled", false);
+
+        relay.relay();
+        relay.purge();
+
+        verifyNoInteractions(jdbcTemplate, transactionManager);
+    }
+}
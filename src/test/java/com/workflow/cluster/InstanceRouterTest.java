@@ -0,0 +1,65 @@
+package com.workflow.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local processing of instance requests
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class InstanceRouterTest {
+
+    @Test
+    void requestsRunWithoutLanesWhenPartitioningIsDisabled() throws Exception {
+        InstanceRouter router = new InstanceRouter(
+                new StaticListableBeanFactory().getBeanProvider(PartitionManager.class));
+        UUID first = UUID.randomUUID();
+        UUID second = sameLaneAs(first);
+        CountDownLatch firstRunning = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<String>> blocked = CompletableFuture.supplyAsync(() ->
+                router.route(first, new MockHttpServletRequest(), () -> {
+                    firstRunning.countDown();
+                    await(releaseFirst);
+                    return ResponseEntity.ok("first");
+                }));
+        assertThat(firstRunning.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ResponseEntity<String> response = CompletableFuture.supplyAsync(() ->
+                router.route(second, new MockHttpServletRequest(), () -> ResponseEntity.ok("second")))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(response.getBody()).isEqualTo("second");
+
+        releaseFirst.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("first");
+    }
+
+    private static UUID sameLaneAs(UUID id) {
+        while (true) {
+            UUID candidate = UUID.randomUUID();
+            if (Math.floorMod(candidate.hashCode(), 256) == Math.floorMod(id.hashCode(), 256)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
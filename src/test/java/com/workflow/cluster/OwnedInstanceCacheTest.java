@@ -0,0 +1,170 @@
+package com.workflow.cluster;
+
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowInstance;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Working set of owned instances and their compact form
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class OwnedInstanceCacheTest {
+
+    private static final int PARTITIONS = 4;
+    private static final int MAX_INSTANCES = 8;
+
+    private final Map<UUID, WorkflowInstance> database = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<UUID, Optional<WorkflowInstance>> loader = id -> {
+        loads.incrementAndGet();
+        return Optional.ofNullable(database.get(id)).map(CompactInstance::encode).map(CompactInstance::decode);
+    };
+
+    private MeterRegistry meterRegistry;
+    private PartitionManager partitionManager;
+    private OwnedInstanceCache cache;
+
+    @BeforeEach
+    void createCache() {
+        partitionManager = mock(PartitionManager.class);
+        when(partitionManager.getPartitionCount()).thenReturn(PARTITIONS);
+        when(partitionManager.partitionOf(any())).thenAnswer(call -> Math.floorMod(call.getArgument(0).hashCode(), PARTITIONS));
+        when(partitionManager.isOwner(any())).thenReturn(true);
+
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new OwnedInstanceCache(provider(), meterRegistry, MAX_INSTANCES, Duration.ofMinutes(10));
+        cache.register();
+    }
+
+    @Test
+    void compactFormKeepsEveryField() {
+        WorkflowInstance instance = instance(WorkflowInstance.InstanceStatus.SUSPENDED);
+        instance.setContext("{\"notes\": \"" + "lorem ipsum ".repeat(200) + "\"}");
+        instance.setCompletedAt(LocalDateTime.of(2026, 3, 1, 12, 30, 15, 123_456_789));
+        instance.setCreatedBy("jane");
+        instance.setSnapshotSequence(7L);
+        instance.setEventSequence(9L);
+        instance.setIdempotencyKey("order-17");
+
+        byte[] form = CompactInstance.encode(instance);
+        WorkflowInstance decoded = CompactInstance.decode(form);
+
+        assertThat(form.length).isLessThan(instance.getContext().length() / 4);
+        assertThat(decoded).usingRecursiveComparison().ignoringFields("workflowDefinition").isEqualTo(instance);
+        assertThat(decoded.getWorkflowDefinition().getId()).isEqualTo(instance.getWorkflowDefinition().getId());
+        assertThat(decoded).isNotSameAs(instance);
+    }
+
+    @Test
+    void hitsAreCheckedAndStaleCopiesReloaded() {
+        WorkflowInstance instance = store(instance(WorkflowInstance.InstanceStatus.RUNNING));
+
+        cache.getOrLoad(instance.getId(), loader, copy -> true);
+        cache.getOrLoad(instance.getId(), loader, copy -> true);
+        assertThat(loads).hasValue(1);
+
+        instance.setCurrentStep("review");
+        Optional<WorkflowInstance> reloaded = cache.getOrLoad(instance.getId(), loader,
+                copy -> copy.getCurrentStep().equals(instance.getCurrentStep()));
+        assertThat(loads).hasValue(2);
+        assertThat(reloaded).map(WorkflowInstance::getCurrentStep).hasValue("review");
+        assertThat(lookups("stale")).isEqualTo(1);
+    }
+
+    @Test
+    void readsAndFinishedInstancesStayOutOfTheWorkingSet() {
+        WorkflowInstance running = store(instance(WorkflowInstance.InstanceStatus.RUNNING));
+        WorkflowInstance completed = store(instance(WorkflowInstance.InstanceStatus.COMPLETED));
+
+        cache.getOrRead(running.getId(), loader, copy -> true);
+        cache.getOrLoad(completed.getId(), loader, copy -> true);
+
+        assertThat(workingSetSize()).isZero();
+    }
+
+    @Test
+    void eachPartitionKeepsItsShareAndForgetsReleasedPartitions() {
+        for (int i = 0; i < MAX_INSTANCES * 4; i++) {
+            cache.getOrLoad(store(instance(WorkflowInstance.InstanceStatus.RUNNING)).getId(), loader, copy -> true);
+        }
+        assertThat(workingSetSize()).isLessThanOrEqualTo(MAX_INSTANCES);
+        assertThat(meterRegistry.get("workflow.working-set.evictions").tag("reason", "capacity").counter().count())
+                .isEqualTo(MAX_INSTANCES * 4 - workingSetSize());
+
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            cache.partitionReleased(partition);
+        }
+        assertThat(workingSetSize()).isZero();
+        assertThat(meterRegistry.get("workflow.working-set.bytes").gauge().value()).isZero();
+    }
+
+    @Test
+    void idleInstancesAreSweptOut() throws InterruptedException {
+        OwnedInstanceCache shortLived = new OwnedInstanceCache(
+                provider(), new SimpleMeterRegistry(), MAX_INSTANCES, Duration.ofMillis(1));
+        shortLived.register();
+        WorkflowInstance instance = store(instance(WorkflowInstance.InstanceStatus.RUNNING));
+        shortLived.getOrLoad(instance.getId(), loader, copy -> true);
+
+        Thread.sleep(5);
+        shortLived.sweep();
+        shortLived.getOrLoad(instance.getId(), loader, copy -> true);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private ObjectProvider<PartitionManager> provider() {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("partitionManager", partitionManager);
+        return beans.getBeanProvider(PartitionManager.class);
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("workflow.working-set.lookups").tag("result", result).counter().count();
+    }
+
+    private double workingSetSize() {
+        return meterRegistry.get("workflow.working-set.instances").gauge().value();
+    }
+
+    private WorkflowInstance store(WorkflowInstance instance) {
+        database.put(instance.getId(), instance);
+        return instance;
+    }
+
+    private static WorkflowInstance instance(WorkflowInstance.InstanceStatus status) {
+        WorkflowDefinition definition = new WorkflowDefinition();
+        definition.setId(UUID.randomUUID());
+        WorkflowInstance instance = new WorkflowInstance();
+        instance.setId(UUID.randomUUID());
+        instance.setWorkflowDefinition(definition);
+        instance.setTenantId("default");
+        instance.setName("Onboarding");
+        instance.setStatus(status);
+        instance.setCurrentStep("start");
+        instance.setContext("{\"amount\": 250}");
+        instance.setStartedAt(LocalDateTime.of(2026, 3, 1, 9, 0));
+        return instance;
+    }
+}
@@ -0,0 +1,157 @@
+package com.workflow.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Several engine nodes sharing one database in a single JVM
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PartitionManagerTest {
+
+    private static final int PARTITIONS = 12;
+    private static final Duration LEASE = Duration.ofSeconds(2);
+    private static final Duration HEARTBEAT = Duration.ofMillis(200);
+
+    @Container
+    private static final PostgreSQLContainer<?> DATABASE = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private final List<PartitionManager> nodes = new ArrayList<>();
+    private DriverManagerDataSource dataSource;
+
+    @BeforeEach
+    void createTables() {
+        dataSource = new DriverManagerDataSource(DATABASE.getJdbcUrl(), DATABASE.getUsername(), DATABASE.getPassword());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS engine_partition_leases, engine_nodes");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V6__Create_partition_leases.sql"))
+                .execute(dataSource);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(PartitionManager::stop);
+    }
+
+    @Test
+    void nodesSplitThePartitionsAndTakeOverFromALeavingNode() {
+        PartitionManager first = node("first", new JdbcTemplate(dataSource));
+        first.start();
+        awaitTrue(() -> first.ownedPartitions().size() == PARTITIONS);
+
+        PartitionManager second = node("second", new JdbcTemplate(dataSource));
+        PartitionManager third = node("third", new JdbcTemplate(dataSource));
+        second.start();
+        third.start();
+        awaitTrue(() -> IntStream.of(owned(first), owned(second), owned(third)).allMatch(count -> count == 4));
+        assertDisjointAndComplete(first, second, third);
+
+        first.stop();
+        awaitTrue(() -> owned(second) + owned(third) == PARTITIONS);
+        assertDisjointAndComplete(second, third);
+    }
+
+    @Test
+    void nodeCutOffFromTheDatabaseStopsOwningWhenItsLeasesRunOut() {
+        CuttableDataSource cuttable = new CuttableDataSource(dataSource);
+        PartitionManager isolated = node("isolated", new JdbcTemplate(cuttable));
+        Set<Integer> released = new CopyOnWriteArraySet<>();
+        isolated.addListener(new PartitionListener() {
+            @Override
+            public void partitionReleased(int partition) {
+                released.add(partition);
+            }
+        });
+        isolated.start();
+        awaitTrue(() -> isolated.ownedPartitions().size() == PARTITIONS);
+        UUID instanceId = UUID.randomUUID();
+        assertThat(isolated.isOwner(instanceId)).isTrue();
+
+        cuttable.cut = true;
+        awaitTrue(() -> isolated.ownedPartitions().isEmpty());
+        assertThat(isolated.isOwner(instanceId)).isFalse();
+        assertThat(released).hasSize(PARTITIONS);
+
+        PartitionManager survivor = node("survivor", new JdbcTemplate(dataSource));
+        survivor.start();
+        awaitTrue(() -> survivor.ownedPartitions().size() == PARTITIONS);
+        assertThat(survivor.isOwner(instanceId)).isTrue();
+    }
+
+    private PartitionManager node(String nodeId, JdbcTemplate jdbcTemplate) {
+        PartitionManager node = new PartitionManager(jdbcTemplate, nodeId, "http://" + nodeId,
+                PARTITIONS, LEASE, HEARTBEAT);
+        nodes.add(node);
+        return node;
+    }
+
+    private static int owned(PartitionManager node) {
+        return node.ownedPartitions().size();
+    }
+
+    private static void assertDisjointAndComplete(PartitionManager... managers) {
+        Set<Integer> all = new HashSet<>();
+        for (PartitionManager manager : managers) {
+            for (Integer partition : manager.ownedPartitions()) {
+                assertThat(all.add(partition)).as("partition %d owned twice", partition).isTrue();
+            }
+        }
+        assertThat(all).hasSize(PARTITIONS);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() - deadline).as("condition not met in time").isNegative();
+            try {
+                Thread.sleep(HEARTBEAT.toMillis());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private static final class CuttableDataSource extends DelegatingDataSource {
+
+        private volatile boolean cut;
+
+        CuttableDataSource(DriverManagerDataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (cut) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.workflow.cluster;
+
+import com.workflow.domain.InstanceEvent;
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.repository.WorkflowDefinitionRepository;
+import com.workflow.repository.WorkflowInstanceRepository;
+import com.workflow.service.EventSourcedInstanceStateStore;
+import com.workflow.service.InPlaceInstanceStateStore;
+import com.workflow.service.InstanceStateStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lookups answered from the working set compared with rehydrating the instance from the database
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(showSql = false, properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.tenant_identifier_resolver=com.workflow.tenancy.TenantIdentifierResolver",
+        "logging.level.com.workflow=INFO",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WorkingSetRehydrationTest {
+
+    private static final int INSTANCES = 500;
+    private static final int TRANSITIONS = 5;
+    private static final int ROUNDS = 4;
+
+    @Container
+    private static final PostgreSQLContainer<?> DATABASE = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        // JSONB columns are mapped as strings, which CockroachDB casts implicitly and PostgreSQL only with this
+        registry.add("spring.datasource.url", () -> DATABASE.getJdbcUrl() + "?stringtype=unspecified");
+        registry.add("spring.datasource.username", () -> DATABASE.getUsername());
+        registry.add("spring.datasource.password", () -> DATABASE.getPassword());
+    }
+
+    @Autowired
+    private WorkflowDefinitionRepository workflowDefinitionRepository;
+
+    @Autowired
+    private WorkflowInstanceRepository workflowInstanceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private WorkflowDefinition definition;
+    private String context;
+
+    @BeforeEach
+    void createDefinition() {
+        ResourceDatabasePopulator eventLog = new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/V5__Create_instance_event_log.sql"));
+        // Hibernate has already added snapshot_sequence, but without the default of V5
+        eventLog.setContinueOnError(true);
+        eventLog.execute(dataSource);
+        jdbcTemplate.execute("ALTER TABLE workflow_instances ALTER COLUMN snapshot_sequence SET DEFAULT 0");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        WorkflowDefinition created = new WorkflowDefinition();
+        created.setName("Rehydration " + UUID.randomUUID());
+        created.setDefinition("{}");
+        definition = workflowDefinitionRepository.save(created);
+
+        // About 2 KB, the size of a context after a few form steps
+        StringBuilder fields = new StringBuilder("{\"applicant\": {\"name\": \"Jane Doe\"}");
+        for (int i = 0; fields.length() < 2048; i++) {
+            fields.append(", \"field").append(i).append("\": \"").append(UUID.randomUUID()).append('"');
+        }
+        context = fields.append('}').toString();
+    }
+
+    @Test
+    void comparesHitsWithRehydration() {
+        InstanceStateStore inPlace = new InPlaceInstanceStateStore(workflowInstanceRepository, jdbcTemplate,
+                entityManager);
+        InstanceStateStore eventSourced =
+                new EventSourcedInstanceStateStore(workflowInstanceRepository, jdbcTemplate, entityManager, 16);
+
+        // Warm-up, so neither path pays for class loading and statement preparation
+        measure(inPlace, startInstances(inPlace, INSTANCES / 4));
+        measure(eventSourced, startInstances(eventSourced, INSTANCES / 4));
+
+        for (InstanceStateStore store : List.of(inPlace, eventSourced)) {
+            Measurement measurement = measure(store, startInstances(store, INSTANCES));
+            System.out.printf("%s over %,d lookups: hit %.0f us, rehydration %.0f us, %,d bytes per cached instance%n",
+                    store.getClass().getSimpleName(), INSTANCES * ROUNDS, measurement.hitMicros(),
+                    measurement.rehydrationMicros(), measurement.bytesPerInstance());
+
+            assertThat(measurement.hitMicros()).isPositive();
+            assertThat(measurement.rehydrationMicros()).isPositive();
+        }
+    }
+
+    private Measurement measure(InstanceStateStore store, List<UUID> ids) {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OwnedInstanceCache cache = ownedEverything(meterRegistry);
+        long hits = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (UUID id : ids) {
+                cache.evict(id);
+                assertThat(lookup(cache, store, id).getContext()).contains("Jane Doe");
+                long start = System.nanoTime();
+                lookup(cache, store, id);
+                hits += System.nanoTime() - start;
+            }
+        }
+        double cached = meterRegistry.get("workflow.working-set.instances").gauge().value();
+        double bytes = meterRegistry.get("workflow.working-set.bytes").gauge().value();
+        assertThat(meterRegistry.get("workflow.working-set.lookups").tag("result", "hit").counter().count())
+                .isEqualTo(ids.size() * ROUNDS);
+        return new Measurement(hits / 1e3 / (ids.size() * ROUNDS),
+                meterRegistry.get("workflow.working-set.rehydration").timer().mean(TimeUnit.MICROSECONDS),
+                (long) (bytes / cached));
+    }
+
+    private WorkflowInstance lookup(OwnedInstanceCache cache, InstanceStateStore store, UUID id) {
+        return transactionTemplate.execute(status -> cache.getOrLoad(id, store::load, store::isCurrent).orElseThrow());
+    }
+
+    private OwnedInstanceCache ownedEverything(MeterRegistry meterRegistry) {
+        PartitionManager partitionManager = mock(PartitionManager.class);
+        when(partitionManager.getPartitionCount()).thenReturn(16);
+        when(partitionManager.partitionOf(any())).thenAnswer(call -> Math.floorMod(call.getArgument(0).hashCode(), 16));
+        when(partitionManager.isOwner(any())).thenReturn(true);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("partitionManager", partitionManager);
+
+        OwnedInstanceCache cache = new OwnedInstanceCache(beans.getBeanProvider(PartitionManager.class),
+                meterRegistry, INSTANCES * 2, Duration.ofMinutes(10));
+        cache.register();
+        return cache;
+    }
+
+    private List<UUID> startInstances(InstanceStateStore store, int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WorkflowInstance instance = new WorkflowInstance();
+            instance.setWorkflowDefinition(definition);
+            instance.setName("instance " + i);
+            instance.setCurrentStep("start");
+            instance.setContext(context);
+            UUID id = workflowInstanceRepository.save(instance).getId();
+            for (int step = 0; step < TRANSITIONS; step++) {
+                InstanceEvent event = InstanceEvent.stepEntered("step-" + step);
+                transactionTemplate.executeWithoutResult(status -> store.transition(id, current -> event));
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private record Measurement(double hitMicros, double rehydrationMicros, long bytesPerInstance) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.workflow.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Background jobs under spring.main.lazy-initialization=true
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class LazyInitializationTest {
+
+    @Test
+    void componentsWithScheduledJobsAreCreatedEagerly() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Component.class));
+
+        List<String> scheduled = new ArrayList<>();
+        List<String> lazy = new ArrayList<>();
+        for (BeanDefinition candidate : scanner.findCandidateComponents("com.workflow")) {
+            Class<?> type = ClassUtils.resolveClassName(candidate.getBeanClassName(), getClass().getClassLoader());
+            // Same lookup as ScheduledAnnotationBeanPostProcessor, which only sees beans that get created
+            if (MethodIntrospector.selectMethods(type, (MethodIntrospector.MetadataLookup<Scheduled>) method ->
+                    AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class)).isEmpty()) {
+                continue;
+            }
+            scheduled.add(type.getSimpleName());
+            Lazy annotation = AnnotatedElementUtils.findMergedAnnotation(type, Lazy.class);
+            if (annotation == null || annotation.value()) {
+                lazy.add(type.getSimpleName());
+            }
+        }
+
+        assertThat(scheduled).contains("ChangeRelay", "SlaBreachDetector", "IdempotencyKeyExpiry",
+                "InstanceRollupWriter", "AssignmentRouter");
+        assertThat(lazy).as("@Scheduled components that lazy initialization would never start").isEmpty();
+    }
+}
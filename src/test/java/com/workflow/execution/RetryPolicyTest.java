@@ -0,0 +1,102 @@
+package com.workflow.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Retry policies read from step configurations
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class RetryPolicyTest {
+
+    private static final RetryPolicy DEFAULTS =
+            new RetryPolicy(3, Duration.ofSeconds(1), Duration.ofMinutes(5), 2, Set.of(), Set.of());
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void readsTheStepsPolicyOverTheDefaults() throws Exception {
+        RetryPolicy policy = policy("{\"retry\": {\"maxAttempts\": 5, \"initialBackoff\": \"PT2S\","
+                + " \"maxBackoff\": 600, \"retryOn\": [\"timeout\"]}}");
+
+        assertThat(policy.maxAttempts()).isEqualTo(5);
+        assertThat(policy.initialBackoff()).isEqualTo(Duration.ofSeconds(2));
+        assertThat(policy.maxBackoff()).isEqualTo(Duration.ofMinutes(10));
+        assertThat(policy.multiplier()).isEqualTo(2);
+        assertThat(policy.retryOn()).containsExactly("TIMEOUT");
+        assertThat(policy("{}")).isEqualTo(DEFAULTS);
+    }
+
+    @Test
+    void retriesIsShortForOneMoreAttempt() throws Exception {
+        assertThat(policy("{\"retries\": 0}").maxAttempts()).isEqualTo(1);
+        assertThat(policy("{\"retries\": 4, \"retry\": {\"maxAttempts\": 2}}").maxAttempts()).isEqualTo(5);
+    }
+
+    @Test
+    void rejectsInvalidPolicies() {
+        assertThatThrownBy(() -> policy("{\"retry\": {\"maxAttempts\": 0}}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> policy("{\"retry\": {\"multiplier\": 0.5}}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> policy("{\"retry\": {\"initialBackoff\": \"soon\"}}"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("initialBackoff");
+    }
+
+    @Test
+    void retriesRetryableFailuresUntilTheLastAttempt() {
+        StepFailure retryable = new StepFailure("TIMEOUT", "timed out", true);
+
+        assertThat(DEFAULTS.shouldRetry(retryable, 1)).isTrue();
+        assertThat(DEFAULTS.shouldRetry(retryable, 2)).isTrue();
+        assertThat(DEFAULTS.shouldRetry(retryable, 3)).isFalse();
+        assertThat(DEFAULTS.shouldRetry(new StepFailure("HTTP_400", "bad request", false), 1)).isFalse();
+        // Failures the handler did not classify are retried
+        assertThat(DEFAULTS.shouldRetry(new IllegalStateException("unexpected"), 1)).isTrue();
+    }
+
+    @Test
+    void matchesErrorCodesExactlyOrByXxPrefix() throws Exception {
+        RetryPolicy policy = policy("{\"retry\": {\"retryOn\": [\"HTTP_5XX\", \"CONNECTION\"],"
+                + " \"abortOn\": [\"HTTP_501\"]}}");
+
+        assertThat(policy.shouldRetry(new StepFailure("HTTP_503", "unavailable", false), 1)).isTrue();
+        assertThat(policy.shouldRetry(new StepFailure("CONNECTION", "refused", false), 1)).isTrue();
+        assertThat(policy.shouldRetry(new StepFailure("HTTP_501", "not implemented", true), 1)).isFalse();
+        assertThat(policy.shouldRetry(new StepFailure("HTTP_404", "not found", true), 1)).isFalse();
+        assertThat(policy.shouldRetry(new StepFailure("CONNECTION_RESET", "reset", true), 1)).isFalse();
+    }
+
+    @Test
+    void drawsBackoffsBetweenZeroAndTheCappedExponential() {
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(DEFAULTS.backoff(1, null)).isBetween(Duration.ZERO, Duration.ofSeconds(1));
+            assertThat(DEFAULTS.backoff(4, null)).isBetween(Duration.ZERO, Duration.ofSeconds(8));
+            assertThat(DEFAULTS.backoff(30, null)).isBetween(Duration.ZERO, Duration.ofMinutes(5));
+        }
+        // Full jitter spreads the draws over the whole range
+        assertThat(DEFAULTS.backoff(30, null)).isNotEqualTo(DEFAULTS.backoff(30, null));
+    }
+
+    @Test
+    void waitsAtLeastAsLongAsTheFailureAsks() {
+        StepFailure throttled = new StepFailure("HTTP_429", "slow down", true, Duration.ofMinutes(1));
+
+        assertThat(DEFAULTS.backoff(1, throttled)).isEqualTo(Duration.ofMinutes(1));
+    }
+
+    private RetryPolicy policy(String configuration) throws Exception {
+        JsonNode node = objectMapper.readTree(configuration);
+        return RetryPolicy.of(node, DEFAULTS);
+    }
+}
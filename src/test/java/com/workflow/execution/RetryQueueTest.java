@@ -0,0 +1,63 @@
+package com.workflow.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Release of waiting step attempts
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class RetryQueueTest {
+
+    private final List<String> released = new ArrayList<>();
+    private final RetryQueue queue = new RetryQueue(Runnable::run, 3);
+
+    @Test
+    void releasesDueAttemptsEarliestFirst() {
+        Instant now = Instant.now();
+        queue.schedule(now.minusSeconds(1), () -> released.add("second"));
+        queue.schedule(now.plusSeconds(60), () -> released.add("later"));
+        queue.schedule(now.minusSeconds(2), () -> released.add("first"));
+        queue.schedule(now.minusSeconds(1), () -> released.add("third"));
+
+        queue.release();
+
+        assertThat(released).containsExactly("first", "second", "third");
+        assertThat(queue.size()).isEqualTo(1);
+    }
+
+    @Test
+    void releasesAtMostOneBatchPerCall() {
+        Instant due = Instant.now().minusSeconds(1);
+        for (int i = 0; i < 7; i++) {
+            String attempt = "attempt " + i;
+            queue.schedule(due, () -> released.add(attempt));
+        }
+
+        queue.release();
+        assertThat(released).hasSize(3);
+        queue.release();
+        queue.release();
+
+        assertThat(released).containsExactly("attempt 0", "attempt 1", "attempt 2", "attempt 3", "attempt 4",
+                "attempt 5", "attempt 6");
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void keepsAttemptsThatAreNotDue() {
+        queue.schedule(Instant.now().plusSeconds(60), () -> released.add("later"));
+
+        queue.release();
+
+        assertThat(released).isEmpty();
+        assertThat(queue.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,131 @@
+package com.workflow.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Script steps, their sandbox and the cost of parsing them once
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class ScriptStepHandlerTest {
+
+    private static final String SCRIPT = "{total: amount * quantity, approved: amount < 1000,"
+            + " customer: customer.name.toUpperCase(), attempt: #attempt}";
+    private static final String CONTEXT = "{\"amount\": 250, \"quantity\": 3, \"customer\": {\"name\": \"acme\"}}";
+    private static final int WARM_UP = 20_000;
+    private static final int INVOCATIONS = 50_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MeterRegistry meterRegistry;
+    private ScriptStepHandler handler;
+
+    @BeforeEach
+    void createHandler() {
+        meterRegistry = new SimpleMeterRegistry();
+        handler = new ScriptStepHandler(objectMapper, meterRegistry, 10_000, DataSize.ofMegabytes(16),
+                Duration.ofMillis(100), DataSize.ofKilobytes(256));
+    }
+
+    @Test
+    void evaluatesScriptsOverTheContext() throws Exception {
+        JsonNode output = objectMapper.readTree(handler.execute(invocation(UUID.randomUUID(), SCRIPT, 2)).get());
+
+        assertThat(output.path("total").asInt()).isEqualTo(750);
+        assertThat(output.path("approved").asBoolean()).isTrue();
+        assertThat(output.path("customer").asText()).isEqualTo("ACME");
+        assertThat(output.path("attempt").asInt()).isEqualTo(2);
+        assertThat(handler.execute(invocation(UUID.randomUUID(), "amount > 100", 1)).get())
+                .isEqualTo("{\"result\":true}");
+    }
+
+    @Test
+    void sandboxRejectsTypesWritesAndRunawayScripts() {
+        assertThat(failure(handler.execute(invocation(UUID.randomUUID(), "T(java.lang.System).exit(1)", 1))))
+                .isEqualTo(ScriptStepHandler.SCRIPT_ERROR);
+        assertThat(failure(handler.execute(invocation(UUID.randomUUID(), "amount = 0", 1))))
+                .isEqualTo(ScriptStepHandler.SCRIPT_ERROR);
+        assertThat(failure(handler.execute(invocation(UUID.randomUUID(), "customer.name.repeat(100000000)", 1))))
+                .isEqualTo(ScriptStepHandler.SCRIPT_ERROR);
+        assertThat(failure(handler.execute(invocation(UUID.randomUUID(), "customer.name.matches('(a+)+b')", 1))))
+                .isEqualTo(ScriptStepHandler.SCRIPT_ERROR);
+        assertThat(failure(handler.execute(invocation(UUID.randomUUID(), "amount +", 1))))
+                .isEqualTo(StepHandler.CONFIGURATION);
+
+        // Each call is charged with the size of its result before it runs, so this fails instead of taking 2 GB
+        String growing = "'x'" + ".replace('x', 'xxxxxxxxxx')".repeat(5) + ".replace('x', '" + "x".repeat(9_000) + "')";
+        assertThat(failure(handler.execute(invocation(UUID.randomUUID(), growing, 1))))
+                .isEqualTo(ScriptStepHandler.LIMIT_EXCEEDED);
+
+        String items = "{\"items\": [" + "\"item\", ".repeat(9_999) + "\"item\"]}";
+        StepInvocation runaway = new StepInvocation(UUID.randomUUID(), UUID.randomUUID(), "runaway",
+                objectMapper.createObjectNode().put("script", "items.![#this.concat('" + "x".repeat(200) + "')]"),
+                items, 1);
+        assertThat(failure(handler.execute(runaway))).isEqualTo(ScriptStepHandler.LIMIT_EXCEEDED);
+    }
+
+    @Test
+    void parsesEachStepOnceAndComparesWithParsingEveryTime() throws Exception {
+        UUID definitionId = UUID.randomUUID();
+        // Warm-up of both paths, so the JIT has compiled the parser and the evaluator
+        for (int i = 0; i < WARM_UP; i++) {
+            handler.execute(invocation(definitionId, SCRIPT, 1)).get();
+            handler.execute(invocation(UUID.randomUUID(), SCRIPT, 1)).get();
+        }
+        long compilesBefore = compiles();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < INVOCATIONS; i++) {
+            handler.execute(invocation(definitionId, SCRIPT, 1)).get();
+        }
+        long cached = System.nanoTime() - start;
+        assertThat(compiles()).isEqualTo(compilesBefore);
+
+        // A new definition version each time misses the cache, as every invocation did before it existed
+        start = System.nanoTime();
+        for (int i = 0; i < INVOCATIONS; i++) {
+            handler.execute(invocation(UUID.randomUUID(), SCRIPT, 1)).get();
+        }
+        long cold = System.nanoTime() - start;
+        assertThat(compiles()).isEqualTo(compilesBefore + INVOCATIONS);
+
+        System.out.printf("Script step over %,d invocations: %.1f us each parsed once, %.1f us each parsed every time"
+                + " (parse %.1f us, evaluation %.1f us)%n",
+                INVOCATIONS, cached / 1e3 / INVOCATIONS, cold / 1e3 / INVOCATIONS,
+                meanMicros("workflow.script.compile"), meanMicros("workflow.script.evaluate"));
+    }
+
+    private double meanMicros(String timer) {
+        return meterRegistry.get(timer).timer().mean(TimeUnit.MICROSECONDS);
+    }
+
+    private long compiles() {
+        return meterRegistry.get("workflow.script.compile").timer().count();
+    }
+
+    private StepInvocation invocation(UUID definitionId, String script, int attempt) {
+        return new StepInvocation(UUID.randomUUID(), definitionId, "score",
+                objectMapper.createObjectNode().put("script", script), CONTEXT, attempt);
+    }
+
+    private static String failure(CompletableFuture<String> execution) {
+        assertThatThrownBy(execution::get).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(StepFailure.class);
+        return StepFailure.errorCodeOf(execution.handle((output, failure) -> failure).join());
+    }
+}
@@ -0,0 +1,221 @@
+package com.workflow.execution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Service calls against a stub HTTP server
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class ServiceCallStepHandlerTest {
+
+    private static final Duration SLOW_RESPONSE = Duration.ofMillis(200);
+    private static final int CONCURRENT_CALLS = 200;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final Map<String, String> lastHeaders = new ConcurrentHashMap<>();
+    private final CountDownLatch releaseHeld = new CountDownLatch(1);
+    private ExecutorService stubThreads;
+    private HttpServer stub;
+    private String baseUrl;
+    private ServiceCallStepHandler handler;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stubThreads = Executors.newCachedThreadPool();
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), CONCURRENT_CALLS);
+        stub.setExecutor(stubThreads);
+        stub.createContext("/echo", exchange -> {
+            lastHeaders.put(ServiceCallStepHandler.IDEMPOTENCY_KEY,
+                    exchange.getRequestHeaders().getFirst(ServiceCallStepHandler.IDEMPOTENCY_KEY));
+            lastHeaders.put(ServiceCallStepHandler.ATTEMPT,
+                    exchange.getRequestHeaders().getFirst(ServiceCallStepHandler.ATTEMPT));
+            respond(exchange, 200, new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        });
+        stub.createContext("/text", exchange -> respond(exchange, 200, "accepted"));
+        stub.createContext("/unavailable", exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "7");
+            respond(exchange, 503, "");
+        });
+        stub.createContext("/missing", exchange -> respond(exchange, 404, ""));
+        stub.createContext("/slow", exchange -> {
+            sleep(SLOW_RESPONSE);
+            respond(exchange, 200, "{}");
+        });
+        stub.createContext("/held", exchange -> {
+            await(releaseHeld);
+            respond(exchange, 200, "{}");
+        });
+        stub.start();
+        baseUrl = "http://127.0.0.1:" + stub.getAddress().getPort();
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("workflow.service-call.services.stub", baseUrl + "/");
+        handler = new ServiceCallStepHandler(environment, objectMapper, new SimpleMeterRegistry(), Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(handler, "defaultTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(handler, "maxTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(handler, "maxConcurrentPerTarget", CONCURRENT_CALLS);
+        ReflectionTestUtils.setField(handler, "maxQueuedPerTarget", 1);
+        ReflectionTestUtils.setField(handler, "failureThreshold", 2);
+        ReflectionTestUtils.setField(handler, "openDuration", Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void stopStub() {
+        releaseHeld.countDown();
+        stub.stop(0);
+        stubThreads.shutdownNow();
+    }
+
+    @Test
+    void sendsTheContextAndReturnsTheResponseAsOutput() throws Exception {
+        StepInvocation invocation = invocation("{\"service\": \"stub\", \"path\": \"/echo\"}", "{\"amount\": 42}", 3);
+
+        String output = handler.execute(invocation).get(5, TimeUnit.SECONDS);
+
+        assertThat(objectMapper.readTree(output).path("amount").asInt()).isEqualTo(42);
+        assertThat(lastHeaders).containsEntry(ServiceCallStepHandler.IDEMPOTENCY_KEY, invocation.idempotencyKey())
+                .containsEntry(ServiceCallStepHandler.ATTEMPT, "3");
+        assertThat(handler.execute(invocation(url("/text"), null, 1)).get(5, TimeUnit.SECONDS))
+                .isEqualTo("{\"body\":\"accepted\"}");
+    }
+
+    @Test
+    void classifiesFailedResponses() {
+        StepFailure unavailable = failure(handler.execute(invocation(url("/unavailable"), null, 1)));
+        assertThat(unavailable.getErrorCode()).isEqualTo("HTTP_503");
+        assertThat(unavailable.isRetryable()).isTrue();
+        assertThat(unavailable.getRetryAfter()).isEqualTo(Duration.ofSeconds(7));
+
+        StepFailure missing = failure(handler.execute(invocation(url("/missing"), null, 1)));
+        assertThat(missing.getErrorCode()).isEqualTo("HTTP_404");
+        assertThat(missing.isRetryable()).isFalse();
+
+        StepFailure timedOut = failure(handler.execute(invocation(
+                "{\"url\": \"" + baseUrl + "/held\", \"timeout\": 1}", null, 1)));
+        assertThat(timedOut.getErrorCode()).isEqualTo(ServiceCallStepHandler.TIMEOUT);
+
+        StepFailure unconfigured = failure(handler.execute(invocation("{\"service\": \"unknown\"}", null, 1)));
+        assertThat(unconfigured.getErrorCode()).isEqualTo(StepHandler.CONFIGURATION);
+    }
+
+    @Test
+    void circuitOpensAfterRepeatedServerErrors() {
+        for (int i = 0; i < 2; i++) {
+            assertThat(failure(handler.execute(invocation(url("/unavailable"), null, 1))).getErrorCode())
+                    .isEqualTo("HTTP_503");
+        }
+
+        StepFailure rejected = failure(handler.execute(invocation(url("/echo"), null, 1)));
+
+        assertThat(rejected.getErrorCode()).isEqualTo(ServiceCallStepHandler.CIRCUIT_OPEN);
+        assertThat(rejected.isRetryable()).isTrue();
+        assertThat(requests.get("/echo")).isNull();
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondItsQueue() throws Exception {
+        ReflectionTestUtils.setField(handler, "maxConcurrentPerTarget", 1);
+        CompletableFuture<String> running = handler.execute(invocation(url("/held"), null, 1));
+        CompletableFuture<String> queued = handler.execute(invocation(url("/held"), null, 1));
+
+        StepFailure rejected = failure(handler.execute(invocation(url("/held"), null, 1)));
+        assertThat(rejected.getErrorCode()).isEqualTo(ServiceCallStepHandler.BULKHEAD_FULL);
+
+        releaseHeld.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void slowCallsRunConcurrentlyWithoutBlockingTheCaller() throws Exception {
+        List<CompletableFuture<String>> calls = new ArrayList<>(CONCURRENT_CALLS);
+        long start = System.nanoTime();
+        for (int i = 0; i < CONCURRENT_CALLS; i++) {
+            calls.add(handler.execute(invocation(url("/slow"), null, 1)));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        System.out.printf("%d calls of %d ms each from the calling thread: %d ms in total%n",
+                CONCURRENT_CALLS, SLOW_RESPONSE.toMillis(), elapsed.toMillis());
+
+        // One call after another would take CONCURRENT_CALLS times as long
+        assertThat(elapsed).isLessThan(SLOW_RESPONSE.multipliedBy(CONCURRENT_CALLS / 10));
+    }
+
+    private String url(String path) {
+        return "{\"url\": \"" + baseUrl + path + "\"}";
+    }
+
+    private StepInvocation invocation(String configuration, String context, int attempt) {
+        try {
+            JsonNode parsed = objectMapper.readTree(configuration);
+            return new StepInvocation(UUID.randomUUID(), UUID.randomUUID(), "call", parsed, context, attempt);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        requests.computeIfAbsent(exchange.getRequestURI().getPath(), path -> new AtomicInteger()).incrementAndGet();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+
+    private static StepFailure failure(CompletableFuture<String> call) {
+        assertThatThrownBy(() -> call.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(StepFailure.class);
+        return (StepFailure) call.handle((output, failure) -> failure).join();
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
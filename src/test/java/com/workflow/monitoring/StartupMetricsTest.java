@@ -0,0 +1,42 @@
+package com.workflow.monitoring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time-to-first-request with probes arriving before real traffic
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class StartupMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StartupMetrics startupMetrics = new StartupMetrics(meterRegistry);
+
+    @Test
+    void actuatorRequestsDoNotCountAsFirstRequest() throws Exception {
+        serve("/actuator/health");
+        serve("/actuator/metrics");
+        assertThat(timeToFirstRequest()).isNaN();
+
+        serve("/api/workflow-instances");
+        assertThat(timeToFirstRequest()).isPositive();
+    }
+
+    private void serve(String path) throws Exception {
+        startupMetrics.doFilter(new MockHttpServletRequest("GET", path), new MockHttpServletResponse(),
+                new MockFilterChain());
+    }
+
+    private double timeToFirstRequest() {
+        return meterRegistry.get("workflow.startup.time-to-first-request").timeGauge().value(TimeUnit.MILLISECONDS);
+    }
+}
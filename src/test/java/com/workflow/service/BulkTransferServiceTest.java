@@ -0,0 +1,218 @@
+package com.workflow.service;
+
+import com.workflow.tenancy.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Bulk export and import limited to the tenant of the request
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(showSql = false, properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.tenant_identifier_resolver=com.workflow.tenancy.TenantIdentifierResolver",
+        "logging.level.com.workflow=INFO",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BulkTransferServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> DATABASE = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        // JSONB columns are mapped as strings, which CockroachDB casts implicitly and PostgreSQL only with this
+        registry.add("spring.datasource.url", () -> DATABASE.getJdbcUrl() + "?stringtype=unspecified");
+        registry.add("spring.datasource.username", () -> DATABASE.getUsername());
+        registry.add("spring.datasource.password", () -> DATABASE.getPassword());
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private BulkTransferService bulkTransferService;
+    private UUID acmeInstance;
+    private UUID globexInstance;
+
+    @BeforeEach
+    void createTenants() {
+        // Tables of V5 and V10 that have no entity, in PostgreSQL syntax
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS workflow_instance_events (workflow_instance_id UUID NOT NULL"
+                + " REFERENCES workflow_instances (id), sequence_number BIGINT NOT NULL, event_type SMALLINT NOT NULL,"
+                + " status SMALLINT, current_step VARCHAR(255), occurred_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),"
+                + " PRIMARY KEY (workflow_instance_id, sequence_number))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS workflow_search_keys (workflow_definition_id UUID NOT NULL"
+                + " REFERENCES workflow_definitions (id), key_name VARCHAR(64) NOT NULL, json_path TEXT[] NOT NULL,"
+                + " value_type VARCHAR(16) NOT NULL, PRIMARY KEY (workflow_definition_id, key_name))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS workflow_instance_search_values (instance_id UUID NOT NULL"
+                + " REFERENCES workflow_instances (id), key_name VARCHAR(64) NOT NULL, tenant_id VARCHAR(64) NOT NULL,"
+                + " text_value TEXT, number_value DECIMAL, PRIMARY KEY (instance_id, key_name))");
+        jdbcTemplate.execute("TRUNCATE workflow_definitions CASCADE");
+
+        bulkTransferService = new BulkTransferService(dataSource);
+        ReflectionTestUtils.setField(bulkTransferService, "fetchSize", 100);
+        ReflectionTestUtils.setField(bulkTransferService, "copyBatchRows", 1000);
+        acmeInstance = createInstance("acme");
+        globexInstance = createInstance("globex");
+    }
+
+    @AfterEach
+    void unbindTenant() {
+        ReflectionTestUtils.invokeMethod(TenantContext.class, "clear");
+    }
+
+    @Test
+    void exportOnlyContainsTheTenantsRows() throws Exception {
+        bind("acme");
+        String export = gunzip(export());
+
+        assertThat(export).contains(acmeInstance.toString(), "acme step", "acme input")
+                .doesNotContain(globexInstance.toString(), "globex");
+    }
+
+    @Test
+    void importLoadsTheTenantsOwnExport() throws Exception {
+        bind("acme");
+        byte[] export = export();
+        jdbcTemplate.update("DELETE FROM workflow_executions WHERE workflow_instance_id = ?", acmeInstance);
+        jdbcTemplate.update("DELETE FROM workflow_instances WHERE tenant_id = 'acme'");
+        jdbcTemplate.update("DELETE FROM workflow_steps WHERE workflow_definition_id IN"
+                + " (SELECT id FROM workflow_definitions WHERE tenant_id = 'acme')");
+        jdbcTemplate.update("DELETE FROM workflow_definitions WHERE tenant_id = 'acme'");
+
+        assertThat(importFrom(export))
+                .containsEntry("workflow_definitions", 1L)
+                .containsEntry("workflow_steps", 1L)
+                .containsEntry("workflow_instances", 1L)
+                .containsEntry("workflow_executions", 1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT tenant_id FROM workflow_instances WHERE id = ?",
+                String.class, acmeInstance)).isEqualTo("acme");
+    }
+
+    @Test
+    void importRejectsRowsOfAnotherTenant() throws Exception {
+        bind("acme");
+        byte[] acmeExport = export();
+
+        bind("globex");
+        assertThatThrownBy(() -> importFrom(acmeExport))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("belongs to tenant acme");
+    }
+
+    @Test
+    void importRejectsRowsUnderAnotherTenantsParent() {
+        bind("acme");
+        byte[] execution = gzip(header() + table("workflow_executions", "id", "workflow_instance_id", "step_name",
+                "status_code", "started_at", "attempt") + row(UUID.randomUUID(), globexInstance, "charge", 3,
+                "2026-03-01 09:00:00+00", 1));
+
+        assertThatThrownBy(() -> importFrom(execution))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("not tenant acme's");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM workflow_executions"
+                + " WHERE workflow_instance_id = ?", Long.class, globexInstance)).isEqualTo(1);
+    }
+
+    private UUID createInstance(String tenantId) {
+        UUID definitionId = jdbcTemplate.queryForObject("INSERT INTO workflow_definitions (id, tenant_id, name,"
+                + " version, status_code, definition, created_at, updated_at) VALUES (gen_random_uuid(), ?, ?, 1, 2,"
+                + " '{}', NOW(), NOW()) RETURNING id", UUID.class, tenantId, tenantId + " onboarding");
+        jdbcTemplate.update("INSERT INTO workflow_steps (id, workflow_definition_id, step_name, step_type_code,"
+                + " step_order, created_at, updated_at) VALUES (gen_random_uuid(), ?, ?, 2, 1, NOW(), NOW())",
+                definitionId, tenantId + " step");
+        UUID instanceId = jdbcTemplate.queryForObject("INSERT INTO workflow_instances (id, tenant_id,"
+                + " workflow_definition_id, name, status_code, current_step, context, started_at, snapshot_sequence)"
+                + " VALUES (gen_random_uuid(), ?, ?, ?, 1, 'start', '{}', NOW(), 0) RETURNING id",
+                UUID.class, tenantId, definitionId, tenantId + " instance");
+        jdbcTemplate.update("INSERT INTO workflow_executions (id, workflow_instance_id, step_name, status_code,"
+                + " input_data, started_at, attempt) VALUES (gen_random_uuid(), ?, 'start', 3, ?, NOW(), 1)",
+                instanceId, "{\"note\": \"" + tenantId + " input\"}");
+        return instanceId;
+    }
+
+    private byte[] export() throws IOException, SQLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkTransferService.export(Channels.newChannel(out), true);
+        return out.toByteArray();
+    }
+
+    private Map<String, Long> importFrom(byte[] export) throws IOException, SQLException {
+        return bulkTransferService.importFrom(Channels.newChannel(new ByteArrayInputStream(export)));
+    }
+
+    private static void bind(String tenantId) {
+        // bind is package-private to the tenancy package
+        ReflectionTestUtils.invokeMethod(TenantContext.class, "bind", tenantId);
+    }
+
+    private static String header() {
+        return "{\"format\":\"" + BulkTransferService.FORMAT + "\",\"version\":" + BulkTransferService.VERSION + "}\n";
+    }
+
+    private static String table(String name, String... columns) {
+        return "{\"table\":\"" + name + "\",\"columns\":[\"" + String.join("\",\"", columns) + "\"]}\n";
+    }
+
+    private static String row(Object... values) {
+        StringBuilder row = new StringBuilder("[");
+        for (Object value : values) {
+            row.append(row.length() > 1 ? "," : "").append('"').append(value).append('"');
+        }
+        return row.append("]\n").toString();
+    }
+
+    private static byte[] gzip(String text) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowStep;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Graph checks of compiled workflow definitions
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class DefinitionCompilerTest {
+
+    private final DefinitionCompiler compiler = new DefinitionCompiler();
+
+    @Test
+    void compilesStepsInStepOrderAndIndexesThemByName() {
+        WorkflowDefinition definition = definition(
+                step("review", 2, "[\"approve\", \"reject\"]"),
+                step("submit", 1, "[\"review\"]"),
+                step("approve", 3, null),
+                step("reject", 4, "[]"));
+
+        DefinitionSnapshot snapshot = new DefinitionSnapshot(null, "default", "Approval", 1,
+                WorkflowDefinition.WorkflowStatus.ACTIVE, null, compiler.compile(definition).steps(), List.of());
+
+        assertThat(snapshot.steps()).extracting(DefinitionSnapshot.StepSnapshot::stepName)
+                .containsExactly("submit", "review", "approve", "reject");
+        assertThat(snapshot.firstStep().stepName()).isEqualTo("submit");
+        assertThat(snapshot.step("review").orElseThrow().nextSteps()).containsExactly("approve", "reject");
+        assertThat(snapshot.step("archive")).isEmpty();
+    }
+
+    @Test
+    void rejectsStepsThatReferenceUnknownSteps() {
+        WorkflowDefinition definition = definition(
+                step("submit", 1, "[\"review\"]"),
+                step("review", 2, "[\"approve\", \"escalate\"]"),
+                step("approve", 3, null));
+
+        assertThatThrownBy(() -> compiler.compile(definition))
+                .isInstanceOfSatisfying(DefinitionValidationException.class, ex -> assertThat(ex.getProblems())
+                        .containsExactly("step review references unknown step escalate"));
+    }
+
+    @Test
+    void rejectsStepsThatCannotBeReachedFromTheStartStep() {
+        WorkflowDefinition definition = definition(
+                step("submit", 1, "[\"approve\"]"),
+                step("review", 2, "[\"approve\"]"),
+                step("audit", 3, "[\"review\"]"),
+                step("approve", 4, null));
+
+        assertThatThrownBy(() -> compiler.compile(definition))
+                .isInstanceOfSatisfying(DefinitionValidationException.class, ex -> assertThat(ex.getProblems())
+                        .containsExactly("steps not reachable from start step submit: review, audit"));
+    }
+
+    @Test
+    void rejectsCyclesWithoutAWayOut() {
+        WorkflowDefinition definition = definition(
+                step("submit", 1, "[\"review\", \"approve\"]"),
+                step("review", 2, "[\"rework\"]"),
+                step("rework", 3, "[\"review\"]"),
+                step("approve", 4, null));
+
+        assertThatThrownBy(() -> compiler.compile(definition))
+                .isInstanceOfSatisfying(DefinitionValidationException.class, ex -> assertThat(ex.getProblems())
+                        .containsExactly("steps that can never reach an end step: review, rework"));
+    }
+
+    @Test
+    void acceptsCyclesThatCanReachAnEndStep() {
+        WorkflowDefinition definition = definition(
+                step("submit", 1, "[\"review\"]"),
+                step("review", 2, "[\"rework\", \"approve\"]"),
+                step("rework", 3, "[\"review\"]"),
+                step("approve", 4, null));
+
+        assertThat(compiler.compile(definition).steps()).hasSize(4);
+    }
+
+    @Test
+    void rejectsDefinitionsWithoutAnEndStep() {
+        WorkflowDefinition definition = definition(
+                step("submit", 1, "[\"review\"]"),
+                step("review", 2, "[\"submit\"]"));
+
+        assertThatThrownBy(() -> compiler.compile(definition))
+                .isInstanceOfSatisfying(DefinitionValidationException.class, ex -> assertThat(ex.getProblems())
+                        .containsExactly("definition has no end step"));
+    }
+
+    @Test
+    void listsEveryProblemAtOnce() {
+        WorkflowDefinition definition = definition(
+                step("submit", 1, "[\"submit\", \"missing\"]"),
+                step("submit", 2, null),
+                step("orphan", 2, "{}"));
+
+        assertThatThrownBy(() -> compiler.compile(definition))
+                .isInstanceOfSatisfying(DefinitionValidationException.class, ex -> assertThat(ex.getProblems())
+                        .contains("step name submit is used more than once",
+                                "step order 2 is used more than once",
+                                "step submit references unknown step missing",
+                                "next steps of step orphan are not a JSON array"));
+    }
+
+    private static WorkflowDefinition definition(WorkflowStep... steps) {
+        WorkflowDefinition definition = new WorkflowDefinition();
+        definition.setName("Approval");
+        definition.setDefinition("{}");
+        definition.setSteps(new ArrayList<>(List.of(steps)));
+        return definition;
+    }
+
+    private static WorkflowStep step(String name, int order, String nextSteps) {
+        WorkflowStep step = new WorkflowStep();
+        step.setStepName(name);
+        step.setStepOrder(order);
+        step.setStepType(WorkflowStep.StepType.HUMAN_TASK);
+        step.setNextSteps(nextSteps);
+        return step;
+    }
+}
@@ -0,0 +1,224 @@
+package com.workflow.service;
+
+import com.workflow.domain.InstanceEvent;
+import com.workflow.domain.WorkflowDefinition;
+import com.workflow.domain.WorkflowInstance;
+import com.workflow.repository.WorkflowDefinitionRepository;
+import com.workflow.repository.WorkflowInstanceRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * In-place and event-sourced instance persistence side by side
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(showSql = false, properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.tenant_identifier_resolver=com.workflow.tenancy.TenantIdentifierResolver",
+        "logging.level.com.workflow=INFO",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InstanceStateStoreBenchmarkTest {
+
+    private static final int INSTANCES = 100;
+    private static final int ROUNDS = 32;
+    private static final int SNAPSHOT_INTERVAL = 16;
+
+    @Container
+    private static final PostgreSQLContainer<?> DATABASE = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        // JSONB columns are mapped as strings, which CockroachDB casts implicitly and PostgreSQL only with this
+        registry.add("spring.datasource.url", () -> DATABASE.getJdbcUrl() + "?stringtype=unspecified");
+        registry.add("spring.datasource.username", () -> DATABASE.getUsername());
+        registry.add("spring.datasource.password", () -> DATABASE.getPassword());
+    }
+
+    @Autowired
+    private WorkflowDefinitionRepository workflowDefinitionRepository;
+
+    @Autowired
+    private WorkflowInstanceRepository workflowInstanceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private WorkflowDefinition definition;
+    private String context;
+
+    @BeforeEach
+    void createDefinition() {
+        ResourceDatabasePopulator eventLog = new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/V5__Create_instance_event_log.sql"));
+        // Hibernate has already added snapshot_sequence, but without the default of V5
+        eventLog.setContinueOnError(true);
+        eventLog.execute(dataSource);
+        jdbcTemplate.execute("ALTER TABLE workflow_instances ALTER COLUMN snapshot_sequence SET DEFAULT 0");
+        // The secondary indexes of V3, V9 and V10 in PostgreSQL syntax, which every in-place step change rewrites
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_bench_tenant_status_started ON workflow_instances"
+                + " (tenant_id, status_code, started_at DESC)"
+                + " INCLUDE (workflow_definition_id, name, current_step, completed_at, created_by, updated_by)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_bench_definition_started ON workflow_instances"
+                + " (workflow_definition_id, started_at DESC)"
+                + " INCLUDE (tenant_id, name, status_code, current_step, completed_at, created_by, updated_by)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_bench_started ON workflow_instances (started_at)"
+                + " INCLUDE (workflow_definition_id, name, status_code, current_step, completed_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_bench_current_step ON workflow_instances (current_step)"
+                + " INCLUDE (workflow_definition_id, name, status_code, started_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_bench_created_by ON workflow_instances (created_by)"
+                + " INCLUDE (workflow_definition_id, name, status_code, current_step, started_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_bench_context ON workflow_instances"
+                + " USING GIN ((context::jsonb))");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        WorkflowDefinition created = new WorkflowDefinition();
+        created.setName("Benchmark " + UUID.randomUUID());
+        created.setDefinition("{}");
+        definition = workflowDefinitionRepository.save(created);
+
+        // About 2 KB, the size of a context after a few form steps
+        StringBuilder fields = new StringBuilder("{\"applicant\": {\"name\": \"Jane Doe\"}");
+        for (int i = 0; fields.length() < 2048; i++) {
+            fields.append(", \"field").append(i).append("\": \"").append(UUID.randomUUID()).append('"');
+        }
+        context = fields.append('}').toString();
+    }
+
+    @Test
+    void eventSourcedListsSeeSuspendAndResume() {
+        EventSourcedInstanceStateStore store = new EventSourcedInstanceStateStore(
+                workflowInstanceRepository, jdbcTemplate, entityManager, SNAPSHOT_INTERVAL);
+        UUID id = startInstances(1).get(0);
+
+        transition(store, id, InstanceEvent.suspended());
+        assertThat(store.findListingsByStatus(WorkflowInstance.InstanceStatus.SUSPENDED))
+                .extracting(WorkflowInstanceRepository.Listing::getId).contains(id);
+
+        transition(store, id, InstanceEvent.resumed());
+        assertThat(store.findListingsByStatus(WorkflowInstance.InstanceStatus.SUSPENDED))
+                .extracting(WorkflowInstanceRepository.Listing::getId).doesNotContain(id);
+        assertThat(store.findListingsByStatus(WorkflowInstance.InstanceStatus.RUNNING))
+                .extracting(WorkflowInstanceRepository.Listing::getId).contains(id);
+    }
+
+    @Test
+    void eventSourcedFoldsStepsEverySnapshotInterval() {
+        EventSourcedInstanceStateStore store = new EventSourcedInstanceStateStore(
+                workflowInstanceRepository, jdbcTemplate, entityManager, SNAPSHOT_INTERVAL);
+        UUID id = startInstances(1).get(0);
+
+        for (int step = 1; step < SNAPSHOT_INTERVAL; step++) {
+            transition(store, id, InstanceEvent.stepEntered("step-" + step));
+        }
+        assertThat(row(id)).containsEntry("current_step", "start").containsEntry("snapshot_sequence", 0L);
+        assertThat(store.load(id)).hasValueSatisfying(
+                instance -> assertThat(instance.getCurrentStep()).isEqualTo("step-" + (SNAPSHOT_INTERVAL - 1)));
+        assertThat(store.findListingsByStatus(WorkflowInstance.InstanceStatus.RUNNING))
+                .filteredOn(listing -> listing.getId().equals(id))
+                .extracting(WorkflowInstanceRepository.Listing::getCurrentStep)
+                .containsExactly("step-" + (SNAPSHOT_INTERVAL - 1));
+
+        transition(store, id, InstanceEvent.stepEntered("step-" + SNAPSHOT_INTERVAL));
+        assertThat(row(id)).containsEntry("current_step", "step-" + SNAPSHOT_INTERVAL)
+                .containsEntry("snapshot_sequence", (long) SNAPSHOT_INTERVAL);
+    }
+
+    @Test
+    void eventSourcedStepChangesOutpaceInPlaceUpdates() {
+        // Both stores read the row through the repository and write with one JDBC statement
+        InstanceStateStore inPlace = new InPlaceInstanceStateStore(workflowInstanceRepository, jdbcTemplate,
+                entityManager);
+        InstanceStateStore eventSourced = new EventSourcedInstanceStateStore(
+                workflowInstanceRepository, jdbcTemplate, entityManager, SNAPSHOT_INTERVAL);
+
+        // Warm-up, so neither mode pays for class loading and statement preparation
+        measure(inPlace, startInstances(INSTANCES / 4));
+        measure(eventSourced, startInstances(INSTANCES / 4));
+
+        double inPlaceRate = measure(inPlace, startInstances(INSTANCES));
+        double eventSourcedRate = measure(eventSourced, startInstances(INSTANCES));
+        System.out.printf("Step changes per second over %,d: in-place %,.0f, event-sourced %,.0f%n",
+                INSTANCES * ROUNDS, inPlaceRate, eventSourcedRate);
+
+        // An in-place step change rewrites the row and adds an entry to each index above;
+        // an event is one narrow row in the primary key of the log
+        assertThat(eventSourcedRate).isGreaterThan(inPlaceRate);
+    }
+
+    private double measure(InstanceStateStore store, List<UUID> ids) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (UUID id : ids) {
+                String step = "step-" + round;
+                transition(store, id, InstanceEvent.stepEntered(step));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return ids.size() * ROUNDS / (elapsed / 1e9);
+    }
+
+    private void transition(InstanceStateStore store, UUID id, InstanceEvent event) {
+        Function<WorkflowInstance, InstanceEvent> decide = instance -> event;
+        transactionTemplate.executeWithoutResult(status -> assertThat(store.transition(id, decide)).isPresent());
+    }
+
+    private Map<String, Object> row(UUID id) {
+        return jdbcTemplate.queryForMap("SELECT current_step, snapshot_sequence FROM workflow_instances WHERE id = ?",
+                id);
+    }
+
+    private List<UUID> startInstances(int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WorkflowInstance instance = new WorkflowInstance();
+            instance.setWorkflowDefinition(definition);
+            instance.setName("instance " + i);
+            instance.setCurrentStep("start");
+            instance.setContext(context);
+            ids.add(workflowInstanceRepository.save(instance).getId());
+        }
+        return ids;
+    }
+}
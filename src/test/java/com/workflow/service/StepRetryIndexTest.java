@@ -0,0 +1,122 @@
+package com.workflow.service;
+
+import com.workflow.domain.WorkflowExecution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Retries kept with their failed executions, taken by the queueing node or claimed by a scan
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(showSql = false, properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.tenant_identifier_resolver=com.workflow.tenancy.TenantIdentifierResolver",
+        "logging.level.com.workflow=INFO",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StepRetryIndexTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> DATABASE = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        // JSONB columns are mapped as strings, which CockroachDB casts implicitly and PostgreSQL only with this
+        registry.add("spring.datasource.url", () -> DATABASE.getJdbcUrl() + "?stringtype=unspecified");
+        registry.add("spring.datasource.username", () -> DATABASE.getUsername());
+        registry.add("spring.datasource.password", () -> DATABASE.getPassword());
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private StepRetryIndex stepRetryIndex;
+    private UUID instanceId;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void createInstance() {
+        jdbcTemplate.execute("TRUNCATE workflow_definitions CASCADE");
+        stepRetryIndex = new StepRetryIndex(jdbcTemplate);
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        UUID definitionId = jdbcTemplate.queryForObject("INSERT INTO workflow_definitions (id, tenant_id, name,"
+                + " version, status_code, definition, created_at, updated_at) VALUES (gen_random_uuid(), 'default',"
+                + " 'Payments', 1, 2, '{}', NOW(), NOW()) RETURNING id", UUID.class);
+        instanceId = jdbcTemplate.queryForObject("INSERT INTO workflow_instances (id, tenant_id,"
+                + " workflow_definition_id, name, status_code, current_step, context, started_at, snapshot_sequence)"
+                + " VALUES (gen_random_uuid(), 'default', ?, 'payment', 1, 'charge', '{}', NOW(), 0) RETURNING id",
+                UUID.class, definitionId);
+    }
+
+    @Test
+    void queuedRetryIsTakenByItsNodeOrByTheScanButNotBoth() {
+        LocalDateTime nextAttemptAt = now.minusMinutes(2);
+        UUID taken = failedAttempt(WorkflowExecution.ExecutionStatus.FAILED, nextAttemptAt);
+
+        assertThat(stepRetryIndex.hold(taken, nextAttemptAt, now.plusMinutes(5))).isTrue();
+        assertThat(stepRetryIndex.claimOverdue(now.minusMinutes(1), now.plusMinutes(5), 10)).isEmpty();
+        assertThat(stepRetryIndex.hold(taken, nextAttemptAt, now.plusMinutes(5))).isFalse();
+
+        UUID claimed = failedAttempt(WorkflowExecution.ExecutionStatus.COMPENSATION_FAILED, nextAttemptAt);
+        assertThat(stepRetryIndex.claimOverdue(now.minusMinutes(1), now.plusMinutes(5), 10))
+                .containsExactly(new StepRetryIndex.PendingRetry(claimed, instanceId, "charge",
+                        WorkflowExecution.ExecutionStatus.COMPENSATION_FAILED, 1));
+        assertThat(stepRetryIndex.hold(claimed, nextAttemptAt, now.plusMinutes(5))).isFalse();
+        assertThat(stepRetryIndex.claimOverdue(now.minusMinutes(1), now.plusMinutes(5), 10)).isEmpty();
+    }
+
+    @Test
+    void scanLeavesRecentRetriesToTheirNodeAndReclaimsExpiredClaims() {
+        failedAttempt(WorkflowExecution.ExecutionStatus.FAILED, now.minusSeconds(10));
+        assertThat(stepRetryIndex.claimOverdue(now.minusMinutes(1), now.plusMinutes(5), 10)).isEmpty();
+
+        assertThat(stepRetryIndex.claimOverdue(now, now.minusMinutes(2), 10)).hasSize(1);
+        // The claim ran out without the retry being run
+        assertThat(stepRetryIndex.claimOverdue(now.minusMinutes(1), now.plusMinutes(5), 10)).hasSize(1);
+    }
+
+    @Test
+    void clearedRetriesAreNotClaimed() {
+        UUID first = failedAttempt(WorkflowExecution.ExecutionStatus.FAILED, now.minusMinutes(3));
+        failedAttempt(WorkflowExecution.ExecutionStatus.FAILED, now.minusMinutes(2));
+
+        stepRetryIndex.clear(first);
+        assertThat(stepRetryIndex.claimOverdue(now, now.minusMinutes(10), 10)).hasSize(1);
+        stepRetryIndex.clearInstance(instanceId);
+
+        assertThat(stepRetryIndex.claimOverdue(now, now.plusMinutes(5), 10)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM workflow_executions"
+                + " WHERE next_attempt_at IS NOT NULL", Long.class)).isZero();
+    }
+
+    private UUID failedAttempt(WorkflowExecution.ExecutionStatus status, LocalDateTime nextAttemptAt) {
+        return jdbcTemplate.queryForObject("INSERT INTO workflow_executions (id, workflow_instance_id, step_name,"
+                        + " status_code, started_at, completed_at, attempt, next_attempt_at)"
+                        + " VALUES (gen_random_uuid(), ?, 'charge', ?, NOW(), NOW(), 1, ?) RETURNING id",
+                UUID.class, instanceId, status.getCode(), Timestamp.valueOf(nextAttemptAt));
+    }
+}
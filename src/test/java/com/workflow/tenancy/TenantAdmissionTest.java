@@ -0,0 +1,68 @@
+package com.workflow.tenancy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-tenant state of the tenant limits
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+class TenantAdmissionTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void unlistedTenantsBeyondTheLimitShareOneState() {
+        TenantAdmission admission = admission(List.of(), 2, Duration.ofMinutes(10));
+
+        for (int i = 0; i < 50; i++) {
+            admission.tryAdmit("tenant-" + i).ticket().close();
+        }
+
+        assertThat(admission.getTrackedTenants()).isEqualTo(2);
+        assertThat(meterRegistry.find("workflow.tenant.requests").timers()).hasSize(3);
+        assertThat(meterRegistry.get("workflow.tenant.requests").tag("tenant", "*").timer().count()).isEqualTo(48);
+    }
+
+    @Test
+    void idleTenantsAreForgottenWithTheirMeters() throws InterruptedException {
+        TenantAdmission admission = admission(List.of(), 100, Duration.ofMillis(20));
+        admission.tryAdmit("acme").ticket().close();
+        TenantAdmission.Ticket busy = admission.tryAdmit("globex").ticket();
+
+        Thread.sleep(50);
+        admission.expireIdleTenants();
+
+        // A request still in flight keeps its tenant
+        assertThat(admission.getTrackedTenants()).isEqualTo(1);
+        assertThat(meterRegistry.find("workflow.tenant.requests").tag("tenant", "acme").timer()).isNull();
+        assertThat(meterRegistry.find("workflow.tenant.in-flight").tag("tenant", "acme").gauge()).isNull();
+        busy.close();
+
+        admission.tryAdmit("acme").ticket().close();
+        assertThat(meterRegistry.get("workflow.tenant.requests").tag("tenant", "acme").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void listedTenantsAreKeptForGood() throws InterruptedException {
+        TenantAdmission admission = admission(List.of("acme", " globex"), 1, Duration.ofMillis(1));
+
+        admission.tryAdmit("acme").ticket().close();
+        Thread.sleep(10);
+        admission.expireIdleTenants();
+
+        assertThat(admission.getTrackedTenants()).isEqualTo(2);
+        assertThat(meterRegistry.get("workflow.tenant.requests").tag("tenant", "globex").timer()).isNotNull();
+    }
+
+    private TenantAdmission admission(List<String> tenants, int maxTrackedTenants, Duration idleExpiry) {
+        return new TenantAdmission(meterRegistry, 1_000_000, 1_000, 32, tenants, maxTrackedTenants, idleExpiry);
+    }
+}
@@ -0,0 +1,184 @@
+package db.migration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Expand step of the status code migration with nodes of both releases writing
+ *
+ * @author WorkFlow Team
+ * @version 1.0.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class CompactStatusCodesTest {
+
+    private static final int ROWS = 200_000;
+    private static final int SCANS = 5;
+
+    @Container
+    private static final PostgreSQLContainer<?> DATABASE = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private UUID definitionId;
+
+    @BeforeEach
+    void createTables() throws IOException {
+        dataSource = new DriverManagerDataSource(DATABASE.getJdbcUrl(), DATABASE.getUsername(), DATABASE.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS workflow_assignments, workflow_executions, workflow_steps,"
+                + " workflow_instances, workflow_definitions CASCADE");
+        // One statement, so the dollar-quoted trigger functions of V1 stay intact
+        jdbcTemplate.execute(new ClassPathResource("db/migration/V1__Create_workflow_tables.sql")
+                .getContentAsString(StandardCharsets.UTF_8));
+        definitionId = jdbcTemplate.queryForObject("INSERT INTO workflow_definitions (name, definition)"
+                + " VALUES ('Onboarding', '{}') RETURNING id", UUID.class);
+    }
+
+    @Test
+    void writesOfEitherReleaseKeepBothColumnsInStep() throws Exception {
+        UUID beforeMigration = insertOld("SUSPENDED");
+        mirror("workflow_instances");
+        assertThat(state(beforeMigration)).containsEntry("status", "SUSPENDED").containsEntry("status_code", 4);
+
+        // Previous release: VARCHAR only, the code column is unknown to it
+        UUID oldInsert = insertOld("FAILED");
+        assertThat(state(oldInsert)).containsEntry("status", "FAILED").containsEntry("status_code", 3);
+        jdbcTemplate.update("UPDATE workflow_instances SET status = 'COMPLETED' WHERE id = ?", oldInsert);
+        assertThat(state(oldInsert)).containsEntry("status", "COMPLETED").containsEntry("status_code", 2);
+
+        // This release: code only, the VARCHAR column would otherwise keep its default
+        UUID newInsert = jdbcTemplate.queryForObject("INSERT INTO workflow_instances"
+                + " (workflow_definition_id, name, status_code) VALUES (?, 'new', 6) RETURNING id",
+                UUID.class, definitionId);
+        assertThat(state(newInsert)).containsEntry("status", "COMPENSATING").containsEntry("status_code", 6);
+        jdbcTemplate.update("UPDATE workflow_instances SET status_code = 5 WHERE id = ?", newInsert);
+        assertThat(state(newInsert)).containsEntry("status", "CANCELLED").containsEntry("status_code", 5);
+
+        // Updates that leave the status alone leave both columns alone
+        jdbcTemplate.update("UPDATE workflow_instances SET current_step = 'review' WHERE id = ?", newInsert);
+        assertThat(state(newInsert)).containsEntry("status", "CANCELLED").containsEntry("status_code", 5);
+
+        assertThatThrownBy(() -> insertOld("PAUSED")).isInstanceOf(UncategorizedSQLException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM workflow_instances WHERE status_code IS NULL",
+                Long.class)).isZero();
+    }
+
+    @Test
+    void compensationStatusesOfExecutionsAreMirrored() throws Exception {
+        UUID instanceId = insertOld("COMPENSATING");
+        UUID beforeMigration = insertExecution("status", "FAILED", instanceId);
+        mirror("workflow_executions");
+        assertThat(executionState(beforeMigration)).containsEntry("status", "FAILED").containsEntry("status_code", 4);
+
+        // Compensation records, as written by this release
+        UUID compensated = insertExecution("status_code", 7, instanceId);
+        assertThat(executionState(compensated))
+                .containsEntry("status", "COMPENSATED").containsEntry("status_code", 7);
+        UUID compensationFailed = insertExecution("status_code", 8, instanceId);
+        assertThat(executionState(compensationFailed))
+                .containsEntry("status", "COMPENSATION_FAILED").containsEntry("status_code", 8);
+
+        // And as a node of the previous release would see and write them
+        UUID oldInsert = insertExecution("status", "COMPENSATED", instanceId);
+        assertThat(executionState(oldInsert)).containsEntry("status", "COMPENSATED").containsEntry("status_code", 7);
+        jdbcTemplate.update("UPDATE workflow_executions SET status = 'COMPENSATION_FAILED' WHERE id = ?", oldInsert);
+        assertThat(executionState(oldInsert))
+                .containsEntry("status", "COMPENSATION_FAILED").containsEntry("status_code", 8);
+
+        assertThatThrownBy(() -> insertExecution("status_code", 9, instanceId))
+                .isInstanceOf(UncategorizedSQLException.class);
+    }
+
+    @Test
+    void codeIndexIsSmallerThanTheVarcharIndex() throws Exception {
+        // Mostly finished instances, as in a long-running installation
+        jdbcTemplate.update("INSERT INTO workflow_instances (workflow_definition_id, name, status, started_at)"
+                + " SELECT ?, 'instance ' || n, (ARRAY['COMPLETED', 'COMPLETED', 'COMPLETED', 'FAILED',"
+                + " 'CANCELLED', 'RUNNING', 'SUSPENDED', 'COMPLETED'])[n % 8 + 1],"
+                + " NOW() - make_interval(secs => n) FROM generate_series(1, ?) AS n", definitionId, ROWS);
+        mirror("workflow_instances");
+        jdbcTemplate.execute("DROP INDEX idx_workflow_instances_status");
+        jdbcTemplate.execute("CREATE INDEX idx_compare_varchar ON workflow_instances (status, started_at DESC)");
+        jdbcTemplate.execute("CREATE INDEX idx_compare_code ON workflow_instances (status_code, started_at DESC)");
+        jdbcTemplate.execute("VACUUM ANALYZE workflow_instances");
+
+        long varcharSize = indexSize("idx_compare_varchar");
+        long codeSize = indexSize("idx_compare_code");
+        long varcharScan = fastestScanMicros("status = 'COMPLETED'");
+        long codeScan = fastestScanMicros("status_code = 2");
+        System.out.printf("Index on %,d rows: VARCHAR %,d bytes, %,d us per scan; SMALLINT %,d bytes, %,d us per scan%n",
+                ROWS, varcharSize, varcharScan, codeSize, codeScan);
+
+        assertThat(codeSize).isLessThan(varcharSize);
+    }
+
+    private void mirror(String table) throws Exception {
+        V4__Compact_status_codes.ColumnMigration columns = V4__Compact_status_codes.MIGRATIONS.stream()
+                .filter(migration -> migration.table().equals(table))
+                .findFirst()
+                .orElseThrow();
+        try (Connection connection = dataSource.getConnection()) {
+            new V4__Compact_status_codes().mirror(connection, columns);
+        }
+    }
+
+    private UUID insertOld(String status) {
+        return jdbcTemplate.queryForObject("INSERT INTO workflow_instances (workflow_definition_id, name, status)"
+                + " VALUES (?, 'old', ?) RETURNING id", UUID.class, definitionId, status);
+    }
+
+    private UUID insertExecution(String column, Object status, UUID instanceId) {
+        return jdbcTemplate.queryForObject("INSERT INTO workflow_executions (workflow_instance_id, step_name, "
+                + column + ") VALUES (?, 'charge', ?) RETURNING id", UUID.class, instanceId, status);
+    }
+
+    private Map<String, Object> executionState(UUID id) {
+        return jdbcTemplate.queryForMap("SELECT status, status_code::int AS status_code FROM workflow_executions"
+                + " WHERE id = ?", id);
+    }
+
+    private Map<String, Object> state(UUID id) {
+        return jdbcTemplate.queryForMap("SELECT status, status_code::int AS status_code FROM workflow_instances"
+                + " WHERE id = ?", id);
+    }
+
+    private long indexSize(String index) {
+        return jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, index);
+    }
+
+    private long fastestScanMicros(String predicate) throws SQLException {
+        String sql = "SELECT count(*) FROM workflow_instances WHERE " + predicate;
+        try (Connection connection = dataSource.getConnection()) {
+            JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            // Index-only scans, so the comparison is about the index and not the heap
+            session.execute("SET enable_seqscan = off");
+            session.execute("SET enable_bitmapscan = off");
+            long fastest = Long.MAX_VALUE;
+            for (int i = 0; i < SCANS; i++) {
+                long start = System.nanoTime();
+                session.queryForObject(sql, Long.class);
+                fastest = Math.min(fastest, (System.nanoTime() - start) / 1_000);
+            }
+            return fastest;
+        }
+    }
+}